@@ -4,14 +4,14 @@ import com.dslplatform.json.DslJson;
 import com.dslplatform.json.runtime.Settings;
 import org.rapidoid.RapidoidThing;
 import org.rapidoid.http.Req;
-import org.rapidoid.http.customize.BeanParameterFactory;
 import org.rapidoid.http.customize.HttpRequestBodyParser;
 import org.rapidoid.http.customize.HttpResponseRenderer;
+import org.rapidoid.http.customize.StreamingBeanParameterFactory;
 
 import java.io.OutputStream;
 import java.util.Map;
 
-public class DslJsonConverter extends RapidoidThing implements HttpResponseRenderer, HttpRequestBodyParser, BeanParameterFactory {
+public class DslJsonConverter extends RapidoidThing implements HttpResponseRenderer, HttpRequestBodyParser, StreamingBeanParameterFactory {
 
     private final DslJson<Object> dslJson = new DslJson<>(Settings.withRuntime().includeServiceLoader());
 
@@ -28,6 +28,11 @@ public class DslJsonConverter extends RapidoidThing implements HttpResponseRende
 
     @Override
     public Object getParamValue(Req req, Class<?> paramType, String paramName, Map<String, Object> properties) throws Exception {
+        return bindParamValue(req, paramType, paramName);
+    }
+
+    @Override
+    public Object bindParamValue(Req req, Class<?> paramType, String paramName) throws Exception {
         byte[] body = req.body();
         return dslJson.deserialize(paramType, body, body.length);
     }
@@ -0,0 +1,475 @@
+/*-
+ * #%L
+ * rapidoid-apt
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.apt;
+
+import org.rapidoid.annotation.*;
+import org.rapidoid.cls.MethodSignatures;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates the routes of the controllers at compile-time (see {@code org.rapidoid.setup.ControllerRoutes}), with the
+ * parameter names and a direct invoker for each exposed method, so the controllers don't have to be scanned with
+ * reflection and javassist at startup.
+ * <p>
+ * A controller is skipped (and scanned at startup, as usual) if any of its exposed methods or their parameter types
+ * aren't accessible from the package of the controller.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class ControllerProcessor extends AbstractProcessor {
+
+    static final String SUFFIX = "_Routes";
+
+    private static final Set<String> ROUTE_ANNOTATIONS = new HashSet<>(Arrays.asList(
+            Page.class.getName(), GET.class.getName(), POST.class.getName(),
+            PUT.class.getName(), DELETE.class.getName(), PATCH.class.getName(),
+            OPTIONS.class.getName(), HEAD.class.getName(), TRACE.class.getName()
+    ));
+
+    private static final int MAX_FIXED_ARITY = 4;
+
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        Set<String> annotations = new HashSet<>(ROUTE_ANNOTATIONS);
+        annotations.add(Controller.class.getName());
+        return annotations;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> controllers = new LinkedHashSet<>();
+
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+
+                Element type = element.getKind() == ElementKind.METHOD ? element.getEnclosingElement() : element;
+
+                if (type.getKind() == ElementKind.CLASS && !type.getModifiers().contains(Modifier.ABSTRACT)) {
+                    controllers.add((TypeElement) type);
+                }
+            }
+        }
+
+        for (TypeElement controller : controllers) {
+            process(controller);
+        }
+
+        // the annotations are also processed at runtime, so they aren't claimed
+        return false;
+    }
+
+    private void process(TypeElement controller) {
+        String routesClassName = routesClassName(controller);
+
+        if (!generated.add(routesClassName)) {
+            return;
+        }
+
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(controller);
+        List<ExecutableElement> methods = exposedMethods(controller);
+
+        String inaccessible = findInaccessible(controller, methods, pkg);
+
+        if (inaccessible != null) {
+            note(controller, "The routes can't be generated, because %s isn't accessible from the package %s," +
+                    " so the controller will be scanned at startup", inaccessible, pkg.getQualifiedName());
+            return;
+        }
+
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(routesClassName, controller);
+
+            try (Writer out = file.openWriter()) {
+                out.write(routesSource(controller, pkg, routesClassName, methods));
+            }
+
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Cannot generate the routes: " + e.getMessage(), controller);
+        }
+    }
+
+    /**
+     * The same name is expected at runtime: the binary name of the controller (with '$' for the nested classes, so
+     * {@code Outer.Inner} and {@code Outer_Inner} don't share the same name), with a suffix.
+     */
+    private String routesClassName(TypeElement controller) {
+        return binaryName(controller) + SUFFIX;
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    /**
+     * The methods are collected in the same order as they are scanned at runtime: the declared methods of the class,
+     * and then the declared methods of each super-class, excluding {@link Object}. The bridge methods generated by the
+     * compiler aren't in the source model, and they aren't exposed at runtime either.
+     */
+    private List<ExecutableElement> exposedMethods(TypeElement controller) {
+        List<ExecutableElement> methods = new ArrayList<>();
+
+        for (TypeElement type = controller; type != null && !isObject(type); type = superclassOf(type)) {
+            for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                if (shouldExpose(method)) {
+                    methods.add(method);
+                }
+            }
+        }
+
+        return methods;
+    }
+
+    private boolean shouldExpose(ExecutableElement method) {
+        Set<Modifier> modifiers = method.getModifiers();
+
+        if (modifiers.contains(Modifier.ABSTRACT) || modifiers.contains(Modifier.STATIC)
+                || modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.PROTECTED)) {
+            return false;
+        }
+
+        for (AnnotationMirror ann : method.getAnnotationMirrors()) {
+            TypeElement annType = (TypeElement) ann.getAnnotationType().asElement();
+
+            if (ROUTE_ANNOTATIONS.contains(annType.getQualifiedName().toString())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isObject(TypeElement type) {
+        return type.getQualifiedName().contentEquals(Object.class.getName());
+    }
+
+    private static TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        return superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+    }
+
+    /**
+     * Returns a description of the first element that can't be referred to from the generated code, or null.
+     */
+    private String findInaccessible(TypeElement controller, List<ExecutableElement> methods, PackageElement pkg) {
+        if (!isAccessible(controller, pkg)) {
+            return "the class " + controller.getQualifiedName();
+        }
+
+        for (ExecutableElement method : methods) {
+            TypeElement owner = (TypeElement) method.getEnclosingElement();
+
+            if (!isAccessible(owner, pkg)) {
+                return "the class " + owner.getQualifiedName();
+            }
+
+            if (!method.getModifiers().contains(Modifier.PUBLIC) && !pkg.equals(packageOf(owner))) {
+                return "the method " + owner.getQualifiedName() + "#" + method.getSimpleName();
+            }
+
+            for (VariableElement param : method.getParameters()) {
+                TypeMirror paramType = erasure(param.asType());
+
+                if (!isAccessible(paramType, pkg)) {
+                    return "the type " + paramType;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private boolean isAccessible(TypeElement type, PackageElement pkg) {
+        for (Element el = type; el instanceof TypeElement; el = el.getEnclosingElement()) {
+            TypeElement t = (TypeElement) el;
+
+            if (t.getNestingKind() == NestingKind.LOCAL || t.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+
+            Set<Modifier> modifiers = t.getModifiers();
+
+            if (modifiers.contains(Modifier.PRIVATE)) {
+                return false;
+            }
+
+            if (!modifiers.contains(Modifier.PUBLIC) && !pkg.equals(packageOf(t))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isAccessible(TypeMirror type, PackageElement pkg) {
+        if (type.getKind().isPrimitive()) {
+            return true;
+        }
+
+        switch (type.getKind()) {
+            case ARRAY:
+                return isAccessible(((ArrayType) type).getComponentType(), pkg);
+
+            case DECLARED:
+                return isAccessible((TypeElement) ((DeclaredType) type).asElement(), pkg);
+
+            default:
+                return false;
+        }
+    }
+
+    private PackageElement packageOf(Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element);
+    }
+
+    private TypeMirror erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type);
+    }
+
+    /**
+     * The signature of the method, as it's found at runtime with reflection (see {@link MethodSignatures}).
+     */
+    private String signature(ExecutableElement method) {
+        TypeElement owner = (TypeElement) method.getEnclosingElement();
+        List<String> paramTypes = new ArrayList<>();
+
+        for (VariableElement param : method.getParameters()) {
+            paramTypes.add(typeName(erasure(param.asType())));
+        }
+
+        return MethodSignatures.signature(binaryName(owner), method.getSimpleName().toString(), paramTypes);
+    }
+
+    private String typeName(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return type.getKind().name().toLowerCase(Locale.ROOT);
+        }
+
+        switch (type.getKind()) {
+            case ARRAY:
+                return typeName(((ArrayType) type).getComponentType()) + "[]";
+
+            case DECLARED:
+                return binaryName((TypeElement) ((DeclaredType) type).asElement());
+
+            default:
+                throw new IllegalArgumentException("Unexpected parameter type: " + type);
+        }
+    }
+
+    private String routesSource(TypeElement controller, PackageElement pkg, String routesClassName,
+                                List<ExecutableElement> methods) {
+
+        String simpleName = routesClassName.substring(routesClassName.lastIndexOf('.') + 1);
+
+        StringBuilder src = new StringBuilder();
+
+        if (!pkg.isUnnamed()) {
+            src.append("package ").append(pkg.getQualifiedName()).append(";\n\n");
+        }
+
+        src.append("/**\n");
+        src.append(" * The routes of {@link ").append(controller.getQualifiedName()).append("}, generated by ");
+        src.append(getClass().getName()).append(".\n");
+        src.append(" */\n");
+        src.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        src.append("public final class ").append(simpleName).append(" implements org.rapidoid.setup.ControllerRoutes {\n\n");
+
+        src.append("    @Override\n");
+        src.append("    public java.util.List<org.rapidoid.setup.ControllerMethod> methods() {\n");
+        src.append("        java.util.List<org.rapidoid.setup.ControllerMethod> methods = new java.util.ArrayList<>();\n");
+
+        for (int i = 0; i < methods.size(); i++) {
+            src.append("        methods.add(new Method").append(i).append("());\n");
+        }
+
+        src.append("        return methods;\n");
+        src.append("    }\n\n");
+
+        List<String> signatures = new ArrayList<>();
+        for (ExecutableElement method : methods) {
+            signatures.add(signature(method));
+        }
+
+        src.append("    @Override\n");
+        src.append("    public java.lang.String signatureHash() {\n");
+        src.append("        return \"").append(MethodSignatures.hash(signatures)).append("\";\n");
+        src.append("    }\n");
+
+        for (int i = 0; i < methods.size(); i++) {
+            src.append("\n");
+            methodSource(src, "Method" + i, methods.get(i));
+        }
+
+        src.append("\n}\n");
+
+        return src.toString();
+    }
+
+    private void methodSource(StringBuilder src, String className, ExecutableElement method) {
+        TypeElement owner = (TypeElement) method.getEnclosingElement();
+        List<? extends VariableElement> params = method.getParameters();
+        int arity = params.size();
+
+        src.append("    private static final class ").append(className);
+        src.append(" extends org.rapidoid.setup.ControllerMethod {\n\n");
+
+        // the constructor, with the exact signature of the method and the parameter names
+
+        src.append("        ").append(className).append("() {\n");
+        src.append("            super(").append(erasure(owner.asType())).append(".class, \"");
+        src.append(method.getSimpleName()).append("\", new java.lang.Class<?>[]{");
+
+        for (int i = 0; i < arity; i++) {
+            if (i > 0) {
+                src.append(", ");
+            }
+            src.append(erasure(params.get(i).asType())).append(".class");
+        }
+
+        src.append("}, ").append(paramNames(params)).append(");\n");
+        src.append("        }\n\n");
+
+        // the invocation with an array of arguments
+
+        src.append("        @Override\n");
+        src.append("        public java.lang.Object invoke(java.lang.Object target, java.lang.Object[] args) throws java.lang.Throwable {\n");
+        src.append("            checkArity(args);\n");
+
+        if (arity <= MAX_FIXED_ARITY) {
+            src.append("            return invoke(target");
+            for (int i = 0; i < arity; i++) {
+                src.append(", args[").append(i).append("]");
+            }
+            src.append(");\n");
+            src.append("        }\n\n");
+
+            // the invocation with a fixed number of arguments, without allocating an array
+
+            src.append("        @Override\n");
+            src.append("        public java.lang.Object invoke(java.lang.Object target");
+            for (int i = 0; i < arity; i++) {
+                src.append(", java.lang.Object arg").append(i + 1);
+            }
+            src.append(") throws java.lang.Throwable {\n");
+        }
+
+        List<String> args = new ArrayList<>();
+        for (int i = 0; i < arity; i++) {
+            args.add(arity <= MAX_FIXED_ARITY ? "arg" + (i + 1) : "args[" + i + "]");
+        }
+
+        String call = callSource(owner, method, args);
+
+        if (method.getReturnType().getKind() == TypeKind.VOID) {
+            src.append("            ").append(call).append(";\n");
+            src.append("            return null;\n");
+        } else {
+            src.append("            return ").append(call).append(";\n");
+        }
+
+        src.append("        }\n");
+        src.append("    }\n");
+    }
+
+    private String callSource(TypeElement owner, ExecutableElement method, List<String> args) {
+        StringBuilder call = new StringBuilder();
+
+        // the target is cast to the (raw) declaring class, where the erased signature of the method is valid
+        call.append("((").append(erasure(owner.asType())).append(") target).").append(method.getSimpleName()).append("(");
+
+        List<? extends VariableElement> params = method.getParameters();
+
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) {
+                call.append(", ");
+            }
+            call.append("(").append(castType(params.get(i).asType())).append(") ").append(args.get(i));
+        }
+
+        return call.append(")").toString();
+    }
+
+    private String castType(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+
+        return erasure(type).toString();
+    }
+
+    /**
+     * The parameter names are unknown (and then resolved at runtime) if the method was loaded from a class file
+     * that was compiled without the parameter names.
+     */
+    private static String paramNames(List<? extends VariableElement> params) {
+        boolean defaultNames = !params.isEmpty();
+
+        for (int i = 0; i < params.size(); i++) {
+            if (!params.get(i).getSimpleName().contentEquals("arg" + i)) {
+                defaultNames = false;
+            }
+        }
+
+        if (defaultNames) {
+            return "null";
+        }
+
+        StringBuilder names = new StringBuilder("new java.lang.String[]{");
+
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) {
+                names.append(", ");
+            }
+            names.append("\"").append(params.get(i).getSimpleName()).append("\"");
+        }
+
+        return names.append("}").toString();
+    }
+
+    private void note(Element element, String msg, Object... args) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, String.format(msg, args), element);
+    }
+
+}
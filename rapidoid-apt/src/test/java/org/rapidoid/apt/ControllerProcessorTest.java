@@ -0,0 +1,250 @@
+/*-
+ * #%L
+ * rapidoid-apt
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.apt;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.cls.MethodSignatures;
+import org.rapidoid.setup.ControllerMethod;
+import org.rapidoid.setup.ControllerRoutes;
+import org.rapidoid.setup.PojoHandlersSetup;
+import org.rapidoid.test.TestCommons;
+import org.rapidoid.u.U;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class ControllerProcessorTest extends TestCommons {
+
+    private static final String BASE = "package app;\n" +
+            "import org.rapidoid.annotation.*;\n" +
+            "public abstract class Base<T extends Comparable<T>> {\n" +
+            "    @POST public T save(T item) { return item; }\n" +
+            "}\n";
+
+    private static final String HELLO = "package app;\n" +
+            "import org.rapidoid.annotation.*;\n" +
+            "import java.util.List;\n" +
+            "@Controller(\"/hello\")\n" +
+            "public class Hello extends Base<String> {\n" +
+            "    public int touched;\n" +
+            "    @GET public String zero() { return \"zero\"; }\n" +
+            "    @GET(\"/inc\") public int inc(int x) { return x + 1; }\n" +
+            "    @Page String join(String a, List<String> b) { return a + b; }\n" +
+            "    @PUT public void touch() { touched++; }\n" +
+            "    @DELETE public String five(int a, long b, String c, double d, boolean e) { return \"\" + a + b + c + d + e; }\n" +
+            "    @GET public void fail(String msg) throws java.io.IOException { throw new java.io.IOException(msg); }\n" +
+            "    public String notExposed() { return \"\"; }\n" +
+            "    @GET private String hidden() { return \"\"; }\n" +
+            "    @GET public static String shared() { return \"\"; }\n" +
+            "    public static class Inner {\n" +
+            "        @GET public String hi(String name) { return \"hi \" + name; }\n" +
+            "    }\n" +
+            "}\n";
+
+    private static final String SUB = "package app;\n" +
+            "import org.rapidoid.annotation.*;\n" +
+            "@Controller(\"/sub\")\n" +
+            "public class Sub extends Base<String> {\n" +
+            "    @POST public String save(String item) { return item + \"!\"; }\n" +
+            "    @GET public String own() { return \"own\"; }\n" +
+            "}\n";
+
+    private static final String CHANGED_BASE = "package app;\n" +
+            "import org.rapidoid.annotation.*;\n" +
+            "public abstract class Base<T extends Comparable<T>> {\n" +
+            "    @POST public T save(T item) { return item; }\n" +
+            "    @GET public String added() { return \"\"; }\n" +
+            "}\n";
+
+    private static final String HIDDEN_PARAM = "package app;\n" +
+            "import org.rapidoid.annotation.*;\n" +
+            "@Controller\n" +
+            "public class HiddenParam {\n" +
+            "    private static class Secret {}\n" +
+            "    @GET public String secret(Secret s) { return \"\"; }\n" +
+            "}\n";
+
+    @Test
+    public void testGeneratedRoutes() throws Throwable {
+        ClassLoader classLoader = compile(U.map("app.Base", BASE, "app.Hello", HELLO));
+
+        Object hello = classLoader.loadClass("app.Hello").newInstance();
+        Map<String, ControllerMethod> methods = methodsByName(classLoader, "app.Hello_Routes");
+
+        eq(methods.keySet(), U.set("zero", "inc", "join", "touch", "five", "fail", "save"));
+
+        eq(methods.get("zero").invoke(hello), "zero");
+        eq(methods.get("inc").invoke(hello, 5), 6);
+        eq(methods.get("inc").invoke(hello, new Object[]{5}), 6);
+        eq(methods.get("join").invoke(hello, "a", U.list("b")), "a[b]");
+        eq(methods.get("five").invoke(hello, new Object[]{1, 2L, "c", 3.0, true}), "12c3.0true");
+
+        // inherited from a generic super-class
+        eq(methods.get("save").invoke(hello, "x"), "x");
+        eq(methods.get("save").method().getDeclaringClass().getName(), "app.Base");
+
+        isNull(methods.get("touch").invoke(hello));
+        eq(classLoader.loadClass("app.Hello").getField("touched").getInt(hello), 1);
+
+        eq(methods.get("zero").paramNames(), new String[0]);
+        eq(methods.get("join").paramNames(), new String[]{"a", "b"});
+        eq(methods.get("save").paramNames(), new String[]{"item"});
+
+        try {
+            methods.get("fail").invoke(hello, "failed");
+            fail("Expected an exception!");
+        } catch (IOException e) {
+            eq(e.getMessage(), "failed");
+        }
+
+        // the nested classes keep their binary names, so they can't clash with a class named Hello_Inner
+        Object inner = classLoader.loadClass("app.Hello$Inner").newInstance();
+        eq(methodsByName(classLoader, "app.Hello$Inner_Routes").get("hi").invoke(inner, "joe"), "hi joe");
+    }
+
+    @Test
+    public void testGeneratedRoutesMatchTheReflectedMethods() throws Exception {
+        ClassLoader classLoader = compile(U.map("app.Base", BASE, "app.Sub", SUB));
+
+        Class<?> sub = classLoader.loadClass("app.Sub");
+        ControllerRoutes routes = (ControllerRoutes) classLoader.loadClass("app.Sub_Routes").newInstance();
+
+        Set<String> generated = U.set();
+        for (ControllerMethod method : routes.methods()) {
+            generated.add(MethodSignatures.signature(method.method()));
+        }
+
+        List<Method> exposed = PojoHandlersSetup.exposedMethods(sub);
+
+        Set<String> reflected = U.set();
+        for (Method method : exposed) {
+            reflected.add(MethodSignatures.signature(method));
+        }
+
+        // the overriding method, the overridden one and the new one, without the bridge method save(Comparable)
+        eq(reflected, U.set("app.Sub#save(java.lang.String)", "app.Base#save(java.lang.Comparable)", "app.Sub#own()"));
+        eq(exposed.size(), 3);
+
+        eq(generated, reflected);
+        eq(routes.signatureHash(), MethodSignatures.hashOf(exposed));
+    }
+
+    @Test
+    public void testOutdatedRoutesAreDetected() throws Exception {
+        File out = Files.createTempDirectory("apt").toFile();
+
+        compile(out, U.map("app.Base", BASE, "app.Sub", SUB), true);
+
+        // the super-class is changed and compiled separately, so the routes of the controller aren't generated again
+        ClassLoader classLoader = compile(out, U.map("app.Base", CHANGED_BASE), false);
+
+        Class<?> sub = classLoader.loadClass("app.Sub");
+        ControllerRoutes routes = (ControllerRoutes) classLoader.loadClass("app.Sub_Routes").newInstance();
+
+        neq(routes.signatureHash(), MethodSignatures.hashOf(PojoHandlersSetup.exposedMethods(sub)));
+    }
+
+    @Test
+    public void testInaccessibleControllerIsSkipped() throws Exception {
+        ClassLoader classLoader = compile(U.map("app.HiddenParam", HIDDEN_PARAM));
+
+        notNull(classLoader.loadClass("app.HiddenParam"));
+
+        try {
+            classLoader.loadClass("app.HiddenParam_Routes");
+            fail("The routes shouldn't be generated!");
+        } catch (ClassNotFoundException e) {
+            // expected
+        }
+    }
+
+    private Map<String, ControllerMethod> methodsByName(ClassLoader classLoader, String routesClass) throws Exception {
+        ControllerRoutes routes = (ControllerRoutes) classLoader.loadClass(routesClass).newInstance();
+
+        Map<String, ControllerMethod> methods = U.map();
+
+        for (ControllerMethod method : routes.methods()) {
+            methods.put(method.method().getName(), method);
+        }
+
+        return methods;
+    }
+
+    private ClassLoader compile(Map<String, String> sources) throws IOException {
+        return compile(Files.createTempDirectory("apt").toFile(), sources, true);
+    }
+
+    private ClassLoader compile(File out, Map<String, String> sources, boolean processing) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+        List<JavaFileObject> files = U.list();
+        for (Map.Entry<String, String> e : sources.entrySet()) {
+            files.add(new Source(e.getKey(), e.getValue()));
+        }
+
+        String classpath = out.getAbsolutePath() + File.pathSeparator + System.getProperty("java.class.path");
+        List<String> options = U.list("-d", out.getAbsolutePath(), "-classpath", classpath);
+
+        if (!processing) {
+            options.add("-proc:none");
+        }
+
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, null, options, null, files);
+
+        if (processing) {
+            task.setProcessors(U.list(new ControllerProcessor()));
+        }
+
+        isTrue(task.call());
+
+        return new URLClassLoader(new URL[]{out.toURI().toURL()}, getClass().getClassLoader());
+    }
+
+    private static class Source extends SimpleJavaFileObject {
+
+        private final String code;
+
+        Source(String className, String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The common settings of the benchmarks, which can be overridden from the command line. The benchmarks measure the
+ * average time per operation, so the allocation rate reported by the GC profiler is comparable across the suites.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-server", "-Xms1g", "-Xmx1g"})
+public abstract class AbstractBenchmark {
+
+}
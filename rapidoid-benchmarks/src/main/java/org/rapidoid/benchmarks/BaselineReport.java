@@ -0,0 +1,281 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.data.JSON;
+import org.rapidoid.io.IO;
+import org.rapidoid.u.U;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares the results of a benchmark run with the results of a baseline run (both in the JSON format of JMH),
+ * and reports the benchmarks that became slower, or allocate more memory per operation.
+ * <p>
+ * A difference in the score is considered a regression only if it is bigger than the threshold (relative to the
+ * baseline score), and bigger than the sum of the errors of both scores, so the noise isn't reported.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class BaselineReport extends RapidoidThing {
+
+    static final String ALLOC_METRIC = "gc.alloc.rate.norm";
+
+    // a few bytes per operation are tolerated, e.g. due to the escape analysis varying between the runs
+    private static final double ALLOC_SLACK = 16;
+
+    private final Map<String, Result> baseline;
+
+    private final Map<String, Result> current;
+
+    private final double threshold;
+
+    private final List<String> regressions = U.list();
+
+    private final StringBuilder report = new StringBuilder();
+
+    public BaselineReport(String baselineJson, String currentJson, double threshold) {
+        this.baseline = parse(baselineJson);
+        this.current = parse(currentJson);
+        this.threshold = threshold;
+
+        compare();
+    }
+
+    public static BaselineReport fromFiles(String baselineFile, String currentFile, double threshold) {
+        String baselineJson = IO.load(baselineFile);
+        U.must(baselineJson != null, "Cannot find the baseline results: %s", baselineFile);
+
+        String currentJson = IO.load(currentFile);
+        U.must(currentJson != null, "Cannot find the benchmark results: %s", currentFile);
+
+        return new BaselineReport(baselineJson, currentJson, threshold);
+    }
+
+    static Map<String, Result> parse(String json) {
+        List<Map<String, Object>> entries = JSON.parse(json, new TypeReference<List<Map<String, Object>>>() {
+        });
+
+        Map<String, Result> results = new TreeMap<>();
+
+        for (Map<String, Object> entry : entries) {
+            Result result = new Result(entry);
+            results.put(result.name, result);
+        }
+
+        return results;
+    }
+
+    private void compare() {
+        line("%-72s %16s %16s %9s %14s %14s", "Benchmark", "Baseline", "Current", "Change", "Baseline B/op", "Current B/op");
+
+        for (Result cur : current.values()) {
+            Result base = baseline.get(cur.name);
+
+            if (base == null) {
+                line("%-72s %16s %16s %9s %14s %14s", cur.name, "-", score(cur), "new", "-", alloc(cur));
+                continue;
+            }
+
+            boolean slower = isSlower(base, cur);
+            boolean allocates = allocatesMore(base, cur);
+
+            if (slower || allocates) {
+                regressions.add(cur.name);
+            }
+
+            String mark = slower || allocates ? (slower ? " SLOWER" : "") + (allocates ? " ALLOC" : "") : "";
+
+            line("%-72s %16s %16s %+8.1f%% %14s %14s%s", cur.name, score(base), score(cur),
+                    change(base, cur), alloc(base), alloc(cur), mark);
+        }
+
+        for (Result base : baseline.values()) {
+            if (!current.containsKey(base.name)) {
+                line("%-72s %16s %16s %9s %14s %14s", base.name, score(base), "-", "missing", alloc(base), "-");
+            }
+        }
+
+        line("");
+        line("%s regression(s) with threshold %.1f%%", regressions.size(), threshold * 100);
+    }
+
+    private boolean isSlower(Result base, Result cur) {
+        double diff = cur.score - base.score;
+
+        // the higher throughput is better, the lower time is better
+        if (base.isThroughput()) {
+            diff = -diff;
+        }
+
+        double tolerance = Math.max(Math.abs(base.score) * threshold, errorOf(base) + errorOf(cur));
+
+        return diff > tolerance;
+    }
+
+    private boolean allocatesMore(Result base, Result cur) {
+        if (Double.isNaN(base.alloc) || Double.isNaN(cur.alloc)) {
+            return false;
+        }
+
+        return cur.alloc > base.alloc * (1 + threshold) + ALLOC_SLACK;
+    }
+
+    private static double errorOf(Result result) {
+        return Double.isNaN(result.error) ? 0 : result.error;
+    }
+
+    private static double change(Result base, Result cur) {
+        return base.score != 0 ? (cur.score - base.score) * 100 / base.score : 0;
+    }
+
+    private static String score(Result result) {
+        return U.frmt("%.3f %s", result.score, result.unit);
+    }
+
+    private static String alloc(Result result) {
+        return Double.isNaN(result.alloc) ? "-" : U.frmt("%.1f", result.alloc);
+    }
+
+    private void line(String format, Object... args) {
+        report.append(String.format(format, args)).append('\n');
+    }
+
+    public boolean hasRegressions() {
+        return !regressions.isEmpty();
+    }
+
+    public List<String> regressions() {
+        return regressions;
+    }
+
+    public String render() {
+        return report.toString();
+    }
+
+    @Override
+    public String toString() {
+        return render();
+    }
+
+    /**
+     * Usage: BaselineReport &lt;baseline.json&gt; &lt;current.json&gt; [threshold percent, default 10]
+     */
+    public static void main(String[] args) {
+        U.must(args.length == 2 || args.length == 3, "Usage: BaselineReport <baseline.json> <current.json> [threshold%]");
+
+        double threshold = args.length == 3 ? Double.parseDouble(args[2]) / 100 : BenchmarkRunner.DEFAULT_THRESHOLD;
+        BaselineReport report = fromFiles(args[0], args[1], threshold);
+
+        System.out.println(report.render());
+
+        if (report.hasRegressions()) {
+            System.exit(1);
+        }
+    }
+
+    static class Result {
+
+        final String name;
+
+        final String mode;
+
+        final double score;
+
+        final double error;
+
+        final String unit;
+
+        // the allocated bytes per operation (reported by the GC profiler), or NaN if unknown
+        final double alloc;
+
+        @SuppressWarnings("unchecked")
+        Result(Map<String, Object> entry) {
+            this.name = nameOf(entry);
+            this.mode = (String) entry.get("mode");
+
+            Map<String, Object> primary = (Map<String, Object>) entry.get("primaryMetric");
+            U.must(primary != null, "Missing primary metric for: %s", name);
+
+            this.score = number(primary.get("score"));
+            this.error = number(primary.get("scoreError"));
+            this.unit = (String) primary.get("scoreUnit");
+
+            this.alloc = allocOf((Map<String, Object>) entry.get("secondaryMetrics"));
+        }
+
+        boolean isThroughput() {
+            return "thrpt".equals(mode);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static String nameOf(Map<String, Object> entry) {
+            String name = ((String) entry.get("benchmark")).replaceFirst("^org\\.rapidoid\\.benchmarks\\.", "");
+
+            Map<String, Object> params = (Map<String, Object>) entry.get("params");
+
+            if (U.notEmpty(params)) {
+                StringBuilder sb = new StringBuilder(name).append('(');
+                boolean first = true;
+
+                for (Map.Entry<String, Object> param : new TreeMap<>(params).entrySet()) {
+                    if (!first) sb.append(", ");
+                    sb.append(param.getKey()).append('=').append(param.getValue());
+                    first = false;
+                }
+
+                name = sb.append(')').toString();
+            }
+
+            return name;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static double allocOf(Map<String, Object> secondary) {
+            if (secondary != null) {
+                // the name of the metric is prefixed with a middle dot character
+                for (Map.Entry<String, Object> metric : secondary.entrySet()) {
+                    if (metric.getKey().endsWith(ALLOC_METRIC)) {
+                        return number(((Map<String, Object>) metric.getValue()).get("score"));
+                    }
+                }
+            }
+
+            return Double.NaN;
+        }
+
+        private static double number(Object value) {
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+
+            // JMH writes "NaN" as a string
+            return value != null ? Double.parseDouble(String.valueOf(value)) : Double.NaN;
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.io.IO;
+import org.rapidoid.u.U;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the GC profiler (to report the allocated bytes per operation), writes the results in
+ * JSON format and compares them with the baseline results, if a baseline is specified.
+ * <p>
+ * Besides the standard JMH options (e.g. a regular expression that selects the benchmarks), the following arguments
+ * are supported:
+ * <ul>
+ * <li><code>baseline=&lt;file&gt;</code> - the results to compare with, they are recorded if the file doesn't exist</li>
+ * <li><code>threshold=&lt;percent&gt;</code> - the tolerated slowdown (default 10%)</li>
+ * </ul>
+ * For example: <code>java -jar target/benchmarks.jar Routing baseline=baseline.json threshold=5</code>
+ * <p>
+ * The exit code is 1 if any regressions were detected.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class BenchmarkRunner extends RapidoidThing {
+
+    static final double DEFAULT_THRESHOLD = 0.1;
+
+    private static final String DEFAULT_RESULTS = "target/benchmarks.json";
+
+    public static void main(String[] args) throws Exception {
+        String baseline = null;
+        double threshold = DEFAULT_THRESHOLD;
+        List<String> jmhArgs = U.list();
+
+        for (String arg : args) {
+            if (arg.startsWith("baseline=")) {
+                baseline = arg.substring("baseline=".length());
+
+            } else if (arg.startsWith("threshold=")) {
+                threshold = Double.parseDouble(arg.substring("threshold=".length())) / 100;
+
+            } else {
+                jmhArgs.add(arg);
+            }
+        }
+
+        CommandLineOptions cmdOptions = new CommandLineOptions(jmhArgs.toArray(new String[0]));
+
+        if (cmdOptions.shouldHelp()) {
+            cmdOptions.showHelp();
+            return;
+        }
+
+        if (cmdOptions.shouldList()) {
+            new Runner(cmdOptions).list();
+            return;
+        }
+
+        String results = cmdOptions.getResult().orElse(DEFAULT_RESULTS);
+        File resultsDir = new File(results).getAbsoluteFile().getParentFile();
+        U.must(resultsDir.isDirectory() || resultsDir.mkdirs(), "Cannot create the directory: %s", resultsDir);
+
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cmdOptions);
+
+        if (!hasGCProfiler(cmdOptions)) {
+            builder.addProfiler(GCProfiler.class);
+        }
+
+        Options options = builder
+                .resultFormat(ResultFormatType.JSON)
+                .result(results)
+                .build();
+
+        new Runner(options).run();
+
+        if (baseline != null) {
+            if (new File(baseline).exists()) {
+                BaselineReport report = BaselineReport.fromFiles(baseline, results, threshold);
+                System.out.println(report.render());
+
+                if (report.hasRegressions()) {
+                    System.exit(1);
+                }
+
+            } else {
+                IO.save(baseline, IO.loadBytes(results));
+                System.out.println("Recorded the results as a new baseline: " + baseline);
+            }
+        }
+    }
+
+    private static boolean hasGCProfiler(CommandLineOptions options) {
+        for (ProfilerConfig profiler : options.getProfilers()) {
+            String name = profiler.getKlass();
+
+            if (name.equals("gc") || name.equals(GCProfiler.class.getName())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+}
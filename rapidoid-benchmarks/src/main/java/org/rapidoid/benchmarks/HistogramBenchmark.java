@@ -0,0 +1,61 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.insight.Histogram;
+
+/**
+ * Records the latencies into a shared histogram, from one thread and from 8 threads, which update their own stripes
+ * of counters.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+@State(Scope.Benchmark)
+public class HistogramBenchmark extends AbstractBenchmark {
+
+    private final Histogram histogram = new Histogram();
+
+    @State(Scope.Thread)
+    public static class Values {
+
+        private long value;
+
+        long next() {
+            value = (value + 7919) % 100000;
+            return value;
+        }
+    }
+
+    @Benchmark
+    public void record(Values values) {
+        histogram.record(values.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void recordConcurrently(Values values) {
+        histogram.record(values.next());
+    }
+
+}
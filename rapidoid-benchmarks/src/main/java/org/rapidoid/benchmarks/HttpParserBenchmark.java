@@ -0,0 +1,76 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.Buf;
+import org.rapidoid.buffer.BufGroup;
+import org.rapidoid.data.KeyValueRanges;
+import org.rapidoid.http.impl.HttpParser;
+import org.rapidoid.net.impl.RapidoidHelper;
+
+/**
+ * Parses the request line, detects the keep-alive mode and extracts the body of typical requests, the same work
+ * that is done for each request on the event loop.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+@State(Scope.Thread)
+public class HttpParserBenchmark extends AbstractBenchmark {
+
+    @Param({"plaintext", "browser", "post"})
+    public String request;
+
+    private final HttpParser parser = new HttpParser();
+
+    private final RapidoidHelper helper = new RapidoidHelper();
+
+    private final KeyValueRanges headersKV = new KeyValueRanges(50);
+
+    private final KeyValueRanges cookies = new KeyValueRanges(50);
+
+    private Buf buf;
+
+    @Setup
+    public void setup() {
+        buf = new BufGroup(16 * 1024).from(Requests.raw(request), "request");
+    }
+
+    @Benchmark
+    public boolean parse() {
+        buf.position(0);
+        parser.parse(buf, helper);
+
+        return helper.isKeepAlive.value;
+    }
+
+    @Benchmark
+    public int parseWithHeaders() {
+        buf.position(0);
+        parser.parse(buf, helper);
+        parser.parseHeadersIntoKV(buf, helper.headers, headersKV.reset(), cookies.reset(), helper);
+
+        return headersKV.count + cookies.count;
+    }
+
+}
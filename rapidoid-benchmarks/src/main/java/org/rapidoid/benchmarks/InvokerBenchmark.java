@@ -0,0 +1,111 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.beany.Beany;
+import org.rapidoid.beany.Prop;
+import org.rapidoid.cls.Cls;
+import org.rapidoid.cls.MethodInvoker;
+
+import java.lang.reflect.Method;
+
+/**
+ * Invokes a controller-like method with a few parameters and accesses a bean property, the same calls that are made
+ * for each request with a bean parameter. The reflective calls are compared with the method handle invokers.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+@State(Scope.Thread)
+public class InvokerBenchmark extends AbstractBenchmark {
+
+    private final Controller controller = new Controller();
+
+    private final Item item = new Item();
+
+    private Method method;
+
+    private MethodInvoker invoker;
+
+    private Method getter;
+
+    private Method setter;
+
+    private Prop prop;
+
+    private final Integer id = 123;
+
+    private final String name = "abc";
+
+    @Setup
+    public void setup() throws Exception {
+        method = Controller.class.getMethod("update", Integer.class, String.class, Boolean.class);
+        invoker = MethodInvoker.of(method);
+
+        getter = Item.class.getMethod("getName");
+        setter = Item.class.getMethod("setName", String.class);
+        prop = Beany.property(Item.class, "name", true);
+    }
+
+    @Benchmark
+    public Object invokeReflection() throws Throwable {
+        return Cls.invokeRethrowing(method, controller, id, name, Boolean.TRUE);
+    }
+
+    @Benchmark
+    public Object invokeHandle() throws Throwable {
+        return invoker.invoke(controller, id, name, Boolean.TRUE);
+    }
+
+    @Benchmark
+    public Object propReflection() throws Exception {
+        setter.invoke(item, name);
+        return getter.invoke(item);
+    }
+
+    @Benchmark
+    public Object propHandle() {
+        prop.set(item, name);
+        return prop.get(item);
+    }
+
+    public static class Controller {
+        public Object update(Integer id, String name, Boolean active) {
+            return active ? name : id;
+        }
+    }
+
+    public static class Item {
+
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.data.JSON;
+import org.rapidoid.writable.ReusableWritable;
+
+/**
+ * Renders typical response payloads as JSON, into a new byte array and into a reused per-thread stream (as the
+ * responses are rendered by the server).
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+@State(Scope.Thread)
+public class JsonRenderingBenchmark extends AbstractBenchmark {
+
+    @Param({"message", "items"})
+    public String payload;
+
+    private final ReusableWritable out = new ReusableWritable();
+
+    private Object value;
+
+    @Setup
+    public void setup() {
+        value = Payloads.of(payload);
+        JSON.warmUp();
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return JSON.stringifyToBytes(value);
+    }
+
+    @Benchmark
+    public int toReusedStream() {
+        out.reset();
+        JSON.stringify(value, out);
+
+        return out.size();
+    }
+
+}
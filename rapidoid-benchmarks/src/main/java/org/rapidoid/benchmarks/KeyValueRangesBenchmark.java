@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.Buf;
+import org.rapidoid.buffer.BufGroup;
+import org.rapidoid.data.KeyValueRanges;
+import org.rapidoid.http.impl.HttpParser;
+import org.rapidoid.net.impl.RapidoidHelper;
+
+import java.util.Map;
+
+/**
+ * Converts the parsed headers, cookies and query parameters of a browser request into maps, as it is done lazily
+ * when a handler accesses them.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+@State(Scope.Thread)
+public class KeyValueRangesBenchmark extends AbstractBenchmark {
+
+    private final HttpParser parser = new HttpParser();
+
+    private final RapidoidHelper helper = new RapidoidHelper();
+
+    private final KeyValueRanges headers = new KeyValueRanges(50);
+
+    private final KeyValueRanges cookies = new KeyValueRanges(50);
+
+    private final KeyValueRanges params = new KeyValueRanges(50);
+
+    private Buf buf;
+
+    @Setup
+    public void setup() {
+        buf = new BufGroup(16 * 1024).from(Requests.raw("browser"), "request");
+
+        parser.parse(buf, helper);
+        parser.parseHeadersIntoKV(buf, helper.headers, headers, cookies, helper);
+        parser.parseParams(buf, params, helper.query);
+    }
+
+    @Benchmark
+    public Map<String, String> headers() {
+        return headers.toMap(buf, false, false, true);
+    }
+
+    @Benchmark
+    public Map<String, String> cookies() {
+        return cookies.toMap(buf, true, true, false);
+    }
+
+    @Benchmark
+    public Map<String, String> params() {
+        return params.toMap(buf, true, true, false);
+    }
+
+}
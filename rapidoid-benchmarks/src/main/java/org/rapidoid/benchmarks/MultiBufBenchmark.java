@@ -0,0 +1,115 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.Buf;
+import org.rapidoid.buffer.BufGroup;
+import org.rapidoid.data.BufRanges;
+
+/**
+ * Exercises the connection buffers: appending pipelined requests that span several pooled units, scanning their
+ * headers and discarding the consumed input.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+@State(Scope.Thread)
+public class MultiBufBenchmark extends AbstractBenchmark {
+
+    @Param({"1", "16", "64"})
+    public int pipelined;
+
+    @Param({"1024", "16384"})
+    public int unitSize;
+
+    private final BufRanges lines = new BufRanges(100);
+
+    private byte[] request;
+
+    private BufGroup bufs;
+
+    private Buf buf;
+
+    @Setup
+    public void setup() {
+        request = Requests.raw("browser").getBytes();
+
+        // the buffers of the connections are used by the worker thread only, so they aren't synchronized
+        bufs = new BufGroup(unitSize, false);
+        buf = bufs.newBuf("benchmark");
+    }
+
+    @TearDown
+    public void tearDown() {
+        buf.clear();
+        bufs.clear();
+    }
+
+    @Benchmark
+    public int append() {
+        buf.clear();
+
+        for (int i = 0; i < pipelined; i++) {
+            buf.append(request);
+        }
+
+        return buf.size();
+    }
+
+    @Benchmark
+    public int appendAndScan() {
+        buf.clear();
+
+        for (int i = 0; i < pipelined; i++) {
+            buf.append(request);
+        }
+
+        int headers = 0;
+
+        for (int i = 0; i < pipelined; i++) {
+            buf.scanLnLn(lines.reset());
+            headers += lines.count;
+        }
+
+        return headers;
+    }
+
+    @Benchmark
+    public int appendScanAndDelete() {
+        buf.clear();
+
+        for (int i = 0; i < pipelined; i++) {
+            buf.append(request);
+        }
+
+        // consume the requests one by one, releasing the processed input like the worker does
+        for (int i = 0; i < pipelined; i++) {
+            buf.position(0);
+            buf.scanLnLn(lines.reset());
+            buf.deleteBefore(buf.position());
+        }
+
+        return buf.size();
+    }
+
+}
@@ -0,0 +1,103 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.BufGroup;
+import org.rapidoid.net.impl.NetWorker;
+import org.rapidoid.net.impl.RapidoidConnection;
+import org.rapidoid.net.impl.RapidoidHelper;
+import org.rapidoid.net.tls.TLSBuffers;
+import org.rapidoid.u.U;
+
+import javax.net.ssl.SSLContext;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A worker without a socket and event loop, used to construct a connection whose output is written by the
+ * benchmarks, and then discarded instead of being sent.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+class NoopWorker extends RapidoidThing implements NetWorker {
+
+    private final RapidoidHelper helper = new RapidoidHelper();
+
+    private final BufGroup bufs = new BufGroup(16 * 1024);
+
+    @Override
+    public void accept(SocketChannel socketChannel) {
+        throw U.rte("Not supported!");
+    }
+
+    @Override
+    public void process(RapidoidConnection conn) {
+        // nothing to do
+    }
+
+    @Override
+    public void close(RapidoidConnection conn) {
+        // nothing to do
+    }
+
+    @Override
+    public void wantToWrite(RapidoidConnection conn) {
+        // the output is discarded by the benchmark
+    }
+
+    @Override
+    public RapidoidConnection newConnection(boolean client) {
+        return new RapidoidConnection(this, bufs, null);
+    }
+
+    @Override
+    public long getMessagesProcessed() {
+        return 0;
+    }
+
+    @Override
+    public SSLContext sslContext() {
+        return null;
+    }
+
+    @Override
+    public TLSBuffers tlsBuffers() {
+        return null;
+    }
+
+    @Override
+    public void handshakeTasksDone(RapidoidConnection conn) {
+        // no TLS
+    }
+
+    @Override
+    public boolean onSameThread() {
+        return true;
+    }
+
+    @Override
+    public RapidoidHelper helper() {
+        return helper;
+    }
+
+}
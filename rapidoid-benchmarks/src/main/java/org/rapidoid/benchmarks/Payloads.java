@@ -0,0 +1,89 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.u.U;
+
+import java.util.List;
+
+/**
+ * Typical response payloads, used as input by the rendering benchmarks.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class Payloads extends RapidoidThing {
+
+    public static class Message {
+        public final String message;
+
+        public Message(String message) {
+            this.message = message;
+        }
+    }
+
+    public static class Item {
+        public final long id;
+        public final String name;
+        public final String description;
+        public final double price;
+        public final boolean available;
+        public final List<String> tags;
+
+        public Item(long id) {
+            this.id = id;
+            this.name = "item-" + id;
+            this.description = "The description of the item #" + id + ", which is a bit longer than the name";
+            this.price = id * 1.25;
+            this.available = id % 3 != 0;
+            this.tags = U.list("tag" + (id % 7), "tag" + (id % 11));
+        }
+    }
+
+    private Payloads() {
+    }
+
+    public static Object of(String name) {
+        switch (name) {
+            case "message":
+                return new Message("Hello, World!");
+
+            case "items":
+                return items(100);
+
+            default:
+                throw U.rte("Unknown payload: %s", name);
+        }
+    }
+
+    public static List<Item> items(int count) {
+        List<Item> items = U.list();
+
+        for (int i = 0; i < count; i++) {
+            items.add(new Item(i));
+        }
+
+        return items;
+    }
+
+}
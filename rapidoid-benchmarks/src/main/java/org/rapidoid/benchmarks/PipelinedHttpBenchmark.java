@@ -0,0 +1,155 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.io.IO;
+import org.rapidoid.setup.Setups;
+import org.rapidoid.u.U;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Sends batches of pipelined requests to a server over a loopback connection (one per benchmark thread), and waits
+ * for all the responses. This covers the whole path of a request: reading, parsing, routing, handling, writing the
+ * response and sending it.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class PipelinedHttpBenchmark extends AbstractBenchmark {
+
+    private static final String REQUEST = "GET /plaintext HTTP/1.1\r\nHost: localhost\r\n\r\n";
+
+    @State(Scope.Benchmark)
+    public static class ServerState {
+
+        // the JMH @Setup annotation shadows the name
+        org.rapidoid.setup.Setup setup;
+
+        int port;
+
+        @Setup
+        public void start() throws IOException {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+
+            setup = Setups.create("benchmark");
+            setup.port(port);
+            setup.get("/plaintext").plain("Hello, World!");
+            setup.activate();
+        }
+
+        @TearDown
+        public void stop() {
+            setup.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClientState {
+
+        @Param({"1", "16"})
+        public int pipelined;
+
+        private Socket socket;
+
+        private OutputStream out;
+
+        private InputStream in;
+
+        private byte[] requests;
+
+        private byte[] responses;
+
+        @Setup
+        public void connect(ServerState server) throws IOException {
+            socket = new Socket("localhost", server.port);
+            socket.setTcpNoDelay(true);
+
+            out = socket.getOutputStream();
+            in = socket.getInputStream();
+
+            StringBuilder batch = new StringBuilder();
+            for (int i = 0; i < pipelined; i++) {
+                batch.append(REQUEST);
+            }
+
+            requests = batch.toString().getBytes();
+
+            // the responses have a constant size (the date header has a fixed format), so it is measured only once
+            int responseSize = measureResponse();
+            responses = new byte[responseSize * pipelined];
+        }
+
+        private int measureResponse() throws IOException {
+            out.write(REQUEST.getBytes());
+            out.flush();
+
+            StringBuilder head = new StringBuilder();
+
+            while (!head.toString().endsWith("\r\n\r\n")) {
+                int b = in.read();
+                U.must(b >= 0, "The connection was closed!");
+                head.append((char) b);
+            }
+
+            String contentLength = head.toString().replaceAll("(?is).*\r\nContent-Length:\\s*(\\d+)\r\n.*", "$1");
+            int bodySize = Integer.parseInt(contentLength);
+
+            readFully(new byte[bodySize]);
+
+            return head.length() + bodySize;
+        }
+
+        private void readFully(byte[] dest) throws IOException {
+            int total = 0;
+
+            while (total < dest.length) {
+                int n = in.read(dest, total, dest.length - total);
+                U.must(n >= 0, "The connection was closed!");
+                total += n;
+            }
+        }
+
+        @TearDown
+        public void disconnect() {
+            IO.close(socket, true);
+        }
+    }
+
+    @Benchmark
+    public byte[] pipelinedRequests(ClientState client) throws IOException {
+        client.out.write(client.requests);
+        client.out.flush();
+
+        client.readFully(client.responses);
+
+        return client.responses;
+    }
+
+}
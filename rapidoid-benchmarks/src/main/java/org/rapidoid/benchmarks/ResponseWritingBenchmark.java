@@ -0,0 +1,76 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.http.HttpUtils;
+import org.rapidoid.http.MediaType;
+import org.rapidoid.http.impl.MaybeReq;
+import org.rapidoid.http.impl.lowlevel.HttpIO;
+import org.rapidoid.net.impl.RapidoidConnection;
+
+/**
+ * Writes the status line, the default headers and the body of a response into the output of a connection, for a
+ * plain text response and for JSON responses of different sizes.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+@State(Scope.Thread)
+public class ResponseWritingBenchmark extends AbstractBenchmark {
+
+    private static final byte[] HELLO = "Hello, World!".getBytes();
+
+    @Param({"plain", "message", "items"})
+    public String response;
+
+    private final MaybeReq noReq = HttpUtils.noReq();
+
+    private RapidoidConnection conn;
+
+    private Object value;
+
+    @Setup
+    public void setup() {
+        conn = new NoopWorker().newConnection(false);
+        value = response.equals("plain") ? null : Payloads.of(response);
+    }
+
+    @TearDown
+    public void tearDown() {
+        conn.reset();
+    }
+
+    @Benchmark
+    public int write() {
+        conn.output().clear();
+
+        if (value == null) {
+            HttpIO.INSTANCE.write200(noReq, conn, true, MediaType.PLAIN_TEXT_UTF_8, HELLO);
+        } else {
+            HttpIO.INSTANCE.writeHttpResp(noReq, conn, true, 200, MediaType.JSON, value);
+        }
+
+        return conn.output().size();
+    }
+
+}
@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.Buf;
+import org.rapidoid.buffer.BufGroup;
+import org.rapidoid.bufstruct.BufMap;
+import org.rapidoid.bufstruct.BufMapImpl;
+import org.rapidoid.config.Conf;
+import org.rapidoid.config.Config;
+import org.rapidoid.http.FastHttp;
+import org.rapidoid.http.ReqHandler;
+import org.rapidoid.http.customize.Customization;
+import org.rapidoid.http.impl.HandlerMatch;
+import org.rapidoid.http.impl.HttpParser;
+import org.rapidoid.http.impl.HttpRoutesImpl;
+import org.rapidoid.net.impl.RapidoidHelper;
+import org.rapidoid.setup.My;
+
+/**
+ * Looks up the handlers of static and parameterized paths in a route table of a typical REST API, with a few
+ * resources and nested resources per entity, as well as a path that doesn't match any route.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+@State(Scope.Thread)
+public class RoutingBenchmark extends AbstractBenchmark {
+
+    private static final String[] LOOKUPS = {
+            "GET /api/entity7 HTTP/1.1||",
+            "GET /api/entity7/1234 HTTP/1.1||",
+            "POST /api/entity7/1234/comments HTTP/1.1||",
+            "GET /api/missing/1234 HTTP/1.1||",
+    };
+
+    @Param({"10", "100"})
+    public int entities;
+
+    @Param({"static", "param", "nested", "miss"})
+    public String lookup;
+
+    private final HttpParser parser = new HttpParser();
+
+    private final RapidoidHelper helper = new RapidoidHelper();
+
+    private final BufMap<String> paths = new BufMapImpl<>();
+
+    private HttpRoutesImpl routes;
+
+    private Buf buf;
+
+    @Setup
+    public void setup() {
+        Config config = Conf.section("benchmark");
+        Customization customization = new Customization("benchmark", My.custom(), config);
+
+        routes = new HttpRoutesImpl("benchmark", customization);
+        new FastHttp(routes, config);
+
+        ReqHandler handler = req -> "OK";
+
+        for (int i = 0; i < entities; i++) {
+            String entity = "/api/entity" + i;
+
+            routes.on("GET,POST", entity, handler);
+            routes.on("GET,PUT,DELETE", entity + "/{id}", handler);
+            routes.on("GET,POST", entity + "/{id}/comments", handler);
+            routes.on("GET", entity + "/{id}/comments/{commentId}", handler);
+
+            paths.put(entity, entity);
+        }
+
+        buf = new BufGroup(1024).from(request().replace("|", "\r\n"), "request");
+        parser.parse(buf, helper);
+    }
+
+    private String request() {
+        switch (lookup) {
+            case "static":
+                return LOOKUPS[0];
+            case "param":
+                return LOOKUPS[1];
+            case "nested":
+                return LOOKUPS[2];
+            default:
+                return LOOKUPS[3];
+        }
+    }
+
+    @Benchmark
+    public HandlerMatch findHandler() {
+        return routes.findHandler(buf, helper.isGet.value, helper.verb, helper.path);
+    }
+
+    @Benchmark
+    public String bufMap() {
+        return paths.get(buf, helper.path);
+    }
+
+}
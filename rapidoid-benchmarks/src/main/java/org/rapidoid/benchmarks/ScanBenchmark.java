@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.Buf;
+import org.rapidoid.buffer.BufGroup;
+import org.rapidoid.bytes.Swar;
+import org.rapidoid.data.BufRange;
+import org.rapidoid.data.BufRanges;
+
+import java.nio.ByteBuffer;
+
+import static org.rapidoid.util.Constants.LF;
+
+/**
+ * Compares the byte-at-a-time scanning loop with the word-at-a-time (SWAR) scanning of the buffers, by finding the
+ * line ends of header-heavy requests, in a single buffer and across the units of a connection buffer.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+@State(Scope.Thread)
+public class ScanBenchmark extends AbstractBenchmark {
+
+    @Param({"browser", "post"})
+    public String request;
+
+    @Param({"64", "16384"})
+    public int unitSize;
+
+    private final BufRanges lines = new BufRanges(100);
+
+    private final BufRange range = new BufRange();
+
+    private ByteBuffer direct;
+
+    private int size;
+
+    private Buf buf;
+
+    @Setup
+    public void setup() {
+        byte[] bytes = Requests.raw(request).getBytes();
+        size = bytes.length;
+
+        direct = ByteBuffer.allocateDirect(size);
+        direct.put(bytes);
+
+        buf = new BufGroup(unitSize, false).from(Requests.raw(request), "request");
+    }
+
+    @Benchmark
+    public int byteLoop() {
+        int count = 0;
+
+        for (int pos = 0; pos < size; pos++) {
+            if (direct.get(pos) == LF) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    @Benchmark
+    public int swar() {
+        int count = 0;
+        int pos = 0;
+
+        while ((pos = Swar.indexOf(direct, pos, size, LF)) >= 0) {
+            count++;
+            pos++;
+        }
+
+        return count;
+    }
+
+    @Benchmark
+    public int scanLnLn() {
+        buf.position(0);
+        buf.scanLnLn(lines.reset());
+
+        return lines.count;
+    }
+
+    @Benchmark
+    public int scanUntil() {
+        int count = 0;
+        buf.position(0);
+
+        while (buf.indexOf(LF, buf.position(), buf.limit()) >= 0) {
+            buf.scanUntil(LF, range);
+            count++;
+        }
+
+        return count;
+    }
+
+}
@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.commons.Str;
+import org.rapidoid.crypto.Crypto;
+import org.rapidoid.serialize.Serialize;
+import org.rapidoid.u.U;
+import org.rapidoid.util.Tokens;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Serializes and encrypts the session token of an authenticated user, and then decrypts and deserializes it, as it is
+ * done for the requests that carry a token cookie. The verification of the encrypted and the signed tokens is compared
+ * with the lookup of a recently verified token.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+@State(Scope.Thread)
+public class TokensBenchmark extends AbstractBenchmark {
+
+    private Map<String, Serializable> token;
+
+    private String serialized;
+
+    private byte[] encrypted;
+
+    private byte[] tokenBytes;
+
+    private byte[] signature;
+
+    @Setup
+    public void setup() {
+        token = U.map();
+        token.put(Tokens._USER, "john.doe@example.com");
+        token.put(Tokens._SCOPE, "admin,manager");
+        token.put(Tokens._EXPIRES, System.currentTimeMillis() + 3600 * 1000);
+        token.put("cart", 12345);
+
+        serialized = Tokens.serialize(token);
+        encrypted = Str.fromWebSafeBase64(serialized);
+
+        byte[] dest = new byte[2500];
+        tokenBytes = Arrays.copyOf(dest, Serialize.serialize(dest, token));
+        signature = Crypto.sign(tokenBytes);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return Tokens.serialize(token);
+    }
+
+    /**
+     * The same token is deserialized for each request, so it's served from the cache of verified tokens.
+     */
+    @Benchmark
+    public Map<String, Serializable> deserialize() {
+        return Tokens.deserialize(serialized);
+    }
+
+    /**
+     * The full verification of an encrypted token, without the cache.
+     */
+    @Benchmark
+    public Object decryptAndDeserialize() {
+        return Serialize.deserialize(Crypto.decrypt(encrypted));
+    }
+
+    /**
+     * The full verification of a signed token, without the cache.
+     */
+    @Benchmark
+    public Object verifyAndDeserialize() {
+        U.must(Crypto.signatureMatches(signature, tokenBytes));
+        return Serialize.deserialize(tokenBytes);
+    }
+
+}
@@ -0,0 +1,99 @@
+/*-
+ * #%L
+ * rapidoid-benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.benchmarks;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.test.TestCommons;
+import org.rapidoid.u.U;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class BaselineReportTest extends TestCommons {
+
+    @Test
+    public void testNoRegressionsWithinThresholdAndError() {
+        String baseline = results(result("Parse", "avgt", 100, 2, 48), result("Route", "thrpt", 1000, 10, 0));
+        String current = results(result("Parse", "avgt", 105, 2, 48), result("Route", "thrpt", 950, 10, 0));
+
+        BaselineReport report = new BaselineReport(baseline, current, 0.1);
+
+        isFalse(report.hasRegressions());
+    }
+
+    @Test
+    public void testSlowerBenchmarksAreReported() {
+        String baseline = results(result("Parse", "avgt", 100, 2, 48), result("Route", "thrpt", 1000, 10, 0));
+        String current = results(result("Parse", "avgt", 130, 2, 48), result("Route", "thrpt", 700, 10, 0));
+
+        BaselineReport report = new BaselineReport(baseline, current, 0.1);
+
+        eq(report.regressions(), U.list("Parse", "Route"));
+    }
+
+    @Test
+    public void testNoisyResultsAreNotReported() {
+        String baseline = results(result("Parse", "avgt", 100, 30, 48));
+        String current = results(result("Parse", "avgt", 150, 30, 48));
+
+        BaselineReport report = new BaselineReport(baseline, current, 0.1);
+
+        isFalse(report.hasRegressions());
+    }
+
+    @Test
+    public void testHigherAllocationIsReported() {
+        String baseline = results(result("Parse", "avgt", 100, 2, 48));
+        String current = results(result("Parse", "avgt", 100, 2, 120));
+
+        BaselineReport report = new BaselineReport(baseline, current, 0.1);
+
+        eq(report.regressions(), U.list("Parse"));
+        isTrue(report.render().contains("ALLOC"));
+    }
+
+    @Test
+    public void testParamsAreIncludedInTheName() {
+        String json = "[{\"benchmark\": \"org.rapidoid.benchmarks.HttpParserBenchmark.parse\", \"mode\": \"avgt\", " +
+                "\"params\": {\"request\": \"post\"}, \"primaryMetric\": {\"score\": 80.5, \"scoreError\": \"NaN\", " +
+                "\"scoreUnit\": \"ns/op\"}, \"secondaryMetrics\": {\"\u00b7gc.alloc.rate.norm\": {\"score\": 24.0}}}]";
+
+        BaselineReport.Result result = BaselineReport.parse(json).get("HttpParserBenchmark.parse(request=post)");
+
+        notNull(result);
+        eq(result.score, 80.5);
+        eq(result.alloc, 24.0);
+        isTrue(Double.isNaN(result.error));
+    }
+
+    private static String results(String... results) {
+        return "[" + String.join(", ", results) + "]";
+    }
+
+    private static String result(String name, String mode, double score, double error, double alloc) {
+        return U.frmt("{\"benchmark\": \"%s\", \"mode\": \"%s\", \"primaryMetric\": {\"score\": %s, " +
+                        "\"scoreError\": %s, \"scoreUnit\": \"ns/op\"}, \"secondaryMetrics\": " +
+                        "{\"\u00b7gc.alloc.rate.norm\": {\"score\": %s}}}",
+                name, mode, score, error, alloc);
+    }
+
+}
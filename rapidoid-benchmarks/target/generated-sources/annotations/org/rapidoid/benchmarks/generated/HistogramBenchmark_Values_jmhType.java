@@ -0,0 +1,4 @@
+package org.rapidoid.benchmarks.generated;
+public class HistogramBenchmark_Values_jmhType extends HistogramBenchmark_Values_jmhType_B3 {
+}
+
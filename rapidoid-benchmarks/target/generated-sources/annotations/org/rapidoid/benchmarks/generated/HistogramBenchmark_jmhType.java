@@ -0,0 +1,4 @@
+package org.rapidoid.benchmarks.generated;
+public class HistogramBenchmark_jmhType extends HistogramBenchmark_jmhType_B3 {
+}
+
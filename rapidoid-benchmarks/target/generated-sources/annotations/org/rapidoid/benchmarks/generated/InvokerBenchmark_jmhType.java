@@ -0,0 +1,4 @@
+package org.rapidoid.benchmarks.generated;
+public class InvokerBenchmark_jmhType extends InvokerBenchmark_jmhType_B3 {
+}
+
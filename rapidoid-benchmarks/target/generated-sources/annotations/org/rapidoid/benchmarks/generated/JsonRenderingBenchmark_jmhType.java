@@ -0,0 +1,4 @@
+package org.rapidoid.benchmarks.generated;
+public class JsonRenderingBenchmark_jmhType extends JsonRenderingBenchmark_jmhType_B3 {
+}
+
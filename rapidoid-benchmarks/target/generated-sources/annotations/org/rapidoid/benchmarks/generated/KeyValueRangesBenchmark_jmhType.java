@@ -0,0 +1,4 @@
+package org.rapidoid.benchmarks.generated;
+public class KeyValueRangesBenchmark_jmhType extends KeyValueRangesBenchmark_jmhType_B3 {
+}
+
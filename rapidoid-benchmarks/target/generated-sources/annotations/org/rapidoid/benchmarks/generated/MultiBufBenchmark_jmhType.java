@@ -0,0 +1,4 @@
+package org.rapidoid.benchmarks.generated;
+public class MultiBufBenchmark_jmhType extends MultiBufBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.rapidoid.benchmarks.generated;
+public class PipelinedHttpBenchmark_ClientState_jmhType extends PipelinedHttpBenchmark_ClientState_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.rapidoid.benchmarks.generated;
+public class PipelinedHttpBenchmark_ServerState_jmhType extends PipelinedHttpBenchmark_ServerState_jmhType_B3 {
+}
+
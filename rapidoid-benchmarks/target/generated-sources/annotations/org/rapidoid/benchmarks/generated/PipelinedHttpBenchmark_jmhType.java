@@ -0,0 +1,4 @@
+package org.rapidoid.benchmarks.generated;
+public class PipelinedHttpBenchmark_jmhType extends PipelinedHttpBenchmark_jmhType_B3 {
+}
+
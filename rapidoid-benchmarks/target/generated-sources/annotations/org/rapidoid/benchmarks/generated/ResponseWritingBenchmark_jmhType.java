@@ -0,0 +1,4 @@
+package org.rapidoid.benchmarks.generated;
+public class ResponseWritingBenchmark_jmhType extends ResponseWritingBenchmark_jmhType_B3 {
+}
+
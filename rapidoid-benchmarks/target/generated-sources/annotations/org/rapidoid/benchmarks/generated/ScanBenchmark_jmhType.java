@@ -0,0 +1,4 @@
+package org.rapidoid.benchmarks.generated;
+public class ScanBenchmark_jmhType extends ScanBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.rapidoid.benchmarks.generated;
+public class TokensBenchmark_jmhType extends TokensBenchmark_jmhType_B3 {
+}
+
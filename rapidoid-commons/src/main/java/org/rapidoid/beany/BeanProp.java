@@ -31,10 +31,14 @@ import org.rapidoid.util.Msc;
 import org.rapidoid.var.Var;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
@@ -43,6 +47,12 @@ import java.util.Map;
 @Since("2.0.0")
 public class BeanProp extends RapidoidThing implements Prop {
 
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodType READER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final MethodType WRITER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
     private final String name;
 
     private volatile Field field;
@@ -68,6 +78,10 @@ public class BeanProp extends RapidoidThing implements Prop {
     private volatile ParameterizedType genericType;
     private volatile ParameterizedType rawGenericType;
 
+    // the accessors, adapted to generic signatures (null if not available, e.g. for a final field)
+    private volatile MethodHandle reader;
+    private volatile MethodHandle writer;
+
     public BeanProp(String name) {
         this.name = name;
     }
@@ -120,6 +134,36 @@ public class BeanProp extends RapidoidThing implements Prop {
         typeKind = Cls.kindOf(type);
         rawTypeKind = Cls.kindOf(rawType);
         declaringType = field != null ? field.getDeclaringClass() : getter.getDeclaringClass();
+
+        reader = readerHandle();
+        writer = writerHandle();
+    }
+
+    private MethodHandle readerHandle() {
+        try {
+            MethodHandle handle = getter != null ? LOOKUP.unreflect(getter) : LOOKUP.unreflectGetter(field);
+            return handle.asType(READER_TYPE);
+
+        } catch (Exception e) {
+            // fall back to reflection
+            return null;
+        }
+    }
+
+    private MethodHandle writerHandle() {
+        try {
+            if (field != null) {
+                return LOOKUP.unreflectSetter(field).asType(WRITER_TYPE);
+            } else if (setter != null) {
+                return LOOKUP.unreflect(setter).asType(WRITER_TYPE);
+            } else {
+                return null;
+            }
+
+        } catch (Exception e) {
+            // fall back to reflection
+            return null;
+        }
     }
 
     public void setGetter(Method getter) {
@@ -166,11 +210,7 @@ public class BeanProp extends RapidoidThing implements Prop {
         // FIXME when target class isn't the property declaring class
 
         try {
-            if (getter != null) {
-                return (T) getter.invoke(target);
-            } else {
-                return (T) field.get(target);
-            }
+            return (T) read(target);
 
         } catch (Exception e) {
             if (Msc.rootCause(e) instanceof UnsupportedOperationException) {
@@ -331,9 +371,45 @@ public class BeanProp extends RapidoidThing implements Prop {
         map.putAll((Map<Object, Object>) value);
     }
 
+    private Object read(Object target) throws Exception {
+        MethodHandle reader = this.reader;
+
+        if (reader != null) {
+            try {
+                return (Object) reader.invokeExact(target);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        } else if (getter != null) {
+            return getter.invoke(target);
+        } else {
+            return field.get(target);
+        }
+    }
+
+    /**
+     * Invokes the writer, propagating the exceptions and the errors as they are.
+     */
+    private static void invoke(MethodHandle writer, Object target, Object value) throws Exception {
+        try {
+            writer.invokeExact(target, value);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
     private void normalSet(Object target, Object value) {
+        MethodHandle writer = this.writer;
+
         try {
-            if (field != null) {
+            if (writer != null) {
+                Class<?> valueType = field != null ? field.getType() : setter.getParameterTypes()[0];
+                invoke(writer, target, Cls.convert(value, valueType));
+            } else if (field != null) {
                 field.setAccessible(true);
                 field.set(target, Cls.convert(value, field.getType()));
             } else if (setter != null) {
@@ -378,7 +454,14 @@ public class BeanProp extends RapidoidThing implements Prop {
     @Override
     public Object getFast(Object target) {
 
-        if (getter != null) {
+        if (reader != null) {
+            try {
+                return read(target);
+            } catch (Exception e) {
+                throw U.rte(e);
+            }
+
+        } else if (getter != null) {
             getter.setAccessible(true);
 
             try {
@@ -25,6 +25,7 @@ import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
 import org.rapidoid.cache.impl.CacheFactory;
 import org.rapidoid.lambda.Mapper;
+import org.rapidoid.lambda.Operation;
 
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
@@ -46,6 +47,8 @@ public class CacheDSL<K, V> extends RapidoidThing {
 
     private volatile boolean manageable;
 
+    private volatile Operation<V> onRemoval;
+
     public Mapper<K, V> loader() {
         return loader;
     }
@@ -59,7 +62,7 @@ public class CacheDSL<K, V> extends RapidoidThing {
         return name;
     }
 
-    public CacheDSL name(String name) {
+    public CacheDSL<K, V> name(String name) {
         this.name = name;
         return this;
     }
@@ -86,7 +89,7 @@ public class CacheDSL<K, V> extends RapidoidThing {
         return crawler;
     }
 
-    public CacheDSL crawler(ScheduledThreadPoolExecutor crawler) {
+    public CacheDSL<K, V> crawler(ScheduledThreadPoolExecutor crawler) {
         this.crawler = crawler;
         return this;
     }
@@ -95,7 +98,7 @@ public class CacheDSL<K, V> extends RapidoidThing {
         return statistics;
     }
 
-    public CacheDSL statistics(boolean statistics) {
+    public CacheDSL<K, V> statistics(boolean statistics) {
         this.statistics = statistics;
         return this;
     }
@@ -104,11 +107,23 @@ public class CacheDSL<K, V> extends RapidoidThing {
         return manageable;
     }
 
-    public CacheDSL manageable(boolean manageable) {
+    public CacheDSL<K, V> manageable(boolean manageable) {
         this.manageable = manageable;
         return this;
     }
 
+    public Operation<V> onRemoval() {
+        return onRemoval;
+    }
+
+    /**
+     * Sets the callback for the values that were evicted, expired, invalidated or replaced.
+     */
+    public CacheDSL<K, V> onRemoval(Operation<V> onRemoval) {
+        this.onRemoval = onRemoval;
+        return this;
+    }
+
     public Cache<K, V> build() {
         return CacheFactory.create(this);
     }
@@ -39,4 +39,8 @@ public @interface Cached {
 
     long ttl();
 
+    long staleTTL() default 0;
+
+    String[] vary() default {};
+
 }
@@ -26,6 +26,8 @@ import org.rapidoid.RapidoidThing;
 import org.rapidoid.cache.impl.CacheStats;
 import org.rapidoid.cache.impl.ManageableCache;
 import org.rapidoid.lambda.Mapper;
+import org.rapidoid.lambda.Operation;
+import org.rapidoid.log.Log;
 import org.rapidoid.u.U;
 
 import java.util.concurrent.TimeUnit;
@@ -44,6 +46,11 @@ public class CaffeineCache<K, V> extends RapidoidThing implements Cache<K, V> {
     private final AtomicLong bypassed = new AtomicLong();
 
     public CaffeineCache(String name, int capacity, Mapper<K, V> loader, long ttl, boolean statistics, boolean manageable) {
+        this(name, capacity, loader, ttl, statistics, manageable, null);
+    }
+
+    public CaffeineCache(String name, int capacity, Mapper<K, V> loader, long ttl, boolean statistics, boolean manageable,
+                         Operation<V> onRemoval) {
         this.name = name;
         this.capacity = capacity;
         this.ttl = ttl;
@@ -63,6 +70,21 @@ public class CaffeineCache<K, V> extends RapidoidThing implements Cache<K, V> {
             builder.recordStats();
         }
 
+        if (onRemoval != null) {
+            // the listener is notified on the thread that caused the removal
+            builder.executor(Runnable::run);
+
+            builder.<K, V>removalListener((key, value, cause) -> {
+                if (value != null) {
+                    try {
+                        onRemoval.execute(value);
+                    } catch (Exception e) {
+                        Log.error("Error in the cache removal listener!", "cache", name, "error", e);
+                    }
+                }
+            });
+        }
+
         if (manageable) {
             new ManageableCache(this);
         }
@@ -33,7 +33,7 @@ public class CacheFactory extends RapidoidThing {
 
     public static <K, V> Cache<K, V> create(CacheDSL<K, V> params) {
         return new CaffeineCache<>(params.name(), params.capacity(), params.loader(), params.ttl(),
-                params.statistics(), params.manageable());
+                params.statistics(), params.manageable(), params.onRemoval());
     }
 
 }
@@ -0,0 +1,246 @@
+/*-
+ * #%L
+ * rapidoid-commons
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.cls;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.u.U;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invokes a method through a method handle that is adapted once to a generic (Object...) signature. The methods with
+ * up to 4 parameters can be invoked without allocating an array of arguments. Like {@link Cls#invokeRethrowing}, the
+ * exceptions thrown by the method are propagated as they are.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public abstract class MethodInvoker extends RapidoidThing {
+
+    private static final int MAX_FIXED_ARITY = 4;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    protected final Method method;
+
+    protected final MethodHandle handle;
+
+    private MethodInvoker(Method method, MethodHandle handle) {
+        this.method = method;
+        this.handle = handle;
+    }
+
+    /**
+     * For the invokers that call the method directly (e.g. generated at compile-time), without a method handle.
+     */
+    protected MethodInvoker(Method method) {
+        this(method, null);
+    }
+
+    public static MethodInvoker of(Method method) {
+        int arity = method.getParameterCount();
+
+        MethodHandle handle = handleOf(method);
+
+        // the target is ignored for static methods
+        if (Modifier.isStatic(method.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+
+        if (arity > MAX_FIXED_ARITY) {
+            handle = handle.asSpreader(Object[].class, arity);
+            handle = handle.asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+            return new SpreadInvoker(method, handle);
+        }
+
+        handle = handle.asType(MethodType.genericMethodType(arity + 1));
+
+        switch (arity) {
+            case 0:
+                return new Invoker0(method, handle);
+            case 1:
+                return new Invoker1(method, handle);
+            case 2:
+                return new Invoker2(method, handle);
+            case 3:
+                return new Invoker3(method, handle);
+            case 4:
+                return new Invoker4(method, handle);
+            default:
+                throw U.rte("Unexpected arity: %s", arity);
+        }
+    }
+
+    private static MethodHandle handleOf(Method method) {
+        method.setAccessible(true);
+
+        try {
+            return LOOKUP.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw U.rte("Cannot access the method: %s", e, method);
+        }
+    }
+
+    public Method method() {
+        return method;
+    }
+
+    public abstract Object invoke(Object target, Object[] args) throws Throwable;
+
+    public Object invoke(Object target) throws Throwable {
+        return invoke(target, new Object[]{});
+    }
+
+    public Object invoke(Object target, Object arg1) throws Throwable {
+        return invoke(target, new Object[]{arg1});
+    }
+
+    public Object invoke(Object target, Object arg1, Object arg2) throws Throwable {
+        return invoke(target, new Object[]{arg1, arg2});
+    }
+
+    public Object invoke(Object target, Object arg1, Object arg2, Object arg3) throws Throwable {
+        return invoke(target, new Object[]{arg1, arg2, arg3});
+    }
+
+    public Object invoke(Object target, Object arg1, Object arg2, Object arg3, Object arg4) throws Throwable {
+        return invoke(target, new Object[]{arg1, arg2, arg3, arg4});
+    }
+
+    protected void checkArity(Object[] args) {
+        U.must(args.length == method.getParameterCount(), "Expected %s arguments for %s, but found %s!",
+                method.getParameterCount(), method, args.length);
+    }
+
+    @Override
+    public String toString() {
+        return "MethodInvoker{" + method + "}";
+    }
+
+    private static class Invoker0 extends MethodInvoker {
+
+        private Invoker0(Method method, MethodHandle handle) {
+            super(method, handle);
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] args) throws Throwable {
+            checkArity(args);
+            return invoke(target);
+        }
+
+        @Override
+        public Object invoke(Object target) throws Throwable {
+            return (Object) handle.invokeExact(target);
+        }
+    }
+
+    private static class Invoker1 extends MethodInvoker {
+
+        private Invoker1(Method method, MethodHandle handle) {
+            super(method, handle);
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] args) throws Throwable {
+            checkArity(args);
+            return invoke(target, args[0]);
+        }
+
+        @Override
+        public Object invoke(Object target, Object arg1) throws Throwable {
+            return (Object) handle.invokeExact(target, arg1);
+        }
+    }
+
+    private static class Invoker2 extends MethodInvoker {
+
+        private Invoker2(Method method, MethodHandle handle) {
+            super(method, handle);
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] args) throws Throwable {
+            checkArity(args);
+            return invoke(target, args[0], args[1]);
+        }
+
+        @Override
+        public Object invoke(Object target, Object arg1, Object arg2) throws Throwable {
+            return (Object) handle.invokeExact(target, arg1, arg2);
+        }
+    }
+
+    private static class Invoker3 extends MethodInvoker {
+
+        private Invoker3(Method method, MethodHandle handle) {
+            super(method, handle);
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] args) throws Throwable {
+            checkArity(args);
+            return invoke(target, args[0], args[1], args[2]);
+        }
+
+        @Override
+        public Object invoke(Object target, Object arg1, Object arg2, Object arg3) throws Throwable {
+            return (Object) handle.invokeExact(target, arg1, arg2, arg3);
+        }
+    }
+
+    private static class Invoker4 extends MethodInvoker {
+
+        private Invoker4(Method method, MethodHandle handle) {
+            super(method, handle);
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] args) throws Throwable {
+            checkArity(args);
+            return invoke(target, args[0], args[1], args[2], args[3]);
+        }
+
+        @Override
+        public Object invoke(Object target, Object arg1, Object arg2, Object arg3, Object arg4) throws Throwable {
+            return (Object) handle.invokeExact(target, arg1, arg2, arg3, arg4);
+        }
+    }
+
+    private static class SpreadInvoker extends MethodInvoker {
+
+        private SpreadInvoker(Method method, MethodHandle handle) {
+            super(method, handle);
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] args) throws Throwable {
+            checkArity(args);
+            return (Object) handle.invokeExact(target, args);
+        }
+    }
+
+}
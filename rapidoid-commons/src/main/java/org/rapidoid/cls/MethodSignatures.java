@@ -0,0 +1,106 @@
+/*-
+ * #%L
+ * rapidoid-commons
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.cls;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The signatures of a set of methods, in a form that is the same at compile-time (from the language model) and at
+ * runtime (with reflection), e.g. {@code app.Outer$Inner#find(java.lang.String,int[])}.
+ * <p>
+ * It has no dependencies, because it's also used by the annotation processors.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public final class MethodSignatures extends RapidoidThing {
+
+    private MethodSignatures() {
+    }
+
+    /**
+     * @param declaringClass the binary name of the declaring class
+     * @param paramTypes     the names of the erased parameter types, with binary names for the classes and a "[]"
+     *                       suffix for each array dimension
+     */
+    public static String signature(String declaringClass, String name, List<String> paramTypes) {
+        return declaringClass + "#" + name + "(" + String.join(",", paramTypes) + ")";
+    }
+
+    public static String signature(Method method) {
+        List<String> paramTypes = new ArrayList<>();
+
+        for (Class<?> paramType : method.getParameterTypes()) {
+            paramTypes.add(paramType.getTypeName());
+        }
+
+        return signature(method.getDeclaringClass().getName(), method.getName(), paramTypes);
+    }
+
+    /**
+     * A hash of the signatures, regardless of their order (SHA-256, as a hex string).
+     */
+    public static String hash(Collection<String> signatures) {
+        List<String> sorted = new ArrayList<>(signatures);
+        Collections.sort(sorted);
+
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Cannot find crypto algorithm: SHA-256", e);
+        }
+
+        for (String signature : sorted) {
+            sha256.update(signature.getBytes(StandardCharsets.UTF_8));
+            sha256.update((byte) '\n');
+        }
+
+        StringBuilder hex = new StringBuilder();
+
+        for (byte b : sha256.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+
+        return hex.toString();
+    }
+
+    public static String hashOf(Collection<Method> methods) {
+        List<String> signatures = new ArrayList<>();
+
+        for (Method method : methods) {
+            signatures.add(signature(method));
+        }
+
+        return hash(signatures);
+    }
+
+}
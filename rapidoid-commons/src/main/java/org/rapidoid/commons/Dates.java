@@ -27,6 +27,11 @@ import org.rapidoid.u.U;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
@@ -42,6 +47,10 @@ public class Dates extends RapidoidThing {
 
     public static final TimeZone GMT = TimeZone.getTimeZone("GMT");
 
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter
+            .ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+            .withZone(ZoneOffset.UTC);
+
     private static volatile long updateCurrDateAfter = 0;
 
     private static volatile byte[] CURR_DATE_BYTES;
@@ -66,6 +75,24 @@ public class Dates extends RapidoidThing {
         return CURR_DATE_BYTES;
     }
 
+    /**
+     * Formats the time in the HTTP date format (RFC 1123), e.g. Sun, 07 Sep 2014 00:17:29 GMT
+     */
+    public static String httpDate(long time) {
+        return HTTP_DATE.format(Instant.ofEpochMilli(time));
+    }
+
+    /**
+     * Parses a date in the HTTP date format (RFC 1123), returns -1 if the value is not a valid HTTP date.
+     */
+    public static long parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
     public static Date date(String value) {
         if (U.isEmpty(value)) {
             return null;
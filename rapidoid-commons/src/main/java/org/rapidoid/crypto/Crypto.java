@@ -34,6 +34,7 @@ import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
@@ -51,8 +52,13 @@ public class Crypto extends RapidoidThing {
 
     static final int HMAC_KEY_LENGTH = 256; // bits
 
+    static final String SIGNING_KEY_LABEL = "sign";
+
     private static volatile CryptoKey secretKey;
 
+    // the HMAC instances are reused, because their initialization is relatively expensive
+    private static final ThreadLocal<KeyedMac> SIGNING_MACS = new ThreadLocal<>();
+
     static final byte[] DEFAULT_PBKDF2_SALT = {
             0, -3, -76, 48, 23, 1, 43, -41, -120, 45, -92, -113, -100, 70, -68, -46, 96, -93, 15, 99
     };
@@ -249,6 +255,70 @@ public class Crypto extends RapidoidThing {
         return MessageDigest.isEqual(hmac, Crypto.hmac(data, secret, salt));
     }
 
+    /**
+     * Derives a sub-key for the specified purpose (label) from a uniformly random key, with HKDF-Expand (RFC 5869)
+     * using HMAC-SHA256, so the same key isn't used for different purposes.
+     */
+    static byte[] deriveKey(byte[] key, String label) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_SHA_256);
+            mac.init(new SecretKeySpec(key, HMAC_SHA_256));
+
+            // a single block of output: T(1) = HMAC(key, label | 0x01)
+            mac.update(label.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 1);
+
+            return mac.doFinal();
+
+        } catch (Exception e) {
+            throw U.rte(e);
+        }
+    }
+
+    /**
+     * Signs the data with HMAC-SHA256, using a signing key derived from the HMAC key of the application secret (which
+     * also authenticates the encrypted data).
+     */
+    public static byte[] sign(byte[] data) {
+        return signingMac().doFinal(data);
+    }
+
+    public static boolean signatureMatches(byte[] signature, byte[] data) {
+        return MessageDigest.isEqual(signature, sign(data));
+    }
+
+    private static Mac signingMac() {
+        CryptoKey key = secretKey;
+        if (key == null) key = getSecretKey();
+
+        KeyedMac keyedMac = SIGNING_MACS.get();
+
+        if (keyedMac == null || keyedMac.key != key) {
+            try {
+                Mac mac = Mac.getInstance(HMAC_SHA_256);
+                mac.init(new SecretKeySpec(key.signingKey, HMAC_SHA_256));
+
+                keyedMac = new KeyedMac(key, mac);
+                SIGNING_MACS.set(keyedMac);
+
+            } catch (Exception e) {
+                throw U.rte(e);
+            }
+        }
+
+        return keyedMac.mac;
+    }
+
+    private static class KeyedMac {
+        final CryptoKey key;
+        final Mac mac;
+
+        KeyedMac(CryptoKey key, Mac mac) {
+            this.key = key;
+            this.mac = mac;
+        }
+    }
+
     private static SecretKeyFactory getPBKDFInstance() throws NoSuchAlgorithmException {
         try {
             return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
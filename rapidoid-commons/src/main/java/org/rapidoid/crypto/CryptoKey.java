@@ -33,9 +33,12 @@ public class CryptoKey extends RapidoidThing {
 
     final byte[] hmacKey;
 
+    final byte[] signingKey;
+
     public CryptoKey(byte[] encryptionKey, byte[] hmacKey) {
         this.encryptionKey = encryptionKey;
         this.hmacKey = hmacKey;
+        this.signingKey = Crypto.deriveKey(hmacKey, Crypto.SIGNING_KEY_LABEL);
     }
 
     public static CryptoKey from(char[] password) {
@@ -0,0 +1,206 @@
+/*-
+ * #%L
+ * rapidoid-commons
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.insight;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A histogram of non-negative values (e.g. latencies in microseconds), with log-linear buckets: each power of 2 is
+ * split into 8 linear sub-buckets, so the percentiles are accurate within 12.5%. The powers of 2 are bucket
+ * boundaries, so the number of values below them is exact.
+ * <p>
+ * The recording is lock-free: each thread increments the buckets of its stripe, and the stripes are merged when a
+ * snapshot is taken. The stripes are allocated when they are first used.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class Histogram extends RapidoidThing {
+
+    private static final int SUB_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    // the values from 2^MAX_EXP are counted in the last bucket
+    private static final int MAX_EXP = 40;
+
+    static final int BUCKETS = (MAX_EXP - SUB_BITS + 1) * SUB_BUCKETS;
+
+    // the sum of the values is kept after the buckets
+    private static final int SUM = BUCKETS;
+
+    private static final int STRIPES = stripes();
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+
+    private static int stripes() {
+        int cpus = Math.min(Runtime.getRuntime().availableProcessors(), 16);
+        return Integer.highestOneBit(cpus * 2 - 1);
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+
+        AtomicLongArray stripe = stripe();
+
+        stripe.incrementAndGet(index(value));
+        stripe.addAndGet(SUM, value);
+    }
+
+    private AtomicLongArray stripe() {
+        int index = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        AtomicLongArray stripe = stripes.get(index);
+
+        if (stripe == null) {
+            stripe = new AtomicLongArray(BUCKETS + 1);
+
+            if (!stripes.compareAndSet(index, null, stripe)) {
+                stripe = stripes.get(index);
+            }
+        }
+
+        return stripe;
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long sum = 0;
+
+        for (int i = 0; i < STRIPES; i++) {
+            AtomicLongArray stripe = stripes.get(i);
+
+            if (stripe != null) {
+                for (int b = 0; b < BUCKETS; b++) {
+                    counts[b] += stripe.get(b);
+                }
+
+                sum += stripe.get(SUM);
+            }
+        }
+
+        return new Snapshot(counts, sum);
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        if (exp >= MAX_EXP) return BUCKETS - 1;
+
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * The smallest value in the bucket.
+     */
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+
+        int exp = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+
+        return (long) (SUB_BUCKETS + sub) << (exp - SUB_BITS);
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * The (merged) bucket counts at some point in time.
+     */
+    public static class Snapshot extends RapidoidThing {
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long sum;
+
+        Snapshot(long[] counts, long sum) {
+            long count = 0;
+
+            for (long n : counts) {
+                count += n;
+            }
+
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long sum() {
+            return sum;
+        }
+
+        /**
+         * The number of values below the bound, which is exact if the bound is a power of 2.
+         */
+        public long countBelow(long bound) {
+            long n = 0;
+
+            for (int i = 0; i < BUCKETS - 1 && lowerBound(i + 1) <= bound; i++) {
+                n += counts[i];
+            }
+
+            return n;
+        }
+
+        /**
+         * The value below which the given percentage of the values falls (the largest value of its bucket).
+         */
+        public long percentile(double percent) {
+            if (count == 0) return 0;
+
+            long rank = Math.max((long) Math.ceil(percent / 100 * count), 1);
+            long n = 0;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                n += counts[i];
+
+                if (n >= rank) {
+                    return i < BUCKETS - 1 ? lowerBound(i + 1) - 1 : lowerBound(i);
+                }
+            }
+
+            return lowerBound(BUCKETS - 1);
+        }
+
+        @Override
+        public String toString() {
+            return count > 0
+                    ? String.format("%s:[p50=%s, p99=%s, p99.9=%s]#%s", sum, percentile(50), percentile(99), percentile(99.9), count)
+                    : "0";
+        }
+    }
+
+}
@@ -277,6 +277,41 @@ public class Res extends RapidoidThing {
         return name;
     }
 
+    /**
+     * Finds the resource as a regular file on the file system, without loading its content. Returns <code>null</code>
+     * if the resource doesn't exist, or it isn't a regular file (e.g. it's compressed in a JAR).
+     */
+    public File getFile() {
+        String[] filenames;
+
+        if (possibleLocations.length == 0) {
+            filenames = new String[]{name};
+        } else {
+            filenames = new String[possibleLocations.length];
+
+            for (int i = 0; i < possibleLocations.length; i++) {
+                filenames[i] = Msc.path(possibleLocations[i], name);
+            }
+        }
+
+        for (String filename : filenames) {
+            File file = IO.file(filename);
+
+            if (file.exists()) {
+                if (file.isFile()) {
+                    this.hidden = file.isHidden();
+                    return file;
+                }
+
+            } else if (IO.resource(filename) != null) {
+                // it is on the classpath, but not as a regular file
+                return null;
+            }
+        }
+
+        return null;
+    }
+
     @Override
     public String toString() {
         return "Res(" + name + ")";
@@ -23,18 +23,46 @@ package org.rapidoid.io;
 import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
+import org.rapidoid.u.U;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An uploaded file, with its content kept in memory, or in a (temporary) file for the larger uploads. The content
+ * of the file is loaded into memory only if requested by {@link #content()}.
+ */
 @Authors("Nikolche Mihajlovski")
 @Since("5.1.0")
 public class Upload extends RapidoidThing {
 
     private final String filename;
 
-    private final byte[] content;
+    private volatile byte[] content;
+
+    private final File file;
+
+    private final long size;
 
     public Upload(String filename, byte[] content) {
         this.filename = filename;
         this.content = content;
+        this.file = null;
+        this.size = content.length;
+    }
+
+    public Upload(String filename, File file, long size) {
+        this.filename = filename;
+        this.content = null;
+        this.file = file;
+        this.size = size;
     }
 
     public String filename() {
@@ -42,9 +70,54 @@ public class Upload extends RapidoidThing {
     }
 
     public byte[] content() {
+        if (content == null) {
+            synchronized (this) {
+                if (content == null) content = load();
+            }
+        }
+
         return content;
     }
 
+    private byte[] load() {
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            throw U.rte("Couldn't read the uploaded file!", e);
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the file holding the content, or <code>null</code> if the content is kept in memory.
+     */
+    public File file() {
+        return file;
+    }
+
+    public InputStream stream() {
+        if (file == null) return new ByteArrayInputStream(content);
+
+        try {
+            return Files.newInputStream(file.toPath());
+        } catch (IOException e) {
+            throw U.rte("Couldn't read the uploaded file!", e);
+        }
+    }
+
+    public ReadableByteChannel channel() {
+        if (file == null) return Channels.newChannel(stream());
+
+        try {
+            return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw U.rte("Couldn't read the uploaded file!", e);
+        }
+    }
+
     public static Upload from(String filename) {
         return new Upload(filename, IO.loadBytes(filename));
     }
@@ -0,0 +1,294 @@
+/*-
+ * #%L
+ * rapidoid-commons
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.pool;
+
+import org.rapidoid.insight.AbstractInsightful;
+import org.rapidoid.lambda.Operation;
+import org.rapidoid.log.Log;
+import org.rapidoid.u.U;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool without locks, optimized for a single owner thread (e.g. an I/O worker), which is the first thread that takes
+ * an object from the pool. The owner thread uses a private stack of free objects, and the other threads (e.g. the
+ * executor threads of the async handlers) share a bounded lock-free stack, which is also used by the owner when its
+ * stack is full or empty.
+ * <p>
+ * The number of retained free objects is bounded, the extra objects are left to the GC. The free objects that
+ * weren't needed by the owner thread for a while are trimmed. The optional discard operation is called for each object
+ * that is dropped, trimmed or cleared, e.g. to release its native resources.
+ *
+ * @author Nikolche Mihajlovski
+ * @since 6.0.0
+ */
+public class LockFreePool<T> extends AbstractInsightful implements Pool<T> {
+
+    private static final int MAX_SHARED = 4096;
+
+    private static final long TRIM_INTERVAL_MS = 10000;
+
+    private final Callable<T> factory;
+
+    private final Operation<T> onDiscard;
+
+    private volatile Thread owner;
+
+    // the owner's stack, accessed only by the owner thread
+
+    private final Object[] local;
+
+    private int localN;
+
+    private int localLowWater;
+
+    private int releases;
+
+    private long nextTrimAt;
+
+    // the shared free objects (most recently released first), and their bounded count
+
+    private final ConcurrentLinkedDeque<T> shared = new ConcurrentLinkedDeque<>();
+
+    private final AtomicInteger sharedN = new AtomicInteger();
+
+    private final int sharedCapacity;
+
+    // the metrics, the owner's counters are updated only by the owner thread
+
+    private long ownerHits;
+
+    private final LongAdder sharedHits = new LongAdder();
+
+    private final LongAdder created = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder trimmed = new LongAdder();
+
+    public LockFreePool(String name, Callable<T> factory, int capacity) {
+        this(name, factory, capacity, null);
+    }
+
+    public LockFreePool(String name, Callable<T> factory, int capacity, Operation<T> onDiscard) {
+        super("pool", name);
+
+        U.must(capacity > 0, "The pool capacity must be positive!");
+
+        this.factory = factory;
+        this.onDiscard = onDiscard;
+        this.local = new Object[capacity];
+
+        this.sharedCapacity = Math.min(capacity, MAX_SHARED);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get() {
+        if (isOwner()) {
+            if (localN > 0) {
+                T obj = (T) local[--localN];
+                local[localN] = null;
+
+                if (localN < localLowWater) localLowWater = localN;
+
+                ownerHits++;
+                return obj;
+            }
+
+            localLowWater = 0;
+        }
+
+        T obj = poll();
+
+        if (obj != null) {
+            sharedHits.increment();
+            return obj;
+        }
+
+        return create();
+    }
+
+    @Override
+    public void release(T obj) {
+        assert obj != null;
+
+        if (isOwner()) {
+            if (localN < local.length) {
+                local[localN++] = obj;
+
+                // checking the time isn't free, so it's done occasionally
+                if ((++releases & 255) == 0) maybeTrim();
+                return;
+            }
+        }
+
+        if (!offer(obj)) {
+            dropped.increment();
+            discard(obj);
+        }
+    }
+
+    private boolean isOwner() {
+        Thread current = Thread.currentThread();
+        Thread owner = this.owner;
+
+        if (owner == null) {
+            synchronized (this) {
+                if (this.owner == null) this.owner = current;
+                owner = this.owner;
+            }
+        }
+
+        return owner == current;
+    }
+
+    private T create() {
+        created.increment();
+
+        try {
+            return factory.call();
+        } catch (Exception e) {
+            throw U.rte(e);
+        }
+    }
+
+    /**
+     * Drops the half of the owner's free objects that stayed unused since the last trimming.
+     */
+    @SuppressWarnings("unchecked")
+    private void maybeTrim() {
+        long now = U.time();
+
+        if (now >= nextTrimAt) {
+            int unused = localLowWater / 2;
+
+            // the unused objects are at the bottom of the stack
+            for (int i = 0; i < unused; i++) {
+                discard((T) local[i]);
+            }
+
+            for (int i = 0; i < localN - unused; i++) {
+                local[i] = local[i + unused];
+            }
+
+            for (int i = localN - unused; i < localN; i++) {
+                local[i] = null;
+            }
+
+            localN -= unused;
+            localLowWater = localN;
+            nextTrimAt = now + TRIM_INTERVAL_MS;
+
+            if (unused > 0) trimmed.add(unused);
+        }
+    }
+
+    private boolean offer(T obj) {
+        if (sharedN.incrementAndGet() > sharedCapacity) {
+            sharedN.decrementAndGet();
+            return false;
+        }
+
+        shared.push(obj);
+        return true;
+    }
+
+    private void discard(T obj) {
+        if (onDiscard != null) {
+            try {
+                onDiscard.execute(obj);
+            } catch (Exception e) {
+                Log.error("Couldn't discard the pooled object!", e);
+            }
+        }
+    }
+
+    private T poll() {
+        T obj = shared.pollFirst();
+
+        if (obj != null) sharedN.decrementAndGet();
+
+        return obj;
+    }
+
+    @Override
+    public int objectsCreated() {
+        return (int) created.sum();
+    }
+
+    @Override
+    public int size() {
+        return localN + sharedN.get();
+    }
+
+    public long hits() {
+        return ownerHits + sharedHits.sum();
+    }
+
+    public long misses() {
+        return created.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public long trimmed() {
+        return trimmed.sum();
+    }
+
+    /**
+     * Clears the pool, should be called by the owner thread, or when the pool isn't used.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        for (int i = 0; i < localN; i++) {
+            discard((T) local[i]);
+            local[i] = null;
+        }
+
+        localN = 0;
+        localLowWater = 0;
+
+        T obj;
+        while ((obj = poll()) != null) {
+            discard(obj);
+        }
+
+        ownerHits = 0;
+        sharedHits.reset();
+        created.reset();
+        dropped.reset();
+        trimmed.reset();
+    }
+
+    @Override
+    public String toString() {
+        return U.frmt("%s#%s[hits=%s, misses=%s, dropped=%s, trimmed=%s]",
+                getName(), size(), hits(), misses(), dropped(), trimmed());
+    }
+
+}
@@ -21,6 +21,7 @@
 package org.rapidoid.pool;
 
 import org.rapidoid.RapidoidThing;
+import org.rapidoid.lambda.Operation;
 
 import java.util.concurrent.Callable;
 
@@ -31,7 +32,14 @@ import java.util.concurrent.Callable;
 public class Pools extends RapidoidThing {
 
     public static <T> Pool<T> create(String name, Callable<T> factory, int capacity) {
-        return new SynchronizedArrayPool<>(name, factory, capacity);
+        return new LockFreePool<>(name, factory, capacity);
+    }
+
+    /**
+     * @param onDiscard called for each free object that isn't retained by the pool anymore
+     */
+    public static <T> Pool<T> create(String name, Callable<T> factory, int capacity, Operation<T> onDiscard) {
+        return new LockFreePool<>(name, factory, capacity, onDiscard);
     }
 
 }
@@ -47,6 +47,8 @@ public class RapidoidThreadLocals extends RapidoidThing {
 
     private final ReusableWritable templateRenderingOutput = new ReusableWritable(1024);
 
+    private final ReusableWritable compressionOutput = new ReusableWritable(1024);
+
     public Object renderContext;
 
     public ReusableWritable jsonRenderingStream() {
@@ -64,4 +66,9 @@ public class RapidoidThreadLocals extends RapidoidThing {
         return templateRenderingOutput;
     }
 
+    public ReusableWritable compressionOutput() {
+        compressionOutput.reset();
+        return compressionOutput;
+    }
+
 }
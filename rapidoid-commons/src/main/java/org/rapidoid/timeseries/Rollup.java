@@ -0,0 +1,93 @@
+/*-
+ * #%L
+ * rapidoid-commons
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.timeseries;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+
+import java.util.Arrays;
+import java.util.NavigableMap;
+
+/**
+ * The sums and counts of the values per period (e.g. per minute), in a fixed number of circular buckets. A bucket is
+ * reused when its period becomes older than the retained window.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+class Rollup extends RapidoidThing {
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final long period;
+
+    private final long[] keys;
+
+    private final int[] counts;
+
+    private final double[] sums;
+
+    Rollup(long period, int buckets) {
+        this.period = period;
+        this.keys = new long[buckets];
+        this.counts = new int[buckets];
+        this.sums = new double[buckets];
+
+        Arrays.fill(keys, NONE);
+    }
+
+    void add(long timestamp, double value) {
+        long key = timestamp / period;
+        int slot = slot(key);
+
+        if (keys[slot] != key) {
+            // the values older than the retained window are ignored
+            if (key < keys[slot]) return;
+
+            keys[slot] = key;
+            counts[slot] = 0;
+            sums[slot] = 0;
+        }
+
+        counts[slot]++;
+        sums[slot] += value;
+    }
+
+    double avg(long key) {
+        int slot = slot(key);
+        return keys[slot] == key && counts[slot] > 0 ? sums[slot] / counts[slot] : 0;
+    }
+
+    void overview(long from, long to, NavigableMap<Long, Double> dest) {
+        long fromKey = from / period;
+        long toKey = to / period;
+
+        for (long key = fromKey; key <= toKey; key++) {
+            dest.put(key * period, avg(key));
+        }
+    }
+
+    private int slot(long key) {
+        return (int) Math.floorMod(key, (long) keys.length);
+    }
+
+}
@@ -24,6 +24,12 @@ import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
 
+/**
+ * A timestamped value.
+ *
+ * @deprecated The time series keep their values in primitive arrays, so this class is no longer used internally.
+ */
+@Deprecated
 @Authors("Nikolche Mihajlovski")
 @Since("5.1.0")
 public class TSValue extends RapidoidThing implements Comparable<TSValue> {
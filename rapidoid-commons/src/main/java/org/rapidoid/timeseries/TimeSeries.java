@@ -23,37 +23,62 @@ package org.rapidoid.timeseries;
 import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
-import org.rapidoid.collection.Coll;
 import org.rapidoid.commons.Stats;
 import org.rapidoid.u.U;
-import org.rapidoid.util.SlidingWindowList;
-
-import java.util.*;
 
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * The recent values are kept in a ring buffer of primitive arrays, and all values are summarized in fixed-size
+ * rollups (per minute, hour, day and month). Once the ring buffer has grown to its max size, adding a value doesn't
+ * allocate memory. The values usually arrive in order, so they are simply appended.
+ * <p>
+ * The state is guarded by a sequence lock (a {@link StampedLock}): the writers take the write lock, while the readers
+ * copy the values optimistically, without blocking the writers, and retry if a write happened in the meantime.
+ */
 @Authors("Nikolche Mihajlovski")
 @Since("5.1.0")
 public class TimeSeries extends RapidoidThing {
 
     private static final int OVERVIEW_SIZE_THRESHOLD = 120;
 
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // the optimistic reads that are retried, before falling back to the read lock
+    private static final int OPTIMISTIC_READS = 3;
+
     private static final long MILLIS_IN_MINUTE = 60 * 1000;
     private static final long MILLIS_IN_HOUR = 60 * MILLIS_IN_MINUTE;
     private static final long MILLIS_IN_DAY = 24 * MILLIS_IN_HOUR;
     private static final long MILLIS_IN_MONTH = 28 * MILLIS_IN_DAY; // simplified as 4 weeks
 
-    private final List<TSValue> values;
+    private final int maxSize;
 
-    private final Stats stats = new Stats();
+    private final StampedLock lock = new StampedLock();
+
+    // the ring buffer grows up to the max size, then the oldest values are overwritten
+    private long[] timestamps;
 
-    private final Map<Long, Stats> monthly = Coll.autoExpandingMap(Long.class, Stats.class);
+    private double[] values;
 
-    private final Map<Long, Stats> daily = Coll.autoExpandingMap(Long.class, Stats.class);
+    // the position of the oldest value
+    private int head;
 
-    private final Map<Long, Stats> hourly = Coll.autoExpandingMap(Long.class, Stats.class);
+    private int size;
 
-    private final Map<Long, Stats> minutely = Coll.autoExpandingMap(Long.class, Stats.class);
+    private final Stats stats = new Stats();
+
+    // each rollup covers (at least) the longest period that is shown with its resolution
+    private final Rollup monthly = new Rollup(MILLIS_IN_MONTH, 120);
+
+    private final Rollup daily = new Rollup(MILLIS_IN_DAY, 192);
 
-    private final Map<Long, Stats> perTenSeconds = Coll.autoExpandingMap(Long.class, Stats.class);
+    private final Rollup hourly = new Rollup(MILLIS_IN_HOUR, 16 * 24);
+
+    private final Rollup minutely = new Rollup(MILLIS_IN_MINUTE, 24 * 60);
 
     private volatile String title;
 
@@ -62,159 +87,230 @@ public class TimeSeries extends RapidoidThing {
     }
 
     public TimeSeries(int maxSize) {
-        this.values = new SlidingWindowList<>(maxSize);
+        U.must(maxSize > 0, "The max size must be positive!");
+
+        this.maxSize = maxSize;
+
+        int capacity = Math.min(maxSize, INITIAL_CAPACITY);
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
     }
 
     public void put(long timestamp, double value) {
+        long stamp = lock.writeLock();
 
-        synchronized (this) {
-            TSValue ts = new TSValue(timestamp, value);
+        try {
+            if (size == 0 || timestamp >= timestampAt(size - 1)) {
+                append(timestamp, value);
+            } else {
+                insert(timestamp, value);
+            }
 
-            int pos = Collections.binarySearch(values, ts);
-            if (pos < 0) pos = ~pos;
+            monthly.add(timestamp, value);
+            daily.add(timestamp, value);
+            hourly.add(timestamp, value);
+            minutely.add(timestamp, value);
 
-            values.add(pos, ts);
+        } finally {
+            lock.unlockWrite(stamp);
         }
 
         stats.add(value);
-
-        long month = month(timestamp);
-        long day = day(timestamp);
-        long hour = hour(timestamp);
-        long minute = minute(timestamp);
-
-        monthly.get(month).add(value);
-        daily.get(day).add(value);
-        hourly.get(hour).add(value);
-        minutely.get(minute).add(value);
     }
 
-    public NavigableMap<Long, Double> values() {
-        return null;
-    }
+    /**
+     * Executes the reader optimistically, and validates that no value was written in the meantime. An inconsistent
+     * (torn) state might fail the reader, in which case it is retried, and finally executed under the read lock.
+     */
+    private <T> T read(Supplier<T> reader) {
+        for (int i = 0; i < OPTIMISTIC_READS; i++) {
+            long stamp = lock.tryOptimisticRead();
+
+            if (stamp != 0) {
+                try {
+                    T result = reader.get();
+                    if (lock.validate(stamp)) return result;
+
+                } catch (RuntimeException e) {
+                    // the state was modified during the read, so it will be retried
+                }
+            }
+        }
 
-    @Override
-    public String toString() {
-        return U.frmt("TimeSerie(%s)", stats);
+        long stamp = lock.readLock();
+
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
-    public NavigableMap<Long, Double> overview() {
-        synchronized (this) {
-            if (!values.isEmpty()) {
-                return overviewOf(U.first(values).timestamp, U.last(values).timestamp);
+    private void append(long timestamp, double value) {
+        if (size == timestamps.length) {
+            if (size < maxSize) {
+                grow();
             } else {
-                return new TreeMap<>();
+                dropOldest();
             }
         }
-    }
 
-    public NavigableMap<Long, Double> overview(long from, long to) {
-        return overviewOf(from, to);
+        set(size, timestamp, value);
+        size++;
     }
 
-    private NavigableMap<Long, Double> overviewOf(long from, long to) {
+    private void insert(long timestamp, double value) {
+        // after the values with the same timestamp
+        int pos = indexAfter(timestamp);
 
-        NavigableMap<Long, Double> overview = new TreeMap<>();
+        if (size == timestamps.length) {
+            if (size < maxSize) {
+                grow();
 
-        long diff = to - from;
-        U.must(diff >= 0);
+            } else {
+                // older than all the retained values
+                if (pos == 0) return;
 
-        synchronized (this) {
-            if (values.size() <= OVERVIEW_SIZE_THRESHOLD) {
-                putAll(overview, values);
-                return overview;
+                dropOldest();
+                pos--;
             }
         }
 
-        double diffMinutes = ((double) diff) / MILLIS_IN_MINUTE;
-        double diffHours = diffMinutes / 60;
-        double diffDays = diffHours / 24;
+        for (int i = size; i > pos; i--) {
+            set(i, timestampAt(i - 1), valueAt(i - 1));
+        }
 
-        if (diffDays > 180) { // more than 6 months => monthly
-            long fromMonth = month(from);
-            long toMonth = month(to);
+        set(pos, timestamp, value);
+        size++;
+    }
 
-            for (long month = fromMonth; month <= toMonth; month++) {
-                double avg = monthly.get(month).avg();
-                overview.put(month * MILLIS_IN_MONTH, avg);
-            }
+    private void grow() {
+        int capacity = (int) Math.min((long) timestamps.length * 2, maxSize);
 
-            return overview;
+        long[] newTimestamps = new long[capacity];
+        double[] newValues = new double[capacity];
+
+        for (int i = 0; i < size; i++) {
+            newTimestamps[i] = timestampAt(i);
+            newValues[i] = valueAt(i);
         }
 
-        if (diffDays > 15) { // 15 - 180 days -> daily
-            long fromDay = day(from);
-            long toDay = day(to);
+        timestamps = newTimestamps;
+        values = newValues;
+        head = 0;
+    }
 
-            for (long day = fromDay; day <= toDay; day++) {
-                double avg = daily.get(day).avg();
-                overview.put(day * MILLIS_IN_DAY, avg);
-            }
+    private void dropOldest() {
+        head = (head + 1) % timestamps.length;
+        size--;
+    }
 
-            return overview;
-        }
+    private int physical(int index) {
+        int pos = head + index;
+        return pos < timestamps.length ? pos : pos - timestamps.length;
+    }
 
-        if (diffDays > 0.25) { // 6 hours - 14 days -> hourly
-            long fromHour = hour(from);
-            long toHour = hour(to);
+    private long timestampAt(int index) {
+        return timestamps[physical(index)];
+    }
 
-            for (long hour = fromHour; hour <= toHour; hour++) {
-                double avg = hourly.get(hour).avg();
-                overview.put(hour * MILLIS_IN_HOUR, avg);
-            }
+    private double valueAt(int index) {
+        return values[physical(index)];
+    }
 
-            return overview;
-        }
+    private void set(int index, long timestamp, double value) {
+        int pos = physical(index);
+        timestamps[pos] = timestamp;
+        values[pos] = value;
+    }
 
-        if (diffMinutes > 30) { // more than 30 minutes -> minutely
+    /**
+     * Returns the index of the first value with a timestamp not older than the specified one.
+     */
+    private int indexOf(long timestamp) {
+        int low = 0;
+        int high = size;
 
-            long fromMinute = minute(from);
-            long toMinute = minute(to);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
 
-            for (long minute = fromMinute; minute <= toMinute; minute++) {
-                double avg = minutely.get(minute).avg();
-                overview.put(minute * MILLIS_IN_MINUTE, avg);
+            if (timestampAt(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
-
-            return overview;
         }
 
-        // less than 30 minutes
-        synchronized (this) {
-
-            int pos1 = Collections.binarySearch(values, new TSValue(from, 0));
-            if (pos1 < 0) pos1 = ~pos1;
-
-            int pos2 = Collections.binarySearch(values, new TSValue(to, 0));
-            if (pos2 < 0) pos2 = ~pos2;
+        return low;
+    }
 
-            List<TSValue> sub = pos1 <= pos2 ? values.subList(pos1, pos2) : values.subList(pos2, pos1);
-            putAll(overview, sub);
-        }
+    /**
+     * Returns the index of the first value with a timestamp newer than the specified one.
+     */
+    private int indexAfter(long timestamp) {
+        return timestamp < Long.MAX_VALUE ? indexOf(timestamp + 1) : size;
+    }
 
-        return overview;
+    public NavigableMap<Long, Double> values() {
+        return read(() -> {
+            NavigableMap<Long, Double> all = new TreeMap<>();
+            putAll(all, 0, size);
+            return all;
+        });
     }
 
-    private void putAll(Map<Long, Double> dest, List<TSValue> src) {
-        for (TSValue ts : src) {
-            dest.put(ts.timestamp, ts.value);
-        }
+    @Override
+    public String toString() {
+        return U.frmt("TimeSerie(%s)", stats);
     }
 
-    private static long month(long timestamp) {
-        return timestamp / MILLIS_IN_MONTH;
+    public NavigableMap<Long, Double> overview() {
+        return read(() -> size > 0 ? overviewOf(timestampAt(0), timestampAt(size - 1)) : new TreeMap<>());
     }
 
-    private static long day(long timestamp) {
-        return timestamp / MILLIS_IN_DAY;
+    public NavigableMap<Long, Double> overview(long from, long to) {
+        U.must(to >= from);
+        return read(() -> overviewOf(from, to));
     }
 
-    private static long hour(long timestamp) {
-        return timestamp / MILLIS_IN_HOUR;
+    private NavigableMap<Long, Double> overviewOf(long from, long to) {
+
+        NavigableMap<Long, Double> overview = new TreeMap<>();
+
+        long diff = to - from;
+
+        if (size <= OVERVIEW_SIZE_THRESHOLD) {
+            putAll(overview, 0, size);
+            return overview;
+        }
+
+        double diffMinutes = ((double) diff) / MILLIS_IN_MINUTE;
+        double diffHours = diffMinutes / 60;
+        double diffDays = diffHours / 24;
+
+        if (diffDays > 180) { // more than 6 months => monthly
+            monthly.overview(from, to, overview);
+
+        } else if (diffDays > 15) { // 15 - 180 days -> daily
+            daily.overview(from, to, overview);
+
+        } else if (diffDays > 0.25) { // 6 hours - 14 days -> hourly
+            hourly.overview(from, to, overview);
+
+        } else if (diffMinutes > 30) { // more than 30 minutes -> minutely
+            minutely.overview(from, to, overview);
+
+        } else { // less than 30 minutes
+            putAll(overview, indexOf(from), indexAfter(to));
+        }
+
+        return overview;
     }
 
-    private static long minute(long timestamp) {
-        return timestamp / MILLIS_IN_MINUTE;
+    private void putAll(NavigableMap<Long, Double> dest, int from, int to) {
+        for (int i = from; i < to; i++) {
+            dest.put(timestampAt(i), valueAt(i));
+        }
     }
 
     public TimeSeries title(String title) {
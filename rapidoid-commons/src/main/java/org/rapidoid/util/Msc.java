@@ -65,6 +65,7 @@ import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -757,6 +758,7 @@ public class Msc extends RapidoidThing {
         Events.reset();
         Log.reset();
         Crypto.reset();
+        Tokens.reset();
         Res.reset();
         Conf.reset();
         Jobs.reset();
@@ -936,6 +938,11 @@ public class Msc extends RapidoidThing {
             code = 422;
             defaultMsg = "Validation error!";
 
+        } else if (cause instanceof RejectedExecutionException) {
+            code = 503;
+            defaultMsg = "The server is overloaded, please try again later!";
+            msg = null; // don't expose the executor's details
+
         } else {
             code = 500;
             defaultMsg = "Internal server error!";
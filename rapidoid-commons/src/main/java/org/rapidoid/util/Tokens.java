@@ -23,7 +23,10 @@ package org.rapidoid.util;
 import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
+import org.rapidoid.cache.Cache;
+import org.rapidoid.cache.Caching;
 import org.rapidoid.commons.Str;
+import org.rapidoid.config.Conf;
 import org.rapidoid.crypto.Crypto;
 import org.rapidoid.serialize.Serialize;
 import org.rapidoid.u.U;
@@ -31,6 +34,7 @@ import org.rapidoid.u.U;
 import java.io.Serializable;
 import java.nio.BufferOverflowException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
@@ -42,9 +46,45 @@ public class Tokens extends RapidoidThing {
     public static final String _SCOPE = "_scope";
     public static final String _EXPIRES = "_expires";
 
+    // the signed tokens are readable by the clients, but they are verified faster than the encrypted ones
+    private static final boolean SIGNED = "signed".equals(Conf.TOKEN.entry("format").or("encrypted"));
+
+    private static final int CACHE_SIZE = Conf.TOKEN.entry("cacheSize").or(10000);
+
+    // the recently verified tokens, so the same token isn't decrypted and deserialized for each request
+    private static final Cache<String, VerifiedToken> VERIFIED = CACHE_SIZE > 0 ? verifiedTokensCache() : null;
+
+    private static class VerifiedToken {
+        final Map<String, Serializable> data;
+        final Long expires;
+
+        VerifiedToken(Map<String, Serializable> data) {
+            this.data = Collections.unmodifiableMap(data);
+            this.expires = (Long) data.get(_EXPIRES);
+        }
+
+        boolean isExpired() {
+            return expires != null && expires <= U.time();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cache<String, VerifiedToken> verifiedTokensCache() {
+        return Caching.of(String.class, VerifiedToken.class)
+                .capacity(CACHE_SIZE)
+                .name("verified-tokens")
+                .statistics(true)
+                .build();
+    }
+
     public static String serialize(Map<String, ? extends Serializable> token) {
         if (U.notEmpty(token)) {
             byte[] tokenBytes = serializeToken(token);
+
+            if (SIGNED) {
+                return Str.toWebSafeBase64(tokenBytes) + "." + Str.toWebSafeBase64(Crypto.sign(tokenBytes));
+            }
+
             byte[] tokenEncrypted = Crypto.encrypt(tokenBytes);
             return Str.toWebSafeBase64(tokenEncrypted);
 
@@ -67,15 +107,59 @@ public class Tokens extends RapidoidThing {
         return dest;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Verifies and deserializes the token (in any of the supported formats). The recently verified tokens are served
+     * from a cache until they expire, as a copy that can be modified.
+     */
     public static Map<String, Serializable> deserialize(String token) {
-        if (!U.isEmpty(token)) {
-            byte[] decoded = Str.fromWebSafeBase64(token);
-            byte[] tokenDecrypted = Crypto.decrypt(decoded);
-            return tokenDecrypted != null ? (Map<String, Serializable>) Serialize.deserialize(tokenDecrypted) : null;
+        if (U.isEmpty(token)) return null;
+
+        if (VERIFIED != null) {
+            VerifiedToken verified = VERIFIED.getIfExists(token);
+
+            if (verified != null) {
+                if (!verified.isExpired()) return U.map(verified.data);
+
+                VERIFIED.invalidate(token);
+            }
+        }
+
+        Map<String, Serializable> data = verifyAndDeserialize(token);
+
+        if (data != null && VERIFIED != null) {
+            VerifiedToken verified = new VerifiedToken(U.map(data));
+            if (!verified.isExpired()) VERIFIED.set(token, verified);
+        }
+
+        return data;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Serializable> verifyAndDeserialize(String token) {
+        int sep = token.indexOf('.');
+
+        byte[] tokenBytes;
+
+        if (sep >= 0) {
+            // a signed token
+            tokenBytes = Str.fromWebSafeBase64(token.substring(0, sep));
+            byte[] signature = Str.fromWebSafeBase64(token.substring(sep + 1));
+
+            if (!Crypto.signatureMatches(signature, tokenBytes)) return null;
+
         } else {
-            return null;
+            byte[] decoded = Str.fromWebSafeBase64(token);
+            tokenBytes = Crypto.decrypt(decoded);
         }
+
+        return tokenBytes != null ? (Map<String, Serializable>) Serialize.deserialize(tokenBytes) : null;
+    }
+
+    /**
+     * Forgets the verified tokens, e.g. after the application secret was changed.
+     */
+    public static void reset() {
+        if (VERIFIED != null) VERIFIED.clear();
     }
 
     public static TokenAuthData getAuth(Map<String, ? extends Serializable> token) {
@@ -0,0 +1,128 @@
+/*-
+ * #%L
+ * rapidoid-commons
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.cls;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.test.AbstractCommonsTest;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class MethodInvokerTest extends AbstractCommonsTest {
+
+    @Test
+    public void testInvokeWithDifferentArities() throws Throwable {
+        Calc calc = new Calc(100);
+
+        eq(invoker("zero").invoke(calc), 100);
+        eq(invoker("one", int.class).invoke(calc, 1), 101);
+        eq(invoker("two", int.class, String.class).invoke(calc, 1, "x"), "101x");
+        eq(invoker("three", int.class, long.class, double.class).invoke(calc, 1, 2L, 0.5), 103.5);
+        eq(invoker("four", String.class, String.class, String.class, String.class).invoke(calc, "a", "b", "c", "d"), "abcd");
+        eq(invoker("five", int.class, int.class, int.class, int.class, int.class).invoke(calc, new Object[]{1, 2, 3, 4, 5}), 115);
+
+        // the array of arguments works with all invokers
+        eq(invoker("two", int.class, String.class).invoke(calc, new Object[]{2, "y"}), "102y");
+    }
+
+    @Test
+    public void testInvokeSpecialMethods() throws Throwable {
+        Calc calc = new Calc(5);
+
+        isNull(invoker("reset").invoke(calc));
+        eq(calc.base, 0);
+
+        eq(invoker("twice", int.class).invoke(null, 21), 42);
+        eq(invoker("hidden").invoke(calc), "hidden");
+    }
+
+    @Test
+    public void testExceptionsArePropagated() throws Throwable {
+        MethodInvoker failing = invoker("fail", String.class);
+
+        try {
+            failing.invoke(new Calc(0), "boom");
+            fail("Expected an exception!");
+        } catch (IOException e) {
+            eq(e.getMessage(), "boom");
+        }
+    }
+
+    private static MethodInvoker invoker(String name, Class<?>... paramTypes) throws Exception {
+        Method method = Calc.class.getDeclaredMethod(name, paramTypes);
+        return MethodInvoker.of(method);
+    }
+
+    @SuppressWarnings("unused")
+    static class Calc {
+
+        int base;
+
+        Calc(int base) {
+            this.base = base;
+        }
+
+        public int zero() {
+            return base;
+        }
+
+        public int one(int a) {
+            return base + a;
+        }
+
+        public String two(int a, String s) {
+            return (base + a) + s;
+        }
+
+        public double three(int a, long b, double c) {
+            return base + a + b + c;
+        }
+
+        public String four(String a, String b, String c, String d) {
+            return a + b + c + d;
+        }
+
+        public int five(int a, int b, int c, int d, int e) {
+            return base + a + b + c + d + e;
+        }
+
+        public void reset() {
+            base = 0;
+        }
+
+        public static int twice(int x) {
+            return x * 2;
+        }
+
+        private String hidden() {
+            return "hidden";
+        }
+
+        public void fail(String msg) throws IOException {
+            throw new IOException(msg);
+        }
+    }
+
+}
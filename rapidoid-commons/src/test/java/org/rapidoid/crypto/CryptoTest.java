@@ -28,6 +28,7 @@ import org.rapidoid.env.Env;
 import org.rapidoid.test.AbstractCommonsTest;
 import org.rapidoid.u.U;
 
+import java.util.Arrays;
 import java.util.Set;
 
 @Authors("Nikolche Mihajlovski")
@@ -116,6 +117,20 @@ public class CryptoTest extends AbstractCommonsTest {
         }
     }
 
+    @Test
+    public void testSigningUsesADerivedKey() throws Exception {
+        CryptoKey key = Crypto.getSecretKey();
+        byte[] data = "abc".getBytes();
+
+        byte[] signature = Crypto.sign(data);
+        isTrue(Crypto.signatureMatches(signature, data));
+
+        // the HMAC key (for the encrypted data) isn't used for signing
+        isFalse(Arrays.equals(key.signingKey, key.hmacKey));
+        isFalse(Arrays.equals(signature, Crypto.hmac(data, key.hmacKey, null)));
+        isTrue(Arrays.equals(signature, Crypto.hmac(data, Crypto.deriveKey(key.hmacKey, "sign"), null)));
+    }
+
     @Test
     public void testPasswordHash() {
         for (int i = 0; i < 10; i++) {
@@ -0,0 +1,116 @@
+/*-
+ * #%L
+ * rapidoid-commons
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.insight;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.test.TestCommons;
+import org.rapidoid.u.U;
+
+import java.util.concurrent.CountDownLatch;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HistogramTest extends TestCommons {
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 100000; value++) {
+            int index = Histogram.index(value);
+
+            isTrue(Histogram.lowerBound(index) <= value);
+            isTrue(Histogram.lowerBound(index + 1) > value);
+        }
+
+        // the powers of 2 are bucket boundaries
+        for (int exp = 3; exp < 40; exp++) {
+            eq(Histogram.lowerBound(Histogram.index(1L << exp)), 1L << exp);
+        }
+
+        eq(Histogram.index(Long.MAX_VALUE), Histogram.BUCKETS - 1);
+    }
+
+    @Test
+    public void testPercentiles() {
+        Histogram histogram = new Histogram();
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        eq(snapshot.count(), 1000L);
+        eq(snapshot.sum(), 500500L);
+
+        eq(snapshot.countBelow(512), 511L);
+        eq(snapshot.countBelow(1024), 1000L);
+
+        // within the precision of the buckets (12.5%)
+        isTrue(snapshot.percentile(50) >= 500 && snapshot.percentile(50) <= 500 * 1.125);
+        isTrue(snapshot.percentile(99) >= 990 && snapshot.percentile(99) <= 990 * 1.125);
+        isTrue(snapshot.percentile(100) >= 1000 && snapshot.percentile(100) <= 1000 * 1.125);
+
+        eq(new Histogram().snapshot().percentile(99), 0L);
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        Histogram histogram = new Histogram();
+
+        int threads = 8;
+        int count = 10000;
+
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] recorders = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            recorders[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw U.rte(e);
+                }
+
+                for (int i = 1; i <= count; i++) {
+                    histogram.record(i);
+                }
+            });
+
+            recorders[t].start();
+        }
+
+        start.countDown();
+
+        for (Thread recorder : recorders) {
+            recorder.join();
+        }
+
+        // nothing is lost when the threads record into their own stripes
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        eq(snapshot.count(), (long) threads * count);
+        eq(snapshot.sum(), (long) threads * count * (count + 1) / 2);
+        eq(snapshot.countBelow(1024), threads * 1023L);
+    }
+
+}
@@ -0,0 +1,134 @@
+/*-
+ * #%L
+ * rapidoid-commons
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.pool;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.test.TestCommons;
+import org.rapidoid.util.Msc;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class LockFreePoolTest extends TestCommons {
+
+    @Test
+    public void testOwnerAndSharedReuse() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+        LockFreePool<Integer> pool = new LockFreePool<>("test", counter::incrementAndGet, 2);
+
+        Integer a = pool.get();
+        Integer b = pool.get();
+        Integer c = pool.get();
+
+        eq(pool.misses(), 3L);
+
+        pool.release(a);
+        pool.release(b);
+        eq(pool.get(), b);
+
+        // the owner's stack is full, so the extra objects go to the shared stack
+        pool.release(b);
+        pool.release(c);
+        eq(pool.size(), 3);
+
+        // released by another thread, then taken by the owner
+        Integer d = pool.get();
+        Integer e = pool.get();
+
+        Thread other = new Thread(() -> pool.release(d));
+        other.start();
+        other.join();
+
+        pool.release(e);
+
+        eq(pool.size(), 3);
+        eq(pool.misses(), 3L);
+
+        pool.get();
+        pool.get();
+        pool.get();
+
+        eq(pool.size(), 0);
+        eq(pool.hits(), 6L);
+        eq(pool.misses(), 3L);
+    }
+
+    @Test
+    public void testBoundedRetention() {
+        LockFreePool<Object> pool = new LockFreePool<>("test", Object::new, 4);
+
+        for (int i = 0; i < 100; i++) {
+            pool.release(new Object());
+        }
+
+        // 4 in the owner's stack and 4 in the shared stack
+        eq(pool.size(), 8);
+        eq(pool.dropped(), 92L);
+    }
+
+    @Test
+    public void testDiscardedObjectsAreReleased() {
+        Set<Object> discarded = Collections.newSetFromMap(new IdentityHashMap<>());
+        LockFreePool<Object> pool = new LockFreePool<>("test", Object::new, 2, discarded::add);
+
+        for (int i = 0; i < 10; i++) {
+            pool.release(new Object());
+        }
+
+        // the objects that didn't fit are discarded
+        eq(pool.size(), 4);
+        eq(discarded.size(), 6);
+
+        Object retained = pool.get();
+        isFalse(discarded.contains(retained));
+
+        pool.clear();
+
+        eq(pool.size(), 0);
+        eq(discarded.size(), 9);
+        isFalse(discarded.contains(retained));
+    }
+
+    @Test
+    public void testConcurrentUse() {
+        LockFreePool<int[]> pool = new LockFreePool<>("test", () -> new int[1], 100);
+
+        Msc.benchmarkMT(8, "get+release", 1000000, () -> {
+            int[] obj = pool.get();
+
+            // the object must be used by one thread at a time
+            isTrue(obj[0]++ == 0);
+            obj[0]--;
+
+            pool.release(obj);
+        });
+
+        // bounded by the retained objects (the owner's stack and the shared stack) and the objects in use
+        isTrue(pool.objectsCreated() <= 100 + 100 + 8);
+    }
+
+}
@@ -0,0 +1,137 @@
+/*-
+ * #%L
+ * rapidoid-commons
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.timeseries;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.test.TestCommons;
+import org.rapidoid.u.U;
+
+import java.util.Map;
+import java.util.NavigableMap;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class TimeSeriesTest extends TestCommons {
+
+    private static final long SECOND = 1000;
+
+    private static final long MINUTE = 60 * SECOND;
+
+    @Test
+    public void testSlidingWindowOfValues() {
+        TimeSeries ts = new TimeSeries(3000);
+
+        for (int i = 0; i < 10000; i++) {
+            ts.put(i * SECOND, i);
+        }
+
+        NavigableMap<Long, Double> values = ts.values();
+
+        eq(values.size(), 3000);
+        eq(values.firstKey().longValue(), 7000 * SECOND);
+        eq(values.lastKey().longValue(), 9999 * SECOND);
+    }
+
+    @Test
+    public void testOutOfOrderValues() {
+        TimeSeries ts = new TimeSeries(5);
+
+        ts.put(10, 1);
+        ts.put(30, 3);
+        ts.put(20, 2);
+        ts.put(50, 5);
+        ts.put(40, 4);
+
+        eq(ts.values(), U.map(10L, 1.0, 20L, 2.0, 30L, 3.0, 40L, 4.0, 50L, 5.0));
+
+        // the oldest value is dropped to make room
+        ts.put(15, 1.5);
+        eq(ts.values(), U.map(15L, 1.5, 20L, 2.0, 30L, 3.0, 40L, 4.0, 50L, 5.0));
+
+        // older than all the retained values
+        ts.put(5, 0.5);
+        eq(ts.values(), U.map(15L, 1.5, 20L, 2.0, 30L, 3.0, 40L, 4.0, 50L, 5.0));
+    }
+
+    @Test
+    public void testOverviewResolution() {
+        TimeSeries ts = new TimeSeries();
+
+        // 2 hours, a value per second
+        for (int i = 0; i < 7200; i++) {
+            ts.put(i * SECOND, i / 60);
+        }
+
+        // less than 30 minutes -> the raw values
+        NavigableMap<Long, Double> raw = ts.overview(0, 10 * MINUTE);
+        eq(raw.size(), 601);
+        eq(raw.lastEntry().getValue().doubleValue(), 10.0);
+
+        // more than 30 minutes -> per minute
+        NavigableMap<Long, Double> minutely = ts.overview(0, 90 * MINUTE);
+        eq(minutely.size(), 91);
+
+        for (long minute = 0; minute <= 90; minute++) {
+            eq(minutely.get(minute * MINUTE).doubleValue(), minute);
+        }
+
+        // more than 6 hours -> per hour
+        NavigableMap<Long, Double> hourly = ts.overview(0, 24 * 60 * MINUTE);
+        eq(hourly.size(), 25);
+        eq(hourly.get(0L).doubleValue(), 29.5);
+        eq(hourly.get(60 * MINUTE).doubleValue(), 89.5);
+        eq(hourly.get(2 * 60 * MINUTE).doubleValue(), 0.0);
+    }
+
+    @Test
+    public void testConsistentReadsDuringWrites() throws InterruptedException {
+        TimeSeries ts = new TimeSeries(10000);
+
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 200000; i++) {
+                ts.put(i, i);
+            }
+        });
+
+        writer.start();
+
+        // the readers don't block the writer, but they never see a torn state
+        while (writer.isAlive()) {
+            NavigableMap<Long, Double> values = ts.values();
+
+            for (Map.Entry<Long, Double> e : values.entrySet()) {
+                eq(e.getValue().doubleValue(), e.getKey().doubleValue());
+            }
+
+            if (!values.isEmpty()) {
+                eq(values.lastKey() - values.firstKey() + 1, (long) values.size());
+            }
+        }
+
+        writer.join();
+
+        eq(ts.values().size(), 10000);
+    }
+
+}
@@ -0,0 +1,89 @@
+/*-
+ * #%L
+ * rapidoid-commons
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.util;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.commons.Str;
+import org.rapidoid.crypto.Crypto;
+import org.rapidoid.serialize.Serialize;
+import org.rapidoid.test.AbstractCommonsTest;
+import org.rapidoid.u.U;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class TokensTest extends AbstractCommonsTest {
+
+    @Test
+    public void testVerifiedTokensAreCopied() {
+        Map<String, Serializable> token = U.map(Tokens._USER, "abc", "x", 123);
+        String serialized = Tokens.serialize(token);
+
+        Map<String, Serializable> first = Tokens.deserialize(serialized);
+        eq(first, token);
+
+        // the modification of the deserialized token doesn't affect the cached one
+        first.put("x", 456);
+
+        eq(Tokens.deserialize(serialized), token);
+    }
+
+    @Test
+    public void testExpiredTokensAreNotCached() {
+        // the crypto key is set up before the expiration time starts running
+        Tokens.deserialize(Tokens.serialize(U.map(Tokens._USER, "warm-up")));
+
+        Map<String, Serializable> token = U.map(Tokens._USER, "abc", Tokens._EXPIRES, U.time() + 2000);
+        String serialized = Tokens.serialize(token);
+
+        notNull(Tokens.getAuth(Tokens.deserialize(serialized)));
+
+        U.sleep(2500);
+
+        // still deserialized, but not authenticated anymore
+        Map<String, Serializable> expired = Tokens.deserialize(serialized);
+        eq(expired, token);
+        isNull(Tokens.getAuth(expired));
+    }
+
+    @Test
+    public void testSignedTokens() {
+        Map<String, Serializable> token = U.map(Tokens._USER, "abc");
+
+        byte[] dest = new byte[2500];
+        byte[] bytes = Arrays.copyOf(dest, Serialize.serialize(dest, token));
+
+        String signed = Str.toWebSafeBase64(bytes) + "." + Str.toWebSafeBase64(Crypto.sign(bytes));
+        eq(Tokens.deserialize(signed), token);
+
+        byte[] tampered = Arrays.copyOf(bytes, bytes.length);
+        tampered[tampered.length - 2]++;
+
+        String forged = Str.toWebSafeBase64(tampered) + "." + Str.toWebSafeBase64(Crypto.sign(bytes));
+        isNull(Tokens.deserialize(forged));
+    }
+
+}
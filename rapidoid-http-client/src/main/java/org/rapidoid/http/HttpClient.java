@@ -61,6 +61,8 @@ public class HttpClient extends RapidoidThing {
 
     private volatile int timeout = 5000;
 
+    private volatile boolean nativeClient = false;
+
     private final Map<String, String> cookies = Coll.synchronizedMap();
 
     private final LazyInit<CloseableHttpAsyncClient> client = new LazyInit<>(
@@ -70,10 +72,26 @@ public class HttpClient extends RapidoidThing {
                 return client;
             });
 
+    private final LazyInit<org.rapidoid.http.client.HttpClient> pooledClient = new LazyInit<>(
+            () -> new org.rapidoid.http.client.HttpClient()
+                    .maxConnPerHost(maxConnPerRoute > 0 ? maxConnPerRoute : 16)
+                    .timeout(timeout)
+                    .userAgent(userAgent));
+
     public Future<HttpResp> executeRequest(HttpReq req, Callback<HttpResp> callback) {
+        if (canExecuteNatively(req)) {
+            return pooledClient.get().execute(req, callback);
+        }
+
         return HttpClientUtil.request(req, client.get(), callback, false);
     }
 
+    private boolean canExecuteNatively(HttpReq req) {
+        // the redirects and cookies are only managed by the full-featured client
+        return nativeClient && !followRedirects && !keepCookies && cookies.isEmpty()
+                && org.rapidoid.http.client.HttpClient.supports(req);
+    }
+
     public HttpClient userAgent(String userAgent) {
         this.userAgent = userAgent;
         return this;
@@ -164,6 +182,18 @@ public class HttpClient extends RapidoidThing {
         return this;
     }
 
+    public boolean nativeClient() {
+        return nativeClient;
+    }
+
+    /**
+     * Executes the simple requests with the native pooled and pipelined client, instead of Apache's async client.
+     */
+    public HttpClient nativeClient(boolean nativeClient) {
+        this.nativeClient = nativeClient;
+        return this;
+    }
+
     public HttpClient cookie(String name, String value) {
         cookies().put(name, value);
         return this;
@@ -234,6 +264,9 @@ public class HttpClient extends RapidoidThing {
 
     public synchronized void close() {
         try {
+            org.rapidoid.http.client.HttpClient pooled = pooledClient.reset();
+            if (pooled != null) pooled.shutdown();
+
             client.resetAndClose();
         } catch (Exception e) {
             Log.error("Error while closing the HTTP client!", e);
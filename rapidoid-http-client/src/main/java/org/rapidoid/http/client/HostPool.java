@@ -0,0 +1,257 @@
+/*-
+ * #%L
+ * rapidoid-http-client
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.http.client;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.job.Jobs;
+import org.rapidoid.net.TCPClient;
+import org.rapidoid.net.abstracts.ChannelHolder;
+import org.rapidoid.u.U;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The keep-alive connections to a single host. A request is assigned to an idle connection, to a new connection (up
+ * to the per-host limit), or it is pipelined on the least loaded connection. When all connections are full, the
+ * requests wait for a response to free a slot.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HostPool extends RapidoidThing {
+
+    // a request that was already sent is retried at most once, and only if it is idempotent
+    private static final int MAX_ATTEMPTS = 2;
+
+    private final TCPClient client;
+
+    private final String host;
+
+    private final int port;
+
+    private final int maxConnections;
+
+    private final int maxPipeline;
+
+    final long maxResponseSize;
+
+    private final List<HttpClientConnection> connections = U.list();
+
+    private final Deque<PendingRequest> waiting = new ArrayDeque<>();
+
+    HostPool(TCPClient client, String host, int port, int maxConnections, int maxPipeline, long maxResponseSize) {
+        this.client = client;
+        this.host = host;
+        this.port = port;
+        this.maxConnections = Math.max(maxConnections, 1);
+        this.maxPipeline = Math.max(maxPipeline, 1);
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    void submit(PendingRequest req) {
+        HttpClientConnection conn;
+
+        try {
+            synchronized (this) {
+                conn = pick();
+
+                if (conn == null) {
+                    waiting.add(req);
+                    return;
+                }
+
+                conn.load++;
+            }
+
+        } catch (Exception e) {
+            req.fail(e);
+            return;
+        }
+
+        // the connection isn't locked by the pool while sending
+        sendOrRetry(conn, req);
+    }
+
+    private void sendOrRetry(HttpClientConnection conn, PendingRequest req) {
+        if (!conn.send(req)) {
+            // the connection was closed in the meantime
+            submit(req);
+        }
+    }
+
+    /**
+     * Returns an idle connection, a new one (if below the limit) or the least loaded one that can take more
+     * pipelined requests. Returns null if all connections are full.
+     */
+    private HttpClientConnection pick() {
+        HttpClientConnection best = null;
+
+        for (HttpClientConnection conn : connections) {
+            if (!conn.isClosed() && conn.load < maxPipeline && (best == null || conn.load < best.load)) {
+                best = conn;
+            }
+        }
+
+        if (best != null && best.load == 0) return best;
+
+        if (connections.size() < maxConnections) return open();
+
+        return best;
+    }
+
+    private HttpClientConnection open() {
+        HttpClientConnection conn = new HttpClientConnection(this);
+
+        // a failed connection attempt closes the holder, so the pool can fail or retry the waiting requests
+        ChannelHolder holder = client.connectOnce(host, port, conn, null);
+        connections.add(conn);
+
+        // the listener is notified outside of the I/O locks, as it might send requests on other connections
+        holder.onClosed(() -> Jobs.execute(() -> closed(conn)));
+
+        return conn;
+    }
+
+    /**
+     * Called by the connection when a response was received, to assign it the next waiting request.
+     */
+    void ready(HttpClientConnection conn) {
+        PendingRequest next;
+
+        synchronized (this) {
+            conn.load--;
+
+            next = nextWaiting();
+            if (next == null) return;
+
+            conn.load++;
+        }
+
+        sendOrRetry(conn, next);
+    }
+
+    private PendingRequest nextWaiting() {
+        PendingRequest req;
+
+        do {
+            req = waiting.poll();
+        } while (req != null && req.isDone());
+
+        return req;
+    }
+
+    private void closed(HttpClientConnection conn) {
+        List<PendingRequest> unanswered = conn.closed();
+
+        synchronized (this) {
+            connections.remove(conn);
+        }
+
+        long now = U.time();
+
+        for (PendingRequest req : unanswered) {
+            if (req.isDone()) continue;
+
+            // the server might have processed a request that was sent, so only the idempotent ones are repeated
+            if (req.idempotent && req.attempts < MAX_ATTEMPTS && req.deadline > now) {
+                submit(req);
+            } else {
+                req.fail(U.rte("The connection was closed before receiving a response!"));
+            }
+        }
+
+        // the waiting requests might need new connections
+        dispatchWaiting();
+    }
+
+    private void dispatchWaiting() {
+        while (true) {
+            HttpClientConnection conn;
+            PendingRequest next;
+
+            synchronized (this) {
+                next = nextWaiting();
+                if (next == null) return;
+
+                try {
+                    conn = pick();
+                } catch (Exception e) {
+                    next.fail(e);
+                    continue;
+                }
+
+                if (conn == null) {
+                    waiting.addFirst(next);
+                    return;
+                }
+
+                conn.load++;
+            }
+
+            sendOrRetry(conn, next);
+        }
+    }
+
+    void expire(long now) {
+        List<HttpClientConnection> conns;
+
+        synchronized (this) {
+            for (Iterator<PendingRequest> it = waiting.iterator(); it.hasNext(); ) {
+                PendingRequest req = it.next();
+
+                if (req.isDone()) {
+                    it.remove();
+
+                } else if (req.deadline < now) {
+                    it.remove();
+                    req.fail(new TimeoutException("No HTTP connection was available in time!"));
+                }
+            }
+
+            conns = U.list(connections);
+        }
+
+        for (HttpClientConnection conn : conns) {
+            conn.expire(now);
+        }
+    }
+
+    synchronized void close() {
+        for (HttpClientConnection conn : connections) {
+            conn.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HostPool{" +
+                "host='" + host + '\'' +
+                ", port=" + port +
+                '}';
+    }
+
+}
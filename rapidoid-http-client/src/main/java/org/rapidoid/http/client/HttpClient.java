@@ -18,31 +18,254 @@
  * #L%
  */
 
+
 package org.rapidoid.http.client;
 
 import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
+import org.rapidoid.collection.Coll;
+import org.rapidoid.concurrent.Callback;
+import org.rapidoid.concurrent.Future;
+import org.rapidoid.http.HttpReq;
+import org.rapidoid.http.HttpResp;
+import org.rapidoid.http.HttpVerb;
+import org.rapidoid.log.Log;
 import org.rapidoid.net.TCP;
 import org.rapidoid.net.TCPClient;
+import org.rapidoid.u.U;
+import org.rapidoid.util.Msc;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * A non-blocking HTTP/1.1 client with per-host keep-alive connection pools and request pipelining.
+ */
 @Authors("Nikolche Mihajlovski")
 @Since("5.5.0")
 public class HttpClient extends RapidoidThing {
 
+    private static final int TIMEOUT_RESOLUTION = 100;
+
     private final TCPClient clients = TCP.client().build().start();
 
+    private final Map<String, HostPool> pools = Coll.concurrentMap();
+
+    private final ScheduledFuture<?> timeoutChecker;
+
+    private volatile int maxConnPerHost = 16;
+
+    private volatile int maxPipeline = 8;
+
+    private volatile int timeout = 5000;
+
+    private volatile long maxResponseSize = 64 * 1024 * 1024;
+
+    private volatile String userAgent = null;
+
+    public HttpClient() {
+        // scheduled outside the jobs executor, which might be reset while the client is still used
+        this.timeoutChecker = Msc.EXECUTOR.scheduleWithFixedDelay(this::expire, TIMEOUT_RESOLUTION, TIMEOUT_RESOLUTION,
+                TimeUnit.MILLISECONDS);
+    }
+
     public byte[] get(String host, int port, String request) {
-        BlockingHttpClientCallback callback = new BlockingHttpClientCallback();
-        clients.connect(host, port, new HttpClientProtocol(request, callback), false, null);
-        return callback.getResponse();
+        return send(host, port, request.getBytes(), null).get().raw();
     }
 
     public void get(String host, int port, String request, HttpClientCallback callback) {
         clients.connect(host, port, new HttpClientProtocol(request, callback), false, null);
     }
 
+    /**
+     * Sends a raw HTTP request through a pooled connection to the specified host.
+     */
+    public Future<HttpResp> send(String host, int port, byte[] request, Callback<HttpResp> callback) {
+        return send(host, port, verbOf(request), request, timeout, callback);
+    }
+
+    public Future<HttpResp> execute(HttpReq req) {
+        return execute(req, null);
+    }
+
+    public Future<HttpResp> execute(HttpReq req, Callback<HttpResp> callback) {
+        U.must(supports(req), "The native HTTP client doesn't support HTTPS, form data and file uploads!");
+
+        URI uri = URI.create(Msc.urlWithProtocol(req.url()));
+        int port = uri.getPort() > 0 ? uri.getPort() : 80;
+
+        return send(uri.getHost(), port, req.verb(), serialize(req, uri), req.socketTimeout(), callback);
+    }
+
+    private Future<HttpResp> send(String host, int port, HttpVerb verb, byte[] request, long timeout,
+                                  Callback<HttpResp> callback) {
+
+        long deadline = timeout > 0 ? U.time() + timeout : Long.MAX_VALUE;
+
+        PendingRequest req = new PendingRequest(request, verb == HttpVerb.HEAD, isIdempotent(verb), deadline, callback);
+        pool(host, port).submit(req);
+
+        return req.promise();
+    }
+
+    private HostPool pool(String host, int port) {
+        return pools.computeIfAbsent(host + ":" + port,
+                key -> new HostPool(clients, host, port, maxConnPerHost, maxPipeline, maxResponseSize));
+    }
+
+    /**
+     * Returns whether the request can be executed by this client (the rest require the full-featured client).
+     */
+    public static boolean supports(HttpReq req) {
+        return !Msc.urlWithProtocol(req.url()).startsWith("https://")
+                && U.isEmpty(req.data()) && U.isEmpty(req.files());
+    }
+
+    private static HttpVerb verbOf(byte[] request) {
+        int end = 0;
+        while (end < request.length && request[end] != ' ') end++;
+
+        return HttpVerb.from(new String(request, 0, end));
+    }
+
+    private static boolean isIdempotent(HttpVerb verb) {
+        return verb != HttpVerb.POST && verb != HttpVerb.PATCH;
+    }
+
+    private byte[] serialize(HttpReq req, URI uri) {
+        StringBuilder head = new StringBuilder();
+
+        String path = U.notEmpty(uri.getRawPath()) ? uri.getRawPath() : "/";
+        if (uri.getRawQuery() != null) path += "?" + uri.getRawQuery();
+
+        head.append(req.verb()).append(' ').append(path).append(" HTTP/1.1\r\n");
+
+        Map<String, String> headers = U.safe(req.headers());
+        Map<String, String> headersLow = Msc.lowercase(headers);
+
+        if (!headersLow.containsKey("host")) {
+            head.append("Host: ").append(uri.getHost());
+            if (uri.getPort() > 0) head.append(':').append(uri.getPort());
+            head.append("\r\n");
+        }
+
+        if (userAgent != null && !headersLow.containsKey("user-agent")) {
+            head.append("User-Agent: ").append(userAgent).append("\r\n");
+        }
+
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            head.append(e.getKey()).append(": ").append(e.getValue()).append("\r\n");
+        }
+
+        Map<String, String> cookies = U.safe(req.cookies());
+
+        if (U.notEmpty(cookies)) {
+            head.append("Cookie: ");
+
+            for (Iterator<Map.Entry<String, String>> it = cookies.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, String> e = it.next();
+                head.append(e.getKey()).append('=').append(e.getValue());
+                if (it.hasNext()) head.append("; ");
+            }
+
+            head.append("\r\n");
+        }
+
+        byte[] body = req.body();
+
+        if (body != null) {
+            if (req.contentType() != null && !headersLow.containsKey("content-type")) {
+                head.append("Content-Type: ").append(req.contentType()).append("\r\n");
+            }
+
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+
+        } else if (req.verb() == HttpVerb.POST || req.verb() == HttpVerb.PUT || req.verb() == HttpVerb.PATCH) {
+            head.append("Content-Length: 0\r\n");
+        }
+
+        head.append("\r\n");
+
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.UTF_8);
+
+        if (body == null) return headBytes;
+
+        byte[] request = new byte[headBytes.length + body.length];
+        System.arraycopy(headBytes, 0, request, 0, headBytes.length);
+        System.arraycopy(body, 0, request, headBytes.length, body.length);
+
+        return request;
+    }
+
+    private void expire() {
+        long now = U.time();
+
+        for (HostPool pool : pools.values()) {
+            try {
+                pool.expire(now);
+            } catch (Exception e) {
+                Log.error("Error while expiring the HTTP requests!", e);
+            }
+        }
+    }
+
+    public HttpClient maxConnPerHost(int maxConnPerHost) {
+        this.maxConnPerHost = maxConnPerHost;
+        return this;
+    }
+
+    public int maxConnPerHost() {
+        return this.maxConnPerHost;
+    }
+
+    public HttpClient maxPipeline(int maxPipeline) {
+        this.maxPipeline = maxPipeline;
+        return this;
+    }
+
+    public int maxPipeline() {
+        return this.maxPipeline;
+    }
+
+    public HttpClient timeout(int timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public int timeout() {
+        return this.timeout;
+    }
+
+    public HttpClient maxResponseSize(long maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+        return this;
+    }
+
+    public long maxResponseSize() {
+        return this.maxResponseSize;
+    }
+
+    public HttpClient userAgent(String userAgent) {
+        this.userAgent = userAgent;
+        return this;
+    }
+
+    public String userAgent() {
+        return this.userAgent;
+    }
+
     public void shutdown() {
+        timeoutChecker.cancel(false);
+
+        for (HostPool pool : pools.values()) {
+            pool.close();
+        }
+
         clients.shutdown();
     }
 
@@ -0,0 +1,428 @@
+/*-
+ * #%L
+ * rapidoid-http-client
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.http.client;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.Buf;
+import org.rapidoid.buffer.IncompleteReadException;
+import org.rapidoid.data.BufRange;
+import org.rapidoid.data.BufRanges;
+import org.rapidoid.http.HttpResp;
+import org.rapidoid.http.client.HttpResponseProgress.Stage;
+import org.rapidoid.log.Log;
+import org.rapidoid.net.Protocol;
+import org.rapidoid.net.abstracts.Channel;
+import org.rapidoid.u.U;
+import org.rapidoid.util.Msc;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A keep-alive connection to a host, with pipelined requests. The responses are parsed from the connection's
+ * (pooled) input buffer as they arrive, and they complete the requests in the order they were sent.
+ * <p>
+ * Lock order: the channel, then the host pool, then this connection.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HttpClientConnection extends RapidoidThing implements Protocol {
+
+    private final HostPool pool;
+
+    // the response that is being received, accessed only by the I/O thread (until the connection is closed)
+    private final HttpResponseProgress progress = new HttpResponseProgress();
+
+    // the requests that were sent (or will be sent once connected), in order
+    private final Queue<PendingRequest> inflight = new ArrayDeque<>();
+
+    private volatile Channel channel;
+
+    private volatile boolean closed;
+
+    // the number of requests assigned to this connection, maintained by the host pool
+    int load;
+
+    HttpClientConnection(HostPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sends the request, or queues it until the connection is established. Returns false if the connection is
+     * already closed.
+     */
+    boolean send(PendingRequest req) {
+        Channel ch;
+
+        synchronized (this) {
+            if (closed) return false;
+
+            ch = channel;
+
+            if (ch == null) {
+                // will be sent when connected
+                enqueue(req);
+                return true;
+            }
+        }
+
+        // the channel is locked first, so the requests are written in the same order as they are enqueued
+        synchronized (ch) {
+            synchronized (this) {
+                if (closed || channel != ch) return false;
+                enqueue(req);
+            }
+
+            ch.write(req.request);
+        }
+
+        ch.send();
+        return true;
+    }
+
+    private void enqueue(PendingRequest req) {
+        inflight.add(req);
+        req.attempts++;
+    }
+
+    @Override
+    public void process(Channel ctx) {
+        // the response deadlines are tracked per request, so a slow response doesn't close the connection
+        ctx.readTimeout(0);
+
+        if (ctx.isInitial()) {
+            connected(ctx);
+        } else {
+            receive(ctx);
+        }
+    }
+
+    private void connected(Channel ctx) {
+        synchronized (ctx) {
+            synchronized (this) {
+                channel = ctx;
+
+                // the output is sent when the processing is done
+                for (PendingRequest req : inflight) {
+                    ctx.write(req.request);
+                }
+            }
+        }
+    }
+
+    private void receive(Channel ctx) {
+        Buf in = ctx.input();
+        int start = in.position();
+
+        if (progress.req == null && !receiveHead(ctx)) return;
+
+        boolean complete;
+
+        try {
+            complete = receiveBody(ctx);
+
+        } catch (IncompleteReadException e) {
+            // the received part of the response is kept in the progress, so it is removed from the input
+            discard(in, start);
+            throw e;
+        }
+
+        PendingRequest req = progress.req;
+        boolean keepAlive = progress.keepAlive;
+
+        completed(req);
+
+        if (complete) {
+            HttpResp resp = progress.toResponse();
+            progress.reset();
+
+            req.succeed(resp);
+
+        } else {
+            progress.reset();
+            req.fail(U.rte("The HTTP response is too large!"));
+
+            // the rest of the response isn't received, so the connection can't be reused
+            in.skip(in.remaining());
+            keepAlive = false;
+        }
+
+        if (keepAlive) {
+            pool.ready(this);
+        } else {
+            ctx.close();
+        }
+    }
+
+    private boolean receiveHead(Channel ctx) {
+        Buf in = ctx.input();
+        int start = in.position();
+
+        BufRanges head = ctx.helper().ranges1.reset();
+        in.scanLnLn(head);
+
+        String statusLine = in.get(head.ranges[0]);
+        int code = statusCode(statusLine);
+
+        if (code >= 100 && code < 200) {
+            // an interim response (e.g. 100 Continue), the final response follows
+            return false;
+        }
+
+        PendingRequest req = current();
+
+        if (req == null) {
+            Log.warn("Received unexpected HTTP response!", "status", statusLine);
+            ctx.close();
+            return false;
+        }
+
+        Map<String, String> headers = head.toMap(in.bytes(), 1, head.count - 1, "\\s*\\:\\s*");
+        Map<String, String> headersLow = Msc.lowercase(headers);
+
+        progress.start(req, code, headers, isKeepAlive(statusLine, headersLow));
+        progress.received(in, start, in.position());
+
+        if (req.head || code == 204 || code == 304) {
+            progress.stage = Stage.COMPLETE;
+
+        } else if ("chunked".equalsIgnoreCase(headersLow.get("transfer-encoding"))) {
+            progress.stage = Stage.CHUNK_SIZE;
+
+        } else if (headersLow.containsKey("content-length")) {
+            progress.stage = Stage.CONTENT;
+            progress.remaining = Long.parseLong(headersLow.get("content-length").trim());
+
+        } else {
+            // no content length is provided, read until the connection is closed
+            progress.stage = Stage.UNTIL_CLOSED;
+            progress.keepAlive = false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Receives the available parts of the response body. Returns false if the response is too large.
+     */
+    private boolean receiveBody(Channel ctx) {
+        Buf in = ctx.input();
+
+        while (true) {
+            long expected = progress.stage == Stage.CONTENT ? progress.remaining : 0;
+            if (progress.size() + expected > pool.maxResponseSize) return false;
+
+            if (progress.stage == Stage.COMPLETE) return true;
+
+            int pos = in.position();
+
+            try {
+                receiveNext(ctx);
+            } catch (IncompleteReadException e) {
+                // the incomplete part is parsed again when more data arrives
+                in.position(pos);
+                throw e;
+            }
+
+            progress.received(in, pos, in.position());
+        }
+    }
+
+    private void receiveNext(Channel ctx) {
+        Buf in = ctx.input();
+
+        switch (progress.stage) {
+            case CONTENT:
+                if (progress.remaining > 0) {
+                    progress.remaining -= receiveData(in, progress.remaining);
+                }
+
+                if (progress.remaining == 0) progress.stage = Stage.COMPLETE;
+                break;
+
+            case UNTIL_CLOSED:
+                if (in.hasRemaining()) {
+                    receiveData(in, in.remaining());
+                } else {
+                    ctx.waitUntilClosing();
+                    progress.stage = Stage.COMPLETE;
+                }
+                break;
+
+            case CHUNK_SIZE:
+                String line = in.readLn();
+
+                // ignore the chunk extensions
+                int extPos = line.indexOf(';');
+                if (extPos >= 0) line = line.substring(0, extPos);
+
+                progress.remaining = Long.parseLong(line.trim(), 16);
+                progress.stage = progress.remaining > 0 ? Stage.CHUNK_DATA : Stage.TRAILER;
+                break;
+
+            case CHUNK_DATA:
+                progress.remaining -= receiveData(in, progress.remaining);
+                if (progress.remaining == 0) progress.stage = Stage.CHUNK_END;
+                break;
+
+            case CHUNK_END:
+                // each chunk is terminated with a new line
+                U.must(in.readLn().isEmpty(), "Invalid chunk terminator!");
+                progress.stage = Stage.CHUNK_SIZE;
+                break;
+
+            case TRAILER:
+                // skip the trailer
+                if (in.readLn().isEmpty()) progress.stage = Stage.COMPLETE;
+                break;
+
+            default:
+                throw U.rte("Unexpected response stage: " + progress.stage);
+        }
+    }
+
+    private int receiveData(Buf in, long max) {
+        int len = (int) Math.min(in.remaining(), max);
+        if (len == 0) throw Buf.INCOMPLETE_READ;
+
+        progress.bodyData(in.readNbytes(len));
+        return len;
+    }
+
+    /**
+     * Removes the bytes from the specified position up to the current position, keeping the rest of the input.
+     */
+    private static void discard(Buf in, int from) {
+        int to = in.position();
+        if (to == from) return;
+
+        byte[] rest = null;
+
+        if (in.size() > to) {
+            rest = new byte[in.size() - to];
+            in.get(new BufRange(to, rest.length), rest, 0);
+        }
+
+        in.position(from);
+        in.deleteAfter(from);
+
+        if (rest != null) in.append(rest);
+    }
+
+    private static int statusCode(String statusLine) {
+        String[] parts = statusLine.split(" ", 3);
+        U.must(parts.length >= 2 && parts[0].startsWith("HTTP/"), "Invalid HTTP status line: %s", statusLine);
+
+        return Integer.parseInt(parts[1]);
+    }
+
+    private static boolean isKeepAlive(String statusLine, Map<String, String> headersLow) {
+        String connection = headersLow.get("connection");
+
+        if (statusLine.startsWith("HTTP/1.0")) {
+            return "keep-alive".equalsIgnoreCase(connection);
+        } else {
+            return !"close".equalsIgnoreCase(connection);
+        }
+    }
+
+    private synchronized PendingRequest current() {
+        return inflight.peek();
+    }
+
+    private synchronized void completed(PendingRequest req) {
+        PendingRequest first = inflight.poll();
+        assert first == req;
+    }
+
+    /**
+     * Marks the connection as closed, and returns the requests that didn't receive a response.
+     */
+    synchronized List<PendingRequest> closed() {
+        closed = true;
+        channel = null;
+
+        // the response without a content length is complete when the connection is closed
+        if (progress.stage == Stage.UNTIL_CLOSED && progress.req == inflight.peek()) {
+            PendingRequest req = inflight.poll();
+            HttpResp resp = progress.toResponse();
+            progress.reset();
+
+            req.succeed(resp);
+        }
+
+        List<PendingRequest> unanswered = U.list(inflight);
+        inflight.clear();
+
+        return unanswered;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Fails the requests that weren't answered before their deadline. If the oldest request is among them, the
+     * connection is stuck, so it is closed.
+     */
+    void expire(long now) {
+        boolean stuck = false;
+
+        synchronized (this) {
+            boolean first = true;
+
+            for (PendingRequest req : inflight) {
+                if (!req.isDone() && req.deadline < now) {
+                    req.fail(new TimeoutException("No HTTP response was received in time!"));
+                    if (first) stuck = true;
+                }
+
+                first = false;
+            }
+        }
+
+        if (stuck) close();
+    }
+
+    void close() {
+        Channel ch = channel;
+
+        if (ch != null) {
+            ch.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HttpClientConnection{" +
+                "channel=" + channel +
+                ", closed=" + closed +
+                ", load=" + load +
+                '}';
+    }
+
+}
@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * rapidoid-http-client
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.http.client;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.Buf;
+import org.rapidoid.data.BufRange;
+import org.rapidoid.http.HttpResp;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+
+/**
+ * The progress of receiving a HTTP response on a client connection, kept between the reads, so the received parts
+ * of a large response can be removed from the connection's input buffer.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+class HttpResponseProgress extends RapidoidThing {
+
+    enum Stage {
+        CONTENT, UNTIL_CLOSED, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILER, COMPLETE
+    }
+
+    // the request that is being answered, or null if no response is being received
+    PendingRequest req;
+
+    int code;
+
+    Map<String, String> headers;
+
+    boolean keepAlive;
+
+    Stage stage;
+
+    // how many bytes of the body (or of the current chunk) are still to be received
+    long remaining;
+
+    private ByteArrayOutputStream raw;
+
+    private ByteArrayOutputStream body;
+
+    void start(PendingRequest req, int code, Map<String, String> headers, boolean keepAlive) {
+        this.req = req;
+        this.code = code;
+        this.headers = headers;
+        this.keepAlive = keepAlive;
+        this.raw = new ByteArrayOutputStream();
+        this.body = new ByteArrayOutputStream();
+    }
+
+    /**
+     * Appends the received bytes (in their original form) to the raw response.
+     */
+    void received(Buf in, int from, int to) {
+        if (to > from) {
+            byte[] bytes = new byte[to - from];
+            in.get(new BufRange(from, bytes.length), bytes, 0);
+            raw.write(bytes, 0, bytes.length);
+        }
+    }
+
+    void bodyData(byte[] data) {
+        body.write(data, 0, data.length);
+    }
+
+    long size() {
+        return raw.size();
+    }
+
+    HttpResp toResponse() {
+        return new HttpResp(raw.toByteArray(), code, headers, body.toByteArray());
+    }
+
+    void reset() {
+        req = null;
+        code = 0;
+        headers = null;
+        keepAlive = false;
+        stage = null;
+        remaining = 0;
+        raw = null;
+        body = null;
+    }
+
+}
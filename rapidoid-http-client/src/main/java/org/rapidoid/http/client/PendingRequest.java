@@ -0,0 +1,94 @@
+/*-
+ * #%L
+ * rapidoid-http-client
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.client;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.concurrent.Callback;
+import org.rapidoid.concurrent.Callbacks;
+import org.rapidoid.concurrent.Promise;
+import org.rapidoid.concurrent.Promises;
+import org.rapidoid.http.HttpResp;
+import org.rapidoid.job.Jobs;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A request waiting for a connection, or for its response on a (pipelined) connection. It is completed only once,
+ * either with the response or with an error (e.g. timeout).
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class PendingRequest extends RapidoidThing {
+
+    final byte[] request;
+
+    // the response to a HEAD request has no body
+    final boolean head;
+
+    final boolean idempotent;
+
+    final long deadline;
+
+    // the number of times the request was sent
+    int attempts;
+
+    private final Callback<HttpResp> callback;
+
+    private final Promise<HttpResp> promise = Promises.create();
+
+    private final AtomicBoolean done = new AtomicBoolean();
+
+    PendingRequest(byte[] request, boolean head, boolean idempotent, long deadline, Callback<HttpResp> callback) {
+        this.request = request;
+        this.head = head;
+        this.idempotent = idempotent;
+        this.deadline = deadline;
+        this.callback = callback;
+    }
+
+    void succeed(HttpResp resp) {
+        complete(resp, null);
+    }
+
+    void fail(Throwable error) {
+        complete(null, error);
+    }
+
+    private void complete(HttpResp resp, Throwable error) {
+        if (done.compareAndSet(false, true)) {
+            Callbacks.done(promise, resp, error);
+
+            // the callback mustn't block the I/O thread
+            if (callback != null) Jobs.call(callback, resp, error);
+        }
+    }
+
+    boolean isDone() {
+        return done.get();
+    }
+
+    Promise<HttpResp> promise() {
+        return promise;
+    }
+
+}
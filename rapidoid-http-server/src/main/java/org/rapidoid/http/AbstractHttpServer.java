@@ -30,6 +30,7 @@ import org.rapidoid.config.Conf;
 import org.rapidoid.data.BufRange;
 import org.rapidoid.data.JSON;
 import org.rapidoid.http.impl.HttpParser;
+import org.rapidoid.http.impl.HttpReadProgress;
 import org.rapidoid.http.impl.MaybeReq;
 import org.rapidoid.http.impl.lowlevel.HttpIO;
 import org.rapidoid.net.Protocol;
@@ -98,6 +99,7 @@ public abstract class AbstractHttpServer extends RapidoidThing implements Protoc
         Buf buf = ctx.input();
         RapidoidHelper data = ctx.helper();
 
+        HTTP_PARSER.awaitRequest(buf, data, HttpReadProgress.of(ctx), false);
         HTTP_PARSER.parse(buf, data);
 
         boolean keepAlive = data.isKeepAlive.value;
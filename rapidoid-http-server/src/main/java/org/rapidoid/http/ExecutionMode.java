@@ -0,0 +1,61 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.http;
+
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+
+/**
+ * Where the managed handlers of a route are executed.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public enum ExecutionMode {
+
+    /**
+     * The shared executor of the jobs (the default).
+     */
+    JOBS,
+
+    /**
+     * The I/O thread that received the request, without a thread hop. Only for short, non-blocking handlers.
+     */
+    INLINE,
+
+    /**
+     * A bounded pool of platform threads, shared by the routes with this mode. When the pool and its queue are full,
+     * the requests are rejected with 503.
+     */
+    POOL,
+
+    /**
+     * A bounded pool of platform threads dedicated to the route, so it can't exhaust the threads of the other routes.
+     */
+    ISOLATED,
+
+    /**
+     * A new virtual thread for each request, for blocking handlers. Requires JDK 21+, otherwise the shared bounded
+     * pool is used.
+     */
+    VIRTUAL
+
+}
@@ -26,7 +26,7 @@ import org.rapidoid.buffer.Buf;
 import org.rapidoid.bytes.BytesUtil;
 import org.rapidoid.cache.Cache;
 import org.rapidoid.collection.Coll;
-import org.rapidoid.commons.URIs;
+import org.rapidoid.config.Conf;
 import org.rapidoid.config.Config;
 import org.rapidoid.config.ConfigImpl;
 import org.rapidoid.data.BufRange;
@@ -34,19 +34,26 @@ import org.rapidoid.data.KeyValueRanges;
 import org.rapidoid.http.customize.Customization;
 import org.rapidoid.http.customize.HttpResponseRenderer;
 import org.rapidoid.http.handler.HttpHandler;
+import org.rapidoid.http.handler.ParamsAwareReqHandler;
 import org.rapidoid.http.impl.*;
 import org.rapidoid.http.impl.lowlevel.HttpIO;
+import org.rapidoid.http.metrics.PrometheusFormat;
+import org.rapidoid.http.metrics.RouteMetrics;
 import org.rapidoid.http.processor.AbstractHttpProcessor;
 import org.rapidoid.io.Upload;
+import org.rapidoid.job.Jobs;
 import org.rapidoid.log.Log;
 import org.rapidoid.log.LogLevel;
 import org.rapidoid.net.abstracts.Channel;
 import org.rapidoid.net.impl.RapidoidHelper;
+import org.rapidoid.security.Role;
 import org.rapidoid.u.U;
 
+import java.io.File;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Authors("Nikolche Mihajlovski")
 @Since("4.3.0")
@@ -58,10 +65,20 @@ public class FastHttp extends AbstractHttpProcessor {
 
     private static final byte[] BUILT_IN_RES_PATH = "/_rapidoid/".getBytes();
 
+    private static final byte[] METRICS_PATH = "/_rapidoid/metrics".getBytes();
+
+    // the max time (in ms) for a request to wait for the response that is computed by another request
+    private static final long CACHE_FLIGHT_TIMEOUT = Conf.HTTP.entry("cacheFlightTimeout").or(5000);
+
+    private static final MediaType PROMETHEUS_CONTENT_TYPE = MediaType.of(PrometheusFormat.CONTENT_TYPE);
+
     private final HttpRoutesImpl routes;
 
     private final Map<String, Object> attributes = Coll.synchronizedMap();
 
+    // the metrics are rendered off the I/O thread, like any managed route, and only for the administrators
+    private final HttpHandler metricsHandler;
+
     public FastHttp(HttpRoutesImpl routes) {
         this(routes, new ConfigImpl());
     }
@@ -70,6 +87,14 @@ public class FastHttp extends AbstractHttpProcessor {
         super(null);
         this.routes = routes;
         routes.setHttp(this);
+
+        RouteOptions metricsOptions = new RouteOptions()
+                .contentType(PROMETHEUS_CONTENT_TYPE)
+                .roles(Role.ADMINISTRATOR)
+                .internal(true);
+
+        this.metricsHandler = new ParamsAwareReqHandler(this, routes, metricsOptions,
+                req -> PrometheusFormat.render(RouteMetrics.all()).getBytes());
     }
 
     @Override
@@ -99,7 +124,12 @@ public class FastHttp extends AbstractHttpProcessor {
         HandlerMatch match;
 
         if (isGet && shouldServeBuiltInResources(buf, path)) {
-            match = routes.builtInResourcesHandler();
+            if (RouteMetrics.isEnabled() && BytesUtil.matches(buf.bytes(), path, METRICS_PATH, true)) {
+                match = metricsHandler;
+            } else {
+                match = routes.builtInResourcesHandler();
+            }
+
             if (match != null) {
                 matchingRoute = match.getRoute();
             }
@@ -120,6 +150,13 @@ public class FastHttp extends AbstractHttpProcessor {
         }
 
         HttpHandler handler = match != null ? match.getHandler() : null;
+
+        RouteOptions options = handler != null ? handler.options() : null;
+
+        if (options != null && options.writeTimeout() > 0) {
+            channel.writeTimeout(options.writeTimeout());
+        }
+
         boolean noReq = (handler != null && !handler.needsParams());
 
         ReqImpl req = null;
@@ -132,7 +169,15 @@ public class FastHttp extends AbstractHttpProcessor {
 
         try {
             if (handler != null) {
+                long startedAt = System.nanoTime();
+                if (req != null) req.handlerStarted();
+
                 status = handleIfFound(channel, isKeepAlive, handler, req);
+
+                if (req != null && status != HttpStatus.ASYNC) req.handlerFinished();
+
+                // the raw handlers (without a request object) write complete 200 responses
+                if (noReq && status == HttpStatus.DONE) recordRawMetrics(matchingRoute, buf, data, startedAt);
             }
 
             if (status == HttpStatus.NOT_FOUND) {
@@ -159,6 +204,15 @@ public class FastHttp extends AbstractHttpProcessor {
                 && BytesUtil.startsWith(buf.bytes(), path, BUILT_IN_RES_PATH, true);
     }
 
+    private void recordRawMetrics(Route route, Buf buf, RapidoidHelper data, long startedAt) {
+        RouteMetrics metrics = route instanceof RouteImpl ? ((RouteImpl) route).metrics() : null;
+
+        if (metrics != null) {
+            long time = System.nanoTime() - startedAt;
+            metrics.record(200, -1, time, -1, time, buf.position() - data.verb.start, -1);
+        }
+    }
+
     @Override
     public void waitToInitialize() {
         routes.waitToStabilize();
@@ -179,10 +233,25 @@ public class FastHttp extends AbstractHttpProcessor {
                     CachedResp resp = cache.getIfExists(cacheKey);
 
                     if (resp != null) {
-                        serveCached(req, resp);
-                        return true;
+                        if (resp.isFresh(U.time())) {
+                            serveCached(req, resp);
+                            return true;
+                        }
+
+                        if (route.config().cacheStaleTTL() > 0) {
+                            // only one request refreshes the stale response, the others are served the stale one
+                            if (!resp.startRevalidation()) {
+                                serveCached(req, resp);
+                                return true;
+                            }
+
+                            req.revalidating(resp);
+                            return false;
+                        }
                     }
 
+                    return joinCacheFlight(req, (RouteImpl) route, cacheKey);
+
                 } else {
                     cache.bypass(); // notify it's not cacheable
                 }
@@ -192,15 +261,89 @@ public class FastHttp extends AbstractHttpProcessor {
         return false;
     }
 
+    /**
+     * Only one of the concurrent requests for the same (missing) response computes it, the others wait for it and are
+     * served from the cache when it's ready. The waiting is supported only for the managed routes, because the
+     * waiting requests are resumed outside of the I/O thread. A request that waits for too long is handled by the
+     * route's handler.
+     */
+    private boolean joinCacheFlight(ReqImpl req, RouteImpl route, HTTPCacheKey cacheKey) {
+        if (!route.config().managed()) return false;
+
+        CacheFlight flight = new CacheFlight();
+        CacheFlight current = route.startCacheFlight(cacheKey, flight);
+
+        if (current == null) {
+            // this request will compute the response
+            req.cacheFlight(flight);
+            return false;
+        }
+
+        req.suspend();
+
+        if (!current.join(req)) {
+            // the computation has just finished
+            resumeCacheFollower(req);
+
+        } else if (CACHE_FLIGHT_TIMEOUT > 0) {
+            Jobs.schedule(() -> {
+                // if the request is still waiting, it stops waiting and computes the response itself
+                if (current.leave(req)) resumeCacheFollower(req);
+            }, CACHE_FLIGHT_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+
+        return true;
+    }
+
+    /**
+     * Resumes the request that was waiting for the response to be computed by another request. If the response wasn't
+     * cached (e.g. because of an error), the request is handled by the route's handler.
+     */
+    public void resumeCacheFollower(ReqImpl req) {
+        if (req.isStopped()) return;
+
+        Channel channel = req.channel();
+        Route route = req.route();
+
+        try {
+            CachedResp resp = route.cache().getIfExists(req.cacheKey());
+
+            if (resp != null) {
+                serveCached(req, resp);
+                return;
+            }
+
+            HttpStatus status = handleIfFound(channel, req.isKeepAlive(), route.handler(), req);
+
+            if (status == HttpStatus.NOT_FOUND) {
+                handleNotFound(channel, req.isKeepAlive(), req);
+            }
+
+        } catch (Throwable e) {
+            handleError(channel, req.isKeepAlive(), req, e);
+        }
+    }
+
     private void serveCached(ReqImpl req, CachedResp resp) {
         Channel channel = req.channel();
 
         req.cached(true);
 
-        HttpIO.INSTANCE.respond(HttpUtils.req(req), channel, -1, -1, resp.statusCode,
-                req.isKeepAlive(), resp.contentType, new RespBodyBuffer(resp.body.duplicate()), resp.headers, null);
+        String ifNoneMatch = req.header(HttpHeaders.IF_NONE_MATCH.name(), null);
 
-        channel.send().closeIf(!req.isKeepAlive());
+        if (resp.etag != null && HttpUtils.matchesETag(ifNoneMatch, resp.etag)) {
+            HttpIO.INSTANCE.respond(HttpUtils.req(req), channel, -1, -1, 304,
+                    req.isKeepAlive(), resp.contentType, null, resp.headers, null);
+
+        } else {
+            HttpIO.INSTANCE.respond(HttpUtils.req(req), channel, -1, -1, resp.statusCode,
+                    req.isKeepAlive(), resp.contentType, new RespBodyBuffer(resp.body.duplicate()), resp.headers, null);
+        }
+
+        // the waiting requests are resumed outside of the I/O thread, and their responses are sent when rendered
+        if (channel.onSameThread()) {
+            channel.send().closeIf(!req.isKeepAlive());
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -214,17 +357,16 @@ public class FastHttp extends AbstractHttpProcessor {
         KeyValueRanges cookiesKV = helper.cookies.reset();
 
         HTTP_PARSER.parseParams(buf, paramsKV, helper.query);
-        Map<String, String> params = U.cast(paramsKV.toMap(buf, true, true, false));
+        HTTP_PARSER.parseHeadersIntoKV(buf, helper.headers, headersKV, cookiesKV, helper);
 
-        if (match != null && match.getParams() != null) {
-            params.putAll(match.getParams());
-        }
+        // the params, headers and cookies are decoded on demand, from the input
+        ReqInput input = new ReqInput(buf, helper, paramsKV, headersKV, cookiesKV);
 
-        HTTP_PARSER.parseHeadersIntoKV(buf, helper.headers, headersKV, cookiesKV, helper);
-        Map<String, String> headers = U.cast(headersKV.toMap(buf, false, false, true));
-        Map<String, String> cookies = U.cast(cookiesKV.toMap(buf, false, false, false));
+        Map<String, String> pathParams = match != null ? match.getParams() : null;
+
+        File bodyFile = HttpReadProgress.takeBodyFile(channel);
+        MultipartStream multipart = HttpReadProgress.takeMultipart(channel);
 
-        byte[] body;
         Map<String, Object> posted;
         Map<String, List<Upload>> files;
         boolean pendingBodyParsing = false;
@@ -232,8 +374,6 @@ public class FastHttp extends AbstractHttpProcessor {
         if (!isGet && !helper.body.isEmpty()) {
             KeyValueRanges postedKV = helper.pairs3.reset();
 
-            body = helper.body.bytes(buf);
-
             // parse posted body as data
             posted = U.map();
             files = U.map();
@@ -243,17 +383,22 @@ public class FastHttp extends AbstractHttpProcessor {
             posted = Collections.synchronizedMap(posted);
             files = Collections.synchronizedMap(files);
 
+        } else if (multipart != null) {
+            // the multipart body was already parsed while streamed
+            posted = Collections.synchronizedMap(multipart.posted());
+            files = Collections.synchronizedMap(multipart.files());
+
+        } else if (bodyFile != null) {
+            // the body was streamed to a file, so it will be parsed on demand
+            posted = Collections.synchronizedMap(U.map());
+            files = Collections.synchronizedMap(U.map());
+            pendingBodyParsing = true;
+
         } else {
             posted = Collections.EMPTY_MAP;
             files = Collections.EMPTY_MAP;
-            body = null;
         }
 
-        String verb = helper.verb.str(buf);
-        String uri = helper.uri.str(buf);
-        String path = URIs.urlDecode(helper.path.str(buf));
-        String query = URIs.urlDecodeOrKeepOriginal(helper.query.str(buf));
-
         String zone = null;
         MediaType contentType = HttpUtils.getDefaultContentType();
 
@@ -264,12 +409,13 @@ public class FastHttp extends AbstractHttpProcessor {
 
         zone = U.or(zone, "main");
 
-        params = Collections.synchronizedMap(params);
-        headers = Collections.synchronizedMap(headers);
-        cookies = Collections.synchronizedMap(cookies);
+        req = new ReqImpl(this, channel, isKeepAlive, input, pathParams, posted, files, pendingBodyParsing,
+                contentType, zone, matchingRoute);
+
+        if (bodyFile != null) req.bodyFile(bodyFile);
 
-        req = new ReqImpl(this, channel, isKeepAlive, verb, uri, path, query, body, params, headers, cookies,
-                posted, files, pendingBodyParsing, contentType, zone, matchingRoute);
+        // the whole request was parsed, up to the end of its body
+        req.bytesIn(buf.position() - helper.verb.start + (bodyFile != null ? bodyFile.length() : 0));
 
         if (!attributes.isEmpty()) {
             req.attrs().putAll(attributes);
@@ -25,6 +25,8 @@ import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
 import org.rapidoid.buffer.Buf;
 import org.rapidoid.http.impl.HttpParser;
+import org.rapidoid.http.impl.HttpReadProgress;
+import org.rapidoid.http.impl.lowlevel.HttpIO;
 import org.rapidoid.http.processor.HttpProcessor;
 import org.rapidoid.net.Protocol;
 import org.rapidoid.net.abstracts.Channel;
@@ -53,7 +55,15 @@ public class FastHttpProtocol extends RapidoidThing implements Protocol {
         Buf buf = channel.input();
         RapidoidHelper helper = channel.helper();
 
-        HTTP_PARSER.parse(buf, helper);
+        HttpReadProgress progress = HttpReadProgress.of(channel);
+        HTTP_PARSER.awaitRequest(buf, helper, progress, true);
+
+        if (progress.isTooLarge()) {
+            HttpIO.INSTANCE.writePayloadTooLarge(channel);
+            return;
+        }
+
+        HTTP_PARSER.parse(buf, helper, progress.isBodyStreamed());
 
         processor.onRequest(channel, helper);
     }
@@ -36,6 +36,7 @@ import org.rapidoid.http.customize.Customization;
 import org.rapidoid.http.customize.HttpResponseRenderer;
 import org.rapidoid.http.handler.HandlerResultProcessor;
 import org.rapidoid.http.impl.MaybeReq;
+import org.rapidoid.http.impl.RespBodyFile;
 import org.rapidoid.io.Res;
 import org.rapidoid.lambda.Mapper;
 import org.rapidoid.u.U;
@@ -64,13 +65,20 @@ public class HttpUtils extends RapidoidThing implements HttpMetadata {
     private static final Mapper<String[], String> PATH_PARAM_EXTRACTOR = src -> src[1].split(":", 2)[0];
 
     public static Map<String, Serializable> initAndDeserializeToken(Req req) {
+        return Tokens.deserialize(tokenOf(req));
+    }
+
+    /**
+     * The serialized token of the request (from the cookie or the request data), or null.
+     */
+    public static String tokenOf(Req req) {
         String token = req.cookie(TOKEN, null);
 
         if (U.isEmpty(token)) {
             token = req.data(TOKEN, null);
         }
 
-        return Tokens.deserialize(token);
+        return token;
     }
 
     public static void saveTokenBeforeRenderingHeaders(Req req, Map<String, Serializable> tokenData) {
@@ -137,7 +145,7 @@ public class HttpUtils extends RapidoidThing implements HttpMetadata {
         } else {
             Res res = Res.from(resName, possibleLocations);
 
-            if (!res.exists()) {
+            if (res.getFile() == null && !res.exists()) {
                 res = Res.from(resName + ".html", possibleLocations);
             }
 
@@ -173,7 +181,7 @@ public class HttpUtils extends RapidoidThing implements HttpMetadata {
 
             setContentTypeForFile(resp, file);
 
-            resp.result(Res.from(file).getBytes());
+            resp.result(new RespBodyFile(file));
         }
     }
 
@@ -360,6 +368,22 @@ public class HttpUtils extends RapidoidThing implements HttpMetadata {
         }
     }
 
+    /**
+     * Checks if the value of the If-None-Match request header matches the entity tag (with weak comparison).
+     */
+    public static boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+
+            if (tag.equals(etag) || tag.equals("*")) return true;
+        }
+
+        return false;
+    }
+
     public static MediaType getDefaultContentType() {
         return DEFAULT_CONTENT_TYPE;
     }
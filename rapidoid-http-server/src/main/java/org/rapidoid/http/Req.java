@@ -25,6 +25,7 @@ import org.rapidoid.annotation.Since;
 import org.rapidoid.http.customize.Customization;
 import org.rapidoid.io.Upload;
 
+import java.io.File;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.List;
@@ -64,6 +65,12 @@ public interface Req {
      */
     byte[] body();
 
+    /**
+     * Gets the temporary <b>file with the raw body data</b> of the HTTP request, if the body was streamed to disk
+     * (see the <code>http.bodyStreamThreshold</code> config), or <code>null</code> otherwise.
+     */
+    File bodyFile();
+
     /**
      * Gets the value of the <b>Host header</b> of the HTTP request.
      */
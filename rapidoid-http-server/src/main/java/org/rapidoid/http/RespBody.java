@@ -28,7 +28,7 @@ import org.rapidoid.net.abstracts.Channel;
 @Since("5.5.1")
 public interface RespBody {
 
-    int length();
+    long length();
 
     void writeTo(Channel channel);
 
@@ -59,6 +59,57 @@ public interface RouteConfig {
 
     RouteOptions cacheCapacity(int cacheCapacity);
 
+    long cacheStaleTTL();
+
+    /**
+     * Sets for how long (in ms) an expired cached response can still be served, while it is being refreshed by one of
+     * the requests (stale-while-revalidate, 0 = disabled).
+     */
+    RouteOptions cacheStaleTTL(long cacheStaleTTL);
+
+    String[] cacheVary();
+
+    /**
+     * Sets the request headers that select different variants of the cached response (e.g. Accept-Language).
+     */
+    RouteOptions cacheVary(String... cacheVary);
+
+    long writeTimeout();
+
+    /**
+     * Sets the maximum time (in ms) to send the response, which is extended while the data keeps being sent at a
+     * reasonable rate (0 = the configured default).
+     */
+    RouteOptions writeTimeout(long writeTimeout);
+
+    ExecutionMode execution();
+
+    /**
+     * Sets where the managed handlers are executed (the shared jobs executor by default).
+     */
+    RouteOptions execution(ExecutionMode execution);
+
+    int threads();
+
+    /**
+     * Sets the number of threads of the route's isolated pool (0 = the configured default).
+     */
+    RouteOptions threads(int threads);
+
+    boolean compress();
+
+    /**
+     * Enables the compression of the compressible (e.g. textual) responses, if the client accepts gzip or deflate.
+     */
+    RouteOptions compress(boolean compress);
+
+    int compressMinSize();
+
+    /**
+     * Sets the minimum size (in bytes) of the response body to compress (0 = the configured default).
+     */
+    RouteOptions compressMinSize(int compressMinSize);
+
     boolean internal();
 
     RouteOptions internal(boolean internal);
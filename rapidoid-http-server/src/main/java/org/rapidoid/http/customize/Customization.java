@@ -71,6 +71,8 @@ public class Customization extends RapidoidThing {
 
     private volatile SessionManager sessionManager;
 
+    private volatile RequestBodySink requestBodySink;
+
     private volatile StaticFilesSecurity staticFilesSecurity;
 
     private volatile HttpWrapper[] wrappers;
@@ -100,6 +102,7 @@ public class Customization extends RapidoidThing {
         objectMapper = null;
         xmlMapper = null;
         sessionManager = null;
+        requestBodySink = null;
         errorHandlers.reset();
         staticFilesSecurity = null;
         wrappers = null;
@@ -259,6 +262,15 @@ public class Customization extends RapidoidThing {
         return this;
     }
 
+    public RequestBodySink requestBodySink() {
+        return requestBodySink != null || defaults == null ? requestBodySink : defaults.requestBodySink();
+    }
+
+    public Customization requestBodySink(RequestBodySink requestBodySink) {
+        this.requestBodySink = requestBodySink;
+        return this;
+    }
+
     public ByType<Throwable, ErrorHandler> errorHandlers() {
         return errorHandlers;
     }
@@ -0,0 +1,39 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.customize;
+
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+
+import java.io.OutputStream;
+
+/**
+ * Provides the destination of the large request bodies (see <code>http.bodyStreamThreshold</code>), which are streamed
+ * as they arrive, instead of being accumulated in memory. If <code>null</code> is returned, the body is streamed into
+ * a temporary file, see {@link org.rapidoid.http.Req#bodyFile()}.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public interface RequestBodySink {
+
+    OutputStream open(String verb, String uri, long contentLength) throws Exception;
+
+}
@@ -0,0 +1,37 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.customize;
+
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.http.Req;
+
+/**
+ * A bean parameter factory that binds the parameters straight from the request (e.g. by deserializing the request
+ * body), without collecting all the request data into a map first.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public interface StreamingBeanParameterFactory extends BeanParameterFactory {
+
+    Object bindParamValue(Req req, Class<?> paramType, String paramName) throws Exception;
+
+}
@@ -20,22 +20,135 @@
 
 package org.rapidoid.http.customize.defaults;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
 import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
+import org.rapidoid.collection.Coll;
 import org.rapidoid.http.Req;
-import org.rapidoid.http.customize.BeanParameterFactory;
 import org.rapidoid.http.customize.Customization;
+import org.rapidoid.http.customize.StreamingBeanParameterFactory;
+import org.rapidoid.u.U;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 
 @Authors("Nikolche Mihajlovski")
 @Since("5.1.0")
-public class DefaultBeanParameterFactory extends RapidoidThing implements BeanParameterFactory {
+public class DefaultBeanParameterFactory extends RapidoidThing implements StreamingBeanParameterFactory {
+
+    private final Map<Class<?>, Binding> bindings = Coll.concurrentMap();
 
     @Override
     public Object getParamValue(Req req, Class<?> paramType, String paramName, Map<String, Object> properties) {
         return Customization.of(req).objectMapper().convertValue(properties, paramType);
     }
 
+    /**
+     * Deserializes the JSON request body straight into the bean, with a reader that is cached per type. The request
+     * parameters and files are merged into the bean only if it declares properties with the same names, and the
+     * properties from the body take precedence. Other kinds of requests are bound from the request data.
+     */
+    @Override
+    public Object bindParamValue(Req req, Class<?> paramType, String paramName) throws Exception {
+        byte[] body = req.body();
+
+        if (!isJson(req, body)) {
+            return getParamValue(req, paramType, paramName, req.data());
+        }
+
+        ObjectMapper mapper = Customization.of(req).objectMapper();
+        Binding binding = binding(mapper, paramType);
+
+        Map<String, Object> extras = null;
+
+        if (!binding.properties.isEmpty()) {
+            extras = extras(req.params(), binding.properties, null);
+            extras = extras(req.files(), binding.properties, extras);
+        }
+
+        try {
+            if (extras == null) {
+                return binding.reader.readValue(body);
+
+            } else {
+                Object bean = mapper.convertValue(extras, paramType);
+                return binding.reader.withValueToUpdate(bean).readValue(body);
+            }
+
+        } catch (JsonProcessingException e) {
+            // fall back to binding from the request data, which logs the body parsing errors
+            return getParamValue(req, paramType, paramName, req.data());
+        }
+    }
+
+    private Binding binding(ObjectMapper mapper, Class<?> type) {
+        Binding binding = bindings.get(type);
+
+        // the cached reader can only be used with the same object mapper
+        if (binding == null || binding.mapper != mapper) {
+            binding = new Binding(mapper, type);
+            bindings.put(type, binding);
+        }
+
+        return binding;
+    }
+
+    private static Map<String, Object> extras(Map<String, ?> data, Set<String> properties, Map<String, Object> extras) {
+        for (Map.Entry<String, ?> e : data.entrySet()) {
+            if (properties.contains(e.getKey())) {
+                if (extras == null) extras = U.map();
+                extras.put(e.getKey(), e.getValue());
+            }
+        }
+
+        return extras;
+    }
+
+    private static boolean isJson(Req req, byte[] body) {
+        if (U.isEmpty(body) || !req.header("Content-Type", "application/json").startsWith("application/json")) {
+            return false;
+        }
+
+        for (byte b : body) {
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return b == '{' || b == '[';
+            }
+        }
+
+        return false;
+    }
+
+    private static class Binding {
+
+        private final ObjectMapper mapper;
+
+        private final ObjectReader reader;
+
+        private final Set<String> properties;
+
+        private Binding(ObjectMapper mapper, Class<?> type) {
+            this.mapper = mapper;
+            this.reader = mapper.readerFor(type);
+            this.properties = type.isArray() ? Collections.emptySet() : propertiesOf(mapper, type);
+        }
+
+        private static Set<String> propertiesOf(ObjectMapper mapper, Class<?> type) {
+            BeanDescription desc = mapper.getDeserializationConfig().introspect(mapper.constructType(type));
+
+            Set<String> names = U.set();
+
+            for (BeanPropertyDefinition prop : desc.findProperties()) {
+                names.add(prop.getName());
+            }
+
+            return names;
+        }
+    }
+
 }
@@ -24,17 +24,31 @@ import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
 import org.rapidoid.collection.Coll;
+import org.rapidoid.config.Conf;
+import org.rapidoid.config.Config;
 import org.rapidoid.event.Events;
 import org.rapidoid.event.Fire;
 import org.rapidoid.http.Req;
 import org.rapidoid.http.customize.SessionManager;
+import org.rapidoid.http.session.FileSessionStore;
+import org.rapidoid.http.session.InMemorySessionStore;
+import org.rapidoid.http.session.SessionCodec;
+import org.rapidoid.http.session.SessionStore;
 import org.rapidoid.u.U;
-import org.rapidoid.util.Msc;
+import org.rapidoid.util.LazyInit;
 
+import java.io.File;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Shares the session between the concurrent requests that use it, and keeps it encoded in the session store (see
+ * {@link SessionStore}) when it isn't used by any request. The session store is configured in the http.session
+ * section of the configuration.
+ */
 @Authors("Nikolche Mihajlovski")
 @Since("5.2.0")
 public class DefaultSessionManager extends RapidoidThing implements SessionManager {
@@ -42,35 +56,76 @@ public class DefaultSessionManager extends RapidoidThing implements SessionManag
     public static class SessionHolder {
         volatile byte[] serialized;
         volatile Map<String, Serializable> session;
-        final AtomicLong refCounter = new AtomicLong();
+        long refCounter; // guarded by the holder
+        boolean released; // guarded by the holder
+    }
+
+    // only the sessions that are currently used by some requests
+    private final ConcurrentMap<String, SessionHolder> sessions = new ConcurrentHashMap<>();
+
+    private final LazyInit<SessionStore> store;
+
+    public DefaultSessionManager() {
+        this.store = new LazyInit<>(() -> createStore(Conf.HTTP.sub("session")));
+    }
+
+    public DefaultSessionManager(SessionStore store) {
+        this.store = new LazyInit<>(() -> store);
     }
 
-    private final Map<String, SessionHolder> sessions = Coll.autoExpandingMap(String.class, SessionHolder.class);
+    public static SessionStore createStore(Config cfg) {
+        String type = cfg.entry("store").or("memory");
+        long maxIdle = cfg.entry("maxIdle").or(1800000L);
+        long capacity = cfg.entry("capacity").or(100000L);
+
+        switch (type) {
+            case "memory":
+                return new InMemorySessionStore(maxIdle, capacity);
+
+            case "file":
+                // the sessions are sensitive, so they aren't stored in the shared temp dir by default
+                String dir = cfg.entry("dir").or("");
+                U.must(U.notEmpty(dir), "The directory of the file session store must be configured (http.session.dir)!");
+
+                long segmentSize = 1024L * cfg.entry("segmentSize").or(16384);
+
+                return new FileSessionStore(new File(dir), maxIdle, capacity, segmentSize);
+
+            default:
+                throw U.rte("Unknown session store: '%s' (expected 'memory' or 'file')", type);
+        }
+    }
 
     @Override
     public Map<String, Serializable> loadSession(Req req, String sessionId) {
         Fire.event(Events.SESSION_LOAD, "id", sessionId);
 
-        SessionHolder holder = sessions.get(sessionId);
+        while (true) {
+            SessionHolder holder = sessions.computeIfAbsent(sessionId, id -> new SessionHolder());
 
-        if (holder.session == null) {
             synchronized (holder) {
+                // the holder was released in the meantime, so a new one is needed
+                if (holder.released) continue;
+
                 if (holder.session == null) {
+                    byte[] serialized = store().load(sessionId);
 
-                    if (holder.serialized != null) {
+                    if (serialized != null) {
                         Fire.event(Events.SESSION_DESERIALIZE, "id", sessionId);
-                        holder.session = U.cast(Msc.deserialize(holder.serialized));
+                        holder.serialized = serialized;
+                        holder.session = SessionCodec.decode(serialized);
+
                     } else {
                         holder.session = Coll.concurrentMap();
                         Fire.event(Events.SESSION_CONCURRENT_ACCESS, "id", sessionId);
                     }
                 }
-            }
-        }
 
-        holder.refCounter.incrementAndGet();
+                holder.refCounter++;
 
-        return holder.session;
+                return holder.session;
+            }
+        }
     }
 
     @Override
@@ -78,19 +133,31 @@ public class DefaultSessionManager extends RapidoidThing implements SessionManag
         Fire.event(Events.SESSION_SAVE, "id", sessionId);
 
         SessionHolder holder = sessions.get(sessionId);
-        long refN = holder.refCounter.decrementAndGet();
+        U.must(holder != null, "The session wasn't loaded!");
 
-        U.must(refN >= 0, "The session has negative reference counter!");
+        synchronized (holder) {
+            long refN = --holder.refCounter;
 
-        if (refN == 0) {
-            synchronized (holder) {
-                if (holder.refCounter.get() == 0) {
-                    Fire.event(Events.SESSION_SERIALIZE, "id", sessionId);
-                    holder.serialized = Msc.serialize(session);
-                    holder.session = null;
+            U.must(refN >= 0, "The session has negative reference counter!");
+
+            if (refN == 0) {
+                Fire.event(Events.SESSION_SERIALIZE, "id", sessionId);
+
+                byte[] serialized = SessionCodec.encode(session);
+
+                // the unchanged sessions aren't stored again
+                if (!Arrays.equals(serialized, holder.serialized)) {
+                    store().save(sessionId, serialized);
                 }
+
+                holder.released = true;
+                sessions.remove(sessionId, holder);
             }
         }
     }
 
+    public SessionStore store() {
+        return store.get();
+    }
+
 }
@@ -0,0 +1,182 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.http.handler;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.config.Conf;
+import org.rapidoid.config.Config;
+import org.rapidoid.ctx.WithContext;
+import org.rapidoid.http.ExecutionMode;
+import org.rapidoid.insight.Insights;
+import org.rapidoid.insight.StatsMeasure;
+import org.rapidoid.job.Jobs;
+import org.rapidoid.job.PredefinedContextJobWrapper;
+import org.rapidoid.log.Log;
+import org.rapidoid.thread.RapidoidThreadFactory;
+import org.rapidoid.util.LazyInit;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the managed handlers with the context of the request, on the threads of an execution mode. The number of
+ * queued handlers, their waiting time and execution time (in ms) are measured per executor.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HandlerExecutor extends RapidoidThing {
+
+    private static final Config CONFIG = Conf.HTTP.sub("executor");
+
+    private static final HandlerExecutor JOBS = new HandlerExecutor("jobs", job -> Jobs.executor().execute(job));
+
+    private static final HandlerExecutor INLINE = new HandlerExecutor("inline", Runnable::run);
+
+    private static final LazyInit<HandlerExecutor> POOL = new LazyInit<>(() -> pool("pool", 0));
+
+    private static final LazyInit<HandlerExecutor> VIRTUAL = new LazyInit<>(HandlerExecutor::virtual);
+
+    private final String name;
+
+    private final Executor executor;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final StatsMeasure waitTime;
+
+    private final StatsMeasure execTime;
+
+    private HandlerExecutor(String name, Executor executor) {
+        this.name = name;
+        this.executor = executor;
+
+        Insights.register("handlers:" + name + ":queued", queued);
+        this.waitTime = Insights.stats("handlers:" + name + ":wait");
+        this.execTime = Insights.stats("handlers:" + name + ":exec");
+    }
+
+    /**
+     * Returns the shared executor of the execution mode, or a new isolated one (for the ISOLATED mode).
+     */
+    static HandlerExecutor of(ExecutionMode mode, String route, int threads) {
+        switch (mode) {
+            case JOBS:
+                return JOBS;
+
+            case INLINE:
+                return INLINE;
+
+            case POOL:
+                return POOL.get();
+
+            case ISOLATED:
+                return pool("isolated:" + route, threads);
+
+            case VIRTUAL:
+                return VIRTUAL.get();
+
+            default:
+                throw new IllegalArgumentException("Unknown execution mode: " + mode);
+        }
+    }
+
+    private static HandlerExecutor pool(String name, int threads) {
+        int poolThreads = threads > 0 ? threads : CONFIG.entry("threads").or(64);
+        int maxQueueSize = CONFIG.entry("maxQueueSize").or(1000);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolThreads, poolThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxQueueSize), new RapidoidThreadFactory(name, true));
+
+        executor.allowCoreThreadTimeOut(true);
+
+        return new HandlerExecutor(name, executor);
+    }
+
+    private static HandlerExecutor virtual() {
+        try {
+            // available since JDK 21
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+
+            return new HandlerExecutor("virtual", executor);
+
+        } catch (ReflectiveOperationException e) {
+            Log.warn("Virtual threads are not supported by this JDK, using the bounded pool instead!");
+            return POOL.get();
+        }
+    }
+
+    /**
+     * Runs the job with the specified context. Throws {@link RejectedExecutionException} if the executor is full.
+     */
+    void execute(WithContext context, Runnable job) {
+        long submittedAt = System.nanoTime();
+        queued.incrementAndGet();
+
+        Runnable measuredJob = () -> {
+            long startedAt = System.nanoTime();
+            queued.decrementAndGet();
+            waitTime.value(TimeUnit.NANOSECONDS.toMillis(startedAt - submittedAt));
+
+            try {
+                job.run();
+            } finally {
+                execTime.value(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            }
+        };
+
+        try {
+            executor.execute(new PredefinedContextJobWrapper(context, measuredJob));
+
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int queued() {
+        return queued.get();
+    }
+
+    public StatsMeasure waitTime() {
+        return waitTime;
+    }
+
+    public StatsMeasure execTime() {
+        return execTime;
+    }
+
+    @Override
+    public String toString() {
+        return "HandlerExecutor{" +
+                "name='" + name + '\'' +
+                ", queued=" + queued +
+                '}';
+    }
+
+}
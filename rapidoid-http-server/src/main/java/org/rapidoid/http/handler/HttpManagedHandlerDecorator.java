@@ -23,25 +23,41 @@ package org.rapidoid.http.handler;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
 import org.rapidoid.ctx.With;
+import org.rapidoid.ctx.WithContext;
 import org.rapidoid.http.*;
+import org.rapidoid.http.impl.ReqImpl;
 import org.rapidoid.http.impl.RouteOptions;
 import org.rapidoid.http.impl.lowlevel.HttpIO;
 import org.rapidoid.lambda.Mapper;
+import org.rapidoid.log.Log;
 import org.rapidoid.log.LogLevel;
 import org.rapidoid.net.abstracts.Channel;
 import org.rapidoid.u.U;
 import org.rapidoid.util.LazyInit;
 
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Authors("Nikolche Mihajlovski")
 @Since("5.5.1")
 public class HttpManagedHandlerDecorator extends AbstractHttpHandlerDecorator {
 
     private static final String CTX_TAG_HANDLER = "handler";
 
+    // the rejections are reported at most once per interval, the rest are logged at DEBUG level
+    private static final long REJECTION_WARNING_INTERVAL = 10000;
+
     private final RouteOptions options;
 
     private final LazyInit<HttpWrapper[]> wrappers;
 
+    // created on the first request, when the route is known
+    private volatile HandlerExecutor executor;
+
+    private final AtomicLong lastRejectionWarning = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
     HttpManagedHandlerDecorator(AbstractDecoratingHttpHandler handler, final FastHttp http, final RouteOptions options) {
         super(handler, http);
 
@@ -51,28 +67,84 @@ public class HttpManagedHandlerDecorator extends AbstractHttpHandlerDecorator {
 
     @Override
     public final HttpStatus handle(Channel ctx, boolean isKeepAlive, Req req) {
-        if (!ctx.isAsync()) {
-            // first checks if not async, to avoid exceptions when running the second time from non-IO thread
-            ctx.async();
+        // the inline handlers respond before the input is reused, unless they wait for the previous responses
+        boolean inline = options.execution() == ExecutionMode.INLINE && !ctx.hasPendingResponses();
+
+        if (!inline) {
+            if (!ctx.isAsync()) {
+                // first checks if not async, to avoid exceptions when running the second time from non-IO thread
+                ctx.async();
+            }
+
+            // the request will outlive the input buffer, which is reused by the I/O thread
+            if (req instanceof ReqImpl) ((ReqImpl) req).detachInput();
         }
 
         execHandlerJob(ctx, isKeepAlive, options.contentType(), req);
 
-        return HttpStatus.ASYNC;
+        // an inline handler might still turn async (or fail), in which case it marks the request and the channel
+        return inline && !req.isAsync() ? HttpStatus.DONE : HttpStatus.ASYNC;
     }
 
     private void execHandlerJob(final Channel channel, final boolean isKeepAlive, final MediaType contentType, final Req req) {
 
-        With.tag(CTX_TAG_HANDLER).exchange(req).run(() -> {
-            try {
-                req.response().contentType(options.contentType());
+        WithContext context = With.tag(CTX_TAG_HANDLER).exchange(req);
 
-                handleWithWrappers(channel, isKeepAlive, contentType, req, wrappers.get());
+        try {
+            executor(req).execute(context, () -> {
+                if (req instanceof ReqImpl) ((ReqImpl) req).handlerStarted();
 
-            } catch (Throwable e) {
-                handleError(req, e);
+                try {
+                    req.response().contentType(options.contentType());
+
+                    handleWithWrappers(channel, isKeepAlive, contentType, req, wrappers.get());
+
+                } catch (Throwable e) {
+                    handleError(req, e);
+                }
+            });
+
+        } catch (RejectedExecutionException e) {
+            // the executor is full, so the request is rejected with 503
+            logRejection(executor(req));
+            handleError(req, e, LogLevel.DEBUG);
+        }
+    }
+
+    private void logRejection(HandlerExecutor executor) {
+        long rejectedCount = rejected.incrementAndGet();
+
+        long now = U.time();
+        long last = lastRejectionWarning.get();
+
+        if (now - last >= REJECTION_WARNING_INTERVAL && lastRejectionWarning.compareAndSet(last, now)) {
+            rejected.set(0);
+            Log.warn("The request handlers were rejected, the executor is full!",
+                    "executor", executor.name(), "rejected", rejectedCount);
+
+        } else {
+            Log.debug("The request handler was rejected, the executor is full!", "executor", executor.name());
+        }
+    }
+
+    private HandlerExecutor executor(Req req) {
+        HandlerExecutor executor = this.executor;
+
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.executor;
+
+                if (executor == null) {
+                    Route route = req.route();
+                    String name = route != null ? route.verb() + " " + route.path() : String.valueOf(handler);
+
+                    executor = HandlerExecutor.of(options.execution(), name, options.threads());
+                    this.executor = executor;
+                }
             }
-        });
+        }
+
+        return executor;
     }
 
     private void handleWithWrappers(Channel channel, boolean isKeepAlive, MediaType contentType,
@@ -91,6 +163,9 @@ public class HttpManagedHandlerDecorator extends AbstractHttpHandlerDecorator {
             result = e;
         }
 
+        // the async handlers finish later
+        if (result != HttpStatus.ASYNC && req instanceof ReqImpl) ((ReqImpl) req).handlerFinished();
+
         complete(channel, isKeepAlive, contentType, req, result);
     }
 
@@ -171,10 +246,14 @@ public class HttpManagedHandlerDecorator extends AbstractHttpHandlerDecorator {
     }
 
     private void handleError(Req req, Throwable e) {
+        handleError(req, e, LogLevel.ERROR);
+    }
+
+    private void handleError(Req req, Throwable e, LogLevel logLevel) {
         req.revert();
         req.async();
 
-        HttpIO.INSTANCE.error(req, e, LogLevel.ERROR);
+        HttpIO.INSTANCE.error(req, e, logLevel);
 
         // the Req object will do the rendering
         req.done();
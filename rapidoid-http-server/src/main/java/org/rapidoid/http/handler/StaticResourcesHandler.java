@@ -22,12 +22,14 @@ package org.rapidoid.http.handler;
 
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
+import org.rapidoid.http.HttpHeaders;
 import org.rapidoid.http.HttpStatus;
 import org.rapidoid.http.HttpUtils;
 import org.rapidoid.http.MediaType;
 import org.rapidoid.http.Req;
 import org.rapidoid.http.customize.Customization;
 import org.rapidoid.http.customize.StaticFilesSecurity;
+import org.rapidoid.http.impl.HttpCompression;
 import org.rapidoid.http.impl.RouteOptions;
 import org.rapidoid.http.impl.lowlevel.HttpIO;
 import org.rapidoid.io.Res;
@@ -35,6 +37,8 @@ import org.rapidoid.log.LogLevel;
 import org.rapidoid.net.abstracts.Channel;
 import org.rapidoid.u.U;
 
+import java.io.File;
+
 @Authors("Nikolche Mihajlovski")
 @Since("5.0.0")
 public class StaticResourcesHandler extends AbstractHttpHandler {
@@ -60,11 +64,28 @@ public class StaticResourcesHandler extends AbstractHttpHandler {
 
                     StaticFilesSecurity staticFilesSecurity = customization.staticFilesSecurity();
 
+                    // the files on the file system are sent directly, without loading them in memory
+                    File file = res.getFile();
+
                     if (staticFilesSecurity.canServe(req, res)) {
+                        MediaType contentType = U.or(MediaType.getByFileName(res.getName()), MediaType.BINARY);
+
+                        if (file != null) {
+                            File gzipped = precompressed(file);
+
+                            if (gzipped != null && HttpCompression.acceptsGzip(req.header(HttpHeaders.ACCEPT_ENCODING.name(), null))) {
+                                HttpIO.INSTANCE.writeFile(req, ctx, isKeepAlive, contentType, gzipped, HttpCompression.GZIP, true);
+                            } else {
+                                // the caches must not serve this response to the clients that accept the gzipped variant
+                                HttpIO.INSTANCE.writeFile(req, ctx, isKeepAlive, contentType, file, null, gzipped != null);
+                            }
+
+                            return HttpStatus.DONE;
+                        }
+
                         byte[] bytes = res.getBytesOrNull();
 
                         if (bytes != null) {
-                            MediaType contentType = U.or(MediaType.getByFileName(res.getName()), MediaType.BINARY);
                             HttpIO.INSTANCE.write200(HttpUtils.maybe(req), ctx, isKeepAlive, contentType, bytes);
                             return HttpStatus.DONE;
                         }
@@ -79,6 +100,16 @@ public class StaticResourcesHandler extends AbstractHttpHandler {
         }
     }
 
+    /**
+     * Finds the precompressed (.gz) sibling of the file, if any.
+     */
+    private File precompressed(File file) {
+        if (!HttpCompression.precompressed()) return null;
+
+        File gzipped = new File(file.getPath() + ".gz");
+        return gzipped.isFile() ? gzipped : null;
+    }
+
     @Override
     public boolean needsParams() {
         return true;
@@ -0,0 +1,112 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.http.handler;
+
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.http.HttpStatus;
+import org.rapidoid.http.HttpUtils;
+import org.rapidoid.http.MediaType;
+import org.rapidoid.http.Req;
+import org.rapidoid.http.impl.ReqImpl;
+import org.rapidoid.http.impl.RespBodyBytes;
+import org.rapidoid.http.impl.RouteOptions;
+import org.rapidoid.http.impl.lowlevel.HttpIO;
+import org.rapidoid.http.websocket.WebSocketConn;
+import org.rapidoid.http.websocket.WebSocketGroup;
+import org.rapidoid.http.websocket.WebSocketListener;
+import org.rapidoid.http.websocket.WebSockets;
+import org.rapidoid.net.abstracts.Channel;
+import org.rapidoid.u.U;
+
+/**
+ * Upgrades the HTTP connection to a WebSocket connection (RFC 6455), which is then processed on the same I/O
+ * thread by the WebSocket protocol.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class WebSocketHandler extends AbstractHttpHandler {
+
+    private final WebSocketListener listener;
+
+    private final WebSocketGroup group = new WebSocketGroup();
+
+    public WebSocketHandler(RouteOptions options, WebSocketListener listener) {
+        super(options);
+        this.listener = listener;
+    }
+
+    @Override
+    public HttpStatus handle(Channel ctx, boolean isKeepAlive, Req req) {
+
+        String upgrade = req.header("Upgrade", "");
+        String connection = req.header("Connection", "");
+        String key = req.header("Sec-WebSocket-Key", "");
+        String version = req.header("Sec-WebSocket-Version", "");
+
+        if (!HttpUtils.isGetReq(req) || !isKeepAlive || !upgrade.trim().equalsIgnoreCase("websocket")
+                || !connection.toLowerCase().contains("upgrade") || key.trim().isEmpty()) {
+
+            HttpIO.INSTANCE.writeResponse(HttpUtils.maybe(req), ctx, isKeepAlive, 400,
+                    MediaType.PLAIN_TEXT_UTF_8, "Expected a WebSocket upgrade request!".getBytes());
+
+            return HttpStatus.DONE;
+        }
+
+        if (!version.trim().equals(WebSockets.VERSION)) {
+            HttpIO.INSTANCE.respond(HttpUtils.maybe(req), ctx, -1, -1, 426, isKeepAlive, MediaType.PLAIN_TEXT_UTF_8,
+                    new RespBodyBytes("Unsupported WebSocket version!".getBytes()),
+                    U.map("Sec-WebSocket-Version", WebSockets.VERSION), null);
+
+            return HttpStatus.DONE;
+        }
+
+        // the request stays available to the listener, after the input buffer is reused for the frames
+        ((ReqImpl) req).detachInput();
+
+        WebSocketConn ws = new WebSocketConn(ctx, req, group, listener);
+
+        synchronized (ctx) {
+            ctx.write(WebSockets.handshake(key));
+            ctx.protocol(ws);
+        }
+
+        ws.opened();
+
+        return HttpStatus.DONE;
+    }
+
+    public WebSocketGroup group() {
+        return group;
+    }
+
+    @Override
+    public boolean needsParams() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "() -> (WebSocket)";
+    }
+
+}
@@ -27,11 +27,16 @@ import org.rapidoid.http.*;
 import org.rapidoid.http.customize.Customization;
 import org.rapidoid.http.customize.HttpResponseRenderer;
 import org.rapidoid.http.impl.lowlevel.HttpIO;
+import org.rapidoid.io.Res;
 import org.rapidoid.log.Log;
 import org.rapidoid.log.LogLevel;
 import org.rapidoid.u.U;
 import org.rapidoid.util.Msc;
 
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
 @Authors("Nikolche Mihajlovski")
 @Since("5.5.2")
 public class BodyRenderer extends RapidoidThing {
@@ -41,15 +46,25 @@ public class BodyRenderer extends RapidoidThing {
             return createRespBodyFromResult(req, resp);
 
         } catch (Throwable e) {
-            HttpIO.INSTANCE.error(req, e, LogLevel.ERROR);
+            return errorToRespBody(req, e);
+        }
+    }
 
-            try {
-                return createRespBodyFromResult(req, resp);
+    /**
+     * Handles the error that occurred while preparing or rendering the response body (before any of it was sent),
+     * and renders the error response instead.
+     */
+    public static RespBody errorToRespBody(Req req, Throwable error) {
+        RespImpl resp = (RespImpl) req.response();
 
-            } catch (Exception e1) {
-                Log.error("Internal rendering error!", e1);
-                return new RespBodyBytes(HttpUtils.getErrorMessageAndSetCode(resp, e1).getBytes());
-            }
+        HttpIO.INSTANCE.error(req, error, LogLevel.ERROR);
+
+        try {
+            return createRespBodyFromResult(req, resp);
+
+        } catch (Exception e1) {
+            Log.error("Internal rendering error!", e1);
+            return new RespBodyBytes(HttpUtils.getErrorMessageAndSetCode(resp, e1).getBytes());
         }
     }
 
@@ -77,9 +92,17 @@ public class BodyRenderer extends RapidoidThing {
     public static RespBody resultToRespBody(Resp resp, Object result) {
         if (result instanceof RespBody) return (RespBody) result;
 
-        byte[] bytes = HttpUtils.responseToBytes(resp.request(), result, resp.contentType(), mediaResponseRenderer(resp));
+        // the contents (of the files, resources etc.) are loaded right away, so the errors are handled as usual
+        if (result instanceof byte[] || result instanceof ByteBuffer || result instanceof InputStream
+                || result instanceof File || result instanceof Res) {
+            return new RespBodyBytes(Msc.toBytes(result));
+        }
+
+        // rendered later, directly into the connection output
+        MediaType contentType = resp.contentType();
+        boolean structured = U.eq(contentType, MediaType.JSON) || U.eq(contentType, MediaType.XML_UTF_8);
 
-        return new RespBodyBytes(bytes);
+        return new RespBodyRenderer(resp.request(), result, structured ? mediaResponseRenderer(resp) : null);
     }
 
     private static HttpResponseRenderer mediaResponseRenderer(Resp resp) {
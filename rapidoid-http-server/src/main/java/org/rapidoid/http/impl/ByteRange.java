@@ -0,0 +1,110 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.u.U;
+
+/**
+ * A single byte range, requested with the <code>Range</code> HTTP header, e.g. <code>bytes=0-499</code>,
+ * <code>bytes=500-</code> or <code>bytes=-500</code> (the last 500 bytes).
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class ByteRange extends RapidoidThing {
+
+    public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    public final long first;
+
+    public final long last;
+
+    private ByteRange(long first, long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    public long length() {
+        return last - first + 1;
+    }
+
+    /**
+     * Parses the range of the resource with the specified size. Returns <code>null</code> if the range should be
+     * ignored (i.e. the whole resource is served), e.g. if it is malformed, or if multiple ranges were requested.
+     */
+    public static ByteRange parse(String header, long size) {
+        if (header == null) return null;
+
+        header = header.trim();
+        if (!header.startsWith(BYTES_UNIT) || header.indexOf(',') >= 0) return null;
+
+        String spec = header.substring(BYTES_UNIT.length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+
+        long first = num(spec.substring(0, dash));
+        long last = num(spec.substring(dash + 1));
+
+        if (dash == 0) {
+            // suffix range, e.g. bytes=-500
+            if (last < 0) return null;
+            if (last == 0 || size == 0) return UNSATISFIABLE;
+
+            return new ByteRange(Math.max(size - last, 0), size - 1);
+        }
+
+        if (first < 0) return null;
+        if (dash < spec.length() - 1 && (last < 0 || last < first)) return null;
+
+        if (first >= size) return UNSATISFIABLE;
+
+        last = dash == spec.length() - 1 ? size - 1 : Math.min(last, size - 1);
+
+        return new ByteRange(first, last);
+    }
+
+    private static long num(String s) {
+        if (s.isEmpty()) return -1;
+
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) return -1;
+        }
+
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public String contentRange(long size) {
+        return U.frmt("bytes %s-%s/%s", first, last, size);
+    }
+
+    @Override
+    public String toString() {
+        return U.frmt("ByteRange(%s-%s)", first, last);
+    }
+}
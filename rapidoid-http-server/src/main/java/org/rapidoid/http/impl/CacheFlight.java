@@ -0,0 +1,90 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.u.U;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The computation of a cacheable response that is in progress (single-flight). The concurrent requests for the same
+ * response wait for it, instead of computing the same response, and they are resumed when it is finished. The
+ * waiting is bounded by http.cacheFlightTimeout, after which a waiting request is handled by its own handler.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class CacheFlight extends RapidoidThing {
+
+    // guarded by this
+    private final List<ReqImpl> followers = U.list();
+
+    // guarded by this
+    private boolean finished;
+
+    /**
+     * Adds the request to the waiting requests. Returns false if the computation already finished.
+     */
+    public synchronized boolean join(ReqImpl req) {
+        if (finished) return false;
+
+        followers.add(req);
+        return true;
+    }
+
+    /**
+     * Removes the request from the waiting requests, e.g. when it stopped waiting. Returns false if the request was
+     * already handed over to be resumed, because the computation finished.
+     */
+    public synchronized boolean leave(ReqImpl req) {
+        return followers.remove(req);
+    }
+
+    /**
+     * Marks the computation as finished, and returns the requests that were waiting for it.
+     */
+    public synchronized List<ReqImpl> finish() {
+        finished = true;
+
+        if (followers.isEmpty()) return Collections.emptyList();
+
+        List<ReqImpl> waiting = U.list(followers);
+        followers.clear();
+
+        return waiting;
+    }
+
+    public synchronized int waiting() {
+        return followers.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CacheFlight{" +
+                "waiting=" + followers.size() +
+                ", finished=" + finished +
+                '}';
+    }
+
+}
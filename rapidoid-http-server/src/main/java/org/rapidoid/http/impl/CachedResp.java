@@ -23,11 +23,17 @@ package org.rapidoid.http.impl;
 import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.SlabAllocator;
 import org.rapidoid.http.MediaType;
 
 import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * A cached response of a route. It is fresh until it expires, and then it can still be served (stale) for a while,
+ * until it is refreshed by one of the requests (stale-while-revalidate).
+ */
 @Authors("Nikolche Mihajlovski")
 @Since("5.3.0")
 public class CachedResp extends RapidoidThing {
@@ -40,10 +46,61 @@ public class CachedResp extends RapidoidThing {
 
     public final ByteBuffer body;
 
+    public final String etag;
+
+    // the time (in ms) until the response is fresh
+    public final long expiresAt;
+
+    // the allocator of the body, if it was allocated in a slab
+    private final SlabAllocator allocator;
+
+    private final AtomicBoolean revalidating = new AtomicBoolean();
+
     public CachedResp(int statusCode, MediaType contentType, Map<String, String> headers, ByteBuffer body) {
+        this(statusCode, contentType, headers, body, null, Long.MAX_VALUE);
+    }
+
+    public CachedResp(int statusCode, MediaType contentType, Map<String, String> headers, ByteBuffer body,
+                      String etag, long expiresAt) {
+        this(statusCode, contentType, headers, body, etag, expiresAt, null);
+    }
+
+    public CachedResp(int statusCode, MediaType contentType, Map<String, String> headers, ByteBuffer body,
+                      String etag, long expiresAt, SlabAllocator allocator) {
         this.statusCode = statusCode;
         this.contentType = contentType;
         this.headers = headers;
         this.body = body;
+        this.etag = etag;
+        this.expiresAt = expiresAt;
+        this.allocator = allocator;
     }
+
+    public boolean isFresh(long now) {
+        return now < expiresAt;
+    }
+
+    /**
+     * Claims the refreshing of the stale response, only the first caller succeeds. The others keep serving the stale
+     * response in the meantime.
+     */
+    public boolean startRevalidation() {
+        return revalidating.compareAndSet(false, true);
+    }
+
+    /**
+     * Allows another request to refresh the stale response, if the previous attempt didn't cache a new response.
+     */
+    public void revalidationFailed() {
+        revalidating.set(false);
+    }
+
+    /**
+     * Releases the body when the response is removed from the cache, so its slab can be reclaimed. The requests that
+     * are still being served keep their own view of the body.
+     */
+    public void release() {
+        if (allocator != null) allocator.release(body);
+    }
+
 }
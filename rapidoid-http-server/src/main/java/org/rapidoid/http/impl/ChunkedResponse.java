@@ -22,6 +22,8 @@ package org.rapidoid.http.impl;
 
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
+import org.rapidoid.http.HttpHeaders;
+import org.rapidoid.u.U;
 import org.rapidoid.util.Once;
 import org.rapidoid.writable.ReusableWritable;
 
@@ -39,6 +41,11 @@ public class ChunkedResponse extends OutputStream {
 
     private volatile boolean closed;
 
+    // compresses the chunks, if the response is compressed
+    private Compressor compressor;
+
+    private final ReusableWritable compressed = new ReusableWritable();
+
     ChunkedResponse(RespImpl resp) {
         this.resp = resp;
     }
@@ -61,18 +68,80 @@ public class ChunkedResponse extends OutputStream {
     @Override
     public synchronized void flush() {
         // lazy init
-        if (startChunkedResp.go()) resp.startChunkedOutputStream();
+        if (startChunkedResp.go()) start();
 
         // the chunk must not be empty (empty chunk terminates the HTTP response)
         if (chunk.size() > 0) {
-            resp.chunk(chunk.array(), 0, chunk.size());
+
+            if (compressor != null) {
+                // everything written so far is flushed, so the client can decompress it as it arrives
+                compressor.write(chunk.array(), 0, chunk.size(), compressed);
+                compressor.flush(compressed);
+                sendCompressed();
+
+            } else {
+                resp.chunk(chunk.array(), 0, chunk.size());
+            }
+
             chunk.reset();
         }
     }
 
+    /**
+     * Sends the data as a separate chunk, after the data that was written so far.
+     */
+    synchronized void chunk(byte[] data) {
+        U.notNull(data, "data");
+
+        flush();
+
+        if (data.length > 0) {
+            if (compressor != null) {
+                compressor.write(data, 0, data.length, compressed);
+                compressor.flush(compressed);
+                sendCompressed();
+
+            } else {
+                resp.chunk(data, 0, data.length);
+            }
+        }
+    }
+
+    private void start() {
+        ReqImpl req = (ReqImpl) resp.request();
+        String encoding = HttpCompression.encodingFor(req, resp.code(), resp.contentType(), -1, resp.headers());
+
+        if (encoding != null) {
+            resp.header(HttpHeaders.CONTENT_ENCODING.name(), encoding);
+            resp.header(HttpHeaders.VARY.name(), HttpHeaders.ACCEPT_ENCODING.name());
+
+            compressor = HttpCompression.compressor(encoding);
+            compressor.start(compressed);
+        }
+
+        resp.startChunkedOutputStream();
+    }
+
+    private void sendCompressed() {
+        if (compressed.size() > 0) {
+            // the compression buffer is reused, so the chunk gets a copy
+            resp.chunk(compressed.copy(), 0, compressed.size());
+            compressed.reset();
+        }
+    }
+
     @Override
     public synchronized void close() {
         flush();
+
+        if (compressor != null) {
+            compressor.finish(compressed);
+            sendCompressed();
+
+            HttpCompression.release(compressor);
+            compressor = null;
+        }
+
         resp.terminatingChunk();
         closed = true;
     }
@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.writable.Writable;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses a response body in the gzip or deflate (zlib) format, as it is written. The compressors are pooled (see
+ * {@link HttpCompression#compressor(String)}), so their native deflaters are reused across the responses.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class Compressor extends RapidoidThing {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final String encoding;
+
+    private final boolean gzip;
+
+    private final Deflater deflater;
+
+    private final CRC32 crc = new CRC32();
+
+    private final byte[] buf = new byte[8 * 1024];
+
+    Compressor(String encoding, int level) {
+        this.encoding = encoding;
+        this.gzip = HttpCompression.GZIP.equals(encoding);
+
+        // gzip has its own header and trailer, around the raw deflate data
+        this.deflater = new Deflater(level, gzip);
+    }
+
+    public String encoding() {
+        return encoding;
+    }
+
+    public void start(Writable out) {
+        if (gzip) out.writeBytes(GZIP_HEADER);
+    }
+
+    public void write(byte[] src, int offset, int length, Writable out) {
+        if (length == 0) return;
+
+        if (gzip) crc.update(src, offset, length);
+
+        deflater.setInput(src, offset, length);
+
+        while (!deflater.needsInput()) {
+            deflate(out, Deflater.NO_FLUSH);
+        }
+    }
+
+    /**
+     * Writes out all the compressed data so far, so the receiver can decompress everything that was written.
+     */
+    public void flush(Writable out) {
+        int len;
+
+        do {
+            len = deflate(out, Deflater.SYNC_FLUSH);
+        } while (len == buf.length);
+    }
+
+    public void finish(Writable out) {
+        deflater.finish();
+
+        while (!deflater.finished()) {
+            deflate(out, Deflater.NO_FLUSH);
+        }
+
+        if (gzip) {
+            writeIntLE(out, (int) crc.getValue());
+            writeIntLE(out, (int) deflater.getBytesRead());
+        }
+    }
+
+    public void compress(byte[] src, int offset, int length, Writable out) {
+        start(out);
+        write(src, offset, length, out);
+        finish(out);
+    }
+
+    void reset() {
+        deflater.reset();
+        crc.reset();
+    }
+
+    /**
+     * Releases the native memory of the deflater, the compressor can't be used anymore.
+     */
+    void end() {
+        deflater.end();
+    }
+
+    private int deflate(Writable out, int flush) {
+        int len = deflater.deflate(buf, 0, buf.length, flush);
+
+        if (len > 0) out.writeBytes(buf, 0, len);
+
+        return len;
+    }
+
+    private static void writeIntLE(Writable out, int n) {
+        out.writeByte((byte) n);
+        out.writeByte((byte) (n >> 8));
+        out.writeByte((byte) (n >> 16));
+        out.writeByte((byte) (n >> 24));
+    }
+
+}
@@ -32,9 +32,25 @@ public class HTTPCacheKey extends RapidoidThing {
 
     private final String uri;
 
+    // the compressed variants of a response are cached separately
+    private final String encoding;
+
+    // the values of the request headers the response varies on (declared per route)
+    private final String vary;
+
     public HTTPCacheKey(String host, String uri) {
+        this(host, uri, null);
+    }
+
+    public HTTPCacheKey(String host, String uri, String encoding) {
+        this(host, uri, encoding, null);
+    }
+
+    public HTTPCacheKey(String host, String uri, String encoding, String vary) {
         this.host = host;
         this.uri = uri;
+        this.encoding = encoding;
+        this.vary = vary;
     }
 
     @Override
@@ -42,6 +58,8 @@ public class HTTPCacheKey extends RapidoidThing {
         return "HTTPCacheKey{" +
                 "host='" + host + '\'' +
                 ", uri='" + uri + '\'' +
+                ", encoding='" + encoding + '\'' +
+                ", vary='" + vary + '\'' +
                 '}';
     }
 
@@ -53,6 +71,8 @@ public class HTTPCacheKey extends RapidoidThing {
         HTTPCacheKey that = (HTTPCacheKey) o;
 
         if (host != null ? !host.equals(that.host) : that.host != null) return false;
+        if (encoding != null ? !encoding.equals(that.encoding) : that.encoding != null) return false;
+        if (vary != null ? !vary.equals(that.vary) : that.vary != null) return false;
         return uri != null ? uri.equals(that.uri) : that.uri == null;
     }
 
@@ -60,6 +80,8 @@ public class HTTPCacheKey extends RapidoidThing {
     public int hashCode() {
         int result = host != null ? host.hashCode() : 0;
         result = 31 * result + (uri != null ? uri.hashCode() : 0);
+        result = 31 * result + (encoding != null ? encoding.hashCode() : 0);
+        result = 31 * result + (vary != null ? vary.hashCode() : 0);
         return result;
     }
 
@@ -0,0 +1,200 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.config.Conf;
+import org.rapidoid.config.Config;
+import org.rapidoid.http.HttpHeaders;
+import org.rapidoid.http.MediaType;
+import org.rapidoid.http.Route;
+import org.rapidoid.http.RouteConfig;
+import org.rapidoid.pool.Pool;
+import org.rapidoid.pool.Pools;
+import org.rapidoid.u.U;
+
+import java.util.Map;
+
+/**
+ * The content negotiation and the configuration of the response compression.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HttpCompression extends RapidoidThing {
+
+    public static final String GZIP = "gzip";
+
+    public static final String DEFLATE = "deflate";
+
+    private static final Config CONFIG = Conf.HTTP.sub("compression");
+
+    private static final int LEVEL = CONFIG.entry("level").or(6);
+
+    private static final int MIN_SIZE = CONFIG.entry("minSize").or(1024);
+
+    private static final boolean PRECOMPRESSED = CONFIG.entry("precompressed").or(true);
+
+    private static final int POOL_SIZE = CONFIG.entry("poolSize").or(8);
+
+    // per thread (like the buffers of the I/O workers), so each thread takes the compressors from its own pool
+    private static final ThreadLocal<Pool<Compressor>> GZIP_COMPRESSORS = ThreadLocal.withInitial(() -> newPool(GZIP));
+
+    private static final ThreadLocal<Pool<Compressor>> DEFLATE_COMPRESSORS = ThreadLocal.withInitial(() -> newPool(DEFLATE));
+
+    /**
+     * Picks the preferred encoding that is supported by both sides (gzip over deflate, on equal quality), or null.
+     */
+    public static String negotiate(String acceptEncoding) {
+        if (U.isEmpty(acceptEncoding)) return null;
+
+        double[] q = qualities(acceptEncoding);
+        double gzip = q[0], deflate = q[1];
+
+        if (gzip > 0 && gzip >= deflate) return GZIP;
+        if (deflate > 0) return DEFLATE;
+
+        return null;
+    }
+
+    public static boolean acceptsGzip(String acceptEncoding) {
+        return U.notEmpty(acceptEncoding) && qualities(acceptEncoding)[0] > 0;
+    }
+
+    /**
+     * Parses the quality values of gzip and deflate (-1 if not acceptable) from the Accept-Encoding header.
+     */
+    private static double[] qualities(String acceptEncoding) {
+        double gzip = -1, deflate = -1, any = -1;
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase();
+            double q = 1;
+
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) q = quality(param.substring(2));
+            }
+
+            if (name.equals(GZIP) || name.equals("x-gzip")) {
+                gzip = q;
+            } else if (name.equals(DEFLATE)) {
+                deflate = q;
+            } else if (name.equals("*")) {
+                any = q;
+            }
+        }
+
+        if (gzip < 0) gzip = any;
+        if (deflate < 0) deflate = any;
+
+        return new double[]{gzip, deflate};
+    }
+
+    private static double quality(String q) {
+        try {
+            return Double.parseDouble(q.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public static boolean isCompressible(MediaType contentType) {
+        String type = new String(contentType.getBytes()).toLowerCase();
+
+        int paramsPos = type.indexOf(';');
+        if (paramsPos >= 0) type = type.substring(0, paramsPos).trim();
+
+        return type.startsWith("text/")
+                || type.endsWith("/json") || type.endsWith("+json")
+                || type.endsWith("/xml") || type.endsWith("+xml")
+                || type.endsWith("/javascript") || type.endsWith("/x-javascript");
+    }
+
+    /**
+     * Decides how to encode the response of the request, if the route is configured for compression. The length of
+     * the body is negative if it isn't known in advance (e.g. for the chunked responses).
+     */
+    public static String encodingFor(ReqImpl req, int code, MediaType contentType, long length, Map<String, String> headers) {
+        if (req == null || req.cached()) return null;
+
+        Route route = req.route();
+        if (route == null) return null;
+
+        RouteConfig config = route.config();
+        if (config == null || !config.compress()) return null;
+
+        if (code < 200 || code == 204 || code == 304) return null;
+
+        int minSize = config.compressMinSize() > 0 ? config.compressMinSize() : MIN_SIZE;
+        if (length >= 0 && length < minSize) return null;
+
+        if (contentType == null || !isCompressible(contentType)) return null;
+
+        if (headers != null) {
+            for (String header : headers.keySet()) {
+                // the handler has already encoded the body
+                if (header.equalsIgnoreCase(HttpHeaders.CONTENT_ENCODING.name())) return null;
+            }
+        }
+
+        return req.acceptedEncoding();
+    }
+
+    /**
+     * Whether to serve the precompressed (.gz) siblings of the static files.
+     */
+    public static boolean precompressed() {
+        return PRECOMPRESSED;
+    }
+
+    public static Compressor compressor(String encoding) {
+        return pool(encoding).get();
+    }
+
+    public static void release(Compressor compressor) {
+        compressor.reset();
+        pool(compressor.encoding()).release(compressor);
+    }
+
+    private static Pool<Compressor> pool(String encoding) {
+        switch (encoding) {
+            case GZIP:
+                return GZIP_COMPRESSORS.get();
+
+            case DEFLATE:
+                return DEFLATE_COMPRESSORS.get();
+
+            default:
+                throw U.rte("Unsupported content encoding: %s", encoding);
+        }
+    }
+
+    private static Pool<Compressor> newPool(String encoding) {
+        String name = encoding + "-compressors:" + Thread.currentThread().getName();
+
+        // the native memory of the compressors that aren't retained by the pool is released immediately, not by the GC
+        return Pools.create(name, () -> new Compressor(encoding, LEVEL), POOL_SIZE, Compressor::end);
+    }
+
+}
@@ -67,6 +67,8 @@ public class HttpParser extends RapidoidThing {
 
     private static final byte[] CONTENT_TYPE = "Content-Type".getBytes();
 
+    private static final byte[] CONTENT_TYPE_HDR = "Content-Type:".getBytes();
+
     private static final byte[] CONTENT_DISPOSITION = "Content-Disposition".getBytes();
 
     private static final byte[] FORM_DATA = "form-data;".getBytes();
@@ -91,7 +93,162 @@ public class HttpParser extends RapidoidThing {
 
     private static final byte[] GET = "GET".getBytes();
 
+    /**
+     * Makes sure the whole request was received, or throws {@link Buf#INCOMPLETE_READ} otherwise. The progress is kept
+     * between the reads, so only the newly received bytes are scanned. If streaming is enabled, the large bodies are
+     * streamed (and removed from the input) as they arrive, see {@link HttpReadProgress#shouldStream(boolean)}.
+     */
+    public void awaitRequest(Buf buf, RapidoidHelper helper, HttpReadProgress progress, boolean streaming) {
+
+        if (progress.complete) progress.reset();
+
+        Bytes bytes = buf.bytes();
+        int start = buf.position();
+        int size = buf.size();
+
+        if (progress.headersEnd < 0) {
+            int end = findHeadersEnd(bytes, start, start + Math.max(progress.scanned - 3, 0), size);
+
+            if (end < 0) {
+                progress.scanned = size - start;
+                throw Buf.INCOMPLETE_READ;
+            }
+
+            progress.headersEnd = end - start;
+
+            BufRanges lines = helper.ranges2.reset();
+            BytesUtil.parseLines(bytes, lines, start, end);
+
+            progress.contentLength = requestContentLength(buf, helper, lines, start, end);
+            byte[] boundary = progress.contentLength > 0 ? multipartBoundary(buf, lines) : null;
+
+            if (streaming && progress.shouldStream(boundary != null)) {
+                int verbEnd = indexOf(bytes, SPACE, start, end);
+                int uriEnd = indexOf(bytes, SPACE, verbEnd + 1, end);
+                U.must(verbEnd > 0 && uriEnd > 0, "Invalid HTTP request line!");
+
+                progress.startStreaming(BytesUtil.get(bytes, BufRange.fromTo(start, verbEnd)),
+                        BytesUtil.get(bytes, BufRange.fromTo(verbEnd + 1, uriEnd)), boundary);
+            }
+
+            if (progress.tooLarge) {
+                progress.complete = true;
+                return;
+            }
+        }
+
+        int bodyStart = start + progress.headersEnd;
+
+        if (progress.streamed) {
+            int available = size - bodyStart;
+            int len = (int) Math.min(available, progress.remaining);
+
+            if (len > 0) {
+                progress.stream(buf, bodyStart, len);
+
+                // keep the beginning of the next (pipelined) request, if any
+                byte[] next = null;
+
+                if (available > len) {
+                    next = new byte[available - len];
+                    buf.get(new BufRange(bodyStart + len, next.length), next, 0);
+                }
+
+                buf.deleteAfter(bodyStart);
+
+                if (next != null) buf.append(next);
+            }
+
+            if (progress.tooLarge) {
+                progress.complete = true;
+                return;
+            }
+
+            if (progress.remaining > 0) throw Buf.INCOMPLETE_READ;
+
+            progress.finishStreaming();
+
+        } else if (size - bodyStart < progress.contentLength) {
+            throw Buf.INCOMPLETE_READ;
+        }
+
+        progress.complete = true;
+    }
+
+    private static int findHeadersEnd(Bytes bytes, int start, int from, int limit) {
+        for (int i = Math.max(from, start + 1); i < limit; i++) {
+            if (bytes.get(i) == LF) {
+                byte prev = bytes.get(i - 1);
+
+                if (prev == LF || (prev == CR && i - 2 >= start && bytes.get(i - 2) == LF)) {
+                    return i + 1;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    private static int indexOf(Bytes bytes, byte value, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (bytes.get(i) == value) return i;
+        }
+
+        return -1;
+    }
+
+    private long requestContentLength(Buf buf, RapidoidHelper helper, BufRanges lines, int start, int end) {
+        Bytes bytes = buf.bytes();
+
+        // the body of GET requests is ignored
+        if (end - start > GET.length && BytesUtil.startsWith(bytes, BufRange.fromTo(start, end), GET, true)
+                && bytes.get(start + GET.length) == SPACE) {
+            return 0;
+        }
+
+        BufRange clen = lines.getByPrefix(bytes, CONTENT_LENGTH, false);
+        if (clen == null) return 0;
+
+        BufRange clenValue = helper.ranges5.ranges[helper.ranges5.ranges.length - 1];
+        clenValue.setInterval(clen.start + CONTENT_LENGTH.length, clen.limit());
+        BytesUtil.trim(bytes, clenValue);
+
+        long len = buf.getN(clenValue);
+        U.must(len >= 0 && len <= Integer.MAX_VALUE, "Invalid body size!");
+
+        return len;
+    }
+
+    private byte[] multipartBoundary(Buf buf, BufRanges lines) {
+        BufRange ctype = lines.getByPrefix(buf.bytes(), CONTENT_TYPE_HDR, false);
+        if (ctype == null) return null;
+
+        String contentType = buf.get(ctype).substring(CONTENT_TYPE_HDR.length).trim();
+        if (!contentType.toLowerCase().startsWith("multipart/form-data")) return null;
+
+        for (String param : contentType.split(";")) {
+            param = param.trim();
+
+            if (param.startsWith("boundary=")) {
+                String boundary = param.substring("boundary=".length());
+
+                if (boundary.length() >= 2 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+                    boundary = boundary.substring(1, boundary.length() - 1);
+                }
+
+                return boundary.isEmpty() ? null : boundary.getBytes();
+            }
+        }
+
+        // the boundary will be detected from the buffered body
+        return null;
+    }
+
     public void parse(Buf buf, RapidoidHelper helper) {
+        parse(buf, helper, false);
+    }
+
+    public void parse(Buf buf, RapidoidHelper helper, boolean bodyStreamed) {
 
         Bytes bytes = buf.bytes();
 
@@ -108,7 +265,11 @@ public class HttpParser extends RapidoidThing {
 
         helper.isGet.value = BytesUtil.matches(bytes, helper.verb, GET, true);
         if (!helper.isGet.value) {
-            parseBody(buf, helper);
+            if (bodyStreamed) {
+                helper.body.reset();
+            } else {
+                parseBody(buf, helper);
+            }
         }
     }
 
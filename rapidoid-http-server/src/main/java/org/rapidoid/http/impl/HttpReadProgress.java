@@ -0,0 +1,256 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.Buf;
+import org.rapidoid.config.Conf;
+import org.rapidoid.http.customize.RequestBodySink;
+import org.rapidoid.io.IO;
+import org.rapidoid.log.Log;
+import org.rapidoid.net.abstracts.Channel;
+import org.rapidoid.net.impl.ConnState;
+import org.rapidoid.setup.My;
+import org.rapidoid.u.U;
+import org.rapidoid.util.Resetable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The progress of reading a HTTP request on a connection, kept in {@link ConnState#progress} between the reads, so
+ * the request bytes are scanned only once. The positions are relative to the start of the request.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HttpReadProgress extends RapidoidThing implements Resetable {
+
+    // the configuration is read once per connection (the sizes are in KB)
+
+    private final long bodyStreamThreshold = 1024L * Conf.HTTP.entry("bodyStreamThreshold").or(0);
+
+    private final long uploadStreamThreshold = 1024L * Conf.HTTP.sub("upload").entry("streamThreshold").or(0);
+
+    private final long uploadSpillThreshold = 1024L * Conf.HTTP.sub("upload").entry("spillThreshold").or(256);
+
+    private final long maxUploadSize = 1024L * Conf.HTTP.sub("upload").entry("maxSize").or(0);
+
+    private final long maxUploadPartSize = 1024L * Conf.HTTP.sub("upload").entry("maxPartSize").or(0);
+
+    // how many bytes were already searched for the end of the headers
+    int scanned;
+
+    // the position after the empty line that ends the headers, or -1 if not received yet
+    int headersEnd = -1;
+
+    long contentLength;
+
+    // how many body bytes are still to be streamed
+    long remaining;
+
+    boolean streamed;
+
+    boolean complete;
+
+    // the request was rejected, because the body is too large
+    boolean tooLarge;
+
+    private WritableByteChannel sink;
+
+    private File file;
+
+    private MultipartStream multipart;
+
+    public static HttpReadProgress of(Channel channel) {
+        ConnState state = channel.state();
+        Object progress = state.progress;
+
+        if (progress instanceof HttpReadProgress) return (HttpReadProgress) progress;
+
+        HttpReadProgress readProgress = new HttpReadProgress();
+        state.progress = readProgress;
+
+        return readProgress;
+    }
+
+    /**
+     * Takes over the temporary file with the streamed body of the last completed request, if any.
+     */
+    public static File takeBodyFile(Channel channel) {
+        Object progress = channel.state().progress;
+
+        if (progress instanceof HttpReadProgress) {
+            HttpReadProgress readProgress = (HttpReadProgress) progress;
+
+            if (readProgress.complete) {
+                File file = readProgress.file;
+                readProgress.file = null;
+                return file;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Takes over the parsed multipart body of the last completed request, if it was streamed.
+     */
+    public static MultipartStream takeMultipart(Channel channel) {
+        Object progress = channel.state().progress;
+
+        if (progress instanceof HttpReadProgress) {
+            HttpReadProgress readProgress = (HttpReadProgress) progress;
+
+            if (readProgress.complete) {
+                MultipartStream multipart = readProgress.multipart;
+                readProgress.multipart = null;
+                return multipart;
+            }
+        }
+
+        return null;
+    }
+
+    public boolean isBodyStreamed() {
+        return streamed;
+    }
+
+    public boolean isTooLarge() {
+        return tooLarge;
+    }
+
+    /**
+     * Decides if the body should be streamed, and the request rejected if it is too large, as soon as the size is
+     * known (before the body is received).
+     */
+    boolean shouldStream(boolean isMultipart) {
+        if (isMultipart) {
+            if (maxUploadSize > 0 && contentLength > maxUploadSize) {
+                tooLarge = true;
+                return false;
+            }
+
+            // opt-in, the part limit can be enforced only on streamed bodies
+            if (uploadStreamThreshold > 0) {
+                long threshold = maxUploadPartSize > 0 ? Math.min(uploadStreamThreshold, maxUploadPartSize) : uploadStreamThreshold;
+                if (contentLength > threshold) return true;
+            }
+        }
+
+        return bodyStreamThreshold > 0 && contentLength > bodyStreamThreshold;
+    }
+
+    void startStreaming(String verb, String uri, byte[] multipartBoundary) {
+        U.must(sink == null, "The request body is already being streamed!");
+
+        streamed = true;
+        remaining = contentLength;
+
+        try {
+            OutputStream out = null;
+
+            if (bodyStreamThreshold > 0 && contentLength > bodyStreamThreshold) {
+                RequestBodySink bodySink = My.custom().requestBodySink();
+                out = bodySink != null ? bodySink.open(verb, uri, contentLength) : null;
+            }
+
+            if (out != null) {
+                sink = Channels.newChannel(out);
+
+            } else if (multipartBoundary != null) {
+                multipart = new MultipartStream(multipartBoundary, maxUploadPartSize, uploadSpillThreshold);
+                sink = multipart;
+
+            } else {
+                file = File.createTempFile("rapidoid-body-", ".tmp");
+                sink = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+            }
+
+        } catch (Exception e) {
+            throw U.rte("Couldn't open the sink for the request body!", e);
+        }
+    }
+
+    void stream(Buf buf, int from, int length) {
+        try {
+            int pos = from;
+            int end = from + length;
+
+            while (pos < end) {
+                pos += buf.writeTo(sink, pos, end - pos);
+            }
+
+        } catch (IOException e) {
+            throw U.rte("Couldn't stream the request body!", e);
+        }
+
+        remaining -= length;
+
+        if (multipart != null && multipart.limitExceeded()) {
+            tooLarge = true;
+        }
+    }
+
+    void finishStreaming() {
+        try {
+            sink.close();
+        } catch (IOException e) {
+            throw U.rte("Couldn't close the sink of the request body!", e);
+        } finally {
+            sink = null;
+        }
+    }
+
+    @Override
+    public void reset() {
+        if (sink != null) {
+            IO.close(sink, true);
+            sink = null;
+        }
+
+        // the streamed body wasn't taken by a request
+        if (multipart != null) {
+            multipart.discard();
+            multipart = null;
+        }
+
+        if (file != null) {
+            if (!file.delete()) Log.warn("Couldn't delete the temporary request body file!", "file", file);
+            file = null;
+        }
+
+        scanned = 0;
+        headersEnd = -1;
+        contentLength = 0;
+        remaining = 0;
+        streamed = false;
+        complete = false;
+        tooLarge = false;
+    }
+
+}
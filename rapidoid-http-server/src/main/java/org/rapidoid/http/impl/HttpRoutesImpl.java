@@ -25,12 +25,9 @@ import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
 import org.rapidoid.buffer.Buf;
-import org.rapidoid.bufstruct.BufMap;
-import org.rapidoid.bufstruct.BufMapImpl;
 import org.rapidoid.bytes.Bytes;
 import org.rapidoid.bytes.BytesUtil;
 import org.rapidoid.collection.Coll;
-import org.rapidoid.commons.Err;
 import org.rapidoid.commons.Str;
 import org.rapidoid.data.BufRange;
 import org.rapidoid.env.Env;
@@ -65,32 +62,11 @@ public class HttpRoutesImpl extends RapidoidThing implements HttpRoutes {
     private static final byte[] _HEAD = Constants.HEAD.getBytes();
     private static final byte[] _TRACE = Constants.TRACE.getBytes();
 
-    final BufMap<HttpHandler> getHandlers = new BufMapImpl<>();
-    final BufMap<HttpHandler> postHandlers = new BufMapImpl<>();
-    final BufMap<HttpHandler> putHandlers = new BufMapImpl<>();
-    final BufMap<HttpHandler> deleteHandlers = new BufMapImpl<>();
-    final BufMap<HttpHandler> patchHandlers = new BufMapImpl<>();
-    final BufMap<HttpHandler> optionsHandlers = new BufMapImpl<>();
-    final BufMap<HttpHandler> headHandlers = new BufMapImpl<>();
-    final BufMap<HttpHandler> traceHandlers = new BufMapImpl<>();
-    final BufMap<HttpHandler> anyHandlers = new BufMapImpl<>();
-
-    final Map<PathPattern, HttpHandler> patternGetHandlers = new TreeMap<>();
-    final Map<PathPattern, HttpHandler> patternPostHandlers = new TreeMap<>();
-    final Map<PathPattern, HttpHandler> patternPutHandlers = new TreeMap<>();
-    final Map<PathPattern, HttpHandler> patternDeleteHandlers = new TreeMap<>();
-    final Map<PathPattern, HttpHandler> patternPatchHandlers = new TreeMap<>();
-    final Map<PathPattern, HttpHandler> patternOptionsHandlers = new TreeMap<>();
-    final Map<PathPattern, HttpHandler> patternHeadHandlers = new TreeMap<>();
-    final Map<PathPattern, HttpHandler> patternTraceHandlers = new TreeMap<>();
-    final Map<PathPattern, HttpHandler> patternAnyHandlers = new TreeMap<>();
-
     private final long id;
     private final String setupName;
     private final Customization customization;
 
-    private volatile byte[] path1, path2, path3;
-    private volatile HttpHandler handler1, handler2, handler3;
+    private volatile RouteTable table = RouteTable.EMPTY;
 
     final List<HttpHandler> genericHandlers = Coll.synchronizedList();
 
@@ -116,205 +92,29 @@ public class HttpRoutesImpl extends RapidoidThing implements HttpRoutes {
     }
 
     private void register(HttpVerb verb, String path, HttpHandler handler) {
-        boolean isPattern = PathPattern.isPattern(path);
-        PathPattern pathPattern = isPattern ? PathPattern.from(path) : null;
+        if (PathPattern.isPattern(path)) {
+            PathPattern.from(path); // validate the path pattern
+        }
 
         RouteImpl route = new RouteImpl(verb, path, handler, handler.options());
         handler.setRoute(route);
         routes.add(route);
 
-        switch (verb) {
-            case GET:
-                if (!isPattern) {
-                    if (path1 == null) {
-                        path1 = path.getBytes();
-                        handler1 = handler;
-
-                    } else if (path2 == null) {
-                        path2 = path.getBytes();
-                        handler2 = handler;
-
-                    } else if (path3 == null) {
-                        path3 = path.getBytes();
-                        handler3 = handler;
-
-                    } else {
-                        getHandlers.put(path, handler);
-                    }
-                } else {
-                    patternGetHandlers.put(pathPattern, handler);
-                }
-                break;
-
-            case POST:
-                if (!isPattern) {
-                    postHandlers.put(path, handler);
-                } else {
-                    patternPostHandlers.put(pathPattern, handler);
-                }
-                break;
-
-            case PUT:
-                if (!isPattern) {
-                    putHandlers.put(path, handler);
-                } else {
-                    patternPutHandlers.put(pathPattern, handler);
-                }
-                break;
-
-            case DELETE:
-                if (!isPattern) {
-                    deleteHandlers.put(path, handler);
-                } else {
-                    patternDeleteHandlers.put(pathPattern, handler);
-                }
-                break;
-
-            case PATCH:
-                if (!isPattern) {
-                    patchHandlers.put(path, handler);
-                } else {
-                    patternPatchHandlers.put(pathPattern, handler);
-                }
-                break;
-
-            case OPTIONS:
-                if (!isPattern) {
-                    optionsHandlers.put(path, handler);
-                } else {
-                    patternOptionsHandlers.put(pathPattern, handler);
-                }
-                break;
-
-            case HEAD:
-                if (!isPattern) {
-                    headHandlers.put(path, handler);
-                } else {
-                    patternHeadHandlers.put(pathPattern, handler);
-                }
-                break;
-
-            case TRACE:
-                if (!isPattern) {
-                    traceHandlers.put(path, handler);
-                } else {
-                    patternTraceHandlers.put(pathPattern, handler);
-                }
-                break;
-
-            case ANY:
-                if (!isPattern) {
-                    anyHandlers.put(path, handler);
-                } else {
-                    patternAnyHandlers.put(pathPattern, handler);
-                }
-                break;
-
-            default:
-                throw Err.notExpected();
-        }
-
         notifyChanged();
     }
 
     private void deregister(HttpVerb verb, String path) {
-        boolean isPattern = PathPattern.isPattern(path);
-        PathPattern pathPattern = isPattern ? PathPattern.from(path) : null;
-
         routes.remove(RouteImpl.matching(verb, path));
-
-        switch (verb) {
-            case GET:
-                if (!isPattern) {
-                    if (path1 != null && new String(path1).equals(path)) {
-                        path1 = null;
-                    }
-
-                    if (path2 != null && new String(path2).equals(path)) {
-                        path2 = null;
-                    }
-
-                    if (path3 != null && new String(path3).equals(path)) {
-                        path3 = null;
-                    }
-
-                    getHandlers.remove(path);
-                } else {
-                    patternGetHandlers.remove(pathPattern);
-                }
-                break;
-
-            case POST:
-                if (!isPattern) {
-                    postHandlers.remove(path);
-                } else {
-                    patternPostHandlers.remove(pathPattern);
-                }
-                break;
-
-            case PUT:
-                if (!isPattern) {
-                    putHandlers.remove(path);
-                } else {
-                    patternPutHandlers.remove(pathPattern);
-                }
-                break;
-
-            case DELETE:
-                if (!isPattern) {
-                    deleteHandlers.remove(path);
-                } else {
-                    patternDeleteHandlers.remove(pathPattern);
-                }
-                break;
-
-            case PATCH:
-                if (!isPattern) {
-                    patchHandlers.remove(path);
-                } else {
-                    patternPatchHandlers.remove(pathPattern);
-                }
-                break;
-
-            case OPTIONS:
-                if (!isPattern) {
-                    optionsHandlers.remove(path);
-                } else {
-                    patternOptionsHandlers.remove(pathPattern);
-                }
-                break;
-
-            case HEAD:
-                if (!isPattern) {
-                    headHandlers.remove(path);
-                } else {
-                    patternHeadHandlers.remove(pathPattern);
-                }
-                break;
-
-            case TRACE:
-                if (!isPattern) {
-                    traceHandlers.remove(path);
-                } else {
-                    patternTraceHandlers.remove(pathPattern);
-                }
-                break;
-
-            case ANY:
-                if (!isPattern) {
-                    anyHandlers.remove(path);
-                } else {
-                    patternAnyHandlers.remove(pathPattern);
-                }
-                break;
-
-            default:
-                throw Err.notExpected();
-        }
-
         notifyChanged();
     }
 
+    /**
+     * Compiles a new snapshot of the routes, which atomically replaces the previous one (copy-on-write).
+     */
+    private void recompile() {
+        table = RouteTable.compile(routes);
+    }
+
     @Override
     public synchronized void addGenericHandler(HttpHandler handler) {
         Log.info("Registering generic handler", "!setup", setupName);
@@ -329,113 +129,36 @@ public class HttpRoutesImpl extends RapidoidThing implements HttpRoutes {
     }
 
     public HandlerMatch findHandler(Buf buf, boolean isGet, BufRange verb, BufRange path) {
-        Bytes bytes = buf.bytes();
-
-        if (isGet) {
-
-            if (path1 != null && BytesUtil.matches(bytes, path, path1, true)) {
-                return handler1;
-
-            } else if (path2 != null && BytesUtil.matches(bytes, path, path2, true)) {
-                return handler2;
-
-            } else if (path3 != null && BytesUtil.matches(bytes, path, path3, true)) {
-                return handler3;
+        HttpVerb httpVerb = isGet ? HttpVerb.GET : verbOf(buf.bytes(), verb);
 
-            } else {
-
-                HandlerMatch handler = getHandlers.get(buf, path);
-
-                if (handler == null) handler = anyHandlers.get(buf, path);
-                if (handler == null) handler = matchByPattern(patternGetHandlers, buf.get(path));
-
-                return handler;
-            }
-
-        } else if (BytesUtil.matches(bytes, verb, _POST, true)) {
-
-            HandlerMatch handler = postHandlers.get(buf, path);
+        return httpVerb != null ? table.find(httpVerb, buf.bytes(), path) : null;
+    }
 
-            if (handler == null) handler = anyHandlers.get(buf, path);
-            if (handler == null) handler = matchByPattern(patternPostHandlers, buf.get(path));
+    private static HttpVerb verbOf(Bytes bytes, BufRange verb) {
 
-            return handler;
+        if (BytesUtil.matches(bytes, verb, _POST, true)) {
+            return HttpVerb.POST;
 
         } else if (BytesUtil.matches(bytes, verb, _PUT, true)) {
-
-            HandlerMatch handler = putHandlers.get(buf, path);
-
-            if (handler == null) handler = anyHandlers.get(buf, path);
-            if (handler == null) handler = matchByPattern(patternPutHandlers, buf.get(path));
-
-            return handler;
+            return HttpVerb.PUT;
 
         } else if (BytesUtil.matches(bytes, verb, _DELETE, true)) {
-
-            HandlerMatch handler = deleteHandlers.get(buf, path);
-
-            if (handler == null) handler = anyHandlers.get(buf, path);
-            if (handler == null) handler = matchByPattern(patternDeleteHandlers, buf.get(path));
-
-            return handler;
+            return HttpVerb.DELETE;
 
         } else if (BytesUtil.matches(bytes, verb, _PATCH, true)) {
-
-            HandlerMatch handler = patchHandlers.get(buf, path);
-
-            if (handler == null) handler = anyHandlers.get(buf, path);
-            if (handler == null) handler = matchByPattern(patternPatchHandlers, buf.get(path));
-
-            return handler;
+            return HttpVerb.PATCH;
 
         } else if (BytesUtil.matches(bytes, verb, _OPTIONS, true)) {
-
-            HandlerMatch handler = optionsHandlers.get(buf, path);
-
-            if (handler == null) handler = anyHandlers.get(buf, path);
-            if (handler == null) handler = matchByPattern(patternOptionsHandlers, buf.get(path));
-
-            return handler;
+            return HttpVerb.OPTIONS;
 
         } else if (BytesUtil.matches(bytes, verb, _HEAD, true)) {
-
-            HandlerMatch handler = headHandlers.get(buf, path);
-
-            if (handler == null) handler = anyHandlers.get(buf, path);
-            if (handler == null) handler = matchByPattern(patternHeadHandlers, buf.get(path));
-
-            return handler;
+            return HttpVerb.HEAD;
 
         } else if (BytesUtil.matches(bytes, verb, _TRACE, true)) {
-
-            HandlerMatch handler = traceHandlers.get(buf, path);
-
-            if (handler == null) handler = anyHandlers.get(buf, path);
-            if (handler == null) handler = matchByPattern(patternTraceHandlers, buf.get(path));
-
-            return handler;
-        }
-
-        return null; // no handler
-    }
-
-    private HandlerMatch matchByPattern(Map<PathPattern, HttpHandler> handlers, String path) {
-        for (Map.Entry<PathPattern, HttpHandler> e : handlers.entrySet()) {
-
-            PathPattern pattern = e.getKey();
-            Map<String, String> params = pattern.match(path);
-
-            if (params != null) {
-                HttpHandler handler = e.getValue();
-                Route route = handler.getRoute();
-
-                return new HandlerMatchWithParams(handler, params, route);
-            }
+            return HttpVerb.TRACE;
         }
 
-        if (handlers != patternAnyHandlers) return matchByPattern(patternAnyHandlers, path);
-
-        return null;
+        return null; // unsupported verb
     }
 
     @Override
@@ -501,6 +224,7 @@ public class HttpRoutesImpl extends RapidoidThing implements HttpRoutes {
             }
         }
 
+        recompile();
         notifyChanged();
     }
 
@@ -520,30 +244,12 @@ public class HttpRoutesImpl extends RapidoidThing implements HttpRoutes {
 
     @Override
     public synchronized void reset() {
-        path1 = path2 = path3 = null;
-        handler1 = handler2 = handler3 = null;
-
-        getHandlers.clear();
-        postHandlers.clear();
-        putHandlers.clear();
-        deleteHandlers.clear();
-        optionsHandlers.clear();
-        anyHandlers.clear();
         genericHandlers.clear();
 
-        patternGetHandlers.clear();
-        patternPostHandlers.clear();
-        patternPutHandlers.clear();
-        patternDeleteHandlers.clear();
-        patternPatchHandlers.clear();
-        patternOptionsHandlers.clear();
-        patternHeadHandlers.clear();
-        patternTraceHandlers.clear();
-        patternAnyHandlers.clear();
-
         staticResourcesHandler = new StaticResourcesHandler(customization);
 
         routes.clear();
+        recompile();
 
         initialized = false;
         onInit = null;
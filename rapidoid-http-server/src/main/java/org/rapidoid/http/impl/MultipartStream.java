@@ -0,0 +1,445 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.collection.Coll;
+import org.rapidoid.commons.Str;
+import org.rapidoid.commons.URIs;
+import org.rapidoid.data.JSON;
+import org.rapidoid.io.IO;
+import org.rapidoid.io.Upload;
+import org.rapidoid.log.Log;
+import org.rapidoid.u.U;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses a <code>multipart/form-data</code> body as it arrives, chunk by chunk. The posted data and small files are
+ * kept in memory, while the files larger than the spill threshold are written to temporary files.
+ * <p>
+ * http://www.w3.org/TR/html401/interact/forms.html#h-17.13.4.2
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class MultipartStream extends RapidoidThing implements WritableByteChannel {
+
+    private static final int MAX_HEADERS_SIZE = 16 * 1024;
+
+    private enum State {
+        BODY, AFTER_DELIMITER, HEADERS, DONE
+    }
+
+    // CRLF + "--" + boundary
+    private final byte[] delimiter;
+
+    private final long maxPartSize;
+
+    private final long spillThreshold;
+
+    private final byte[] transfer = new byte[8 * 1024];
+
+    private final ByteArrayOutputStream headers = new ByteArrayOutputStream();
+
+    private final Map<String, Object> posted = U.map();
+
+    private final Map<String, List<Upload>> files = Coll.mapOfLists();
+
+    private final List<File> tempFiles = U.list();
+
+    private State state = State.BODY;
+
+    // how many bytes of the delimiter were matched so far (the first CRLF is implied before the first delimiter)
+    private int matched = 2;
+
+    private byte prev;
+
+    private Part part;
+
+    private boolean limitExceeded;
+
+    private boolean open = true;
+
+    public MultipartStream(byte[] boundary, long maxPartSize, long spillThreshold) {
+        this.delimiter = new byte[boundary.length + 4];
+        this.maxPartSize = maxPartSize;
+        this.spillThreshold = spillThreshold;
+
+        delimiter[0] = '\r';
+        delimiter[1] = '\n';
+        delimiter[2] = '-';
+        delimiter[3] = '-';
+        System.arraycopy(boundary, 0, delimiter, 4, boundary.length);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int from = src.position();
+        int end = src.limit();
+        int pos = from;
+
+        while (pos < end && !limitExceeded) {
+            switch (state) {
+                case BODY:
+                    pos = scanBody(src, pos, end);
+                    break;
+
+                case AFTER_DELIMITER:
+                    afterDelimiter(src.get(pos++));
+                    break;
+
+                case HEADERS:
+                    header(src.get(pos++));
+                    break;
+
+                case DONE:
+                    // the epilogue is ignored
+                    pos = end;
+                    break;
+            }
+        }
+
+        src.position(end);
+        return end - from;
+    }
+
+    private int scanBody(ByteBuffer src, int from, int end) throws IOException {
+        for (int i = from; i < end; i++) {
+            byte b = src.get(i);
+
+            if (b == delimiter[matched]) {
+                matched++;
+
+                if (matched == delimiter.length) {
+                    int matchStart = i + 1 - matched;
+                    if (matchStart > from) data(src, from, matchStart);
+
+                    matched = 0;
+                    endPart();
+
+                    state = State.AFTER_DELIMITER;
+                    prev = 0;
+
+                    return i + 1;
+                }
+
+            } else if (matched > 0) {
+                // the beginning of the partial match from the previous chunks wasn't data yet
+                int carried = from - (i - matched);
+                if (carried > 0) data(delimiter, carried);
+
+                // the CR occurs only at the start of the delimiter
+                matched = b == delimiter[0] ? 1 : 0;
+            }
+        }
+
+        // the partial match at the end of the chunk might turn out to be data
+        int partial = Math.min(matched, end - from);
+        if (end - partial > from) data(src, from, end - partial);
+
+        return end;
+    }
+
+    private void afterDelimiter(byte b) {
+        if (b == '-' && prev == '-') {
+            state = State.DONE;
+
+        } else if (b == '\n') {
+            state = State.HEADERS;
+            headers.reset();
+
+        } else {
+            U.must(b == '-' || b == '\r' || b == ' ' || b == '\t', "Invalid multipart delimiter!");
+            prev = b;
+        }
+    }
+
+    private void header(byte b) {
+        headers.write(b);
+
+        int size = headers.size();
+        U.must(size <= MAX_HEADERS_SIZE, "The multipart headers are too large!");
+
+        if (b == '\n') {
+            byte[] bytes = headers.toByteArray();
+
+            boolean noHeaders = size == 2 && bytes[0] == '\r';
+            boolean emptyLine = size >= 4 && bytes[size - 2] == '\r' && bytes[size - 3] == '\n';
+
+            if (noHeaders || emptyLine) {
+                startPart(new String(bytes));
+                state = State.BODY;
+                matched = 0;
+            }
+        }
+    }
+
+    private void startPart(String headers) {
+        String disposition = null;
+        String contentType = null;
+
+        for (String line : headers.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) continue;
+
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+
+            if (name.equalsIgnoreCase("Content-Disposition")) {
+                disposition = value;
+
+            } else if (name.equalsIgnoreCase("Content-Type")) {
+                contentType = value;
+            }
+        }
+
+        // only the form-data parts are supported, the other ones are ignored
+        if (disposition == null || !disposition.toLowerCase().startsWith("form-data")) {
+            part = null;
+            return;
+        }
+
+        String name = dispositionParam(disposition, "name");
+        U.must(name != null, "Unrecognized Content-disposition header!");
+
+        part = new Part(name, dispositionParam(disposition, "filename"), contentType);
+    }
+
+    private static String dispositionParam(String disposition, String param) {
+        for (String attr : disposition.split(";")) {
+            attr = attr.trim();
+
+            if (attr.startsWith(param + "=")) {
+                String value = attr.substring(param.length() + 1).trim();
+
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+
+                return value;
+            }
+        }
+
+        return null;
+    }
+
+    private void data(ByteBuffer src, int from, int to) throws IOException {
+        if (part == null) return;
+
+        if (!part.reserve(to - from)) return;
+
+        if (part.channel != null) {
+            ByteBuffer slice = src.duplicate();
+            slice.limit(to).position(from);
+
+            while (slice.hasRemaining()) {
+                part.channel.write(slice);
+            }
+
+        } else {
+            for (int pos = from; pos < to; ) {
+                int len = Math.min(to - pos, transfer.length);
+
+                for (int i = 0; i < len; i++) {
+                    transfer[i] = src.get(pos + i);
+                }
+
+                part.content.write(transfer, 0, len);
+                pos += len;
+            }
+        }
+    }
+
+    private void data(byte[] bytes, int len) throws IOException {
+        if (part == null) return;
+
+        if (!part.reserve(len)) return;
+
+        if (part.channel != null) {
+            ByteBuffer buf = ByteBuffer.wrap(bytes, 0, len);
+
+            while (buf.hasRemaining()) {
+                part.channel.write(buf);
+            }
+
+        } else {
+            part.content.write(bytes, 0, len);
+        }
+    }
+
+    private void endPart() throws IOException {
+        Part part = this.part;
+        this.part = null;
+
+        if (part == null) return;
+
+        if (part.filename != null) {
+            Upload upload;
+
+            if (part.channel != null) {
+                part.channel.close();
+                upload = new Upload(part.filename, part.file, part.size);
+            } else {
+                upload = new Upload(part.filename, part.content.toByteArray());
+            }
+
+            files.get(part.name).add(upload);
+
+        } else {
+            addPosted(part);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addPosted(Part part) {
+        // consistent with the posted data of the buffered requests
+        String key = URIs.urlDecodeOrKeepOriginal(part.name);
+        String val = new String(part.content.toByteArray());
+
+        if (part.contentType != null && part.contentType.startsWith("application/json")) {
+            posted.put(key, JSON.parse(val));
+            return;
+        }
+
+        val = URIs.urlDecodeOrKeepOriginal(val);
+
+        if (key.endsWith("[]")) {
+            key = Str.sub(key, 0, -2);
+
+            List<String> list = (List<String>) posted.get(key);
+
+            if (list == null) {
+                list = U.list();
+                posted.put(key, list);
+            }
+
+            list.add(val);
+
+        } else {
+            posted.put(key, val);
+        }
+    }
+
+    public Map<String, Object> posted() {
+        return posted;
+    }
+
+    public Map<String, List<Upload>> files() {
+        return files;
+    }
+
+    /**
+     * Returns <code>true</code> if a part was larger than the limit, so the rest of the body was ignored.
+     */
+    public boolean limitExceeded() {
+        return limitExceeded;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        U.must(state == State.DONE, "Incomplete multipart body!");
+    }
+
+    /**
+     * Deletes the temporary files, in case the body won't be handled.
+     */
+    public void discard() {
+        open = false;
+
+        if (part != null && part.channel != null) {
+            IO.close(part.channel, true);
+        }
+
+        part = null;
+
+        for (File file : tempFiles) {
+            if (file.exists() && !file.delete()) {
+                Log.warn("Couldn't delete the temporary upload file!", "file", file);
+            }
+        }
+
+        tempFiles.clear();
+    }
+
+    private class Part {
+
+        final String name;
+
+        final String filename;
+
+        final String contentType;
+
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        File file;
+
+        FileChannel channel;
+
+        long size;
+
+        Part(String name, String filename, String contentType) {
+            this.name = name;
+            this.filename = filename;
+            this.contentType = contentType;
+        }
+
+        /**
+         * Checks the limits before the data is written, spilling the file to disk if needed.
+         */
+        boolean reserve(int len) throws IOException {
+            size += len;
+
+            if (maxPartSize > 0 && size > maxPartSize) {
+                limitExceeded = true;
+                discard();
+                return false;
+            }
+
+            if (filename != null && channel == null && size > spillThreshold) {
+                file = File.createTempFile("rapidoid-upload-", ".tmp");
+                tempFiles.add(file);
+
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+                channel.write(ByteBuffer.wrap(content.toByteArray()));
+                content.reset();
+            }
+
+            return true;
+        }
+    }
+
+}
@@ -24,6 +24,7 @@ import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
 import org.rapidoid.buffer.Buf;
+import org.rapidoid.buffer.SlabAllocator;
 import org.rapidoid.cache.Cache;
 import org.rapidoid.cls.Cls;
 import org.rapidoid.collection.ChangeTrackingMap;
@@ -35,7 +36,9 @@ import org.rapidoid.http.customize.Customization;
 import org.rapidoid.http.customize.HttpRequestBodyParser;
 import org.rapidoid.http.customize.SessionManager;
 import org.rapidoid.http.impl.lowlevel.HttpIO;
+import org.rapidoid.http.metrics.RouteMetrics;
 import org.rapidoid.io.Upload;
+import org.rapidoid.job.Jobs;
 import org.rapidoid.log.Log;
 import org.rapidoid.net.abstracts.Channel;
 import org.rapidoid.net.abstracts.IRequest;
@@ -43,11 +46,15 @@ import org.rapidoid.u.U;
 import org.rapidoid.util.Constants;
 import org.rapidoid.util.Msc;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
 
 @Authors("Nikolche Mihajlovski")
 @Since("5.0.2")
@@ -77,11 +84,17 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
 
     private volatile byte[] body;
 
-    private final Map<String, String> params;
+    private volatile File bodyFile;
 
-    private final Map<String, String> headers;
+    private volatile ReqInput input;
 
-    private final Map<String, String> cookies;
+    private final Map<String, String> pathParams;
+
+    private volatile Map<String, String> params;
+
+    private volatile Map<String, String> headers;
+
+    private volatile Map<String, String> cookies;
 
     private final Map<String, Object> posted;
 
@@ -101,6 +114,8 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
 
     private final AtomicBoolean sessionChanged = new AtomicBoolean();
 
+    private final AtomicBoolean sessionReleased = new AtomicBoolean();
+
     private volatile RespImpl response;
 
     private volatile boolean rendering;
@@ -129,20 +144,85 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
 
     private volatile boolean cached;
 
+    // the cached response bodies are long-lived, so they are copied into shared slabs
+    private static final SlabAllocator CACHE_ALLOCATOR = new SlabAllocator(1024 * 1024);
+
+    // the concurrent requests for the same response wait for this request to compute it
+    private volatile CacheFlight cacheFlight;
+
+    // the stale cached response that is being refreshed by this request
+    private volatile CachedResp revalidating;
+
+    private volatile boolean savedToCache;
+
+    // the response body is sent directly from a file, so it can't be cached from the output buffer
+    private volatile boolean bodyFromFile;
+
+    // the response body was streamed in chunks, so it isn't complete in the output buffer
+    private volatile boolean bodyStreamed;
+
+    private volatile String acceptedEncoding;
+
+    // the encoding of the response body, if it was compressed
+    private volatile String contentEncoding;
+
     private final long connId;
 
     private final long handle;
 
     private final long requestId;
 
+    // the timestamps (System.nanoTime) for the route metrics, 0 if not reached
+    private final long receivedAt = System.nanoTime();
+
+    private volatile long handlerStartedAt;
+
+    private volatile long handlerFinishedAt;
+
+    private volatile long renderStartedAt;
+
+    private volatile long bytesIn;
+
+    private volatile int responseCode;
+
+    private volatile long posBeforeResponse = UNDEFINED;
+
+    // the part of the response that is sent directly from a file, not through the output buffer
+    private volatile long bytesOutsideOutput;
+
+    private volatile boolean metricsRecorded;
+
     public ReqImpl(FastHttp http, Channel channel, boolean isKeepAlive, String verb, String uri, String path,
                    String query, byte[] body, Map<String, String> params, Map<String, String> headers,
                    Map<String, String> cookies, Map<String, Object> posted, Map<String, List<Upload>> files,
                    boolean pendingBodyParsing, MediaType defaultContentType, String zone, Route route) {
 
+        this(http, channel, isKeepAlive, null, null, posted, files, pendingBodyParsing, defaultContentType, zone,
+                route, verb, uri, path, query, body, params, headers, cookies);
+    }
+
+    /**
+     * Creates a request backed by the raw input, which is decoded on demand.
+     */
+    public ReqImpl(FastHttp http, Channel channel, boolean isKeepAlive, ReqInput input, Map<String, String> pathParams,
+                   Map<String, Object> posted, Map<String, List<Upload>> files, boolean pendingBodyParsing,
+                   MediaType defaultContentType, String zone, Route route) {
+
+        this(http, channel, isKeepAlive, input, pathParams, posted, files, pendingBodyParsing, defaultContentType,
+                zone, route, null, null, null, null, null, null, null, null);
+    }
+
+    private ReqImpl(FastHttp http, Channel channel, boolean isKeepAlive, ReqInput input,
+                    Map<String, String> pathParams, Map<String, Object> posted, Map<String, List<Upload>> files,
+                    boolean pendingBodyParsing, MediaType defaultContentType, String zone, Route route,
+                    String verb, String uri, String path, String query, byte[] body, Map<String, String> params,
+                    Map<String, String> headers, Map<String, String> cookies) {
+
         this.http = http;
         this.channel = channel;
         this.isKeepAlive = isKeepAlive;
+        this.input = input;
+        this.pathParams = pathParams;
         this.verb = verb;
         this.uri = uri;
         this.path = path;
@@ -166,11 +246,55 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
     }
 
     private HTTPCacheKey createCacheKey() {
-        return isCacheable() ? new HTTPCacheKey(host(), uri()) : null;
+        if (!isCacheable()) return null;
+
+        String encoding = route.config().compress() ? acceptedEncoding() : null;
+        return new HTTPCacheKey(host(), uri(), encoding, varyValues(route.config().cacheVary()));
+    }
+
+    private String varyValues(String[] vary) {
+        if (U.isEmpty(vary)) return null;
+
+        StringBuilder sb = new StringBuilder();
+
+        for (String name : vary) {
+            sb.append(header(name, "")).append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * The preferred response encoding (gzip or deflate) that is accepted by the client, or null.
+     */
+    public String acceptedEncoding() {
+        String encoding = acceptedEncoding;
+
+        if (encoding == null) {
+            encoding = U.or(HttpCompression.negotiate(header(HttpHeaders.ACCEPT_ENCODING.name(), null)), "");
+            acceptedEncoding = encoding;
+        }
+
+        return !encoding.isEmpty() ? encoding : null;
+    }
+
+    public String contentEncoding() {
+        return contentEncoding;
+    }
+
+    public ReqImpl contentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+        return this;
+    }
+
+    public ReqImpl bodyStreamed(boolean bodyStreamed) {
+        this.bodyStreamed = bodyStreamed;
+        return this;
     }
 
     @Override
     public String verb() {
+        if (verb == null && input != null) verb = input.verb();
         return verb;
     }
 
@@ -181,6 +305,7 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
 
     @Override
     public String uri() {
+        if (uri == null && input != null) uri = input.uri();
         return uri;
     }
 
@@ -191,6 +316,7 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
 
     @Override
     public String path() {
+        if (path == null && input != null) path = input.path();
         return path;
     }
 
@@ -201,6 +327,7 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
 
     @Override
     public String query() {
+        if (query == null && input != null) query = input.query();
         return query;
     }
 
@@ -211,29 +338,105 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
 
     @Override
     public byte[] body() {
+        if (body == null && input != null && input.hasBody()) {
+            synchronized (this) {
+                if (body == null) body = input.body();
+            }
+        }
+
+        if (body == null && bodyFile != null) {
+            synchronized (this) {
+                if (body == null) body = readBodyFile();
+            }
+        }
+
         return body;
     }
 
+    private byte[] readBodyFile() {
+        try {
+            return Files.readAllBytes(bodyFile.toPath());
+        } catch (IOException e) {
+            throw U.rte("Couldn't read the request body file!", e);
+        }
+    }
+
     public Req body(byte[] body) {
         this.body = body;
         return this;
     }
 
+    @Override
+    public File bodyFile() {
+        return bodyFile;
+    }
+
+    public Req bodyFile(File bodyFile) {
+        this.bodyFile = bodyFile;
+        return this;
+    }
+
     @Override
     public Map<String, String> params() {
+        if (params == null) {
+            synchronized (this) {
+                if (params == null) {
+                    Map<String, String> all = input.params();
+                    if (pathParams != null) all.putAll(pathParams);
+
+                    params = Collections.synchronizedMap(all);
+                }
+            }
+        }
+
         return params;
     }
 
     @Override
     public Map<String, String> headers() {
+        if (headers == null) {
+            synchronized (this) {
+                if (headers == null) headers = Collections.synchronizedMap(input.headers());
+            }
+        }
+
         return headers;
     }
 
     @Override
     public Map<String, String> cookies() {
+        if (cookies == null) {
+            synchronized (this) {
+                if (cookies == null) cookies = Collections.synchronizedMap(input.cookies());
+            }
+        }
+
         return cookies;
     }
 
+    private String paramOrNull(String name) {
+        if (params != null) return params.get(name);
+
+        String value = pathParams != null ? pathParams.get(name) : null;
+        return value != null ? value : input.param(name);
+    }
+
+    private String headerOrNull(String name) {
+        return headers != null ? headers.get(name.toLowerCase()) : input.header(name);
+    }
+
+    private String cookieOrNull(String name) {
+        return cookies != null ? cookies.get(name) : input.cookie(name);
+    }
+
+    /**
+     * Copies the remaining request data out of the connection's input buffer, before the buffer is reused.
+     */
+    public void detachInput() {
+        ReqInput input = this.input;
+        if (input != null) input.detach();
+    }
+
     @Override
     public Map<String, Object> posted() {
         if (pendingBodyParsing) {
@@ -285,12 +488,12 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
 
     @Override
     public String param(String name) {
-        return U.notNull(params().get(name), "PARAMS[%s]", name);
+        return U.notNull(paramOrNull(name), "PARAMS[%s]", name);
     }
 
     @Override
     public String param(String name, String defaultValue) {
-        return withDefault(params().get(name), defaultValue);
+        return withDefault(paramOrNull(name), defaultValue);
     }
 
     @Override
@@ -300,22 +503,22 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
 
     @Override
     public String header(String name) {
-        return U.notNull(headers().get(name.toLowerCase()), "HEADERS[%s]", name);
+        return U.notNull(headerOrNull(name), "HEADERS[%s]", name);
     }
 
     @Override
     public String header(String name, String defaultValue) {
-        return U.or(headers().get(name.toLowerCase()), defaultValue);
+        return U.or(headerOrNull(name), defaultValue);
     }
 
     @Override
     public String cookie(String name) {
-        return U.notNull(cookies().get(name), "COOKIES[%s]", name);
+        return U.notNull(cookieOrNull(name), "COOKIES[%s]", name);
     }
 
     @Override
     public String cookie(String name, String defaultValue) {
-        return U.or(cookies().get(name), defaultValue);
+        return U.or(cookieOrNull(name), defaultValue);
     }
 
     @SuppressWarnings("unchecked")
@@ -355,7 +558,7 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
                 if (data == null) {
                     Map<String, Object> allData = U.map();
 
-                    allData.putAll(params);
+                    allData.putAll(params());
                     allData.putAll(files);
                     allData.putAll(posted());
 
@@ -461,7 +664,8 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
             HttpUtils.saveTokenBeforeRenderingHeaders(this, token);
         }
 
-        if (sessionChanged.get()) {
+        // the loaded session is also released if it wasn't changed, so the session manager can store it
+        if (session != null && sessionReleased.compareAndSet(false, true)) {
             saveSession(session.decorated());
         }
 
@@ -473,8 +677,14 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
     }
 
     private void renderResponse(int code, MediaType contentType, RespBody body) {
+        if (renderStartedAt == 0) renderStartedAt = System.nanoTime();
+
+        // the headers can't be changed after the rendering has started
+        if (response != null && cacheKey != null) addVaryHeader(response.headers());
+
         rendering = true;
         completed = body != null;
+        bodyFromFile = body instanceof RespBodyFile;
 
         HttpIO.INSTANCE.respond(
                 HttpUtils.maybe(this), channel, connId, handle,
@@ -484,6 +694,14 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
         );
     }
 
+    private void addVaryHeader(Map<String, String> headers) {
+        String[] vary = route.config().cacheVary();
+
+        if (U.notEmpty(vary) && !headers.containsKey(HttpHeaders.VARY.name())) {
+            headers.put(HttpHeaders.VARY.name(), U.join(", ", vary));
+        }
+    }
+
     public void responded(long posContentLengthValue, long posBeforeBody, boolean completed) {
         this.posContentLengthValue = posContentLengthValue;
         this.posBeforeBody = posBeforeBody;
@@ -498,6 +716,20 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
         return rendering;
     }
 
+    /**
+     * Handles the error that occurred while rendering the response body, before any of the response was sent, so the
+     * error handler can still change the response.
+     */
+    public RespBody renderingError(Throwable error) {
+        rendering = false;
+
+        try {
+            return BodyRenderer.errorToRespBody(this, error);
+        } finally {
+            rendering = true;
+        }
+    }
+
     public ReqImpl completed(boolean completed) {
         this.completed = completed;
         return this;
@@ -553,6 +785,9 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
         HttpUtils.postProcessResponse(response);
 
         if (response.raw() != null) {
+            if (renderStartedAt == 0) renderStartedAt = System.nanoTime();
+
+            responseStarted(response.code(), null);
             int posBeforeResponse = channel.output().size();
 
             byte[] bytes = Msc.toBytes(response.raw());
@@ -613,7 +848,11 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
     public Req async() {
         this.async = true;
 
-        if (channel.onSameThread()) channel.async();
+        if (channel.onSameThread()) {
+            // the input buffer will be reused before the async request is finished
+            detachInput();
+            channel.async();
+        }
 
         return this;
     }
@@ -631,6 +870,8 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
 
         if (U.isEmpty(sessionId)) {
             sessionId = UUID.randomUUID().toString();
+            Map<String, String> cookies = cookies();
+
             synchronized (cookies) {
                 if (cookie(SESSION_COOKIE, null) == null) {
                     cookies.put(SESSION_COOKIE, sessionId);
@@ -677,8 +918,10 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
 
     @Override
     public boolean hasToken() {
-        // FIXME don't deserialize token, just check if it exists
-        return U.notEmpty(token()); // try to find and deserialize the token
+        // most of the requests don't carry a token, so there's nothing to deserialize
+        if (tokenStatus == TokenStatus.PENDING && U.isEmpty(HttpUtils.tokenOf(this))) return false;
+
+        return U.notEmpty(token()); // the recently verified tokens are deserialized from a cache
     }
 
     @Override
@@ -760,8 +1003,8 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
     public String toString() {
         String info = verb() + " " + path();
 
-        if (U.notEmpty(params)) {
-            info += "?" + U.join("&", Msc.protectSensitiveInfo(params, "<...>").entrySet());
+        if (U.notEmpty(params())) {
+            info += "?" + U.join("&", Msc.protectSensitiveInfo(params(), "<...>").entrySet());
         }
 
         return info;
@@ -778,6 +1021,8 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
     @Override
     public void stop() {
         this.stopped = true;
+
+        finishCacheFlight();
     }
 
     @Override
@@ -793,6 +1038,8 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
         async = false;
         done = false;
         completed = false;
+        bodyFromFile = false;
+        bodyStreamed = false;
         response = null;
     }
 
@@ -873,7 +1120,137 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
     public void doneProcessing() {
         done = true;
 
+        recordMetrics();
+
+        deleteTempFiles();
+
         if (willSaveToCache()) saveToCache();
+
+        finishCacheFlight();
+    }
+
+    /* CACHE */
+
+    /**
+     * Marks the channel as async, because the request will wait for the response of another request.
+     */
+    public void suspend() {
+        if (channel.onSameThread()) {
+            // the input buffer will be reused before the request is resumed
+            detachInput();
+            channel.async();
+        }
+    }
+
+    public ReqImpl cacheFlight(CacheFlight cacheFlight) {
+        this.cacheFlight = cacheFlight;
+        return this;
+    }
+
+    public ReqImpl revalidating(CachedResp revalidating) {
+        this.revalidating = revalidating;
+        return this;
+    }
+
+    private void finishCacheFlight() {
+        CachedResp stale = revalidating;
+
+        if (stale != null) {
+            revalidating = null;
+
+            // another request can try to refresh the stale response
+            if (!savedToCache) stale.revalidationFailed();
+        }
+
+        CacheFlight flight = cacheFlight;
+
+        if (flight != null) {
+            cacheFlight = null;
+
+            ((RouteImpl) route).cacheFlightFinished(cacheKey, flight);
+
+            final List<ReqImpl> followers = flight.finish();
+
+            if (!followers.isEmpty()) {
+                // the waiting requests are resumed outside of the connection's lock
+                Jobs.execute(() -> {
+                    for (ReqImpl follower : followers) {
+                        follower.http().resumeCacheFollower(follower);
+                    }
+                });
+            }
+        }
+    }
+
+    /* METRICS */
+
+    public ReqImpl bytesIn(long bytesIn) {
+        this.bytesIn = bytesIn;
+        return this;
+    }
+
+    public void handlerStarted() {
+        handlerStartedAt = System.nanoTime();
+    }
+
+    public void handlerFinished() {
+        if (handlerFinishedAt == 0) handlerFinishedAt = System.nanoTime();
+    }
+
+    /**
+     * Marks the start of the response in the output, before its status line is written.
+     */
+    public void responseStarted(int code, RespBody body) {
+        responseCode = code;
+        posBeforeResponse = channel.output().size();
+        bytesOutsideOutput = body instanceof RespBodyFile ? body.length() : 0;
+    }
+
+    private void recordMetrics() {
+        if (metricsRecorded || !(route instanceof RouteImpl)) return;
+        metricsRecorded = true;
+
+        RouteMetrics metrics = ((RouteImpl) route).metrics();
+        if (metrics == null) return;
+
+        long now = System.nanoTime();
+
+        // the async handlers finish somewhere before their result is rendered
+        long handlerEnd = handlerFinishedAt != 0 ? handlerFinishedAt : renderStartedAt;
+
+        long queueWait = handlerStartedAt != 0 ? handlerStartedAt - receivedAt : -1;
+        long handlerTime = handlerStartedAt != 0 && handlerEnd != 0 ? Math.max(handlerEnd - handlerStartedAt, 0) : -1;
+        long renderTime = renderStartedAt != 0 ? now - renderStartedAt : -1;
+
+        // unknown if the output was sent in the meantime, e.g. for the chunked responses
+        long bytesOut = -1;
+
+        if (posBeforeResponse != UNDEFINED) {
+            long written = channel.output().size() - posBeforeResponse;
+            if (written >= 0) bytesOut = written + bytesOutsideOutput;
+        }
+
+        int code = responseCode != 0 ? responseCode : (response != null ? response.code() : 200);
+
+        metrics.record(code, queueWait, handlerTime, renderTime, now - receivedAt, bytesIn, bytesOut);
+    }
+
+    private void deleteTempFiles() {
+        File bodyFile = this.bodyFile;
+        if (bodyFile != null && !bodyFile.delete()) {
+            Log.warn("Couldn't delete the temporary request body file!", "file", bodyFile);
+        }
+
+        for (List<Upload> uploads : files.values()) {
+            for (Upload upload : uploads) {
+                File file = upload.file();
+
+                // the file might have been moved by the handler
+                if (file != null && file.exists() && !file.delete()) {
+                    Log.warn("Couldn't delete the temporary upload file!", "file", file);
+                }
+            }
+        }
     }
 
     private void saveToCache() {
@@ -894,6 +1271,16 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
         Map<String, String> headers = response != null ? response.headers() : Collections.emptyMap();
         HttpUtils.proxyResponseHeaders(headers, proxyResp);
 
+        if (contentEncoding != null) {
+            if (proxyResp.headers == null) proxyResp.headers = U.map();
+
+            proxyResp.headers.put(HttpHeaders.CONTENT_ENCODING.name(), contentEncoding);
+
+            String vary = proxyResp.headers.get(HttpHeaders.VARY.name());
+            String acceptEncoding = HttpHeaders.ACCEPT_ENCODING.name();
+            proxyResp.headers.put(HttpHeaders.VARY.name(), vary != null ? vary + ", " + acceptEncoding : acceptEncoding);
+        }
+
         proxyResp.code = response != null ? response.code() : 200;
 
         if (proxyResp.contentType == null) {
@@ -903,17 +1290,36 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
         // don't cache the response if it contains cookies or token data
         if (U.notEmpty(proxyResp.cookies) || hasToken()) return;
 
-        ByteBuffer body = writeBodyToBuf(out, bodyLength);
-        CachedResp cached = new CachedResp(proxyResp.code, proxyResp.contentType, proxyResp.headers, body);
+        ByteBuffer body = CACHE_ALLOCATOR.copyOf(out, (int) posBeforeBody, bodyLength);
+
+        if (proxyResp.headers == null) proxyResp.headers = U.map();
+
+        String etag = proxyResp.headers.get(HttpHeaders.ETAG.name());
+
+        if (etag == null) {
+            etag = etagOf(body);
+            proxyResp.headers.put(HttpHeaders.ETAG.name(), etag);
+        }
+
+        long expiresAt = U.time() + route.config().cacheTTL();
+
+        CachedResp cached = new CachedResp(proxyResp.code, proxyResp.contentType, proxyResp.headers, body, etag,
+                expiresAt, CACHE_ALLOCATOR);
 
         cache.set(cacheKey, cached);
+        savedToCache = true;
     }
 
-    private ByteBuffer writeBodyToBuf(Buf out, int bodyLength) {
-        ByteBuffer body = ByteBuffer.allocateDirect(bodyLength);
-        out.writeTo(body, (int) posBeforeBody, bodyLength);
-        body.flip();
-        return body;
+    private String etagOf(ByteBuffer body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+
+        String tag = Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(body.remaining());
+
+        // the compressed variants have different validators
+        if (contentEncoding != null) tag += "-" + contentEncoding;
+
+        return "\"" + tag + "\"";
     }
 
     @Override
@@ -922,7 +1328,7 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
     }
 
     private boolean willSaveToCache() {
-        return cacheKey != null && !cached;
+        return cacheKey != null && !cached && !bodyFromFile && !bodyStreamed;
     }
 
     public HTTPCacheKey cacheKey() {
@@ -940,13 +1346,17 @@ public class ReqImpl extends RapidoidThing implements Req, Constants, HttpMetada
 
     private boolean isCacheable() {
         return route != null
-                && HttpUtils.isGetReq(this)
                 && route.cache() != null
-                && cookies.isEmpty()
+                && HttpUtils.isGetReq(this)
+                && hasNoCookies()
                 && U.notEmpty(host())
                 && !hasToken();
     }
 
+    private boolean hasNoCookies() {
+        return cookies != null ? cookies.isEmpty() : input.cookieCount() == 0;
+    }
+
     public boolean hasResponseAttached() {
         return response != null;
     }
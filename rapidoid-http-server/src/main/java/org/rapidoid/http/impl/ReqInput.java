@@ -0,0 +1,282 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.Buf;
+import org.rapidoid.commons.URIs;
+import org.rapidoid.data.BufRange;
+import org.rapidoid.data.KeyValueRanges;
+import org.rapidoid.net.impl.RapidoidHelper;
+import org.rapidoid.u.U;
+
+import java.util.Map;
+
+/**
+ * The raw parts of a HTTP request (request line, params, headers, cookies and body), kept as ranges of the input
+ * buffer. The values are decoded on demand, one at a time, or as a whole map if requested.
+ * <p>
+ * The input buffer is reused for the next request on the connection, so the request bytes are copied by
+ * {@link #detach()} before that happens, if the request is still in use.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class ReqInput extends RapidoidThing {
+
+    private static final int[] NONE = {};
+
+    private static final int VERB = 0, URI = 2, PATH = 4, QUERY = 6, BODY = 8;
+
+    private Buf buf;
+
+    private byte[] detached;
+
+    private int offset;
+
+    // start and length of the verb, uri, path, query and body
+    private final int[] parts = new int[10];
+
+    // key start, key length, value start and value length for each pair
+    private final int[] params;
+
+    private final int[] headers;
+
+    private final int[] cookies;
+
+    public ReqInput(Buf buf, RapidoidHelper helper, KeyValueRanges params, KeyValueRanges headers,
+                    KeyValueRanges cookies) {
+
+        this.buf = buf;
+
+        part(VERB, helper.verb);
+        part(URI, helper.uri);
+        part(PATH, helper.path);
+        part(QUERY, helper.query);
+
+        // the body range isn't parsed (nor reset) for GET requests
+        if (!helper.isGet.value) part(BODY, helper.body);
+
+        this.params = ranges(params);
+        this.headers = ranges(headers);
+        this.cookies = ranges(cookies);
+    }
+
+    private void part(int index, BufRange range) {
+        parts[index] = range.start;
+        parts[index + 1] = range.start >= 0 ? range.length : 0;
+    }
+
+    private static int[] ranges(KeyValueRanges kv) {
+        if (kv.count == 0) return NONE;
+
+        int[] ranges = new int[kv.count * 4];
+
+        for (int i = 0; i < kv.count; i++) {
+            ranges[i * 4] = kv.keys[i].start;
+            ranges[i * 4 + 1] = kv.keys[i].length;
+            ranges[i * 4 + 2] = kv.values[i].start;
+            ranges[i * 4 + 3] = kv.values[i].length;
+        }
+
+        return ranges;
+    }
+
+    public synchronized String verb() {
+        return str(parts[VERB], parts[VERB + 1]);
+    }
+
+    public synchronized String uri() {
+        return str(parts[URI], parts[URI + 1]);
+    }
+
+    public synchronized String path() {
+        return URIs.urlDecode(str(parts[PATH], parts[PATH + 1]));
+    }
+
+    public synchronized String query() {
+        return URIs.urlDecodeOrKeepOriginal(str(parts[QUERY], parts[QUERY + 1]));
+    }
+
+    public synchronized byte[] body() {
+        int len = parts[BODY + 1];
+        if (len == 0) return null;
+
+        byte[] body = new byte[len];
+        copy(parts[BODY], len, body, 0);
+
+        return body;
+    }
+
+    public boolean hasBody() {
+        return parts[BODY + 1] > 0;
+    }
+
+    public synchronized String param(String name) {
+        return find(params, name, true, false);
+    }
+
+    public synchronized String header(String name) {
+        return find(headers, name, false, true);
+    }
+
+    public synchronized String cookie(String name) {
+        return find(cookies, name, false, false);
+    }
+
+    public int cookieCount() {
+        return cookies.length / 4;
+    }
+
+    public synchronized Map<String, String> params() {
+        return toMap(params, true, false);
+    }
+
+    public synchronized Map<String, String> headers() {
+        return toMap(headers, false, true);
+    }
+
+    public synchronized Map<String, String> cookies() {
+        return toMap(cookies, false, false);
+    }
+
+    /**
+     * Copies the request bytes out of the input buffer, so the buffer can be reused.
+     */
+    public synchronized void detach() {
+        if (buf == null) return;
+
+        int from = Integer.MAX_VALUE;
+        int to = 0;
+
+        for (int i = 0; i < parts.length; i += 2) {
+            if (parts[i + 1] > 0) {
+                from = Math.min(from, parts[i]);
+                to = Math.max(to, parts[i] + parts[i + 1]);
+            }
+        }
+
+        for (int[] ranges : new int[][]{params, headers, cookies}) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (ranges[i + 1] > 0) {
+                    from = Math.min(from, ranges[i]);
+                    to = Math.max(to, ranges[i] + ranges[i + 1]);
+                }
+            }
+        }
+
+        if (from < to) {
+            byte[] bytes = new byte[to - from];
+            buf.get(new BufRange(from, to - from), bytes, 0);
+
+            detached = bytes;
+            offset = from;
+
+        } else {
+            detached = new byte[0];
+        }
+
+        buf = null;
+    }
+
+    private String find(int[] ranges, String name, boolean urlDecode, boolean ignoreCase) {
+        // the last occurrence wins, consistently with the maps
+        for (int i = ranges.length - 4; i >= 0; i -= 4) {
+            if (keyMatches(ranges[i], ranges[i + 1], name, urlDecode, ignoreCase)) {
+                String val = str(ranges[i + 2], ranges[i + 3]);
+                return urlDecode ? URIs.urlDecodeOrKeepOriginal(val) : val;
+            }
+        }
+
+        return null;
+    }
+
+    private boolean keyMatches(int start, int len, String name, boolean urlDecode, boolean ignoreCase) {
+        if (urlDecode && needsDecoding(start, len)) {
+            return URIs.urlDecodeOrKeepOriginal(str(start, len)).equals(name);
+        }
+
+        if (len != name.length()) return false;
+
+        for (int i = 0; i < len; i++) {
+            char a = (char) (get(start + i) & 0xFF);
+            char b = name.charAt(i);
+
+            if (a != b && (!ignoreCase || Character.toLowerCase(a) != Character.toLowerCase(b))) return false;
+        }
+
+        return true;
+    }
+
+    private boolean needsDecoding(int start, int len) {
+        for (int i = start; i < start + len; i++) {
+            byte b = get(i);
+            if (b == '%' || b == '+') return true;
+        }
+
+        return false;
+    }
+
+    private Map<String, String> toMap(int[] ranges, boolean urlDecode, boolean lowerCaseKeys) {
+        Map<String, String> map = U.map();
+
+        for (int i = 0; i < ranges.length; i += 4) {
+            String key = str(ranges[i], ranges[i + 1]);
+            String val = str(ranges[i + 2], ranges[i + 3]);
+
+            if (urlDecode) {
+                key = URIs.urlDecodeOrKeepOriginal(key);
+                val = URIs.urlDecodeOrKeepOriginal(val);
+            }
+
+            if (lowerCaseKeys) {
+                key = key.toLowerCase();
+            }
+
+            map.put(key, val);
+        }
+
+        return map;
+    }
+
+    private byte get(int pos) {
+        return buf != null ? buf.get(pos) : detached[pos - offset];
+    }
+
+    private String str(int start, int len) {
+        if (start < 0 || len <= 0) return "";
+
+        byte[] bytes = new byte[len];
+        copy(start, len, bytes, 0);
+
+        return new String(bytes);
+    }
+
+    private void copy(int start, int len, byte[] dest, int destOffset) {
+        if (buf != null) {
+            buf.get(new BufRange(start, len), dest, destOffset);
+        } else {
+            System.arraycopy(detached, start - offset, dest, destOffset, len);
+        }
+    }
+
+}
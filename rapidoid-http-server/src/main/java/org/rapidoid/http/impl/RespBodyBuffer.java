@@ -40,7 +40,7 @@ public class RespBodyBuffer extends RapidoidThing implements RespBody {
     }
 
     @Override
-    public int length() {
+    public long length() {
         return buffer.remaining();
     }
 
@@ -37,8 +37,12 @@ public class RespBodyBytes extends RapidoidThing implements RespBody {
         this.bytes = bytes;
     }
 
+    public byte[] bytes() {
+        return bytes;
+    }
+
     @Override
-    public int length() {
+    public long length() {
         return bytes.length;
     }
 
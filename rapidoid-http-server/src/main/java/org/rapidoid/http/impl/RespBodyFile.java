@@ -0,0 +1,73 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.http.RespBody;
+import org.rapidoid.net.abstracts.Channel;
+import org.rapidoid.u.U;
+
+import java.io.File;
+
+/**
+ * A response body that is a region of a file, sent to the socket without copying it into the output buffer.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class RespBodyFile extends RapidoidThing implements RespBody {
+
+    private final File file;
+
+    private final long offset;
+
+    private final long length;
+
+    public RespBodyFile(File file) {
+        this(file, 0, file.length());
+    }
+
+    public RespBodyFile(File file, long offset, long length) {
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(Channel channel) {
+        channel.write(file, offset, length);
+    }
+
+    public File file() {
+        return file;
+    }
+
+    @Override
+    public String toString() {
+        return U.frmt("RespBodyFile(%s, %s bytes from %s)", file, length, offset);
+    }
+}
@@ -0,0 +1,82 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.http.Req;
+import org.rapidoid.http.RespBody;
+import org.rapidoid.http.customize.HttpResponseRenderer;
+import org.rapidoid.net.abstracts.Channel;
+import org.rapidoid.u.U;
+import org.rapidoid.util.Msc;
+
+import java.io.OutputStream;
+
+/**
+ * A response body that is rendered when the response is written, directly into the connection output. Its length is
+ * unknown until it is rendered.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class RespBodyRenderer extends RapidoidThing implements RespBody {
+
+    private final Req req;
+
+    private final Object result;
+
+    // the plain results (without a renderer) are written as bytes
+    private final HttpResponseRenderer renderer;
+
+    public RespBodyRenderer(Req req, Object result, HttpResponseRenderer renderer) {
+        this.req = req;
+        this.result = result;
+        this.renderer = renderer;
+    }
+
+    public void render(OutputStream out) throws Exception {
+        if (renderer != null) {
+            renderer.render(req, result, out);
+        } else {
+            out.write(Msc.toBytes(result));
+        }
+    }
+
+    @Override
+    public long length() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Channel channel) {
+        try {
+            render(channel.output().asOutputStream());
+        } catch (Exception e) {
+            throw U.rte(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return U.frmt("RespBodyRenderer(%s)", renderer != null ? renderer.getClass().getSimpleName() : "bytes");
+    }
+}
@@ -38,7 +38,6 @@ import org.rapidoid.u.U;
 import org.rapidoid.util.Tokens;
 
 import java.io.File;
-import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
@@ -379,17 +378,10 @@ public class RespImpl extends RapidoidThing implements Resp {
 
     @Override
     public Resp chunk(byte[] data) {
-        OutputStream chnk = out();
+        out();
 
-        synchronized (chnk) {
-            try {
-                chnk.flush();
-            } catch (IOException e) {
-                throw U.rte(e);
-            }
-
-            chunk(data, 0, data.length);
-        }
+        // goes through the chunked stream, so it is compressed (if the response is compressed)
+        chunked.chunk(data);
 
         return this;
     }
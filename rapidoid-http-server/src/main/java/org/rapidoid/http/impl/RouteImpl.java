@@ -30,9 +30,12 @@ import org.rapidoid.http.MediaType;
 import org.rapidoid.http.Route;
 import org.rapidoid.http.RouteConfig;
 import org.rapidoid.http.handler.HttpHandler;
+import org.rapidoid.http.metrics.RouteMetrics;
 import org.rapidoid.u.U;
 
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @Authors("Nikolche Mihajlovski")
 @Since("5.1.0")
@@ -50,6 +53,12 @@ public class RouteImpl extends RapidoidThing implements Route {
 
     private final Cache<HTTPCacheKey, CachedResp> cache;
 
+    // the responses that are being computed, so the concurrent requests for them can wait instead of computing them
+    private final ConcurrentMap<HTTPCacheKey, CacheFlight> cacheFlights = new ConcurrentHashMap<>();
+
+    // looked up on the first request, the routes created for matching don't need it
+    private volatile RouteMetrics metrics;
+
     public RouteImpl(HttpVerb verb, String path, HttpHandler handler, RouteOptions options) {
         this.verb = verb;
         this.path = path;
@@ -68,10 +77,11 @@ public class RouteImpl extends RapidoidThing implements Route {
 
         return Caching.of(HTTPCacheKey.class, CachedResp.class)
                 .name(verb + " " + path)
-                .ttl(options.cacheTTL())
+                .ttl(options.cacheTTL() + Math.max(options.cacheStaleTTL(), 0))
                 .capacity(options.cacheCapacity())
                 .manageable(true)
                 .statistics(true)
+                .onRemoval(CachedResp::release)
                 .build();
     }
 
@@ -130,6 +140,32 @@ public class RouteImpl extends RapidoidThing implements Route {
         return cache;
     }
 
+    /**
+     * Registers the computation of the response, or returns the computation that is already in progress (so the
+     * request can wait for it instead).
+     */
+    public CacheFlight startCacheFlight(HTTPCacheKey key, CacheFlight flight) {
+        return cacheFlights.putIfAbsent(key, flight);
+    }
+
+    public void cacheFlightFinished(HTTPCacheKey key, CacheFlight flight) {
+        cacheFlights.remove(key, flight);
+    }
+
+    /**
+     * The metrics of the route, or null if the metrics are disabled.
+     */
+    public RouteMetrics metrics() {
+        RouteMetrics metrics = this.metrics;
+
+        if (metrics == null && RouteMetrics.isEnabled()) {
+            metrics = RouteMetrics.of(this);
+            this.metrics = metrics;
+        }
+
+        return metrics;
+    }
+
     @Override
     public Date lastChangedAt() {
         return lastChangedAt;
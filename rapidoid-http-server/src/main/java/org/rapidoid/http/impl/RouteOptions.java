@@ -24,6 +24,7 @@ import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
 import org.rapidoid.collection.Coll;
+import org.rapidoid.http.ExecutionMode;
 import org.rapidoid.http.HttpUtils;
 import org.rapidoid.http.HttpWrapper;
 import org.rapidoid.http.MediaType;
@@ -54,6 +55,20 @@ public class RouteOptions extends RapidoidThing implements RouteConfig {
 
     private volatile int cacheCapacity = 100;
 
+    private volatile long cacheStaleTTL;
+
+    private volatile String[] cacheVary = {};
+
+    private volatile long writeTimeout;
+
+    private volatile ExecutionMode execution = ExecutionMode.JOBS;
+
+    private volatile int threads;
+
+    private volatile boolean compress;
+
+    private volatile int compressMinSize;
+
     private volatile boolean internal;
 
     private volatile RouteMeta meta = new RouteMeta();
@@ -69,6 +84,13 @@ public class RouteOptions extends RapidoidThing implements RouteConfig {
                 ", wrappers=" + Arrays.toString(wrappers) +
                 ", cacheTTL=" + cacheTTL +
                 ", cacheCapacity=" + cacheCapacity +
+                ", cacheStaleTTL=" + cacheStaleTTL +
+                ", cacheVary=" + Arrays.toString(cacheVary) +
+                ", writeTimeout=" + writeTimeout +
+                ", execution=" + execution +
+                ", threads=" + threads +
+                ", compress=" + compress +
+                ", compressMinSize=" + compressMinSize +
                 ", internal=" + internal +
                 ", meta=" + meta +
                 '}';
@@ -152,6 +174,83 @@ public class RouteOptions extends RapidoidThing implements RouteConfig {
         return this;
     }
 
+    @Override
+    public long cacheStaleTTL() {
+        return cacheStaleTTL;
+    }
+
+    @Override
+    public RouteOptions cacheStaleTTL(long cacheStaleTTL) {
+        this.cacheStaleTTL = cacheStaleTTL;
+        return this;
+    }
+
+    @Override
+    public String[] cacheVary() {
+        return cacheVary;
+    }
+
+    @Override
+    public RouteOptions cacheVary(String... cacheVary) {
+        this.cacheVary = cacheVary;
+        return this;
+    }
+
+    @Override
+    public long writeTimeout() {
+        return writeTimeout;
+    }
+
+    @Override
+    public RouteOptions writeTimeout(long writeTimeout) {
+        this.writeTimeout = writeTimeout;
+        return this;
+    }
+
+    @Override
+    public ExecutionMode execution() {
+        return execution;
+    }
+
+    @Override
+    public RouteOptions execution(ExecutionMode execution) {
+        this.execution = execution;
+        return this;
+    }
+
+    @Override
+    public int threads() {
+        return threads;
+    }
+
+    @Override
+    public RouteOptions threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    @Override
+    public boolean compress() {
+        return compress;
+    }
+
+    @Override
+    public RouteOptions compress(boolean compress) {
+        this.compress = compress;
+        return this;
+    }
+
+    @Override
+    public int compressMinSize() {
+        return compressMinSize;
+    }
+
+    @Override
+    public RouteOptions compressMinSize(int compressMinSize) {
+        this.compressMinSize = compressMinSize;
+        return this;
+    }
+
     @Override
     public RouteMeta meta() {
         return meta;
@@ -184,6 +283,13 @@ public class RouteOptions extends RapidoidThing implements RouteConfig {
         copy.managed = this.managed;
         copy.cacheTTL = this.cacheTTL;
         copy.cacheCapacity = this.cacheCapacity;
+        copy.cacheStaleTTL = this.cacheStaleTTL;
+        copy.cacheVary = U.array(this.cacheVary);
+        copy.writeTimeout = this.writeTimeout;
+        copy.execution = this.execution;
+        copy.threads = this.threads;
+        copy.compress = this.compress;
+        copy.compressMinSize = this.compressMinSize;
         copy.internal = this.internal;
         copy.meta = this.meta.copy();
 
@@ -203,18 +309,26 @@ public class RouteOptions extends RapidoidThing implements RouteConfig {
                 managed == that.managed &&
                 cacheTTL == that.cacheTTL &&
                 cacheCapacity == that.cacheCapacity &&
+                cacheStaleTTL == that.cacheStaleTTL &&
+                writeTimeout == that.writeTimeout &&
+                threads == that.threads &&
+                compress == that.compress &&
+                compressMinSize == that.compressMinSize &&
                 internal == that.internal &&
                 Objects.equals(contentType, that.contentType) &&
                 Objects.equals(zone, that.zone) &&
+                execution == that.execution &&
                 Objects.equals(roles, that.roles) &&
                 Arrays.equals(wrappers, that.wrappers) &&
+                Arrays.equals(cacheVary, that.cacheVary) &&
                 Objects.equals(meta, that.meta);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(contentType, contentTypeCustomized, zone, managed, roles, cacheTTL, cacheCapacity, internal, meta);
+        int result = Objects.hash(contentType, contentTypeCustomized, zone, managed, roles, cacheTTL, cacheCapacity, cacheStaleTTL, writeTimeout, execution, threads, compress, compressMinSize, internal, meta);
         result = 31 * result + Arrays.hashCode(wrappers);
+        result = 31 * result + Arrays.hashCode(cacheVary);
         return result;
     }
 }
@@ -0,0 +1,177 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.bytes.Bytes;
+import org.rapidoid.bytes.BytesUtil;
+import org.rapidoid.data.BufRange;
+import org.rapidoid.http.HttpVerb;
+import org.rapidoid.http.Route;
+import org.rapidoid.http.handler.HttpHandler;
+import org.rapidoid.u.U;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable snapshot of the registered routes, compiled into a {@link RouteTrie} per HTTP verb. The patterns that
+ * cannot be compiled are matched with their regular expressions, but only if they have a longer literal prefix than
+ * the route matched by the trie (consistent with the ordering of {@link PathPattern}).
+ * <p>
+ * Among the compiled routes, the more specific one wins at each path segment (static over parameter over wildcard),
+ * unlike the ordering of {@link PathPattern} (by the literal prefix, then alphabetically). E.g. for
+ * <code>/x/1/y</code>, the route <code>/x/{id}/y</code> wins over <code>/x/*</code>.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class RouteTable extends RapidoidThing {
+
+    private static final int VERBS = HttpVerb.values().length;
+
+    public static final RouteTable EMPTY = compile(Collections.emptyList());
+
+    private final RouteTrie[] tries = new RouteTrie[VERBS];
+
+    private final PatternRoutes[] patterns = new PatternRoutes[VERBS];
+
+    private RouteTable() {
+        for (int i = 0; i < VERBS; i++) {
+            tries[i] = new RouteTrie();
+        }
+    }
+
+    public static RouteTable compile(Collection<Route> routes) {
+        RouteTable table = new RouteTable();
+
+        @SuppressWarnings("unchecked")
+        Map<PathPattern, HttpHandler>[] patterns = new Map[VERBS];
+
+        for (int i = 0; i < VERBS; i++) {
+            patterns[i] = new TreeMap<>();
+        }
+
+        List<Route> sorted = U.list(routes);
+        sorted.sort((a, b) -> a.path().compareTo(b.path()));
+
+        for (Route route : sorted) {
+            HttpHandler handler = route.handler();
+            int verb = route.verb().ordinal();
+
+            if (handler == null) continue;
+
+            String path = route.path();
+
+            if (RouteTrie.isCompilable(path)) {
+                table.tries[verb].add(path, handler);
+            } else {
+                patterns[verb].put(PathPattern.from(path), handler);
+            }
+        }
+
+        for (int i = 0; i < VERBS; i++) {
+            table.patterns[i] = new PatternRoutes(patterns[i]);
+        }
+
+        return table;
+    }
+
+    /**
+     * Finds the handler, in the following order: static route of the verb, static route of ANY, route pattern of the
+     * verb and route pattern of ANY.
+     */
+    public HandlerMatch find(HttpVerb verb, Bytes bytes, BufRange path) {
+        int v = verb.ordinal();
+        int any = HttpVerb.ANY.ordinal();
+
+        HandlerMatch match = tries[v].matchStatic(bytes, path);
+
+        if (match == null) match = tries[any].matchStatic(bytes, path);
+
+        if (match == null) match = patterns[v].match(tries[v].match(bytes, path), bytes, path);
+
+        if (match == null) match = patterns[any].match(tries[any].match(bytes, path), bytes, path);
+
+        return match;
+    }
+
+    static int prefixLength(String path) {
+        int param = path.indexOf('{');
+        int wildcard = path.indexOf('*');
+
+        if (param < 0) return wildcard >= 0 ? wildcard : path.length();
+        if (wildcard < 0) return param;
+
+        return Math.min(param, wildcard);
+    }
+
+    private static class PatternRoutes {
+
+        private final PathPattern[] patterns;
+
+        private final HttpHandler[] handlers;
+
+        private final int[] prefixLengths;
+
+        PatternRoutes(Map<PathPattern, HttpHandler> routes) {
+            int count = routes.size();
+
+            this.patterns = new PathPattern[count];
+            this.handlers = new HttpHandler[count];
+            this.prefixLengths = new int[count];
+
+            int i = 0;
+            for (Map.Entry<PathPattern, HttpHandler> e : routes.entrySet()) {
+                patterns[i] = e.getKey();
+                handlers[i] = e.getValue();
+                prefixLengths[i] = e.getKey().prefix().length();
+                i++;
+            }
+        }
+
+        HandlerMatch match(HandlerMatch trieMatch, Bytes bytes, BufRange path) {
+            if (patterns.length == 0) return trieMatch;
+
+            int minPrefix = trieMatch != null ? prefixLength(trieMatch.getRoute().path()) : -1;
+            String pathStr = null;
+
+            for (int i = 0; i < patterns.length && prefixLengths[i] > minPrefix; i++) {
+
+                if (pathStr == null) pathStr = BytesUtil.get(bytes, path);
+
+                Map<String, String> params = patterns[i].match(pathStr);
+
+                if (params != null) {
+                    HttpHandler handler = handlers[i];
+                    return new HandlerMatchWithParams(handler, params, handler.getRoute());
+                }
+            }
+
+            return trieMatch;
+        }
+    }
+
+}
@@ -0,0 +1,410 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.bytes.Bytes;
+import org.rapidoid.data.BufRange;
+import org.rapidoid.http.handler.HttpHandler;
+import org.rapidoid.u.U;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable segment trie of the routes registered for a single HTTP verb, matched directly against the request bytes.
+ * <p>
+ * Supports static segments, whole-segment <code>{param}</code> and <code>{param:regex}</code> segments, and a trailing
+ * <code>/*</code>. More exotic patterns (e.g. <code>/x{id}</code> or regexes that can span multiple segments) are not
+ * compilable, see {@link #isCompilable(String)}.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class RouteTrie extends RapidoidThing {
+
+    private static final Pattern PARAM_SEGMENT = Pattern.compile("\\{(\\w+)(?::(.+))?\\}");
+
+    private static final Pattern SINGLE_SEGMENT_REGEX = Pattern.compile("(?:[\\w\\[\\]\\-+*?{},|()]|\\\\[dw])+");
+
+    private static final String[] NO_NAMES = {};
+
+    private final Node root = new Node();
+
+    private int maxParams;
+
+    /**
+     * Returns <code>true</code> if the specified route path can be represented in the trie.
+     */
+    public static boolean isCompilable(String path) {
+        if (!path.startsWith("/")) return false;
+
+        List<String> segments = segments(path);
+
+        for (int i = 0; i < segments.size(); i++) {
+            String seg = segments.get(i);
+
+            if (seg.equals("*")) {
+                if (i < segments.size() - 1) return false;
+
+            } else if (seg.isEmpty()) {
+                return false;
+
+            } else if (seg.contains("{") || seg.contains("*")) {
+                Matcher m = PARAM_SEGMENT.matcher(seg);
+                if (!m.matches()) return false;
+
+                String regex = m.group(2);
+                if (regex != null && !SINGLE_SEGMENT_REGEX.matcher(regex).matches()) return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds a route to the trie. If a route with the same shape already exists, the first one is kept.
+     */
+    public void add(String path, HttpHandler handler) {
+        U.must(isCompilable(path), "Cannot compile route path: %s", path);
+
+        Node node = root;
+        List<String> names = U.list();
+        boolean wildcard = false;
+
+        for (String seg : segments(path)) {
+
+            if (seg.equals("*")) {
+                wildcard = true;
+                break;
+            }
+
+            Matcher m = PARAM_SEGMENT.matcher(seg);
+
+            if (m.matches()) {
+                names.add(m.group(1));
+                node = node.paramChild(m.group(2));
+            } else {
+                node = node.staticChild(seg.getBytes());
+            }
+        }
+
+        if (wildcard) names.add(PathPattern.ANY);
+
+        String[] paramNames = names.isEmpty() ? NO_NAMES : names.toArray(new String[names.size()]);
+        maxParams = Math.max(maxParams, paramNames.length);
+
+        if (wildcard) {
+            if (node.wildcard == null) {
+                node.wildcard = handler;
+                node.wildcardNames = paramNames;
+            }
+        } else {
+            if (node.handler == null) {
+                node.handler = handler;
+                node.handlerNames = paramNames;
+            }
+        }
+    }
+
+    /**
+     * Finds a route with static segments only, i.e. without path parameters. Doesn't allocate.
+     */
+    public HttpHandler matchStatic(Bytes bytes, BufRange path) {
+        int pos = path.start;
+        int limit = path.limit();
+
+        if (path.length == 1) return root.handlerNames == NO_NAMES ? root.handler : null;
+
+        Node node = root;
+
+        while (node != null && pos < limit) {
+            int from = pos + 1;
+            int to = segmentEnd(bytes, from, limit);
+
+            node = node.findStatic(bytes, from, to);
+            pos = to;
+        }
+
+        return node != null && node.handlerNames == NO_NAMES ? node.handler : null;
+    }
+
+    /**
+     * Finds the best route for the specified path, preferring static segments over parameters, and parameters over
+     * the trailing wildcard at each level. The path parameters are captured as ranges, and decoded on demand.
+     */
+    public HandlerMatch match(Bytes bytes, BufRange path) {
+        if (maxParams == 0) return matchStatic(bytes, path);
+
+        int[] captures = new int[maxParams * 2];
+        int limit = path.limit();
+
+        if (path.length == 1) {
+            if (root.handler != null) return toMatch(bytes, root.handler, root.handlerNames, captures);
+
+            if (root.wildcard != null) {
+                captures[0] = limit;
+                captures[1] = 0;
+                return toMatch(bytes, root.wildcard, root.wildcardNames, captures);
+            }
+
+            return null;
+        }
+
+        return find(root, bytes, path.start, limit, 0, captures);
+    }
+
+    private HandlerMatch find(Node node, Bytes bytes, int pos, int limit, int depth, int[] captures) {
+
+        if (pos >= limit) {
+            if (node.handler != null) return toMatch(bytes, node.handler, node.handlerNames, captures);
+
+            // e.g. "/msgs/*" matches "/msgs", without the wildcard parameter
+            if (node.wildcard != null) return toMatch(bytes, node.wildcard, node.wildcardNames, captures, depth);
+
+            return null;
+        }
+
+        int from = pos + 1;
+        int to = segmentEnd(bytes, from, limit);
+
+        Node child = node.findStatic(bytes, from, to);
+
+        if (child != null) {
+            HandlerMatch match = find(child, bytes, to, limit, depth, captures);
+            if (match != null) return match;
+        }
+
+        if (to > from) {
+            for (ParamEdge edge : node.params) {
+                if (edge.accepts(bytes, from, to)) {
+                    captures[depth * 2] = from;
+                    captures[depth * 2 + 1] = to - from;
+
+                    HandlerMatch match = find(edge.node, bytes, to, limit, depth + 1, captures);
+                    if (match != null) return match;
+                }
+            }
+        }
+
+        if (node.wildcard != null) {
+            captures[depth * 2] = from;
+            captures[depth * 2 + 1] = limit - from;
+
+            return toMatch(bytes, node.wildcard, node.wildcardNames, captures);
+        }
+
+        return null;
+    }
+
+    private static HandlerMatch toMatch(Bytes bytes, HttpHandler handler, String[] names, int[] captures) {
+        return toMatch(bytes, handler, names, captures, names.length);
+    }
+
+    private static HandlerMatch toMatch(Bytes bytes, HttpHandler handler, String[] names, int[] captures, int count) {
+        if (names.length == 0) return handler;
+
+        return new RouteTrieMatch(handler, bytes, names, Arrays.copyOf(captures, count * 2));
+    }
+
+    private static int segmentEnd(Bytes bytes, int from, int limit) {
+        int i = from;
+
+        while (i < limit && bytes.get(i) != '/') {
+            i++;
+        }
+
+        return i;
+    }
+
+    private static List<String> segments(String path) {
+        List<String> segments = U.list();
+
+        if (path.length() > 1) {
+            segments.addAll(Arrays.asList(path.substring(1).split("/", -1)));
+        }
+
+        return segments;
+    }
+
+    private static int hash(Bytes bytes, int from, int to) {
+        int h = 0;
+
+        for (int i = from; i < to; i++) {
+            h = 31 * h + bytes.get(i);
+        }
+
+        return h;
+    }
+
+    private static int hash(byte[] key) {
+        int h = 0;
+
+        for (byte b : key) {
+            h = 31 * h + b;
+        }
+
+        return h;
+    }
+
+    private static class Node {
+
+        private int[] hashes = {};
+
+        private byte[][] keys = {};
+
+        private Node[] children = {};
+
+        private ParamEdge[] params = {};
+
+        private HttpHandler handler;
+
+        private String[] handlerNames = NO_NAMES;
+
+        private HttpHandler wildcard;
+
+        private String[] wildcardNames = NO_NAMES;
+
+        Node staticChild(byte[] key) {
+            int hash = hash(key);
+
+            for (int i = 0; i < keys.length; i++) {
+                if (hashes[i] == hash && Arrays.equals(keys[i], key)) return children[i];
+            }
+
+            Node child = new Node();
+
+            hashes = Arrays.copyOf(hashes, hashes.length + 1);
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+
+            hashes[hashes.length - 1] = hash;
+            keys[keys.length - 1] = key;
+            children[children.length - 1] = child;
+
+            return child;
+        }
+
+        Node paramChild(String regex) {
+            for (ParamEdge edge : params) {
+                if (U.eq(edge.regex, regex)) return edge.node;
+            }
+
+            ParamEdge edge = new ParamEdge(regex, new Node());
+
+            // the default (any segment) parameter is tried after the ones constrained by regex
+            params = Arrays.copyOf(params, params.length + 1);
+            params[params.length - 1] = edge;
+            Arrays.sort(params, (a, b) -> Boolean.compare(a.regex == null, b.regex == null));
+
+            return edge.node;
+        }
+
+        Node findStatic(Bytes bytes, int from, int to) {
+            if (keys.length == 0) return null;
+
+            int len = to - from;
+            int hash = hash(bytes, from, to);
+
+            for (int i = 0; i < keys.length; i++) {
+                byte[] key = keys[i];
+
+                if (hashes[i] == hash && key.length == len && matches(bytes, from, key)) {
+                    return children[i];
+                }
+            }
+
+            return null;
+        }
+
+        private static boolean matches(Bytes bytes, int from, byte[] key) {
+            for (int i = 0; i < key.length; i++) {
+                if (bytes.get(from + i) != key[i]) return false;
+            }
+
+            return true;
+        }
+    }
+
+    private static class ParamEdge {
+
+        private final String regex;
+
+        private final Pattern pattern;
+
+        private final Node node;
+
+        ParamEdge(String regex, Node node) {
+            this.regex = regex;
+            this.pattern = regex != null ? Pattern.compile(regex) : null;
+            this.node = node;
+        }
+
+        boolean accepts(Bytes bytes, int from, int to) {
+            return pattern == null || pattern.matcher(new BytesChars(bytes, from, to)).matches();
+        }
+    }
+
+    private static class BytesChars implements CharSequence {
+
+        private final Bytes bytes;
+
+        private final int from;
+
+        private final int to;
+
+        BytesChars(Bytes bytes, int from, int to) {
+            this.bytes = bytes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int length() {
+            return to - from;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes.get(from + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new BytesChars(bytes, from + start, from + end);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(length());
+
+            for (int i = from; i < to; i++) {
+                sb.append((char) (bytes.get(i) & 0xFF));
+            }
+
+            return sb.toString();
+        }
+    }
+
+}
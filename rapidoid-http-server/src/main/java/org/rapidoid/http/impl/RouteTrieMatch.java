@@ -0,0 +1,93 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.bytes.Bytes;
+import org.rapidoid.bytes.BytesUtil;
+import org.rapidoid.commons.URIs;
+import org.rapidoid.data.BufRange;
+import org.rapidoid.http.Route;
+import org.rapidoid.http.handler.HttpHandler;
+import org.rapidoid.u.U;
+
+import java.util.Map;
+
+/**
+ * A route match with the path parameters captured as ranges of the request buffer. The parameters are decoded only
+ * when requested, while the request buffer is still valid.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class RouteTrieMatch extends RapidoidThing implements HandlerMatch {
+
+    private final HttpHandler handler;
+
+    private final Bytes bytes;
+
+    private final String[] names;
+
+    private final int[] captures;
+
+    private volatile Map<String, String> params;
+
+    public RouteTrieMatch(HttpHandler handler, Bytes bytes, String[] names, int[] captures) {
+        this.handler = handler;
+        this.bytes = bytes;
+        this.names = names;
+        this.captures = captures;
+    }
+
+    @Override
+    public HttpHandler getHandler() {
+        return handler;
+    }
+
+    @Override
+    public Map<String, String> getParams() {
+        Map<String, String> params = this.params;
+
+        if (params == null) {
+            params = U.map();
+
+            BufRange range = new BufRange();
+
+            for (int i = 0; i * 2 < captures.length; i++) {
+                range.set(captures[i * 2], captures[i * 2 + 1]);
+                String val = range.length > 0 ? BytesUtil.get(bytes, range) : "";
+
+                params.put(names[i], URIs.urlDecodeOrKeepOriginal(val));
+            }
+
+            this.params = params;
+        }
+
+        return params;
+    }
+
+    @Override
+    public Route getRoute() {
+        return handler.getRoute();
+    }
+
+}
@@ -35,6 +35,7 @@ import org.rapidoid.net.AsyncLogic;
 import org.rapidoid.net.abstracts.Channel;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.util.Map;
 
 @Authors("Nikolche Mihajlovski")
@@ -57,6 +58,19 @@ public class HttpIO extends RapidoidThing {
         impl.write200(req, ctx, isKeepAlive, contentTypeHeader, content);
     }
 
+    public void writeFile(Req req, Channel ctx, boolean isKeepAlive, MediaType contentType, File file) {
+        impl.writeFile(req, ctx, isKeepAlive, contentType, file, null, false);
+    }
+
+    public void writeFile(Req req, Channel ctx, boolean isKeepAlive, MediaType contentType, File file, String contentEncoding) {
+        impl.writeFile(req, ctx, isKeepAlive, contentType, file, contentEncoding, contentEncoding != null);
+    }
+
+    public void writeFile(Req req, Channel ctx, boolean isKeepAlive, MediaType contentType, File file, String contentEncoding,
+                          boolean varies) {
+        impl.writeFile(req, ctx, isKeepAlive, contentType, file, contentEncoding, varies);
+    }
+
     public void error(Req req, Throwable error, LogLevel logLevel) {
         impl.error(req, error, logLevel);
     }
@@ -89,6 +103,10 @@ public class HttpIO extends RapidoidThing {
         impl.writeBadRequest(channel);
     }
 
+    public void writePayloadTooLarge(Channel channel) {
+        impl.writePayloadTooLarge(channel);
+    }
+
     public void respond(MaybeReq maybeReq, Channel channel, long connId, long handle,
                         int code, boolean isKeepAlive, MediaType contentType,
                         RespBody body, Map<String, String> headers, Map<String, String> cookies) {
@@ -34,8 +34,13 @@ import org.rapidoid.data.BufRange;
 import org.rapidoid.data.JSON;
 import org.rapidoid.http.*;
 import org.rapidoid.http.customize.Customization;
+import org.rapidoid.http.impl.ByteRange;
+import org.rapidoid.http.impl.Compressor;
+import org.rapidoid.http.impl.HttpCompression;
 import org.rapidoid.http.impl.MaybeReq;
 import org.rapidoid.http.impl.ReqImpl;
+import org.rapidoid.http.impl.RespBodyBytes;
+import org.rapidoid.http.impl.RespBodyRenderer;
 import org.rapidoid.job.Jobs;
 import org.rapidoid.log.GlobalCfg;
 import org.rapidoid.log.Log;
@@ -44,10 +49,12 @@ import org.rapidoid.net.AsyncLogic;
 import org.rapidoid.net.abstracts.Channel;
 import org.rapidoid.thread.RapidoidThreadLocals;
 import org.rapidoid.u.U;
+import org.rapidoid.util.ErrCodeAndMsg;
 import org.rapidoid.util.Msc;
 import org.rapidoid.writable.ReusableWritable;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -62,8 +69,15 @@ class LowLevelHttpIO extends RapidoidThing {
     private static final byte[] HTTP_400_BAD_REQUEST = "HTTP/1.1 400 Bad Request\r\nContent-Length: 12\r\n\r\nBad Request!"
             .getBytes();
 
+    private static final byte[] HTTP_413_PAYLOAD_TOO_LARGE = ("HTTP/1.1 413 Payload Too Large\r\nConnection: close\r\n"
+            + "Content-Length: 18\r\n\r\nPayload too large!").getBytes();
+
     private static final byte[] HEADER_SEP = ": ".getBytes();
 
+    private static final byte[] BYTES = "bytes".getBytes();
+
+    private static final byte[] ACCEPT_ENCODING = HttpHeaders.ACCEPT_ENCODING.getBytes();
+
     private static final byte[] CONN_KEEP_ALIVE = "Connection: keep-alive\r\n".getBytes();
 
     private static final byte[] CONN_CLOSE = "Connection: close\r\n".getBytes();
@@ -74,6 +88,8 @@ class LowLevelHttpIO extends RapidoidThing {
 
     private static final byte[] CONTENT_LENGTH_UNKNOWN = "Content-Length: 0000000000".getBytes();
 
+    private static final byte[] TRANSFER_ENCODING_CHUNKED = "Transfer-Encoding: chunked\r\n".getBytes();
+
     private static final int CONTENT_LENGTHS_SIZE = 5000;
 
     private static final byte[] DATE_IS = "Date: ".getBytes();
@@ -89,6 +105,8 @@ class LowLevelHttpIO extends RapidoidThing {
 
     private static final AtomicLong ASYNC_ID_GEN = new AtomicLong();
 
+    private static final int RESPONSE_STREAM_THRESHOLD = 1024 * Conf.HTTP.entry("responseStreamThreshold").or(1024);
+
     static {
         for (int len = 0; len < CONTENT_LENGTHS.length; len++) {
             CONTENT_LENGTHS[len] = (new String(CONTENT_LENGTH_IS) + len + new String(CR_LF)).getBytes();
@@ -182,6 +200,98 @@ class LowLevelHttpIO extends RapidoidThing {
         writeResponse(req, ctx, isKeepAlive, 200, contentTypeHeader, content);
     }
 
+    /**
+     * Serves the file (or the requested range of it) with validators, so it can be cached by the clients and
+     * revalidated with a 304 response. The content is sent directly from the file system, not through the output
+     * buffer. The content encoding is specified if the file is a precompressed variant of the resource, and the
+     * response varies by the Accept-Encoding header if the resource has such variants (even if this isn't one of them).
+     */
+    void writeFile(Req req, Channel ctx, boolean isKeepAlive, MediaType contentType, File file, String contentEncoding,
+                   boolean varies) {
+        MaybeReq maybeReq = HttpUtils.maybe(req);
+        Resp resp = respOrNull(maybeReq);
+
+        long size = file.length();
+
+        // HTTP dates have a precision of seconds
+        long lastModified = file.lastModified() / 1000 * 1000;
+
+        String etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(size) + "\"";
+        String lastModifiedDate = Dates.httpDate(lastModified);
+
+        if (isNotModified(req, etag, lastModified)) {
+            startResponse(resp, ctx, 304, isKeepAlive, contentType);
+            addContentEncoding(ctx, contentEncoding, varies);
+            addValidators(ctx, etag, lastModifiedDate);
+            closeHeaders(maybeReq, ctx.output());
+            return;
+        }
+
+        String ifRange = req.header(HttpHeaders.IF_RANGE.name(), null);
+        boolean rangeApplies = ifRange == null || ifRange.equals(etag) || Dates.parseHttpDate(ifRange) == lastModified;
+
+        ByteRange range = rangeApplies ? ByteRange.parse(req.header(HttpHeaders.RANGE.name(), null), size) : null;
+
+        if (range == ByteRange.UNSATISFIABLE) {
+            startResponse(resp, ctx, 416, isKeepAlive, contentType);
+            addCustomHeader(ctx, HttpHeaders.CONTENT_RANGE.getBytes(), ("bytes */" + size).getBytes());
+            writeContentLengthHeader(ctx, 0);
+            closeHeaders(maybeReq, ctx.output());
+            return;
+        }
+
+        startResponse(resp, ctx, range != null ? 206 : 200, isKeepAlive, contentType);
+        addContentEncoding(ctx, contentEncoding, varies);
+        addCustomHeader(ctx, HttpHeaders.ACCEPT_RANGES.getBytes(), BYTES);
+        addValidators(ctx, etag, lastModifiedDate);
+
+        long offset = 0;
+        long length = size;
+
+        if (range != null) {
+            addCustomHeader(ctx, HttpHeaders.CONTENT_RANGE.getBytes(), range.contentRange(size).getBytes());
+            offset = range.first;
+            length = range.length();
+        }
+
+        writeContentLengthHeader(ctx, length);
+        closeHeaders(maybeReq, ctx.output());
+
+        ctx.write(file, offset, length);
+    }
+
+    private void addContentEncoding(Channel ctx, String contentEncoding, boolean varies) {
+        if (contentEncoding != null) {
+            addCustomHeader(ctx, HttpHeaders.CONTENT_ENCODING.getBytes(), contentEncoding.getBytes());
+        }
+
+        if (contentEncoding != null || varies) {
+            addCustomHeader(ctx, HttpHeaders.VARY.getBytes(), ACCEPT_ENCODING);
+        }
+    }
+
+    private boolean isNotModified(Req req, String etag, long lastModified) {
+        String ifNoneMatch = req.header(HttpHeaders.IF_NONE_MATCH.name(), null);
+
+        if (ifNoneMatch != null) {
+            return HttpUtils.matchesETag(ifNoneMatch, etag);
+        }
+
+        String ifModifiedSince = req.header(HttpHeaders.IF_MODIFIED_SINCE.name(), null);
+
+        if (ifModifiedSince != null) {
+            long since = Dates.parseHttpDate(ifModifiedSince);
+            return since >= 0 && lastModified <= since;
+        }
+
+        return false;
+    }
+
+    private void addValidators(Channel ctx, String etag, String lastModifiedDate) {
+        addCustomHeader(ctx, HttpHeaders.ETAG.getBytes(), etag.getBytes());
+        addCustomHeader(ctx, HttpHeaders.LAST_MODIFIED.getBytes(), lastModifiedDate.getBytes());
+    }
+
     void error(final Req req, final Throwable error, LogLevel logLevel) {
         try {
             logError(req, error, logLevel);
@@ -319,6 +429,22 @@ class LowLevelHttpIO extends RapidoidThing {
         ctx.write(out.array(), 0, out.size());
     }
 
+    private void writeCompressedBody(MaybeReq req, Channel ctx, String encoding, byte[] body, int offset, int length) {
+        ReusableWritable out = Msc.locals().compressionOutput();
+        Compressor compressor = HttpCompression.compressor(encoding);
+
+        try {
+            compressor.compress(body, offset, length, out);
+        } finally {
+            HttpCompression.release(compressor);
+        }
+
+        writeContentLengthHeader(ctx, out.size());
+        closeHeaders(req, ctx.output());
+
+        ctx.write(out.array(), 0, out.size());
+    }
+
     @SuppressWarnings("unused")
     private void writeOnBufferAsJson(MaybeReq req, Channel ctx, int code, boolean isKeepAlive, Object value) {
         startResponse(respOrNull(req), ctx, code, isKeepAlive, MediaType.JSON);
@@ -385,6 +511,11 @@ class LowLevelHttpIO extends RapidoidThing {
         channel.close();
     }
 
+    void writePayloadTooLarge(Channel channel) {
+        channel.write(HTTP_413_PAYLOAD_TOO_LARGE);
+        channel.close();
+    }
+
     void respond(final MaybeReq maybeReq, final Channel channel, long connId, long handle,
                  final int code, final boolean isKeepAlive, final MediaType contentType, final RespBody body,
                  final Map<String, String> headers, final Map<String, String> cookies) {
@@ -407,8 +538,18 @@ class LowLevelHttpIO extends RapidoidThing {
             }
         }
 
+        if (body instanceof RespBodyRenderer) {
+            respondRendered(maybeReq, channel, connId, handle, code, isKeepAlive, contentType,
+                    (RespBodyRenderer) body, headers, cookies, true);
+            return;
+        }
+
         final long id = ASYNC_ID_GEN.incrementAndGet();
 
+        // the rendered bodies are compressed if the route and the client agree on it
+        final String encoding = body instanceof RespBodyBytes
+                ? HttpCompression.encodingFor(req, code, contentType, body.length(), headers) : null;
+
         channel.resume(connId, handle, new AsyncLogic() {
 
             @Override
@@ -421,25 +562,26 @@ class LowLevelHttpIO extends RapidoidThing {
 
                 boolean complete;
 
-                startResponse(null, channel, code, isKeepAlive, contentType);
-
-                if (U.notEmpty(headers)) {
-                    for (Map.Entry<String, String> e : headers.entrySet()) {
-                        addCustomHeader(channel, e.getKey().getBytes(), e.getValue().getBytes());
-                    }
-                }
+                if (req != null) req.responseStarted(code, body);
 
-                if (U.notEmpty(cookies)) {
-                    for (Map.Entry<String, String> e : cookies.entrySet()) {
-                        String cookie = e.getKey() + "=" + e.getValue();
-                        addCustomHeader(channel, HttpHeaders.SET_COOKIE.getBytes(), cookie.getBytes());
-                    }
-                }
+                writeHead(channel, code, isKeepAlive, contentType, headers, cookies, encoding);
 
                 Buf output = channel.output();
 
                 synchronized (channel) {
-                    if (body == null) {
+                    if (body == null && code == 304) {
+
+                        // the "Not Modified" response has no body
+                        closeHeaders(maybeReq, output);
+
+                        if (req != null) {
+                            req.completed(true);
+                            done(req);
+                        }
+
+                        complete = true;
+
+                    } else if (body == null) {
 
                         int posContentLengthValue = output.size() - 1;
 
@@ -456,9 +598,16 @@ class LowLevelHttpIO extends RapidoidThing {
 
                     } else {
 
-                        writeContentLengthHeader(channel, body.length());
-                        closeHeaders(maybeReq, output);
-                        body.writeTo(channel);
+                        if (encoding != null) {
+                            byte[] bytes = ((RespBodyBytes) body).bytes();
+                            writeCompressedBody(maybeReq, channel, encoding, bytes, 0, bytes.length);
+                            req.contentEncoding(encoding);
+
+                        } else {
+                            writeContentLengthHeader(channel, body.length());
+                            closeHeaders(maybeReq, output);
+                            body.writeTo(channel);
+                        }
 
                         if (req != null) {
                             req.completed(true);
@@ -474,4 +623,135 @@ class LowLevelHttpIO extends RapidoidThing {
         });
     }
 
+    private void writeHead(Channel channel, int code, boolean isKeepAlive, MediaType contentType,
+                           Map<String, String> headers, Map<String, String> cookies, String encoding) {
+
+        startResponse(null, channel, code, isKeepAlive, contentType);
+
+        if (U.notEmpty(headers)) {
+            for (Map.Entry<String, String> e : headers.entrySet()) {
+                addCustomHeader(channel, e.getKey().getBytes(), e.getValue().getBytes());
+            }
+        }
+
+        if (U.notEmpty(cookies)) {
+            for (Map.Entry<String, String> e : cookies.entrySet()) {
+                String cookie = e.getKey() + "=" + e.getValue();
+                addCustomHeader(channel, HttpHeaders.SET_COOKIE.getBytes(), cookie.getBytes());
+            }
+        }
+
+        if (encoding != null) {
+            addCustomHeader(channel, HttpHeaders.CONTENT_ENCODING.getBytes(), encoding.getBytes());
+            addCustomHeader(channel, HttpHeaders.VARY.getBytes(), ACCEPT_ENCODING);
+        }
+    }
+
+    /**
+     * Renders (and compresses, if required) the response body on the current thread, before the connection is
+     * resumed, so a slow or large serialization doesn't hold the connection monitor, which is also taken by the I/O
+     * worker. Only the headers and the rendered body are written into the output while holding the monitor. If the
+     * rendering fails, the error response is rendered instead.
+     * <p>
+     * A body larger than the threshold is sent in chunks on a keep-alive connection, and otherwise its end is marked
+     * by closing the connection.
+     */
+    private void respondRendered(final MaybeReq maybeReq, final Channel channel, final long connId, final long handle,
+                                 final int code, final boolean isKeepAlive, final MediaType contentType,
+                                 final RespBodyRenderer body, final Map<String, String> headers,
+                                 final Map<String, String> cookies, boolean handleErrors) {
+
+        final ReqImpl req = (ReqImpl) maybeReq.getReqOrNull();
+
+        RenderedBody rendered;
+
+        try {
+            rendered = RenderedBody.render(body);
+
+        } catch (Throwable e) {
+            respondRenderingError(maybeReq, channel, connId, handle, isKeepAlive, e, headers, cookies, handleErrors);
+            return;
+        }
+
+        final boolean chunks = RESPONSE_STREAM_THRESHOLD > 0 && rendered.size() > RESPONSE_STREAM_THRESHOLD;
+        final String encoding = HttpCompression.encodingFor(req, code, contentType, rendered.size(), headers);
+        final RenderedBody content = encoding != null ? rendered.compress(encoding) : rendered;
+
+        final long id = ASYNC_ID_GEN.incrementAndGet();
+
+        channel.resume(connId, handle, new AsyncLogic() {
+
+            @Override
+            public String toString() {
+                return U.str(U.join(":", "#" + id, channel, code, body, isKeepAlive, contentType));
+            }
+
+            @Override
+            public boolean resumeAsync() {
+                Buf output = channel.output();
+
+                if (req != null) req.responseStarted(code, body);
+
+                writeHead(channel, code, isKeepAlive, contentType, headers, cookies, encoding);
+
+                if (!chunks) {
+                    writeContentLengthHeader(channel, content.size());
+                    closeHeaders(maybeReq, output);
+                    content.writeTo(output);
+
+                } else if (isKeepAlive) {
+                    channel.write(TRANSFER_ENCODING_CHUNKED);
+                    closeHeaders(maybeReq, output);
+                    content.writeChunkedTo(output);
+
+                } else {
+                    // without chunks, the end of the body is marked by closing the connection
+                    closeHeaders(maybeReq, output);
+                    content.writeTo(output);
+                }
+
+                if (req != null) {
+                    req.bodyStreamed(chunks).contentEncoding(encoding);
+                }
+
+                finishRendered(req);
+                return true;
+            }
+        });
+    }
+
+    private void respondRenderingError(MaybeReq maybeReq, Channel channel, long connId, long handle,
+                                       boolean isKeepAlive, Throwable error, Map<String, String> headers,
+                                       Map<String, String> cookies, boolean handleErrors) {
+
+        ReqImpl req = (ReqImpl) maybeReq.getReqOrNull();
+
+        if (handleErrors && req != null) {
+            RespBody errorBody = req.renderingError(error);
+            Resp resp = req.response();
+
+            if (errorBody instanceof RespBodyRenderer) {
+                respondRendered(maybeReq, channel, connId, handle, resp.code(), isKeepAlive, resp.contentType(),
+                        (RespBodyRenderer) errorBody, headers, cookies, false);
+            } else {
+                respond(maybeReq, channel, connId, handle, resp.code(), isKeepAlive, resp.contentType(),
+                        errorBody, headers, cookies);
+            }
+
+        } else {
+            Log.error("Internal rendering error!", error);
+            ErrCodeAndMsg err = Msc.getErrorCodeAndMsg(error);
+
+            respond(maybeReq, channel, connId, handle, err.code(), isKeepAlive, MediaType.PLAIN_TEXT_UTF_8,
+                    new RespBodyBytes(err.msg().getBytes()), headers, cookies);
+        }
+    }
+
+    private void finishRendered(ReqImpl req) {
+        if (req != null) {
+            req.completed(true);
+            done(req);
+        }
+    }
+
 }
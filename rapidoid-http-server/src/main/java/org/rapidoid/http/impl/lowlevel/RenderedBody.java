@@ -0,0 +1,181 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl.lowlevel;
+
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.Buf;
+import org.rapidoid.http.impl.Compressor;
+import org.rapidoid.http.impl.HttpCompression;
+import org.rapidoid.http.impl.RespBodyRenderer;
+import org.rapidoid.writable.Writable;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A response body that was rendered (and compressed, if required) before it is written into the connection output,
+ * so the rendering doesn't happen while holding the connection monitor.
+ * <p>
+ * The body is kept in segments that grow from 1 KB up to 16 KB, so a small body takes little memory, a large body is
+ * never copied to grow, and nothing is retained after the body was written. Each segment is released as soon as it
+ * was appended to the output.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+final class RenderedBody extends OutputStream implements Writable {
+
+    static final int MIN_SEGMENT_SIZE = 1024;
+
+    static final int MAX_SEGMENT_SIZE = 16 * 1024;
+
+    private static final byte[] CRLF = "\r\n".getBytes();
+
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes();
+
+    private final List<byte[]> segments = new ArrayList<>();
+
+    private byte[] current;
+
+    // the number of bytes in the current (last) segment
+    private int pos;
+
+    private int size;
+
+    static RenderedBody render(RespBodyRenderer body) throws Exception {
+        RenderedBody rendered = new RenderedBody();
+        body.render(rendered);
+        return rendered;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void writeByte(byte byteValue) {
+        if (current == null || pos == current.length) addSegment();
+
+        current[pos++] = byteValue;
+        size++;
+    }
+
+    @Override
+    public void writeBytes(byte[] src) {
+        writeBytes(src, 0, src.length);
+    }
+
+    @Override
+    public void writeBytes(byte[] src, int offset, int length) {
+        while (length > 0) {
+            if (current == null || pos == current.length) addSegment();
+
+            int len = Math.min(length, current.length - pos);
+            System.arraycopy(src, offset, current, pos, len);
+
+            pos += len;
+            size += len;
+            offset += len;
+            length -= len;
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        writeByte((byte) b);
+    }
+
+    @Override
+    public void write(byte[] src, int offset, int length) {
+        writeBytes(src, offset, length);
+    }
+
+    private void addSegment() {
+        int segmentSize = current != null ? Math.min(current.length * 2, MAX_SEGMENT_SIZE) : MIN_SEGMENT_SIZE;
+
+        current = new byte[segmentSize];
+        segments.add(current);
+        pos = 0;
+    }
+
+    private int segmentLength(int index) {
+        return index == segments.size() - 1 ? pos : segments.get(index).length;
+    }
+
+    /**
+     * Returns the body compressed with the specified encoding.
+     */
+    RenderedBody compress(String encoding) {
+        RenderedBody compressed = new RenderedBody();
+        Compressor compressor = HttpCompression.compressor(encoding);
+
+        try {
+            compressor.start(compressed);
+
+            for (int i = 0; i < segments.size(); i++) {
+                compressor.write(segments.get(i), 0, segmentLength(i), compressed);
+            }
+
+            compressor.finish(compressed);
+
+        } finally {
+            HttpCompression.release(compressor);
+        }
+
+        return compressed;
+    }
+
+    /**
+     * Appends the body to the output, as it is.
+     */
+    void writeTo(Buf output) {
+        for (int i = 0; i < segments.size(); i++) {
+            output.append(segments.get(i), 0, segmentLength(i));
+            segments.set(i, null);
+        }
+    }
+
+    /**
+     * Appends the body to the output with chunked transfer encoding, a chunk per segment.
+     */
+    void writeChunkedTo(Buf output) {
+        for (int i = 0; i < segments.size(); i++) {
+            int len = segmentLength(i);
+
+            if (len > 0) {
+                output.append(Integer.toHexString(len));
+                output.append(CRLF);
+                output.append(segments.get(i), 0, len);
+                output.append(CRLF);
+            }
+
+            segments.set(i, null);
+        }
+
+        output.append(LAST_CHUNK);
+    }
+
+}
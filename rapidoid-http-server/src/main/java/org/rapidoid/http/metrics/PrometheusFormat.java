@@ -0,0 +1,149 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.metrics;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.insight.Histogram;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Renders the route metrics in the Prometheus text format (version 0.0.4). The latency histograms are exported with
+ * the powers of 4 (in microseconds) as bucket bounds, which are also bucket boundaries of the recorded histograms.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class PrometheusFormat extends RapidoidThing {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    // from 64 us to ~16.8 s
+    private static final int MIN_BOUND_EXP = 6;
+    private static final int MAX_BOUND_EXP = 24;
+
+    public static String render(List<RouteMetrics> routes) {
+        StringBuilder out = new StringBuilder();
+
+        header(out, "rapidoid_http_requests_total", "counter", "The number of completed HTTP requests.");
+
+        for (RouteMetrics route : routes) {
+            for (Map.Entry<Integer, Long> e : route.statuses().entrySet()) {
+                out.append("rapidoid_http_requests_total{");
+                labels(out, route);
+                out.append(",code=\"").append(e.getKey()).append("\"} ").append(e.getValue()).append('\n');
+            }
+        }
+
+        histograms(out, routes, "rapidoid_http_request_duration_seconds",
+                "From the arrival of the HTTP request to the completion of its response.", RouteMetrics::duration);
+
+        histograms(out, routes, "rapidoid_http_queue_wait_seconds",
+                "From the arrival of the HTTP request until its handler starts.", RouteMetrics::queueWait);
+
+        histograms(out, routes, "rapidoid_http_handler_seconds",
+                "The execution time of the HTTP handler.", RouteMetrics::handlerTime);
+
+        histograms(out, routes, "rapidoid_http_render_seconds",
+                "From the result of the HTTP handler to the completion of its response.", RouteMetrics::renderTime);
+
+        header(out, "rapidoid_http_request_bytes_total", "counter", "The size of the received HTTP requests.");
+
+        for (RouteMetrics route : routes) {
+            out.append("rapidoid_http_request_bytes_total{");
+            labels(out, route);
+            out.append("} ").append(route.getBytesIn()).append('\n');
+        }
+
+        header(out, "rapidoid_http_response_bytes_total", "counter", "The size of the sent HTTP responses.");
+
+        for (RouteMetrics route : routes) {
+            out.append("rapidoid_http_response_bytes_total{");
+            labels(out, route);
+            out.append("} ").append(route.getBytesOut()).append('\n');
+        }
+
+        return out.toString();
+    }
+
+    private static void histograms(StringBuilder out, List<RouteMetrics> routes, String name, String help,
+                                   Function<RouteMetrics, Histogram> histogram) {
+        header(out, name, "histogram", help);
+
+        for (RouteMetrics route : routes) {
+            Histogram.Snapshot snapshot = histogram.apply(route).snapshot();
+
+            for (int exp = MIN_BOUND_EXP; exp <= MAX_BOUND_EXP; exp += 2) {
+                long bound = 1L << exp;
+
+                out.append(name).append("_bucket{");
+                labels(out, route);
+                out.append(",le=\"").append(seconds(bound)).append("\"} ").append(snapshot.countBelow(bound)).append('\n');
+            }
+
+            out.append(name).append("_bucket{");
+            labels(out, route);
+            out.append(",le=\"+Inf\"} ").append(snapshot.count()).append('\n');
+
+            out.append(name).append("_sum{");
+            labels(out, route);
+            out.append("} ").append(seconds(snapshot.sum())).append('\n');
+
+            out.append(name).append("_count{");
+            labels(out, route);
+            out.append("} ").append(snapshot.count()).append('\n');
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void labels(StringBuilder out, RouteMetrics route) {
+        out.append("method=\"").append(route.getVerb()).append("\",route=\"");
+        escape(out, route.getPath());
+        out.append('"');
+    }
+
+    private static void escape(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    private static String seconds(long micros) {
+        return BigDecimal.valueOf(micros).movePointLeft(6).toPlainString();
+    }
+
+}
@@ -0,0 +1,270 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.metrics;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.config.Conf;
+import org.rapidoid.config.Config;
+import org.rapidoid.http.Route;
+import org.rapidoid.insight.Histogram;
+import org.rapidoid.log.Log;
+import org.rapidoid.u.U;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The request counts per status code, the latency histograms and the traffic of a route. The metrics of the routes
+ * are kept by their verb and path, so they survive the re-registration of the routes.
+ * <p>
+ * The latencies are recorded in microseconds:
+ * <ul>
+ * <li>duration - from the request's arrival to the completion of its response</li>
+ * <li>queue wait - from the arrival until the handler starts (e.g. waiting in the executor's queue)</li>
+ * <li>handler time - the execution of the handler</li>
+ * <li>render time - from the handler's result to the completion of its response</li>
+ * </ul>
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class RouteMetrics extends RapidoidThing implements RouteMetricsMXBean {
+
+    private static final Config CONFIG = Conf.HTTP.sub("metrics");
+
+    private static final boolean ENABLED = CONFIG.entry("enabled").or(true);
+
+    private static final boolean JMX = CONFIG.entry("jmx").or(true);
+
+    private static final ConcurrentMap<String, RouteMetrics> ALL = new ConcurrentHashMap<>();
+
+    private final String verb;
+
+    private final String path;
+
+    private final ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    private final Histogram duration = new Histogram();
+
+    private final Histogram queueWait = new Histogram();
+
+    private final Histogram handlerTime = new Histogram();
+
+    private final Histogram renderTime = new Histogram();
+
+    private final LongAdder bytesIn = new LongAdder();
+
+    private final LongAdder bytesOut = new LongAdder();
+
+    private RouteMetrics(String verb, String path) {
+        this.verb = verb;
+        this.path = path;
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * The metrics of the route, or null if the metrics are disabled.
+     */
+    public static RouteMetrics of(Route route) {
+        if (!ENABLED) return null;
+
+        String verb = route.verb().name();
+        String path = route.path();
+
+        RouteMetrics metrics = ALL.get(verb + " " + path);
+        if (metrics != null) return metrics;
+
+        RouteMetrics created = new RouteMetrics(verb, path);
+        metrics = ALL.putIfAbsent(verb + " " + path, created);
+
+        if (metrics == null) {
+            if (JMX) created.registerMBean();
+            metrics = created;
+        }
+
+        return metrics;
+    }
+
+    /**
+     * The metrics of all routes, sorted by path and verb.
+     */
+    public static List<RouteMetrics> all() {
+        List<RouteMetrics> all = U.list(ALL.values());
+
+        all.sort((a, b) -> {
+            int cmp = a.path.compareTo(b.path);
+            return cmp != 0 ? cmp : a.verb.compareTo(b.verb);
+        });
+
+        return all;
+    }
+
+    private void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("org.rapidoid:type=Route,name=" + ObjectName.quote(verb + " " + path));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+
+        } catch (Exception e) {
+            Log.warn("Couldn't register the route metrics with JMX!", "route", verb + " " + path, "error", e);
+        }
+    }
+
+    /**
+     * Records a completed request. The times are in nanoseconds, and the negative values weren't measured.
+     */
+    public void record(int status, long queueWaitNanos, long handlerNanos, long renderNanos, long durationNanos,
+                       long requestBytes, long responseBytes) {
+
+        LongAdder counter = statuses.get(status);
+
+        if (counter == null) {
+            counter = statuses.computeIfAbsent(status, code -> new LongAdder());
+        }
+
+        counter.increment();
+
+        duration.record(durationNanos / 1000);
+
+        if (queueWaitNanos >= 0) queueWait.record(queueWaitNanos / 1000);
+        if (handlerNanos >= 0) handlerTime.record(handlerNanos / 1000);
+        if (renderNanos >= 0) renderTime.record(renderNanos / 1000);
+
+        if (requestBytes > 0) bytesIn.add(requestBytes);
+        if (responseBytes > 0) bytesOut.add(responseBytes);
+    }
+
+    public Map<Integer, Long> statuses() {
+        Map<Integer, Long> counts = U.map();
+
+        for (Map.Entry<Integer, LongAdder> e : statuses.entrySet()) {
+            counts.put(e.getKey(), e.getValue().sum());
+        }
+
+        return Collections.unmodifiableMap(counts);
+    }
+
+    public Histogram duration() {
+        return duration;
+    }
+
+    public Histogram queueWait() {
+        return queueWait;
+    }
+
+    public Histogram handlerTime() {
+        return handlerTime;
+    }
+
+    public Histogram renderTime() {
+        return renderTime;
+    }
+
+    @Override
+    public String getVerb() {
+        return verb;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public long getRequests() {
+        long n = 0;
+
+        for (LongAdder counter : statuses.values()) {
+            n += counter.sum();
+        }
+
+        return n;
+    }
+
+    @Override
+    public long getServerErrors() {
+        long n = 0;
+
+        for (Map.Entry<Integer, LongAdder> e : statuses.entrySet()) {
+            if (e.getKey() >= 500) n += e.getValue().sum();
+        }
+
+        return n;
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getLatencyP50() {
+        return duration.snapshot().percentile(50);
+    }
+
+    @Override
+    public long getLatencyP99() {
+        return duration.snapshot().percentile(99);
+    }
+
+    @Override
+    public long getLatencyP999() {
+        return duration.snapshot().percentile(99.9);
+    }
+
+    @Override
+    public long getQueueWaitP99() {
+        return queueWait.snapshot().percentile(99);
+    }
+
+    @Override
+    public long getHandlerTimeP99() {
+        return handlerTime.snapshot().percentile(99);
+    }
+
+    @Override
+    public long getRenderTimeP99() {
+        return renderTime.snapshot().percentile(99);
+    }
+
+    @Override
+    public String toString() {
+        return "RouteMetrics{" +
+                "route='" + verb + " " + path + '\'' +
+                ", statuses=" + statuses() +
+                ", duration=" + duration +
+                '}';
+    }
+}
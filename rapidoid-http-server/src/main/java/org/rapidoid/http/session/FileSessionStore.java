@@ -0,0 +1,375 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.session;
+
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.log.Log;
+import org.rapidoid.u.U;
+
+import java.io.*;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the encoded sessions in memory (like {@link InMemorySessionStore}), and also appends the changes to a log of
+ * segment files, so the sessions survive the restarts. When the current segment grows beyond the segment size, a new
+ * segment is started with a snapshot of the live sessions, and the older segments are deleted.
+ * <p>
+ * The changes of each session are ordered by a (striped) per-session lock, and queued for the log. The first thread
+ * that finds the queue not empty appends all the queued records with a single flush, while the others return
+ * immediately. The directory and the segments are created with owner-only permissions (where supported).
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class FileSessionStore extends InMemorySessionStore implements Closeable {
+
+    private static final String PREFIX = "sessions-";
+
+    private static final String SUFFIX = ".log";
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("sessions-\\d+\\.log");
+
+    private static final byte SAVE = 1;
+
+    private static final byte REMOVE = 2;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private static final int MAX_BATCH = 1024;
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private static final Set<PosixFilePermission> DIR_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+
+    private final File dir;
+
+    private final long segmentSize;
+
+    // keep the records of each session in the same order as the changes in memory
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final Queue<Record> pending = new ConcurrentLinkedQueue<>();
+
+    // held by the thread that appends the pending records
+    private final AtomicBoolean appending = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    // guarded by this
+    private long segmentIndex;
+
+    // guarded by this
+    private DataOutputStream out;
+
+    // the size of the snapshot at the start of the current segment, guarded by this
+    private long snapshotSize;
+
+    private volatile boolean loading;
+
+    private static final class Record {
+        final byte op;
+        final String sessionId;
+        final byte[] session;
+
+        Record(byte op, String sessionId, byte[] session) {
+            this.op = op;
+            this.sessionId = sessionId;
+            this.session = session;
+        }
+    }
+
+    /**
+     * @param segmentSize in bytes
+     */
+    public FileSessionStore(File dir, long maxIdle, long capacity, long segmentSize) {
+        super(maxIdle, capacity);
+
+        U.must(segmentSize > 0, "Invalid segment size: %s", segmentSize);
+
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+
+        if (!dir.isDirectory()) createDir(dir);
+
+        synchronized (this) {
+            File[] segments = segments();
+
+            loading = true;
+            try {
+                for (File segment : segments) {
+                    replay(segment);
+                }
+            } finally {
+                loading = false;
+            }
+
+            if (segments.length > 0) {
+                segmentIndex = indexOf(segments[segments.length - 1]);
+            }
+
+            // the replayed segments are compacted into a new one
+            startSegment();
+        }
+
+        Log.info("Loaded the stored sessions", "dir", dir, "count", size());
+    }
+
+    @Override
+    public void save(String sessionId, byte[] session) {
+        U.must(!closed, "The session store is closed!");
+
+        synchronized (lockOf(sessionId)) {
+            super.save(sessionId, session);
+            pending.add(new Record(SAVE, sessionId, session));
+        }
+
+        appendPending();
+    }
+
+    @Override
+    public void remove(String sessionId) {
+        U.must(!closed, "The session store is closed!");
+
+        synchronized (lockOf(sessionId)) {
+            super.remove(sessionId);
+            pending.add(new Record(REMOVE, sessionId, null));
+        }
+
+        appendPending();
+    }
+
+    @Override
+    protected void onEvicted(String sessionId) {
+        if (loading) return;
+
+        // no lock here, the eviction can be caused by a change of another session, while holding its lock
+        if (!asMap().containsKey(sessionId)) {
+            pending.add(new Record(REMOVE, sessionId, null));
+            appendPending();
+        }
+    }
+
+    private Object lockOf(String sessionId) {
+        return locks[(sessionId.hashCode() & 0x7fffffff) % locks.length];
+    }
+
+    private void appendPending() {
+        // the records queued while appending are appended by the same thread, or by the next one
+        while (!pending.isEmpty() && appending.compareAndSet(false, true)) {
+            try {
+                synchronized (this) {
+                    appendBatch();
+                }
+            } finally {
+                appending.set(false);
+            }
+        }
+    }
+
+    private void appendBatch() {
+        if (out == null) {
+            pending.clear();
+            Log.warn("The session store was closed, the pending changes weren't stored!", "dir", dir);
+            return;
+        }
+
+        Record record;
+        for (int i = 0; i < MAX_BATCH && (record = pending.poll()) != null; i++) {
+            writeRecord(record.op, record.sessionId, record.session);
+        }
+
+        flush();
+
+        // the segment isn't compacted while most of it is the snapshot of the live sessions
+        if (out.size() > segmentSize && out.size() > 2 * snapshotSize) startSegment();
+    }
+
+    private void writeRecord(byte op, String sessionId, byte[] session) {
+        try {
+            out.writeByte(op);
+            out.writeUTF(sessionId);
+
+            if (op == SAVE) {
+                out.writeInt(session.length);
+                out.write(session);
+            }
+
+        } catch (IOException e) {
+            throw U.rte("Couldn't write to the session store!", e);
+        }
+    }
+
+    private void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw U.rte("Couldn't write to the session store!", e);
+        }
+    }
+
+    private void startSegment() {
+        closeSegment();
+
+        segmentIndex++;
+        File segment = segmentFile(segmentIndex);
+
+        try {
+            Path path = segment.toPath();
+            if (POSIX) Files.createFile(path, ownerOnly(FILE_PERMISSIONS));
+
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        } catch (IOException e) {
+            throw U.rte("Couldn't create the session store segment: " + segment, e);
+        }
+
+        // the new segment starts with a snapshot of the live sessions
+        for (Map.Entry<String, byte[]> e : asMap().entrySet()) {
+            writeRecord(SAVE, e.getKey(), e.getValue());
+        }
+
+        flush();
+        snapshotSize = out.size();
+
+        // the older segments are not needed anymore
+        for (File old : segments()) {
+            if (indexOf(old) < segmentIndex && !old.delete()) {
+                Log.warn("Couldn't delete the old session store segment!", "file", old);
+            }
+        }
+    }
+
+    private void replay(File segment) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)))) {
+
+            while (true) {
+                int op = in.read();
+                if (op < 0) break;
+
+                String sessionId = in.readUTF();
+
+                if (op == SAVE) {
+                    byte[] session = new byte[in.readInt()];
+                    in.readFully(session);
+                    super.save(sessionId, session);
+
+                } else if (op == REMOVE) {
+                    super.remove(sessionId);
+
+                } else {
+                    Log.warn("Invalid record in the session store segment!", "file", segment, "op", op);
+                    break;
+                }
+            }
+
+        } catch (EOFException e) {
+            // the last record is incomplete, e.g. the process was killed while writing it
+            Log.warn("Incomplete record at the end of the session store segment!", "file", segment);
+
+        } catch (IOException e) {
+            throw U.rte("Couldn't read the session store segment: " + segment, e);
+        }
+    }
+
+    private static void createDir(File dir) {
+        try {
+            if (POSIX) {
+                Files.createDirectories(dir.toPath(), ownerOnly(DIR_PERMISSIONS));
+            } else {
+                Files.createDirectories(dir.toPath());
+            }
+        } catch (IOException e) {
+            throw U.rte("Couldn't create the sessions directory: " + dir, e);
+        }
+    }
+
+    private static FileAttribute<Set<PosixFilePermission>> ownerOnly(Set<PosixFilePermission> permissions) {
+        return PosixFilePermissions.asFileAttribute(permissions);
+    }
+
+    private File[] segments() {
+        File[] files = dir.listFiles((d, name) -> SEGMENT_NAME.matcher(name).matches());
+        if (files == null) return new File[0];
+
+        Arrays.sort(files, (a, b) -> Long.compare(indexOf(a), indexOf(b)));
+        return files;
+    }
+
+    private File segmentFile(long index) {
+        return new File(dir, PREFIX + index + SUFFIX);
+    }
+
+    private static long indexOf(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private void closeSegment() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                Log.error("Couldn't close the session store segment!", e);
+            }
+
+            out = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+
+        synchronized (this) {
+            while (out != null && !pending.isEmpty()) {
+                appendBatch();
+            }
+
+            closeSegment();
+        }
+    }
+
+    public File dir() {
+        return dir;
+    }
+
+    public long segmentSize() {
+        return segmentSize;
+    }
+
+}
@@ -0,0 +1,155 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.session;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the encoded sessions in memory, and evicts them after they weren't used for the specified time (max idle), or
+ * when there are too many of them (capacity).
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class InMemorySessionStore extends RapidoidThing implements SessionStore {
+
+    private final long maxIdle;
+
+    private final long capacity;
+
+    private final Cache<String, byte[]> sessions;
+
+    private final LongAdder expired = new LongAdder();
+
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * @param maxIdle  in ms (0 = unlimited)
+     * @param capacity the max number of sessions (0 = unlimited)
+     */
+    public InMemorySessionStore(long maxIdle, long capacity) {
+        this.maxIdle = maxIdle;
+        this.capacity = capacity;
+
+        Caffeine<Object, Object> builder = Caffeine.newBuilder();
+
+        if (maxIdle > 0) {
+            builder.expireAfterAccess(maxIdle, TimeUnit.MILLISECONDS);
+        }
+
+        if (capacity > 0) {
+            builder.maximumSize(capacity);
+        }
+
+        // the listener is notified on the thread that caused the eviction
+        builder.executor(Runnable::run);
+
+        this.sessions = builder.<String, byte[]>removalListener((id, session, cause) -> {
+            if (cause == RemovalCause.EXPIRED) {
+                expired.increment();
+                onEvicted(id);
+
+            } else if (cause.wasEvicted()) {
+                evicted.increment();
+                onEvicted(id);
+            }
+        }).build();
+    }
+
+    /**
+     * Called when the session was evicted (because it expired or the capacity was exceeded).
+     */
+    protected void onEvicted(String sessionId) {
+    }
+
+    @Override
+    public byte[] load(String sessionId) {
+        return sessions.getIfPresent(sessionId);
+    }
+
+    @Override
+    public void save(String sessionId, byte[] session) {
+        sessions.put(sessionId, session);
+    }
+
+    @Override
+    public void remove(String sessionId) {
+        sessions.invalidate(sessionId);
+    }
+
+    @Override
+    public long size() {
+        return sessions.estimatedSize();
+    }
+
+    /**
+     * Evicts the expired sessions now, instead of gradually (during the other operations).
+     */
+    public void cleanUp() {
+        sessions.cleanUp();
+    }
+
+    protected Map<String, byte[]> asMap() {
+        return sessions.asMap();
+    }
+
+    /**
+     * The number of sessions that were evicted because they weren't used for the max idle time.
+     */
+    public long expired() {
+        return expired.sum();
+    }
+
+    /**
+     * The number of sessions that were evicted because the capacity was exceeded.
+     */
+    public long evicted() {
+        return evicted.sum();
+    }
+
+    public long maxIdle() {
+        return maxIdle;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+                "size=" + size() +
+                ", maxIdle=" + maxIdle +
+                ", capacity=" + capacity +
+                ", expired=" + expired() +
+                ", evicted=" + evicted() +
+                '}';
+    }
+
+}
@@ -0,0 +1,152 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.session;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.collection.Coll;
+import org.rapidoid.serialize.Serialize;
+import org.rapidoid.u.U;
+import org.rapidoid.util.Msc;
+import org.rapidoid.util.TUUID;
+
+import java.io.Serializable;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Encodes the sessions in the compact binary format of {@link Serialize}. The sessions with values that can't be
+ * restored with the same type by that format (e.g. custom classes) are encoded with the Java serialization.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class SessionCodec extends RapidoidThing {
+
+    private static final byte BINARY = 'R';
+
+    private static final byte JAVA = 'J';
+
+    private static final int MAX_SIZE = 64 * 1024 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(4 * 1024));
+
+    public static byte[] encode(Map<String, Serializable> session) {
+        if (!isPortable(session.values())) {
+            byte[] serialized = Msc.serialize(U.map(session));
+
+            byte[] bytes = new byte[serialized.length + 1];
+            bytes[0] = JAVA;
+            System.arraycopy(serialized, 0, bytes, 1, serialized.length);
+
+            return bytes;
+        }
+
+        ByteBuffer buf = BUFFERS.get();
+
+        while (true) {
+            try {
+                buf.clear();
+                buf.put(BINARY);
+                Serialize.serialize(buf, session);
+                break;
+
+            } catch (BufferOverflowException e) {
+                U.must(buf.capacity() < MAX_SIZE, "The session is too big!");
+
+                buf = ByteBuffer.allocate(buf.capacity() * 2);
+                BUFFERS.set(buf);
+            }
+        }
+
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    public static Map<String, Serializable> decode(byte[] bytes) {
+        U.must(bytes.length > 0, "Invalid encoded session!");
+
+        Object decoded;
+
+        switch (bytes[0]) {
+            case BINARY:
+                decoded = Serialize.deserialize(ByteBuffer.wrap(bytes, 1, bytes.length - 1));
+                break;
+
+            case JAVA:
+                decoded = Msc.deserialize(Arrays.copyOfRange(bytes, 1, bytes.length));
+                break;
+
+            default:
+                throw U.rte("Unknown session encoding: " + bytes[0]);
+        }
+
+        Map<String, Serializable> session = Coll.concurrentMap();
+        session.putAll(U.<Map<String, Serializable>>cast(decoded));
+
+        return session;
+    }
+
+    private static boolean isPortable(Collection<Serializable> values) {
+        for (Serializable value : values) {
+            if (!isPortable(value)) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks if the value will be decoded from the binary format as a value of the same (or compatible) type.
+     */
+    static boolean isPortable(Object value) {
+        if (value == null) return true;
+
+        Class<?> type = value.getClass();
+
+        if (type == String.class || type == Integer.class || type == Long.class || type == Boolean.class
+                || type == Double.class || type == Float.class || type == Short.class || type == Byte.class
+                || type == Character.class || type == Date.class || type == UUID.class || type == TUUID.class
+                || type == byte[].class || type == int[].class || type == long[].class || type == boolean[].class
+                || type == short[].class || type == char[].class || type == float[].class || type == double[].class) {
+            return true;
+        }
+
+        // the collections are decoded as ArrayList, LinkedHashSet and LinkedHashMap
+        if (type == ArrayList.class || type == HashSet.class || type == LinkedHashSet.class) {
+            for (Object item : (Collection<?>) value) {
+                if (!isPortable(item)) return false;
+            }
+
+            return true;
+        }
+
+        if (type == HashMap.class || type == LinkedHashMap.class) {
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                if (!isPortable(e.getKey()) || !isPortable(e.getValue())) return false;
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+}
@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.http.websocket;
+
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.http.Req;
+
+/**
+ * WebSocket connection API. The messages can be sent from any thread.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public interface WebSocket {
+
+    /**
+     * Gets the unique ID of the WebSocket connection.
+     */
+    long id();
+
+    /**
+     * Gets the HTTP request that was upgraded to this WebSocket connection.
+     */
+    Req req();
+
+    /**
+     * Gets the group of the WebSocket connections on the same route.
+     */
+    WebSocketGroup group();
+
+    /**
+     * Sends a text message. Returns <code>false</code> if the message was dropped, because the connection is closed
+     * or the peer didn't catch up with the previous messages yet.
+     */
+    boolean send(String text);
+
+    /**
+     * Sends a binary message. Returns <code>false</code> if the message was dropped, because the connection is
+     * closed or the peer didn't catch up with the previous messages yet.
+     */
+    boolean send(byte[] data);
+
+    /**
+     * Sends a ping, the peer is expected to answer with a pong.
+     */
+    void ping();
+
+    /**
+     * Starts the closing handshake, the connection is closed when the peer confirms it.
+     */
+    void close(int code, String reason);
+
+    /**
+     * Starts the closing handshake with the normal closure code (1000).
+     */
+    void close();
+
+    /**
+     * Checks if the connection is open, and the closing handshake wasn't started.
+     */
+    boolean isOpen();
+
+    /**
+     * Checks if the pending output is small enough to accept new messages.
+     */
+    boolean isWritable();
+
+}
@@ -0,0 +1,530 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.http.websocket;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.Buf;
+import org.rapidoid.data.BufRange;
+import org.rapidoid.http.Req;
+import org.rapidoid.job.Jobs;
+import org.rapidoid.log.Log;
+import org.rapidoid.net.StatefulProtocol;
+import org.rapidoid.net.abstracts.Channel;
+import org.rapidoid.u.U;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.rapidoid.http.websocket.WebSockets.*;
+
+/**
+ * A WebSocket connection, which is also the protocol that parses the frames on the upgraded channel. The frames are
+ * unmasked from the connection's input buffer into a reusable message buffer, where the fragments are assembled.
+ * <p>
+ * The frames are parsed on the I/O thread, while the messages can be sent from any thread, with the channel locked.
+ * The listener is also called on the I/O thread, unless http.websocket.offload is enabled, in which case the
+ * callbacks are executed by the job executor, one at a time and in order for each connection.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class WebSocketConn extends RapidoidThing implements WebSocket, StatefulProtocol {
+
+    private static final int INITIAL_MESSAGE_SIZE = 256;
+
+    // the larger message buffers aren't kept while the connection is idle
+    private static final int MAX_RETAINED_MESSAGE_SIZE = 64 * 1024;
+
+    private static final byte[] PING_FRAME = frame(OP_PING, new byte[0]);
+
+    private final Channel channel;
+
+    private final long connId;
+
+    private final Req req;
+
+    private final WebSocketGroup group;
+
+    private final WebSocketListener listener;
+
+    private volatile boolean closeSent;
+
+    private volatile boolean closed;
+
+    private volatile long lastReceived;
+
+    // the parsing state, accessed only by the I/O thread
+
+    private final BufRange range = new BufRange();
+
+    private final byte[] mask = new byte[4];
+
+    private final byte[] control = new byte[MAX_CONTROL_PAYLOAD];
+
+    private byte[] message = new byte[INITIAL_MESSAGE_SIZE];
+
+    private int messageLen;
+
+    // the opcode of the message that is being assembled from fragments (0 = none)
+    private int messageOpcode;
+
+    private boolean closeReceived;
+
+    private int closeCode = CLOSE_ABNORMAL;
+
+    private String closeReason = "";
+
+    // the text messages are decoded strictly, so the invalid UTF-8 is reported instead of replaced
+    private final CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder();
+
+    // the listener callbacks that wait to be executed, if they are offloaded from the I/O thread
+    private final Queue<Runnable> callbacks = OFFLOAD ? new ConcurrentLinkedQueue<>() : null;
+
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+
+    public WebSocketConn(Channel channel, Req req, WebSocketGroup group, WebSocketListener listener) {
+        this.channel = channel;
+        this.connId = channel.connId();
+        this.req = req;
+        this.group = group;
+        this.listener = listener;
+        this.lastReceived = U.time();
+    }
+
+    /**
+     * Must be called after the handshake response was written and the channel was switched to this protocol.
+     */
+    public void opened() {
+        group.add(this);
+        dispatch(() -> listener.onOpen(this));
+    }
+
+    @Override
+    public void process(Channel ctx) {
+        Buf in = ctx.input();
+
+        lastReceived = U.time();
+
+        if (closeReceived) {
+            // nothing is expected after the close frame
+            in.skip(in.remaining());
+            return;
+        }
+
+        int start = in.position();
+        int available = in.remaining();
+
+        if (available < 2) throw Buf.INCOMPLETE_READ;
+
+        int b0 = in.get(start) & 0xFF;
+        int b1 = in.get(start + 1) & 0xFF;
+
+        boolean fin = (b0 & FIN) != 0;
+        int opcode = b0 & 0x0F;
+        boolean masked = (b1 & 0x80) != 0;
+
+        long length = b1 & 0x7F;
+        int headerLen = 2;
+
+        if (length == 126) {
+            headerLen = 4;
+            if (available < headerLen) throw Buf.INCOMPLETE_READ;
+
+            length = ((in.get(start + 2) & 0xFF) << 8) | (in.get(start + 3) & 0xFF);
+
+        } else if (length == 127) {
+            headerLen = 10;
+            if (available < headerLen) throw Buf.INCOMPLETE_READ;
+
+            // the most significant bit must be 0, so the sign is checked before the length is used
+            if ((in.get(start + 2) & 0x80) != 0) {
+                fail(ctx, CLOSE_PROTOCOL_ERROR, "Invalid frame length!");
+                return;
+            }
+
+            length = 0;
+            for (int i = 0; i < 8; i++) {
+                length = (length << 8) | (in.get(start + 2 + i) & 0xFF);
+            }
+
+            if (length > Integer.MAX_VALUE) {
+                fail(ctx, CLOSE_TOO_BIG, "The frame is too big!");
+                return;
+            }
+        }
+
+        String error = validate(b0, opcode, fin, masked, length);
+
+        if (error != null) {
+            fail(ctx, CLOSE_PROTOCOL_ERROR, error);
+            return;
+        }
+
+        boolean controlFrame = isControl(opcode);
+
+        if (!controlFrame && length > MAX_MESSAGE_SIZE - messageLen) {
+            fail(ctx, CLOSE_TOO_BIG, "The message is too big!");
+            return;
+        }
+
+        int len = (int) length;
+        int maskPos = start + headerLen;
+        int total = headerLen + 4 + len;
+
+        // the whole frame is needed, so it is parsed again when more data arrives
+        if (available < total) throw Buf.INCOMPLETE_READ;
+
+        for (int i = 0; i < 4; i++) {
+            mask[i] = in.get(maskPos + i);
+        }
+
+        byte[] dest;
+        int offset;
+
+        if (controlFrame) {
+            dest = control;
+            offset = 0;
+        } else {
+            requireMessageCapacity(messageLen + len);
+            dest = message;
+            offset = messageLen;
+        }
+
+        range.start = maskPos + 4;
+        range.length = len;
+        in.get(range, dest, offset);
+
+        for (int i = 0; i < len; i++) {
+            dest[offset + i] ^= mask[i & 3];
+        }
+
+        in.position(start + total);
+
+        if (controlFrame) {
+            onControl(ctx, opcode, len);
+
+        } else {
+            if (opcode != OP_CONTINUATION) messageOpcode = opcode;
+            messageLen += len;
+
+            if (fin) onMessage(ctx);
+        }
+    }
+
+    private String validate(int b0, int opcode, boolean fin, boolean masked, long length) {
+        if ((b0 & 0x70) != 0) return "The reserved bits must be 0!";
+
+        if (!masked) return "The client frames must be masked!";
+
+        switch (opcode) {
+            case OP_CONTINUATION:
+                return messageOpcode == 0 ? "Unexpected continuation frame!" : null;
+
+            case OP_TEXT:
+            case OP_BINARY:
+                return messageOpcode != 0 ? "Expected a continuation frame!" : null;
+
+            case OP_CLOSE:
+            case OP_PING:
+            case OP_PONG:
+                if (!fin) return "The control frames cannot be fragmented!";
+                return length > MAX_CONTROL_PAYLOAD ? "The control frame payload is too big!" : null;
+
+            default:
+                return "Unknown opcode: " + opcode;
+        }
+    }
+
+    private void requireMessageCapacity(int capacity) {
+        if (capacity > message.length) {
+            message = Arrays.copyOf(message, Math.max(capacity, Math.min(message.length * 2, MAX_MESSAGE_SIZE)));
+        }
+    }
+
+    private void onMessage(Channel ctx) {
+        int opcode = messageOpcode;
+        int len = messageLen;
+
+        messageOpcode = 0;
+        messageLen = 0;
+
+        if (opcode == OP_TEXT) {
+            String text = decodeText(message, 0, len);
+
+            if (text == null) {
+                fail(ctx, CLOSE_INVALID_DATA, "Invalid UTF-8 text!");
+                return;
+            }
+
+            dispatch(() -> listener.onText(this, text));
+
+        } else {
+            byte[] data = Arrays.copyOf(message, len);
+            dispatch(() -> listener.onBinary(this, data));
+        }
+
+        if (message.length > MAX_RETAINED_MESSAGE_SIZE) {
+            message = new byte[INITIAL_MESSAGE_SIZE];
+        }
+    }
+
+    /**
+     * Decodes the UTF-8 text, or returns null if it isn't valid.
+     */
+    private String decodeText(byte[] src, int offset, int len) {
+        try {
+            return utf8.decode(ByteBuffer.wrap(src, offset, len)).toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Executes the listener callback on the I/O thread, or queues it for the job executor if the callbacks are
+     * offloaded. The queued callbacks are drained by at most one job at a time, to preserve their order.
+     */
+    private void dispatch(Runnable callback) {
+        if (!OFFLOAD) {
+            invoke(callback);
+            return;
+        }
+
+        callbacks.add(callback);
+
+        if (dispatching.compareAndSet(false, true)) {
+            try {
+                Jobs.executor().execute(this::drainCallbacks);
+            } catch (RejectedExecutionException e) {
+                Log.debug("The WebSocket callbacks were rejected by the executor, executing them on the I/O thread");
+                drainCallbacks();
+            }
+        }
+    }
+
+    private void drainCallbacks() {
+        do {
+            Runnable callback;
+            while ((callback = callbacks.poll()) != null) {
+                invoke(callback);
+            }
+
+            dispatching.set(false);
+
+            // a callback might have been queued after the queue was found empty, but before the flag was cleared
+        } while (!callbacks.isEmpty() && dispatching.compareAndSet(false, true));
+    }
+
+    private void invoke(Runnable callback) {
+        try {
+            callback.run();
+
+        } catch (Exception e) {
+            Log.error("Error in the WebSocket listener!", e);
+
+            // can be called from any thread, so the connection is closed without touching its input
+            sendClose(CLOSE_INTERNAL_ERROR, "Internal error!");
+            abort();
+        }
+    }
+
+    private void onControl(Channel ctx, int opcode, int len) {
+        switch (opcode) {
+            case OP_PING:
+                writeFrame(frame(OP_PONG, control, 0, len), false);
+                break;
+
+            case OP_PONG:
+                // the peer is alive, which is already noted
+                break;
+
+            case OP_CLOSE:
+                closeReceived = true;
+
+                if (len >= 2) {
+                    closeCode = ((control[0] & 0xFF) << 8) | (control[1] & 0xFF);
+                    String reason = decodeText(control, 2, len - 2);
+
+                    if (reason == null) {
+                        closeReceived = false;
+                        fail(ctx, CLOSE_INVALID_DATA, "Invalid UTF-8 close reason!");
+                        return;
+                    }
+
+                    closeReason = reason;
+                } else {
+                    closeCode = CLOSE_NO_STATUS;
+                }
+
+                // confirm the closing handshake (if it wasn't started here), then close the connection
+                sendClose(len >= 2 ? closeCode : CLOSE_NORMAL, "");
+                ctx.close();
+                break;
+
+            default:
+                throw U.rte("Unexpected control frame: " + opcode);
+        }
+    }
+
+    /**
+     * Closes the connection due to invalid input, ignoring the rest of it.
+     */
+    private void fail(Channel ctx, int code, String reason) {
+        Log.debug("Closing the WebSocket connection", "code", code, "reason", reason);
+
+        closeReceived = true;
+        closeCode = code;
+        closeReason = reason;
+
+        Buf in = ctx.input();
+        in.skip(in.remaining());
+
+        sendClose(code, reason);
+        ctx.close();
+    }
+
+    private boolean sendClose(int code, String reason) {
+        synchronized (channel) {
+            if (closeSent) return false;
+            closeSent = true;
+
+            return writeFrame(closeFrame(code, reason), false);
+        }
+    }
+
+    /**
+     * Writes the frame to the channel, unless the channel was closed (and reused). The data frames are also dropped
+     * while the pending output is too large.
+     */
+    private boolean writeFrame(byte[] frame, boolean isData) {
+        synchronized (channel) {
+            if (channel.isClosed() || channel.connId() != connId) return false;
+
+            if (isData && (closeSent || channel.pendingOutput() > MAX_PENDING_OUTPUT)) return false;
+
+            channel.write(frame);
+            channel.send();
+        }
+
+        return true;
+    }
+
+    boolean sendFrame(byte[] frame) {
+        return !closeSent && writeFrame(frame, true);
+    }
+
+    long lastReceived() {
+        return lastReceived;
+    }
+
+    /**
+     * Closes the connection without the closing handshake, e.g. when the peer stopped responding.
+     */
+    void abort() {
+        synchronized (channel) {
+            if (!channel.isClosed() && channel.connId() == connId) {
+                channel.close();
+            }
+        }
+    }
+
+    @Override
+    public void closed(Channel ctx) {
+        if (closed) return;
+
+        closed = true;
+        closeSent = true;
+
+        group.remove(this);
+
+        int code = closeCode;
+        String reason = closeReason;
+
+        dispatch(() -> listener.onClose(this, code, reason));
+    }
+
+    @Override
+    public long id() {
+        return connId;
+    }
+
+    @Override
+    public Req req() {
+        return req;
+    }
+
+    @Override
+    public WebSocketGroup group() {
+        return group;
+    }
+
+    @Override
+    public boolean send(String text) {
+        return !closeSent && sendFrame(textFrame(text));
+    }
+
+    @Override
+    public boolean send(byte[] data) {
+        return !closeSent && sendFrame(binaryFrame(data));
+    }
+
+    @Override
+    public void ping() {
+        if (!closeSent) writeFrame(PING_FRAME, false);
+    }
+
+    @Override
+    public void close(int code, String reason) {
+        sendClose(code, reason);
+    }
+
+    @Override
+    public void close() {
+        close(CLOSE_NORMAL, "");
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closeSent && !closed;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return isOpen() && channel.connId() == connId && channel.pendingOutput() <= MAX_PENDING_OUTPUT;
+    }
+
+    @Override
+    public String toString() {
+        return "WebSocketConn{" +
+                "id=" + connId +
+                ", open=" + isOpen() +
+                '}';
+    }
+
+}
@@ -0,0 +1,123 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.http.websocket;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.collection.Coll;
+import org.rapidoid.job.Jobs;
+import org.rapidoid.u.U;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The open WebSocket connections on a route. The broadcast messages are encoded once, and the same frame is written
+ * to all the connections.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class WebSocketGroup extends RapidoidThing {
+
+    private final Set<WebSocketConn> sockets = Coll.concurrentSet();
+
+    // pings the connections while the group isn't empty
+    private ScheduledFuture<?> pinger;
+
+    /**
+     * Sends the text message to all the writable connections, and returns the number of connections that received
+     * it.
+     */
+    public int broadcast(String text) {
+        return broadcastFrame(WebSockets.textFrame(text));
+    }
+
+    /**
+     * Sends the binary message to all the writable connections, and returns the number of connections that received
+     * it.
+     */
+    public int broadcast(byte[] data) {
+        return broadcastFrame(WebSockets.binaryFrame(data));
+    }
+
+    private int broadcastFrame(byte[] frame) {
+        int count = 0;
+
+        for (WebSocketConn ws : sockets) {
+            if (ws.sendFrame(frame)) count++;
+        }
+
+        return count;
+    }
+
+    public Set<WebSocket> sockets() {
+        return Collections.unmodifiableSet(sockets);
+    }
+
+    public int size() {
+        return sockets.size();
+    }
+
+    synchronized void add(WebSocketConn ws) {
+        sockets.add(ws);
+
+        if (pinger == null && WebSockets.PING_INTERVAL > 0) {
+            long interval = WebSockets.PING_INTERVAL;
+            pinger = Jobs.scheduleWithFixedDelay(this::ping, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized void remove(WebSocketConn ws) {
+        sockets.remove(ws);
+
+        if (sockets.isEmpty() && pinger != null) {
+            pinger.cancel(false);
+            pinger = null;
+        }
+    }
+
+    /**
+     * Keeps the idle connections alive, and closes the connections that didn't answer the last pings.
+     */
+    private void ping() {
+        long silentSince = U.time() - 2 * WebSockets.PING_INTERVAL;
+
+        for (WebSocketConn ws : sockets) {
+            if (ws.lastReceived() < silentSince) {
+                ws.abort();
+            } else {
+                ws.ping();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WebSocketGroup{" +
+                "size=" + sockets.size() +
+                '}';
+    }
+
+}
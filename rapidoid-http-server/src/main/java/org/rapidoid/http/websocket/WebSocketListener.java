@@ -0,0 +1,46 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.http.websocket;
+
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+
+/**
+ * The callbacks are executed on the I/O thread of the connection, so they shouldn't block. The blocking listeners
+ * can be offloaded to the job executor with http.websocket.offload, which still calls them in order per connection.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public interface WebSocketListener {
+
+    void onOpen(WebSocket ws);
+
+    void onText(WebSocket ws, String text);
+
+    void onBinary(WebSocket ws, byte[] data);
+
+    /**
+     * Called when the connection is closed, with the code received from the peer (or 1006 if there was none).
+     */
+    void onClose(WebSocket ws, int code, String reason);
+
+}
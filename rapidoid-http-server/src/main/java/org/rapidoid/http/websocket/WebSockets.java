@@ -0,0 +1,163 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.http.websocket;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.commons.Str;
+import org.rapidoid.config.Conf;
+import org.rapidoid.config.Config;
+import org.rapidoid.crypto.Crypto;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The configuration, the handshake and the frame encoding of the WebSocket protocol (RFC 6455).
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class WebSockets extends RapidoidThing {
+
+    public static final String VERSION = "13";
+
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    static final int OP_CONTINUATION = 0x0;
+
+    static final int OP_TEXT = 0x1;
+
+    static final int OP_BINARY = 0x2;
+
+    static final int OP_CLOSE = 0x8;
+
+    static final int OP_PING = 0x9;
+
+    static final int OP_PONG = 0xA;
+
+    static final int FIN = 0x80;
+
+    static final int MAX_CONTROL_PAYLOAD = 125;
+
+    public static final int CLOSE_NORMAL = 1000;
+
+    public static final int CLOSE_GOING_AWAY = 1001;
+
+    public static final int CLOSE_PROTOCOL_ERROR = 1002;
+
+    public static final int CLOSE_NO_STATUS = 1005;
+
+    public static final int CLOSE_ABNORMAL = 1006;
+
+    public static final int CLOSE_INVALID_DATA = 1007;
+
+    public static final int CLOSE_TOO_BIG = 1009;
+
+    public static final int CLOSE_INTERNAL_ERROR = 1011;
+
+    private static final Config CONFIG = Conf.HTTP.sub("websocket");
+
+    static final long PING_INTERVAL = CONFIG.entry("pingInterval").or(20000);
+
+    static final int MAX_MESSAGE_SIZE = CONFIG.entry("maxMessageSize").or(1024) * 1024;
+
+    static final long MAX_PENDING_OUTPUT = CONFIG.entry("maxPendingOutput").or(1024) * 1024L;
+
+    static final boolean OFFLOAD = CONFIG.entry("offload").bool().or(false);
+
+    /**
+     * Calculates the value of the Sec-WebSocket-Accept header, from the key sent by the client.
+     */
+    public static String acceptKey(String key) {
+        byte[] sha1 = Crypto.sha1Bytes((key.trim() + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII));
+        return Str.toBase64(sha1);
+    }
+
+    public static byte[] handshake(String key) {
+        String resp = "HTTP/1.1 101 Switching Protocols\r\n" +
+                "Upgrade: websocket\r\n" +
+                "Connection: Upgrade\r\n" +
+                "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n";
+
+        return resp.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Encodes a final (unmasked) server frame, with the payload copied after the header.
+     */
+    static byte[] frame(int opcode, byte[] payload, int offset, int length) {
+        int headerLen = length < 126 ? 2 : (length <= 0xFFFF ? 4 : 10);
+        byte[] frame = new byte[headerLen + length];
+
+        frame[0] = (byte) (FIN | opcode);
+
+        if (length < 126) {
+            frame[1] = (byte) length;
+
+        } else if (length <= 0xFFFF) {
+            frame[1] = 126;
+            frame[2] = (byte) (length >>> 8);
+            frame[3] = (byte) length;
+
+        } else {
+            frame[1] = 127;
+            for (int i = 0; i < 8; i++) {
+                frame[2 + i] = (byte) ((long) length >>> (56 - 8 * i));
+            }
+        }
+
+        System.arraycopy(payload, offset, frame, headerLen, length);
+        return frame;
+    }
+
+    static byte[] frame(int opcode, byte[] payload) {
+        return frame(opcode, payload, 0, payload.length);
+    }
+
+    static byte[] textFrame(String text) {
+        return frame(OP_TEXT, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static byte[] binaryFrame(byte[] data) {
+        return frame(OP_BINARY, data);
+    }
+
+    /**
+     * Encodes a close frame, with the reason truncated to fit in a control frame.
+     */
+    static byte[] closeFrame(int code, String reason) {
+        byte[] reasonBytes = reason != null ? reason.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int reasonLen = Math.min(reasonBytes.length, MAX_CONTROL_PAYLOAD - 2);
+
+        byte[] payload = new byte[2 + reasonLen];
+        payload[0] = (byte) (code >>> 8);
+        payload[1] = (byte) code;
+        System.arraycopy(reasonBytes, 0, payload, 2, reasonLen);
+
+        return frame(OP_CLOSE, payload);
+    }
+
+    static boolean isControl(int opcode) {
+        return (opcode & 0x8) != 0;
+    }
+
+}
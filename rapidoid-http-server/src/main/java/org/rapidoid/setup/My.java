@@ -172,6 +172,14 @@ public class My extends RapidoidThing {
         return GLOBAL.sessionManager(sessionManager);
     }
 
+    public static RequestBodySink requestBodySink() {
+        return GLOBAL.requestBodySink();
+    }
+
+    public static Customization requestBodySink(RequestBodySink requestBodySink) {
+        return GLOBAL.requestBodySink(requestBodySink);
+    }
+
     public static StaticFilesSecurity staticFilesSecurity() {
         return GLOBAL.staticFilesSecurity();
     }
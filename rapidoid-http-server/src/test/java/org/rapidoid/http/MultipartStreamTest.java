@@ -0,0 +1,115 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.http.impl.MultipartStream;
+import org.rapidoid.io.Upload;
+import org.rapidoid.test.TestCommons;
+import org.rapidoid.u.U;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class MultipartStreamTest extends TestCommons {
+
+    private static final String BOUNDARY = "----XyZ123";
+
+    @Test
+    public void testParsingInChunks() throws IOException {
+        // includes parts of the delimiter
+        String content = "\r\n-- not a delimiter --" + BOUNDARY + "x\r\n--" + BOUNDARY.substring(0, 6) + "\r\r\n"
+                + big(5000);
+        byte[] body = body(content);
+
+        // the result must not depend on how the body is split into chunks
+        for (int chunkSize : new int[]{1, 2, 3, 7, 13, 100, 4096, body.length}) {
+            MultipartStream multipart = new MultipartStream(BOUNDARY.getBytes(), 0, 1024);
+
+            for (int pos = 0; pos < body.length; pos += chunkSize) {
+                multipart.write(ByteBuffer.wrap(body, pos, Math.min(chunkSize, body.length - pos)));
+            }
+
+            multipart.close();
+
+            eq(multipart.posted(), U.map("a", "123", "b", "x y", "tags", U.list("t1", "t2")));
+
+            Upload small = multipart.files().get("f1").get(0);
+            eq(small.filename(), "small.txt");
+            eq(new String(small.content()), "hello");
+            isNull(small.file());
+
+            // spilled to disk, as it is larger than the threshold
+            Upload large = multipart.files().get("f2").get(0);
+            eq(large.filename(), "large.txt");
+            eq(new String(large.content()), content);
+            notNull(large.file());
+
+            multipart.discard();
+            isFalse(large.file().exists());
+        }
+    }
+
+    @Test
+    public void testPartLimit() throws IOException {
+        byte[] body = body(big(5000));
+
+        MultipartStream multipart = new MultipartStream(BOUNDARY.getBytes(), 1000, 100);
+        multipart.write(ByteBuffer.wrap(body));
+
+        isTrue(multipart.limitExceeded());
+    }
+
+    private static byte[] body(String largeContent) {
+        String body = "preamble\r\n"
+                + part("a", null) + "123\r\n"
+                + part("b", null) + "x+y\r\n"
+                + part("tags[]", null) + "t1\r\n"
+                + part("tags[]", null) + "t2\r\n"
+                + part("f1", "small.txt") + "hello\r\n"
+                + part("f2", "large.txt") + largeContent + "\r\n"
+                + "--" + BOUNDARY + "--\r\nepilogue";
+
+        return body.getBytes();
+    }
+
+    private static String part(String name, String filename) {
+        String disposition = "Content-Disposition: form-data; name=\"" + name + "\"";
+        if (filename != null) disposition += "; filename=\"" + filename + "\"";
+
+        return "--" + BOUNDARY + "\r\n" + disposition + "\r\n\r\n";
+    }
+
+    private static String big(int size) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < size; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,146 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.bytes.Bytes;
+import org.rapidoid.bytes.BytesUtil;
+import org.rapidoid.data.BufRange;
+import org.rapidoid.http.handler.HttpHandler;
+import org.rapidoid.http.handler.StaticHttpHandler;
+import org.rapidoid.http.impl.*;
+import org.rapidoid.test.TestCommons;
+import org.rapidoid.u.U;
+
+import java.util.List;
+import java.util.Map;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class RouteTrieTest extends TestCommons {
+
+    @Test
+    public void testCompilablePaths() {
+        isTrue(RouteTrie.isCompilable("/"));
+        isTrue(RouteTrie.isCompilable("/abc/def"));
+        isTrue(RouteTrie.isCompilable("/*"));
+        isTrue(RouteTrie.isCompilable("/msgs/*"));
+        isTrue(RouteTrie.isCompilable("/x/{id}/y"));
+        isTrue(RouteTrie.isCompilable("/hey/{name}/{age:\\d+}"));
+
+        isFalse(RouteTrie.isCompilable("/x*"));
+        isFalse(RouteTrie.isCompilable("/*/x"));
+        isFalse(RouteTrie.isCompilable("/tags/{_f}/ref{n:\\d+}"));
+        isFalse(RouteTrie.isCompilable("/x/{all:.*}"));
+    }
+
+    @Test
+    public void testMatching() {
+        List<Route> routes = U.list();
+
+        HttpHandler root = route(routes, HttpVerb.GET, "/");
+        HttpHandler books = route(routes, HttpVerb.GET, "/books");
+        HttpHandler book = route(routes, HttpVerb.GET, "/books/{id}");
+        HttpHandler bookNum = route(routes, HttpVerb.GET, "/books/{id:\\d+}");
+        HttpHandler chapter = route(routes, HttpVerb.GET, "/books/{id}/chapters/{ch}");
+        HttpHandler msgs = route(routes, HttpVerb.GET, "/msgs/*");
+        HttpHandler any = route(routes, HttpVerb.GET, "/*");
+        HttpHandler ref = route(routes, HttpVerb.GET, "/tags/{t}/ref{n:\\d+}");
+        HttpHandler post = route(routes, HttpVerb.ANY, "/books/{id}/x");
+
+        RouteTable table = RouteTable.compile(routes);
+
+        match(table, "/", root, U.map());
+        match(table, "/books", books, U.map());
+        match(table, "/books/abc", book, U.map("id", "abc"));
+        match(table, "/books/12", bookNum, U.map("id", "12"));
+        match(table, "/books/a%20b/chapters/3", chapter, U.map("id", "a b", "ch", "3"));
+        match(table, HttpVerb.POST, "/books/1/x", post, U.map("id", "1"));
+
+        match(table, "/msgs", msgs, U.map());
+        match(table, "/msgs/a/b", msgs, U.map(PathPattern.ANY, "a/b"));
+        match(table, "/other/path", any, U.map(PathPattern.ANY, "other/path"));
+        match(table, "/books/1/chapters", any, U.map(PathPattern.ANY, "books/1/chapters"));
+
+        // not compilable, matched by the regex fallback
+        match(table, "/tags/foo/ref123", ref, U.map("t", "foo", "n", "123"));
+    }
+
+    @Test
+    public void testMoreSpecificRoutesHavePrecedence() {
+        List<Route> routes = U.list();
+
+        HttpHandler any = route(routes, HttpVerb.GET, "/x/*");
+        HttpHandler param = route(routes, HttpVerb.GET, "/x/{id}/y");
+        HttpHandler fixed = route(routes, HttpVerb.GET, "/x/new/y");
+
+        RouteTable table = RouteTable.compile(routes);
+
+        // PathPattern orders these by the literal prefix ("/x/"), then alphabetically, so "/x/*" would be first
+        match(table, "/x/1/y", param, U.map("id", "1"));
+        match(table, "/x/new/y", fixed, U.map());
+
+        match(table, "/x/1/z", any, U.map(PathPattern.ANY, "1/z"));
+        match(table, "/x/1", any, U.map(PathPattern.ANY, "1"));
+    }
+
+    @Test
+    public void testStaticOnly() {
+        List<Route> routes = U.list();
+
+        HttpHandler abc = route(routes, HttpVerb.POST, "/abc");
+        route(routes, HttpVerb.POST, "/abc/{x}");
+
+        RouteTable table = RouteTable.compile(routes);
+
+        match(table, HttpVerb.POST, "/abc", abc, U.map());
+        isNull(table.find(HttpVerb.GET, BytesUtil.from("/abc"), BufRange.fromTo(0, 4)));
+        isNull(table.find(HttpVerb.POST, BytesUtil.from("/ab"), BufRange.fromTo(0, 3)));
+        isNull(table.find(HttpVerb.POST, BytesUtil.from("/abcd"), BufRange.fromTo(0, 5)));
+    }
+
+    private HttpHandler route(List<Route> routes, HttpVerb verb, String path) {
+        HttpHandler handler = new StaticHttpHandler(new RouteOptions(), path.getBytes());
+        RouteImpl route = new RouteImpl(verb, path, handler, handler.options());
+        handler.setRoute(route);
+        routes.add(route);
+        return handler;
+    }
+
+    private void match(RouteTable table, String path, HttpHandler handler, Map<String, String> params) {
+        match(table, HttpVerb.GET, path, handler, params);
+    }
+
+    private void match(RouteTable table, HttpVerb verb, String path, HttpHandler handler, Map<String, String> params) {
+        // surround the path with other bytes, to verify the matching is constrained to the path range
+        String req = "GET " + path + " HTTP/1.1";
+        Bytes bytes = BytesUtil.from(req);
+
+        HandlerMatch match = table.find(verb, bytes, new BufRange(4, path.length()));
+
+        notNull(match);
+        isTrue(match.getHandler() == handler);
+        eq(U.safe(match.getParams()), params);
+    }
+
+}
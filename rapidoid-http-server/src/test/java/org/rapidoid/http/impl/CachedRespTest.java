@@ -0,0 +1,80 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.SlabAllocator;
+import org.rapidoid.cache.Cache;
+import org.rapidoid.cache.Caching;
+import org.rapidoid.http.MediaType;
+import org.rapidoid.test.TestCommons;
+import org.rapidoid.u.U;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class CachedRespTest extends TestCommons {
+
+    @Test
+    public void testRemovedResponsesReleaseTheSlabs() {
+        SlabAllocator allocator = new SlabAllocator(4096);
+
+        Cache<Integer, CachedResp> cache = Caching.of(Integer.class, CachedResp.class)
+                .capacity(100)
+                .onRemoval(CachedResp::release)
+                .build();
+
+        // 4 bodies fit in a slab
+        for (int i = 0; i < 12; i++) {
+            cache.set(i, resp(allocator));
+        }
+
+        eq(allocator.slabs(), 3);
+        eq(allocator.liveSlabs(), 3);
+
+        // the replaced and the invalidated responses are released
+        for (int i = 0; i < 4; i++) {
+            cache.set(i, resp(allocator));
+        }
+
+        eq(allocator.liveSlabs(), 3);
+
+        for (int i = 4; i < 8; i++) {
+            cache.invalidate(i);
+        }
+
+        eq(allocator.released(), 2);
+        eq(allocator.liveSlabs(), 2);
+
+        // only the current slab is kept, when everything is evicted
+        cache.clear();
+
+        eq(allocator.slabs(), 4);
+        eq(allocator.liveSlabs(), 1);
+    }
+
+    private static CachedResp resp(SlabAllocator allocator) {
+        return new CachedResp(200, MediaType.PLAIN_TEXT_UTF_8, U.map(), allocator.allocate(1000), null,
+                Long.MAX_VALUE, allocator);
+    }
+
+}
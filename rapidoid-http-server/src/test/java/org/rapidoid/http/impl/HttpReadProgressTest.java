@@ -0,0 +1,73 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.config.Conf;
+import org.rapidoid.test.TestCommons;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HttpReadProgressTest extends TestCommons {
+
+    @AfterEach
+    public void resetConfig() {
+        Conf.reset();
+    }
+
+    @Test
+    public void testMultipartStreamingIsOptIn() {
+        Conf.HTTP.sub("upload").set("maxPartSize", 1);
+
+        isFalse(progress(10 * 1024 * 1024).shouldStream(true));
+    }
+
+    @Test
+    public void testLargeMultipartBodiesAreStreamedIfEnabled() {
+        Conf.HTTP.sub("upload").set("streamThreshold", 64);
+
+        isFalse(progress(64 * 1024).shouldStream(true));
+        isTrue(progress(64 * 1024 + 1).shouldStream(true));
+
+        // the other bodies are streamed by their own threshold
+        isFalse(progress(64 * 1024 + 1).shouldStream(false));
+    }
+
+    @Test
+    public void testTooLargeUploadsAreRejected() {
+        Conf.HTTP.sub("upload").set("maxSize", 100);
+
+        HttpReadProgress progress = progress(100 * 1024 + 1);
+
+        isFalse(progress.shouldStream(true));
+        isTrue(progress.isTooLarge());
+    }
+
+    private static HttpReadProgress progress(long contentLength) {
+        HttpReadProgress progress = new HttpReadProgress();
+        progress.contentLength = contentLength;
+        return progress;
+    }
+
+}
@@ -0,0 +1,93 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.Buf;
+import org.rapidoid.buffer.BufGroup;
+import org.rapidoid.net.impl.RapidoidHelper;
+import org.rapidoid.test.TestCommons;
+import org.rapidoid.u.U;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class ReqInputTest extends TestCommons {
+
+    private static final String REQ = "POST /items?a=1&b=%41%42 HTTP/1.1\r\n" +
+            "X-Id: 7\r\n" +
+            "Cookie: c=3\r\n" +
+            "Content-Length: 4\r\n" +
+            "\r\n" +
+            "BODY";
+
+    @Test
+    public void testUntouchedParamsAreNotDecoded() {
+        Buf buf = new BufGroup(1024).from(REQ, "req");
+        ReqInput input = input(buf);
+
+        eq(input.param("a"), "1");
+
+        // the other param wasn't decoded yet, so the change of its bytes is visible
+        overwrite(buf, "%41%42", "%43%44");
+
+        eq(input.param("b"), "CD");
+        eq(input.params(), U.map("a", "1", "b", "CD"));
+    }
+
+    @Test
+    public void testDetachedInputSurvivesTheBufferReuse() {
+        Buf buf = new BufGroup(1024).from(REQ, "req");
+        ReqInput input = input(buf);
+
+        input.detach();
+
+        // the next request on the connection is read into the same buffer
+        buf.clear();
+        buf.append(REQ.replace('1', '9').replace('7', '8').replace("BODY", "NEXT").replace("items", "other"));
+
+        eq(input.verb(), "POST");
+        eq(input.path(), "/items");
+        eq(input.param("a"), "1");
+        eq(input.param("b"), "AB");
+        eq(input.header("x-id"), "7");
+        eq(input.cookie("c"), "3");
+        eq(new String(input.body()), "BODY");
+    }
+
+    private static ReqInput input(Buf buf) {
+        RapidoidHelper helper = new RapidoidHelper();
+        HttpParser parser = new HttpParser();
+
+        parser.parse(buf, helper);
+        parser.parseParams(buf, helper.params, helper.query);
+        parser.parseHeadersIntoKV(buf, helper.headers, helper.headersKV, helper.cookies, helper);
+
+        return new ReqInput(buf, helper, helper.params, helper.headersKV, helper.cookies);
+    }
+
+    private static void overwrite(Buf buf, String what, String with) {
+        int pos = REQ.indexOf(what);
+        buf.put(pos, with.getBytes(), 0, with.length());
+    }
+
+}
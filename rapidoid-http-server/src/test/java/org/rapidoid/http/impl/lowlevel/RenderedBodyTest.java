@@ -0,0 +1,122 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.impl.lowlevel;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.buffer.Buf;
+import org.rapidoid.buffer.BufGroup;
+import org.rapidoid.http.impl.HttpCompression;
+import org.rapidoid.io.IO;
+import org.rapidoid.test.TestCommons;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class RenderedBodyTest extends TestCommons {
+
+    private final BufGroup bufs = new BufGroup(1024);
+
+    @Test
+    public void testSmallBodyTakesOneSmallSegment() {
+        RenderedBody body = new RenderedBody();
+        body.writeBytes("hello".getBytes());
+
+        eq(body.size(), 5);
+        eq(body.segmentCount(), 1);
+
+        Buf out = bufs.newBuf();
+        body.writeTo(out);
+
+        eq(out.data(), "hello");
+    }
+
+    @Test
+    public void testSegmentsGrowUpToTheMaxSize() {
+        String text = text(100000);
+
+        RenderedBody body = new RenderedBody();
+        body.writeBytes(text.getBytes());
+
+        // 1 + 2 + 4 + 8 + 16 + 16 + ... KB
+        eq(body.size(), text.length());
+        eq(body.segmentCount(), 5 + (text.length() - 31 * 1024 + RenderedBody.MAX_SEGMENT_SIZE - 1) / RenderedBody.MAX_SEGMENT_SIZE);
+
+        Buf out = bufs.newBuf();
+        body.writeTo(out);
+
+        eq(out.data(), text);
+    }
+
+    @Test
+    public void testChunkedBody() {
+        String text = text(3000);
+
+        RenderedBody body = new RenderedBody();
+        for (byte b : text.getBytes()) {
+            body.writeByte(b);
+        }
+
+        Buf out = bufs.newBuf();
+        body.writeChunkedTo(out);
+
+        String expected = "400\r\n" + text.substring(0, 1024) + "\r\n"
+                + "7b8\r\n" + text.substring(1024) + "\r\n"
+                + "0\r\n\r\n";
+
+        eq(out.data(), expected);
+    }
+
+    @Test
+    public void testCompressedBody() throws IOException {
+        String text = text(50000);
+
+        RenderedBody body = new RenderedBody();
+        body.writeBytes(text.getBytes());
+
+        RenderedBody compressed = body.compress(HttpCompression.GZIP);
+        isTrue(compressed.size() < body.size());
+
+        Buf out = bufs.newBuf();
+        compressed.writeTo(out);
+
+        byte[] bytes = new byte[out.size()];
+        out.writeTo(ByteBuffer.wrap(bytes));
+
+        eq(new String(IO.loadBytes(new GZIPInputStream(new ByteArrayInputStream(bytes)))), text);
+    }
+
+    private static String text(int length) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; sb.length() < length; i++) {
+            sb.append(i).append(',');
+        }
+
+        return sb.substring(0, length);
+    }
+
+}
@@ -0,0 +1,222 @@
+/*-
+ * #%L
+ * rapidoid-http-server
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http.session;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.collection.Coll;
+import org.rapidoid.test.TestCommons;
+import org.rapidoid.u.U;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class SessionStoreTest extends TestCommons {
+
+    static class Custom implements Serializable {
+        final String name;
+
+        Custom(String name) {
+            this.name = name;
+        }
+    }
+
+    @Test
+    public void testBinaryEncoding() {
+        Map<String, Serializable> session = Coll.concurrentMap();
+        session.put("user", "abc");
+        session.put("visits", 123);
+        session.put("since", new Date(1000));
+        session.put("roles", new ArrayList<>(U.list("admin", "manager")));
+        session.put("prefs", new HashMap<>(U.map("lang", "en")));
+
+        byte[] bytes = SessionCodec.encode(session);
+        eq(bytes[0], 'R');
+
+        Map<String, Serializable> decoded = SessionCodec.decode(bytes);
+
+        eq(decoded, session);
+        isTrue(decoded instanceof ConcurrentMap);
+    }
+
+    @Test
+    public void testJavaSerializationFallback() {
+        Map<String, Serializable> session = Coll.concurrentMap();
+        session.put("x", 1);
+        session.put("custom", new Custom("foo"));
+
+        byte[] bytes = SessionCodec.encode(session);
+        eq(bytes[0], 'J');
+
+        Map<String, Serializable> decoded = SessionCodec.decode(bytes);
+
+        eq(decoded.get("x"), 1);
+        eq(((Custom) decoded.get("custom")).name, "foo");
+    }
+
+    @Test
+    public void testEvictionByCapacity() {
+        InMemorySessionStore store = new InMemorySessionStore(0, 10);
+
+        for (int i = 0; i < 100; i++) {
+            store.save("s" + i, new byte[]{(byte) i});
+        }
+
+        store.cleanUp();
+
+        eq(store.size(), 10);
+        eq(store.evicted(), 90);
+        eq(store.expired(), 0);
+    }
+
+    @Test
+    public void testEvictionByIdleTime() {
+        InMemorySessionStore store = new InMemorySessionStore(300, 0);
+
+        store.save("a", new byte[]{1});
+        store.save("b", new byte[]{2});
+
+        for (int i = 0; i < 5; i++) {
+            U.sleep(100);
+            notNull(store.load("a")); // keeps it alive
+        }
+
+        store.cleanUp();
+
+        notNull(store.load("a"));
+        isNull(store.load("b"));
+        eq(store.expired(), 1);
+    }
+
+    @Test
+    public void testFileStoreSurvivesRestart() throws IOException {
+        File dir = Files.createTempDirectory("sessions").toFile();
+
+        FileSessionStore store = new FileSessionStore(dir, 0, 0, 1024);
+
+        for (int i = 0; i < 100; i++) {
+            store.save("s" + (i % 10), ("v" + i).getBytes());
+        }
+
+        store.remove("s0");
+        store.close();
+
+        // the segments were compacted while writing
+        isTrue(dir.listFiles().length <= 2);
+
+        FileSessionStore restarted = new FileSessionStore(dir, 0, 0, 1024);
+
+        eq(restarted.size(), 9);
+        isNull(restarted.load("s0"));
+
+        for (int i = 1; i < 10; i++) {
+            eq(new String(restarted.load("s" + i)), "v" + (90 + i));
+        }
+
+        restarted.close();
+    }
+
+    @Test
+    public void testFileStoreConcurrentChanges() throws Exception {
+        File dir = Files.createTempDirectory("sessions").toFile();
+
+        FileSessionStore store = new FileSessionStore(dir, 0, 0, 4096);
+
+        int threads = 8;
+        Thread[] writers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    String sessionId = "s" + id + "-" + (i % 50);
+
+                    if (i % 7 == 0) {
+                        store.remove(sessionId);
+                    } else {
+                        store.save(sessionId, ("v" + i).getBytes());
+                    }
+                }
+            });
+
+            writers[t].start();
+        }
+
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        Map<String, byte[]> expected = U.map();
+
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < 50; i++) {
+                String sessionId = "s" + t + "-" + i;
+                byte[] session = store.load(sessionId);
+                if (session != null) expected.put(sessionId, session);
+            }
+        }
+
+        store.close();
+
+        // the log has the same changes, in the same order for each session
+        FileSessionStore restarted = new FileSessionStore(dir, 0, 0, 4096);
+
+        eq(restarted.size(), expected.size());
+
+        for (Map.Entry<String, byte[]> e : expected.entrySet()) {
+            eq(new String(restarted.load(e.getKey())), new String(e.getValue()));
+        }
+
+        restarted.close();
+    }
+
+    @Test
+    public void testFileStoreIsAccessibleOnlyByTheOwner() throws IOException {
+        Assumptions.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+        File dir = new File(Files.createTempDirectory("sessions").toFile(), "app/sessions");
+
+        FileSessionStore store = new FileSessionStore(dir, 0, 0, 1024);
+        store.save("a", new byte[]{1});
+        store.close();
+
+        eq(PosixFilePermissions.toString(Files.getPosixFilePermissions(dir.toPath())), "rwx------");
+
+        for (File segment : dir.listFiles()) {
+            eq(PosixFilePermissions.toString(Files.getPosixFilePermissions(segment.toPath())), "rw-------");
+        }
+    }
+
+}
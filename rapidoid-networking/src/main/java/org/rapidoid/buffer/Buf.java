@@ -82,6 +82,8 @@ public interface Buf extends Writable {
 
     int unitCount();
 
+    long ioCalls();
+
     int unitSize();
 
     void clear();
@@ -126,6 +128,8 @@ public interface Buf extends Writable {
 
     void scanWhile(byte value, BufRange range);
 
+    int indexOf(byte value, int from, int to);
+
     void skip(int count);
 
     ByteBuffer bufAt(int index);
@@ -174,4 +178,6 @@ public interface Buf extends Writable {
 
     int sslWrap(SSLEngine engine, Buf dest);
 
+    int sslWrap(SSLEngine engine, Buf dest, int length);
+
 }
@@ -45,4 +45,9 @@ public class BufBytes extends RapidoidThing implements Bytes {
         return buf.limit();
     }
 
+    @Override
+    public int scan(int from, int to, byte value) {
+        return buf.indexOf(value, from, to + 1);
+    }
+
 }
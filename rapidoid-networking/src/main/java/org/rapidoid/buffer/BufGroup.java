@@ -40,8 +40,14 @@ public class BufGroup extends RapidoidThing {
 
     private final boolean synchronizedBuffers;
 
-    public BufGroup(final int capacity, boolean synchronizedBuffers) {
+    private final int ioBatch;
+
+    /**
+     * The buffers read and write up to <code>ioBatch</code> units with a single scattering read / gathering write.
+     */
+    public BufGroup(final int capacity, boolean synchronizedBuffers, int ioBatch) {
         this.synchronizedBuffers = synchronizedBuffers;
+        this.ioBatch = ioBatch;
 
         U.must(capacity >= 2, "The capacity must >= 2!");
         U.must((capacity & (capacity - 1)) == 0, "The capacity must be a power of 2!");
@@ -53,12 +59,16 @@ public class BufGroup extends RapidoidThing {
         pool = Pools.create("buffers", () -> ByteBuffer.allocateDirect(capacity), 1000);
     }
 
+    public BufGroup(int capacity, boolean synchronizedBuffers) {
+        this(capacity, synchronizedBuffers, 1);
+    }
+
     public BufGroup(int capacity) {
         this(capacity, true);
     }
 
     public Buf newBuf(String name) {
-        Buf buf = new MultiBuf(pool, factor, name);
+        Buf buf = new MultiBuf(pool, factor, name, ioBatch);
 
         if (synchronizedBuffers) {
             buf = new SynchronizedBuf(buf);
@@ -25,6 +25,7 @@ import org.rapidoid.annotation.Since;
 import org.rapidoid.bytes.ByteBufferBytes;
 import org.rapidoid.bytes.Bytes;
 import org.rapidoid.bytes.BytesUtil;
+import org.rapidoid.bytes.Swar;
 import org.rapidoid.commons.Arr;
 import org.rapidoid.commons.Err;
 import org.rapidoid.commons.Nums;
@@ -43,7 +44,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 import java.nio.channels.WritableByteChannel;
 
 @Authors("Nikolche Mihajlovski")
@@ -98,12 +101,22 @@ public class MultiBuf extends OutputStream implements Buf, Constants {
 
     private boolean readOnly = false;
 
+    // the max number of units that are read or written with a single scattering read / gathering write
+    private final int ioBatch;
+
+    private long ioCalls;
+
     public MultiBuf(Pool<ByteBuffer> bufPool, int factor, String name) {
+        this(bufPool, factor, name, 1);
+    }
+
+    public MultiBuf(Pool<ByteBuffer> bufPool, int factor, String name, int ioBatch) {
         this.bufPool = bufPool;
         this.name = name;
         this.singleCap = (int) Math.pow(2, factor);
         this.factor = factor;
         this.addrMask = Nums.bitMask(factor);
+        this.ioBatch = Math.max(ioBatch, 1);
 
         assert invariant(true);
     }
@@ -214,14 +227,33 @@ public class MultiBuf extends OutputStream implements Buf, Constants {
             // precondition: the channel has data
 
             do {
-                ByteBuffer dest = writableBuf();
+                int space;
+                long read;
 
-                int space = dest.remaining();
-                assert space > 0;
+                if (totalRead > 0 && ioBatch > 1 && channel instanceof ScatteringByteChannel) {
+                    // the data keeps coming, so read it into several new units at once
+                    int from = bufN;
+
+                    for (int i = 0; i < ioBatch; i++) {
+                        expandUnit();
+                    }
+
+                    space = ioBatch * singleCap;
+                    read = ((ScatteringByteChannel) channel).read(bufs, from, ioBatch);
+
+                } else {
+                    ByteBuffer dest = writableBuf();
+
+                    space = dest.remaining();
+                    assert space > 0;
+
+                    read = channel.read(dest);
+                }
+
+                ioCalls++;
 
-                int read = channel.read(dest);
                 if (read >= 0) {
-                    totalRead += read;
+                    totalRead += (int) read;
                 } else {
                     // end of stream (e.g. the other end closed the connection)
                     removeLastBufferIfEmpty();
@@ -471,6 +503,10 @@ public class MultiBuf extends OutputStream implements Buf, Constants {
 
         assert fromInd <= toInd;
 
+        if (mode == TO_CHANNEL && fromInd < toInd && ioBatch > 1 && channel instanceof GatheringByteChannel) {
+            return gatheringWriteTo((GatheringByteChannel) channel, fromInd, toInd, fromAddr, toAddr);
+        }
+
         if (fromInd == toInd) {
             return writePart(bufs[fromInd], fromAddr, toAddr + 1, mode, bytes, channel, buffer, sslDest, destOffset, -1);
         } else {
@@ -508,6 +544,75 @@ public class MultiBuf extends OutputStream implements Buf, Constants {
         return wroteTotal;
     }
 
+    /**
+     * Writes the units in batches, with one gathering write (system call) per batch. Like in writePart, the positions
+     * of the units are temporarily changed, and then restored.
+     */
+    private int gatheringWriteTo(GatheringByteChannel channel, int fromIndex, int toIndex, int fromAddr,
+                                 int toAddr) throws IOException {
+
+        // only the last unit can be partially filled, the other ones are full
+        ByteBuffer tail = last();
+        int tailPos = tail.position();
+        int tailLimit = tail.limit();
+
+        long wroteTotal = 0;
+
+        for (int index = fromIndex; index <= toIndex; ) {
+            int count = Math.min(ioBatch, toIndex - index + 1);
+            int lastIndex = index + count - 1;
+
+            long expected = 0;
+
+            for (int i = index; i <= lastIndex; i++) {
+                ByteBuffer src = bufs[i];
+
+                src.limit(i == toIndex ? toAddr + 1 : singleCap);
+                src.position(i == fromIndex ? fromAddr : 0);
+
+                expected += src.remaining();
+            }
+
+            long wrote = 0;
+
+            try {
+                while (wrote < expected) {
+                    long n = channel.write(bufs, index, count);
+                    ioCalls++;
+
+                    if (n <= 0) {
+                        break;
+                    }
+
+                    wrote += n;
+                }
+
+            } finally {
+                for (int i = index; i <= lastIndex; i++) {
+                    ByteBuffer src = bufs[i];
+
+                    if (src == tail) {
+                        src.limit(tailLimit);
+                        src.position(tailPos);
+                    } else {
+                        src.limit(singleCap);
+                        src.position(singleCap);
+                    }
+                }
+            }
+
+            wroteTotal += wrote;
+
+            if (wrote < expected) {
+                break;
+            }
+
+            index += count;
+        }
+
+        return (int) wroteTotal;
+    }
+
     private int writePart(ByteBuffer src, int pos, int limit, int mode, byte[] bytes, WritableByteChannel channel,
                           ByteBuffer buffer, SSLDestination sslDest, int destOffset, int len) throws IOException {
 
@@ -537,6 +642,7 @@ public class MultiBuf extends OutputStream implements Buf, Constants {
                 count = 0;
                 while (src.hasRemaining()) {
                     int wrote = channel.write(src);
+                    ioCalls++;
                     count += wrote;
                     if (wrote == 0) {
                         break;
@@ -674,13 +780,18 @@ public class MultiBuf extends OutputStream implements Buf, Constants {
     }
 
     private void removeLastBufferIfEmpty() {
-        if (bufN > 0) {
-            if (last().position() == 0) {
-                removeLastBuf();
-            }
+        // a scattering read might leave several empty units at the end
+        while (bufN > 0 && last().position() == 0) {
+            removeLastBuf();
         }
     }
 
+    @Override
+    public long ioCalls() {
+        assert invariant(false);
+        return ioCalls;
+    }
+
     @Override
     public int unitCount() {
         assert invariant(false);
@@ -1037,69 +1148,14 @@ public class MultiBuf extends OutputStream implements Buf, Constants {
 
         int start = position();
         int limit = limit();
-        int last = limit - 1;
-
-        int fromPos = (start + shrinkN);
-        int toPos = (last + shrinkN);
-
-        int fromInd = fromPos >> factor;
-        int toInd = toPos >> factor;
-
-        int fromAddr = fromPos & addrMask;
-        int toAddr = toPos & addrMask;
-
-        assert U.must(fromInd >= 0, "bad start: %s", start);
-        assert U.must(toInd >= 0, "bad end: %s", last);
-
-        ByteBuffer src = bufs[fromInd];
-
-        int absPos = start;
-
-        for (int pos = fromAddr; pos < singleCap; pos++) {
-            byte b = src.get(pos);
-
-            if (b == value) {
-                range.setInterval(start, absPos);
-                position(absPos + 1);
-                assert invariant(false);
-                return;
-            }
-
-            absPos++;
-        }
-
-        for (int i = fromInd + 1; i < toInd; i++) {
-            src = bufs[i];
-
-            for (int pos = 0; pos < singleCap; pos++) {
-                byte b = src.get(pos);
-
-                if (b == value) {
-                    range.setInterval(start, absPos);
-                    position(absPos + 1);
-                    assert invariant(false);
-                    return;
-                }
-
-                absPos++;
-            }
-        }
-
-        if (fromInd < toInd) {
-            src = bufs[toInd];
-
-            for (int pos = 0; pos <= toAddr; pos++) {
-                byte b = src.get(pos);
 
-                if (b == value) {
-                    range.setInterval(start, absPos);
-                    position(absPos + 1);
-                    assert invariant(false);
-                    return;
-                }
+        int pos = find(value, start, limit, true);
 
-                absPos++;
-            }
+        if (pos >= 0) {
+            range.setInterval(start, pos);
+            position(pos + 1);
+            assert invariant(false);
+            return;
         }
 
         position(limit);
@@ -1116,75 +1172,58 @@ public class MultiBuf extends OutputStream implements Buf, Constants {
 
         int start = position();
         int limit = limit();
-        int last = limit - 1;
-
-        int fromPos = (start + shrinkN);
-        int toPos = (last + shrinkN);
 
-        int fromInd = fromPos >> factor;
-        int toInd = toPos >> factor;
+        int pos = find(value, start, limit, false);
 
-        int fromAddr = fromPos & addrMask;
-        int toAddr = toPos & addrMask;
+        if (pos >= 0) {
+            range.setInterval(start, pos);
+            position(pos);
+            assert invariant(false);
+            return;
+        }
 
-        assert U.must(fromInd >= 0, "bad start: %s", start);
-        assert U.must(toInd >= 0, "bad end: %s", last);
+        position(limit);
 
-        ByteBuffer src = bufs[fromInd];
+        assert invariant(false);
+        throw INCOMPLETE_READ;
+    }
 
-        int absPos = start;
+    @Override
+    public int indexOf(byte value, int from, int to) {
+        assert invariant(false);
 
-        for (int pos = fromAddr; pos < singleCap; pos++) {
-            byte b = src.get(pos);
+        assert from >= 0;
+        assert to <= size();
 
-            if (b != value) {
-                range.setInterval(start, absPos);
-                position(absPos);
-                assert invariant(false);
-                return;
-            }
+        return find(value, from, to, true);
+    }
 
-            absPos++;
-        }
+    /**
+     * Finds the first byte in the range [from, to) that is equal (or different, if <code>equal</code> is false) to
+     * the specified value, scanning each of the units word-at-a-time.
+     */
+    private int find(byte value, int from, int to, boolean equal) {
+        int pos = from;
 
-        for (int i = fromInd + 1; i < toInd; i++) {
-            src = bufs[i];
+        while (pos < to) {
+            int absPos = pos + shrinkN;
 
-            for (int pos = 0; pos < singleCap; pos++) {
-                byte b = src.get(pos);
+            ByteBuffer src = bufs[absPos >> factor];
+            int addr = absPos & addrMask;
+            int len = Math.min(singleCap - addr, to - pos);
 
-                if (b != value) {
-                    range.setInterval(start, absPos);
-                    position(absPos);
-                    assert invariant(false);
-                    return;
-                }
+            int found = equal
+                ? Swar.indexOf(src, addr, addr + len, value)
+                : Swar.indexOfOther(src, addr, addr + len, value);
 
-                absPos++;
+            if (found >= 0) {
+                return pos + found - addr;
             }
-        }
-
-        if (fromInd < toInd) {
-            src = bufs[toInd];
-
-            for (int pos = 0; pos <= toAddr; pos++) {
-                byte b = src.get(pos);
 
-                if (b != value) {
-                    range.setInterval(start, absPos);
-                    position(absPos);
-                    assert invariant(false);
-                    return;
-                }
-
-                absPos++;
-            }
+            pos += len;
         }
 
-        position(limit);
-
-        assert invariant(false);
-        throw INCOMPLETE_READ;
+        return -1;
     }
 
     private void requireRemaining(int n) {
@@ -1453,13 +1492,20 @@ public class MultiBuf extends OutputStream implements Buf, Constants {
 
     @Override
     public int sslWrap(SSLEngine engine, Buf dest) {
+        return sslWrap(engine, dest, _size());
+    }
+
+    @Override
+    public int sslWrap(SSLEngine engine, Buf dest, int length) {
         assert invariant(false);
 
+        if (length == 0) return 0;
+
         SSLDestination sslDest = new SSLDestination(engine, dest);
 
         int consumed;
         try {
-            consumed = writeTo(TO_SSL_DEST, 0, _size(), null, null, null, sslDest, NOT_RELEVANT);
+            consumed = writeTo(TO_SSL_DEST, 0, length, null, null, null, sslDest, NOT_RELEVANT);
 
         } catch (IOException e) {
             throw U.rte(e);
@@ -0,0 +1,188 @@
+/*-
+ * #%L
+ * rapidoid-networking
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.buffer;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.u.U;
+
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates long-lived buffers as slices of big shared direct buffers (slabs), instead of allocating a separate
+ * direct buffer for each of them. The allocation simply moves the position in the current slab.
+ * <p>
+ * The slices are reference-counted per slab, and they should be released when they aren't needed anymore. A slab is
+ * released when all of its slices were released, and it is no longer the current one. The allocator doesn't reuse the
+ * released memory (there might still be readers of the released slices), it only drops the slab, so it can be
+ * reclaimed by the GC. The bigger buffers (above a quarter of the slab size) are allocated separately, to limit the
+ * space that is wasted at the end of the slabs.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class SlabAllocator extends RapidoidThing {
+
+    private final int slabSize;
+
+    private final int maxSliceSize;
+
+    private final AtomicLong slabs = new AtomicLong();
+
+    private final AtomicLong separate = new AtomicLong();
+
+    private final AtomicLong released = new AtomicLong();
+
+    // guarded by this
+    private Slab slab;
+
+    // the slab of each live slice, guarded by this
+    private final Map<ByteBuffer, Slab> slices = new IdentityHashMap<>();
+
+    public SlabAllocator(int slabSize) {
+        U.must(slabSize >= 1024, "The slab size must be at least 1 KB!");
+
+        this.slabSize = slabSize;
+        this.maxSliceSize = slabSize / 4;
+    }
+
+    /**
+     * Allocates a buffer with the specified capacity, positioned at 0.
+     */
+    public ByteBuffer allocate(int size) {
+        U.must(size >= 0, "Invalid buffer size: %s", size);
+
+        if (size > maxSliceSize) {
+            separate.incrementAndGet();
+            return ByteBuffer.allocateDirect(size);
+        }
+
+        ByteBuffer slice;
+
+        synchronized (this) {
+            if (slab == null || slab.buffer.remaining() < size) {
+                if (slab != null && slab.live == 0) released.incrementAndGet();
+
+                slab = new Slab(ByteBuffer.allocateDirect(slabSize));
+                slabs.incrementAndGet();
+            }
+
+            ByteBuffer buffer = slab.buffer;
+            int position = buffer.position();
+
+            // the slice can't reach beyond its own range of the slab
+            buffer.limit(position + size);
+            slice = buffer.slice();
+
+            buffer.limit(buffer.capacity());
+            buffer.position(position + size);
+
+            slab.live++;
+            slices.put(slice, slab);
+        }
+
+        return slice;
+    }
+
+    /**
+     * Releases the buffer that was allocated (or copied) by this allocator. The buffers that were allocated separately,
+     * or were already released, are ignored.
+     */
+    public void release(ByteBuffer buf) {
+        synchronized (this) {
+            Slab owner = slices.remove(buf);
+
+            if (owner != null && --owner.live == 0 && owner != slab) {
+                released.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Allocates a buffer with a copy of the specified range of the source buffer, flipped for reading.
+     */
+    public ByteBuffer copyOf(Buf src, int position, int length) {
+        ByteBuffer buf = allocate(length);
+
+        src.writeTo(buf, position, length);
+        buf.flip();
+
+        return buf;
+    }
+
+    /**
+     * The number of slabs that were allocated so far.
+     */
+    public long slabs() {
+        return slabs.get();
+    }
+
+    /**
+     * The number of slabs that were released so far.
+     */
+    public long released() {
+        return released.get();
+    }
+
+    /**
+     * The number of slabs that are still in use (including the current one).
+     */
+    public long liveSlabs() {
+        return slabs.get() - released.get();
+    }
+
+    /**
+     * The number of big buffers that were allocated separately so far.
+     */
+    public long separate() {
+        return separate.get();
+    }
+
+    public int slabSize() {
+        return slabSize;
+    }
+
+    @Override
+    public String toString() {
+        return "SlabAllocator{" +
+                "slabSize=" + slabSize +
+                ", slabs=" + slabs +
+                ", released=" + released +
+                ", separate=" + separate +
+                '}';
+    }
+
+    private static class Slab {
+
+        final ByteBuffer buffer;
+
+        // the number of slices that weren't released yet
+        int live;
+
+        Slab(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+}
@@ -140,6 +140,11 @@ public class SynchronizedBuf extends OutputStream implements Buf {
         return buf.unitCount();
     }
 
+    @Override
+    public synchronized long ioCalls() {
+        return buf.ioCalls();
+    }
+
     @Override
     public synchronized int unitSize() {
         return buf.unitSize();
@@ -250,6 +255,11 @@ public class SynchronizedBuf extends OutputStream implements Buf {
         buf.scanWhile(value, range);
     }
 
+    @Override
+    public synchronized int indexOf(byte value, int from, int to) {
+        return buf.indexOf(value, from, to);
+    }
+
     @Override
     public synchronized void skip(int count) {
         buf.skip(count);
@@ -385,6 +395,11 @@ public class SynchronizedBuf extends OutputStream implements Buf {
         return buf.sslWrap(engine, dest);
     }
 
+    @Override
+    public synchronized int sslWrap(SSLEngine engine, Buf dest, int length) {
+        return buf.sslWrap(engine, dest, length);
+    }
+
     @Override
     public synchronized void append(ByteArrayOutputStream src) {
         buf.append(src);
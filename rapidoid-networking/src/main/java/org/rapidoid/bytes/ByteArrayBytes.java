@@ -24,14 +24,19 @@ import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
 
+import java.nio.ByteBuffer;
+
 @Authors("Nikolche Mihajlovski")
 @Since("2.0.0")
 public class ByteArrayBytes extends RapidoidThing implements Bytes {
 
     private final byte[] bytes;
 
+    private final ByteBuffer words;
+
     public ByteArrayBytes(byte[] bytes) {
         this.bytes = bytes;
+        this.words = ByteBuffer.wrap(bytes);
     }
 
     @Override
@@ -44,4 +49,9 @@ public class ByteArrayBytes extends RapidoidThing implements Bytes {
         return bytes.length;
     }
 
+    @Override
+    public int scan(int from, int to, byte value) {
+        return Swar.indexOf(words, from, to + 1, value);
+    }
+
 }
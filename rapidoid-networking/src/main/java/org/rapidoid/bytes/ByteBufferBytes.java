@@ -52,6 +52,12 @@ public class ByteBufferBytes extends RapidoidThing implements Bytes {
         return limit;
     }
 
+    @Override
+    public int scan(int from, int to, byte value) {
+        int pos = Swar.indexOf(buf, from + offset, to + offset + 1, value);
+        return pos >= 0 ? pos - offset : -1;
+    }
+
     public void setTarget(ByteBuffer buf, int offset, int limit) {
         this.buf = buf;
         this.offset = offset;
@@ -31,4 +31,9 @@ public interface Bytes {
 
     int limit();
 
+    /**
+     * Returns the position of the first byte equal to the specified value in the range [from, to], or -1.
+     */
+    int scan(int from, int to, byte value);
+
 }
@@ -64,103 +64,84 @@ public class BytesUtil extends RapidoidThing {
     }
 
     public static int parseLines(Bytes bytes, BufRanges lines, IntWrap res, int start, int limit, byte end1, byte end2) {
-        byte b0 = 0, b1 = 0, b2 = 0, b3 = 0;
-        int ret = -1;
         res.value = NOT_FOUND;
 
         int i;
         int from = start;
-        for (i = start; i < limit; i++) {
-            b0 = b1;
-            b1 = b2;
-            b2 = b3;
-            b3 = bytes.get(i);
-
-            if (b3 == LF) {
-                int len;
-
-                if (b2 == CR) {
-                    len = i - from - 1;
-                    if (b0 == end1 && b1 == end2 && len > 0) {
-                        res.value = lines.count;
-                    }
-                } else {
-                    len = i - from;
-                    if (b1 == end1 && b2 == end2 && len > 0) {
-                        res.value = lines.count;
-                    }
+        while ((i = bytes.scan(from, limit - 1, LF)) >= 0) {
+            int len;
+            byte b2 = before(bytes, start, i - 1);
+
+            if (b2 == CR) {
+                len = i - from - 1;
+                if (before(bytes, start, i - 3) == end1 && before(bytes, start, i - 2) == end2 && len > 0) {
+                    res.value = lines.count;
                 }
-
-                if (len == 0) {
-                    ret = i + 1;
-                    break;
+            } else {
+                len = i - from;
+                if (before(bytes, start, i - 2) == end1 && b2 == end2 && len > 0) {
+                    res.value = lines.count;
                 }
+            }
 
-                lines.add(from, len);
-                from = i + 1;
+            if (len == 0) {
+                return i + 1;
             }
+
+            lines.add(from, len);
+            from = i + 1;
         }
 
-        return ret;
+        return -1;
     }
 
     public static int parseLines(Bytes bytes, BufRanges lines, int start, int limit) {
-        byte b0 = 0, b1 = 0;
-        int ret = -1;
-
         int i;
         int from = start;
-        for (i = start; i < limit; i++) {
-            b0 = b1;
-            b1 = bytes.get(i);
-
-            if (b1 == LF) {
-                int len;
+        while ((i = bytes.scan(from, limit - 1, LF)) >= 0) {
+            int len;
 
-                if (b0 == CR) {
-                    len = i - from - 1;
-                } else {
-                    len = i - from;
-                }
-
-                if (len == 0) {
-                    ret = i + 1;
-                    break;
-                }
+            if (before(bytes, start, i - 1) == CR) {
+                len = i - from - 1;
+            } else {
+                len = i - from;
+            }
 
-                lines.add(from, len);
-                from = i + 1;
+            if (len == 0) {
+                return i + 1;
             }
+
+            lines.add(from, len);
+            from = i + 1;
         }
 
-        return ret;
+        return -1;
     }
 
     public static int parseLine(Bytes bytes, BufRange line, int start, int limit) {
-        byte b0 = 0, b1 = 0;
-        int ret = -1;
-
-        int i;
-        for (i = start; i < limit; i++) {
-            b0 = b1;
-            b1 = bytes.get(i);
+        int i = bytes.scan(start, limit - 1, LF);
 
-            if (b1 == LF) {
-                int len;
+        if (i < 0) {
+            return -1;
+        }
 
-                if (b0 == CR) {
-                    len = i - start - 1;
-                } else {
-                    len = i - start;
-                }
+        int len;
 
-                line.set(start, len);
-                ret = i + 1;
-                break;
-            }
+        if (before(bytes, start, i - 1) == CR) {
+            len = i - start - 1;
+        } else {
+            len = i - start;
         }
 
-        return ret;
+        line.set(start, len);
+        return i + 1;
+    }
+
+    /**
+     * The bytes preceding the start of the scanned range are considered to be zeros.
+     */
+    private static byte before(Bytes bytes, int start, int position) {
+        return position >= start ? bytes.get(position) : 0;
     }
 
     public static BufRange getByPrefix(Bytes bytes, BufRanges ranges, byte[] prefix, boolean caseSensitive) {
@@ -185,13 +166,7 @@ public class BytesUtil extends RapidoidThing {
     }
 
     public static int scan(Bytes bytes, int from, int to, byte value) {
-        for (int i = from; i <= to; i++) {
-            if (bytes.get(i) == value) {
-                return i;
-            }
-        }
-
-        return -1;
+        return from <= to ? bytes.scan(from, to, value) : -1;
     }
 
     public static int scanNoCase(Bytes bytes, int from, int to, byte value) {
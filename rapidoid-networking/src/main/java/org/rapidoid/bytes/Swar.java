@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * rapidoid-networking
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.bytes;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Scans buffers 8 bytes at a time (SIMD within a register): each word is read with a single {@link ByteBuffer#getLong(int)}
+ * and the matching bytes are located with carry-free bit arithmetic, so no false positives can occur regardless of the
+ * byte order. The remaining (less than 8) bytes are scanned one by one.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class Swar extends RapidoidThing {
+
+    private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+
+    private static final long ONES = 0x0101010101010101L;
+
+    public static long broadcast(byte value) {
+        return (value & 0xFFL) * ONES;
+    }
+
+    /**
+     * Returns the index of the first byte equal to the specified value in the range [from, to) of the buffer, or -1.
+     */
+    public static int indexOf(ByteBuffer buf, int from, int to, byte value) {
+        boolean bigEndian = buf.order() == ByteOrder.BIG_ENDIAN;
+        long pattern = broadcast(value);
+
+        int pos = from;
+        int words = to - 7;
+
+        for (; pos < words; pos += 8) {
+            long found = zeros(buf.getLong(pos) ^ pattern);
+
+            if (found != 0) {
+                return pos + first(found, bigEndian);
+            }
+        }
+
+        for (; pos < to; pos++) {
+            if (buf.get(pos) == value) {
+                return pos;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first byte different from the specified value in the range [from, to) of the buffer, or -1.
+     */
+    public static int indexOfOther(ByteBuffer buf, int from, int to, byte value) {
+        boolean bigEndian = buf.order() == ByteOrder.BIG_ENDIAN;
+        long pattern = broadcast(value);
+
+        int pos = from;
+        int words = to - 7;
+
+        for (; pos < words; pos += 8) {
+            long found = nonZeros(buf.getLong(pos) ^ pattern);
+
+            if (found != 0) {
+                return pos + first(found, bigEndian);
+            }
+        }
+
+        for (; pos < to; pos++) {
+            if (buf.get(pos) != value) {
+                return pos;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Sets the highest bit of each zero byte of the word, and clears all the other bits.
+     */
+    static long zeros(long word) {
+        return ~(((word & LOW7) + LOW7) | word | LOW7);
+    }
+
+    /**
+     * Sets the highest bit of each non-zero byte of the word, and clears all the other bits.
+     */
+    static long nonZeros(long word) {
+        return (((word & LOW7) + LOW7) | word) & ~LOW7;
+    }
+
+    private static int first(long found, boolean bigEndian) {
+        return (bigEndian ? Long.numberOfLeadingZeros(found) : Long.numberOfTrailingZeros(found)) >>> 3;
+    }
+
+}
@@ -43,6 +43,12 @@ public class NetworkingParams extends RapidoidThing {
 
     private volatile boolean blockingAccept;
 
+    private volatile boolean reusePort;
+
+    private volatile int acceptBatch;
+
+    private volatile int ioBatch;
+
     private volatile Protocol protocol = null;
 
     private volatile Class<? extends DefaultExchange<?>> exchangeClass = null;
@@ -58,6 +64,9 @@ public class NetworkingParams extends RapidoidThing {
         maxPipeline = cfg.entry("maxPipeline").or(0);
         syncBufs = cfg.entry("syncBufs").or(true);
         blockingAccept = cfg.entry("blockingAccept").or(false);
+        reusePort = cfg.entry("reusePort").or(false);
+        acceptBatch = cfg.entry("acceptBatch").or(64);
+        ioBatch = cfg.entry("ioBatch").or(16);
     }
 
     public String address() {
@@ -132,6 +141,44 @@ public class NetworkingParams extends RapidoidThing {
         return this;
     }
 
+    /**
+     * Each I/O worker listens on its own socket (with SO_REUSEPORT) and accepts the connections in its own event
+     * loop. Where SO_REUSEPORT isn't supported, the server falls back to a single acceptor.
+     */
+    public boolean reusePort() {
+        return reusePort;
+    }
+
+    public NetworkingParams reusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+        return this;
+    }
+
+    /**
+     * The maximum number of pending connections that are accepted per wake-up of the acceptor.
+     */
+    public int acceptBatch() {
+        return acceptBatch;
+    }
+
+    public NetworkingParams acceptBatch(int acceptBatch) {
+        this.acceptBatch = acceptBatch;
+        return this;
+    }
+
+    /**
+     * The maximum number of buffer units (iovecs) that are written with a single gathering write, or read with a
+     * single scattering read from the socket (1 = disabled).
+     */
+    public int ioBatch() {
+        return ioBatch;
+    }
+
+    public NetworkingParams ioBatch(int ioBatch) {
+        this.ioBatch = ioBatch;
+        return this;
+    }
+
     public Protocol protocol() {
         return protocol;
     }
@@ -85,6 +85,21 @@ public class ServerBuilder extends RapidoidThing {
         return this;
     }
 
+    public ServerBuilder reusePort(boolean reusePort) {
+        netParams.reusePort(reusePort);
+        return this;
+    }
+
+    public ServerBuilder acceptBatch(int acceptBatch) {
+        netParams.acceptBatch(acceptBatch);
+        return this;
+    }
+
+    public ServerBuilder ioBatch(int ioBatch) {
+        netParams.ioBatch(ioBatch);
+        return this;
+    }
+
     public ServerBuilder protocol(Protocol protocol) {
         netParams.protocol(protocol);
         return this;
@@ -0,0 +1,36 @@
+/*-
+ * #%L
+ * rapidoid-networking
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.net;
+
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.net.abstracts.Channel;
+
+/**
+ * A protocol that keeps state for a single connection, so it is notified when the connection is closed.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public interface StatefulProtocol extends Protocol {
+
+    void closed(Channel ctx);
+
+}
@@ -36,6 +36,11 @@ public interface TCPClient extends Activity<TCPClient> {
     ChannelHolder[] connect(String serverHost, int serverPort, Protocol clientProtocol, int connections,
                             boolean autoreconnecting, ConnState state);
 
+    /**
+     * Connects without retrying, so the holder is closed if the connection can't be established.
+     */
+    ChannelHolder connectOnce(String serverHost, int serverPort, Protocol clientProtocol, ConnState state);
+
     TCPClientInfo info();
 
 }
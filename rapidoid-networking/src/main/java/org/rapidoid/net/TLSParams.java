@@ -50,6 +50,13 @@ public class TLSParams extends RapidoidThing {
     private volatile boolean needClientAuth = Conf.TLS.is("needClientAuth");
     private volatile boolean wantClientAuth = Conf.TLS.is("wantClientAuth");
 
+    private volatile int sessionCacheSize = Conf.TLS.entry("sessionCacheSize").or(20480);
+
+    private volatile int sessionTimeout = Conf.TLS.entry("sessionTimeout").or(86400);
+
+    // null = not configured (the JVM default is used)
+    private volatile Boolean sessionTickets = Conf.TLS.entry("sessionTickets").bool().getOrNull();
+
     public TLSParams() {
         U.must(!(needClientAuth && wantClientAuth), "Both needClientAuth and wantClientAuth cannot be true!");
     }
@@ -143,6 +150,44 @@ public class TLSParams extends RapidoidThing {
         return this;
     }
 
+    public int sessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+    /*
+     * The maximum number of cached server sessions, for the session resumption (0 = unlimited)
+     */
+    public TLSParams sessionCacheSize(int sessionCacheSize) {
+        this.sessionCacheSize = sessionCacheSize;
+        return this;
+    }
+
+    public int sessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /*
+     * The lifetime of the cached server sessions, in seconds (0 = unlimited)
+     */
+    public TLSParams sessionTimeout(int sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+        return this;
+    }
+
+    public Boolean sessionTickets() {
+        return sessionTickets;
+    }
+
+    /*
+     * The stateless session resumption (JDK 13+) is configured JVM-wide, with the
+     * jdk.tls.server.enableSessionTicketExtension system property, only if it is explicitly configured (not null)
+     * and the system property wasn't already specified
+     */
+    public TLSParams sessionTickets(Boolean sessionTickets) {
+        this.sessionTickets = sessionTickets;
+        return this;
+    }
+
     public SSLContext tlsContext() {
         return tlsContext;
     }
@@ -154,9 +199,14 @@ public class TLSParams extends RapidoidThing {
 
     public synchronized SSLContext buildTLSContext() {
         if (tls && tlsContext == null) {
+            if (sessionTickets != null) TLSUtil.configureSessionTickets(sessionTickets);
             tlsContext = TLSUtil.createContext(keystore, keystorePassword, keyManagerPassword, truststore, truststorePassword, selfSignedTLS);
         }
 
+        if (tls) {
+            TLSUtil.configureSessionCache(tlsContext, sessionCacheSize, sessionTimeout);
+        }
+
         // don't provide TLS context unless TLS is enabled
         return tls ? tlsContext : null;
     }
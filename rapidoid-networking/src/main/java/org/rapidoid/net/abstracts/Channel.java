@@ -22,9 +22,38 @@ package org.rapidoid.net.abstracts;
 
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
+import org.rapidoid.net.Protocol;
 
 @Authors("Nikolche Mihajlovski")
 @Since("2.0.0")
 public interface Channel extends ProtocolContext<Channel> {
 
+    /**
+     * Sets the maximum time (in ms) to receive the rest of an incomplete message (0 = unlimited). The time is
+     * extended while the data keeps arriving at a reasonable rate.
+     */
+    Channel readTimeout(long readTimeout);
+
+    /**
+     * Sets the maximum time (in ms) to send the pending output (0 = unlimited). The time is extended while the data
+     * keeps being sent at a reasonable rate.
+     */
+    Channel writeTimeout(long writeTimeout);
+
+    /**
+     * Switches the protocol that processes the next messages on this connection (e.g. after an HTTP upgrade).
+     */
+    Channel protocol(Protocol protocol);
+
+    /**
+     * Returns the number of bytes that were written, but not yet sent.
+     */
+    long pendingOutput();
+
+    /**
+     * Returns true if some of the previous messages on this connection haven't been responded to yet, so the response
+     * to the current message has to wait for them.
+     */
+    boolean hasPendingResponses();
+
 }
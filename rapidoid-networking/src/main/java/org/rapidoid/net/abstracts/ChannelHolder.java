@@ -31,4 +31,9 @@ public interface ChannelHolder {
 
     Channel channel();
 
+    /**
+     * Registers a listener that is notified when the channel is closed (right away, if it was already closed).
+     */
+    void onClosed(Runnable listener);
+
 }
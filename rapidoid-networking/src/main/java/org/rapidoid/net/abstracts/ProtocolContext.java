@@ -84,6 +84,8 @@ public interface ProtocolContext<T> {
 
     T write(File file);
 
+    T write(File file, long offset, long length);
+
     T writeJSON(Object value);
 
     T send();
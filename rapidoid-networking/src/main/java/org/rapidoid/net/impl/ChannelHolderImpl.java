@@ -38,6 +38,10 @@ public class ChannelHolderImpl extends RapidoidThing implements ChannelHolder {
 
     private final long id;
 
+    private volatile Runnable closedListener;
+
+    private volatile boolean closed;
+
     public ChannelHolderImpl() {
         this.id = COUNTER.incrementAndGet();
     }
@@ -59,6 +63,7 @@ public class ChannelHolderImpl extends RapidoidThing implements ChannelHolder {
 
     public synchronized void setChannel(Channel channel) {
         this.channel = channel;
+        if (channel != null) this.closed = false;
     }
 
     @Override
@@ -66,8 +71,31 @@ public class ChannelHolderImpl extends RapidoidThing implements ChannelHolder {
         return "#" + id + ":" + channel;
     }
 
-    public synchronized void closed() {
-        setChannel(null);
+    public void closed() {
+        Runnable listener;
+
+        synchronized (this) {
+            // notified only once per channel (or failed connection attempt)
+            if (closed) return;
+
+            setChannel(null);
+            closed = true;
+            listener = closedListener;
+        }
+
+        if (listener != null) listener.run();
+    }
+
+    @Override
+    public void onClosed(Runnable listener) {
+        boolean alreadyClosed;
+
+        synchronized (this) {
+            closedListener = listener;
+            alreadyClosed = closed;
+        }
+
+        if (alreadyClosed) listener.run();
     }
 
 }
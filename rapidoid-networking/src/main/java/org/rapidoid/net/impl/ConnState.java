@@ -35,6 +35,12 @@ public class ConnState extends RapidoidThing implements Resetable {
 
     public volatile Object obj;
 
+    /**
+     * The progress of the protocol on the current (incomplete) message. Unlike <code>n</code> and <code>obj</code>, it
+     * is not rolled back when more input is required, so the protocol can resume from where it stopped.
+     */
+    public volatile Object progress;
+
     public ConnState() {
     }
 
@@ -50,6 +56,12 @@ public class ConnState extends RapidoidThing implements Resetable {
     public void reset() {
         n = 0;
         obj = null;
+
+        if (progress instanceof Resetable) {
+            ((Resetable) progress).reset();
+        }
+
+        progress = null;
         log("<<< RESET >>>");
     }
 
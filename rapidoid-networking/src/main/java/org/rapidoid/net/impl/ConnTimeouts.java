@@ -0,0 +1,65 @@
+/*-
+ * #%L
+ * rapidoid-networking
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.net.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.config.Conf;
+
+/**
+ * The connection timeouts of the I/O workers, from the "http" config section.
+ * <p>
+ * The fallback values must be the same as the ones in the built-in config, so they only matter when the built-in
+ * config isn't loaded (e.g. the config was reset to a custom one).
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+final class ConnTimeouts extends RapidoidThing {
+
+    static final int DEFAULT_RESOLUTION = 5000;
+
+    static final long DEFAULT_IDLE = 30000;
+
+    static final long DEFAULT_READ = 10000;
+
+    static final long DEFAULT_WRITE = 30000;
+
+    private ConnTimeouts() {
+    }
+
+    static int resolution() {
+        return Conf.HTTP.entry("timeoutResolution").or(DEFAULT_RESOLUTION);
+    }
+
+    static long idle() {
+        return Conf.HTTP.entry("timeout").or(DEFAULT_IDLE);
+    }
+
+    static long read() {
+        return Conf.HTTP.entry("readTimeout").or(DEFAULT_READ);
+    }
+
+    static long write() {
+        return Conf.HTTP.entry("writeTimeout").or(DEFAULT_WRITE);
+    }
+
+}
@@ -47,8 +47,16 @@ public class ConnectionTarget extends RapidoidThing {
 
     final ConnState state;
 
+    // if the connection can't be established, the holder is closed (instead of retrying)
+    final boolean giveUpOnFailure;
+
     public ConnectionTarget(SocketChannel socketChannel, InetSocketAddress addr, Protocol protocol,
                             ChannelHolderImpl holder, boolean reconnecting, ConnState state) {
+        this(socketChannel, addr, protocol, holder, reconnecting, state, false);
+    }
+
+    public ConnectionTarget(SocketChannel socketChannel, InetSocketAddress addr, Protocol protocol,
+                            ChannelHolderImpl holder, boolean reconnecting, ConnState state, boolean giveUpOnFailure) {
 
         U.notNull(protocol, "connection protocol");
         U.notNull(holder, "connection holder");
@@ -60,6 +68,7 @@ public class ConnectionTarget extends RapidoidThing {
         this.holder = holder;
         this.reconnecting = reconnecting;
         this.state = state;
+        this.giveUpOnFailure = giveUpOnFailure;
     }
 
 }
@@ -106,6 +106,13 @@ public abstract class DefaultExchange<T> extends RapidoidThing implements Protoc
         return wrote((int) size);
     }
 
+    @Override
+    public T write(File file, long offset, long length) {
+        U.must(length < Integer.MAX_VALUE);
+        conn.write(file, offset, length);
+        return wrote((int) length);
+    }
+
     @Override
     public T writeJSON(Object value) {
         conn.writeJSON(value);
@@ -25,18 +25,16 @@ import org.rapidoid.annotation.Since;
 import org.rapidoid.buffer.BufGroup;
 import org.rapidoid.buffer.BufUtil;
 import org.rapidoid.buffer.IncompleteReadException;
-import org.rapidoid.collection.Coll;
 import org.rapidoid.config.Conf;
 import org.rapidoid.config.ConfigUtil;
 import org.rapidoid.ctx.Ctxs;
-import org.rapidoid.expire.ExpirationCrawlerThread;
-import org.rapidoid.expire.Expire;
 import org.rapidoid.insight.Insights;
 import org.rapidoid.insight.StatsMeasure;
 import org.rapidoid.log.Log;
 import org.rapidoid.net.NetworkingParams;
 import org.rapidoid.net.Protocol;
 import org.rapidoid.net.TLSParams;
+import org.rapidoid.net.tls.TLSBuffers;
 import org.rapidoid.pool.Pool;
 import org.rapidoid.pool.Pools;
 import org.rapidoid.u.U;
@@ -52,8 +50,8 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.Queue;
-import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 @Authors("Nikolche Mihajlovski")
 @Since("5.5.0")
@@ -63,9 +61,15 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
 
     public static boolean EXTRA_SAFE = false;
 
-    private static final ExpirationCrawlerThread idleConnectionsCrawler;
+    private static final int TIMING_WHEEL_SIZE = 512;
 
-    private static final int connTimeout;
+    private final long connTimeout;
+
+    private final long readTimeout;
+
+    private final long writeTimeout;
+
+    private final TimingWheel timeouts;
 
     private final Queue<RapidoidChannel> connected;
 
@@ -79,8 +83,6 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
 
     private final Pool<RapidoidConnection> connections;
 
-    private final Set<RapidoidConnection> allConnections = Coll.concurrentSet();
-
     private final long maxPipeline;
 
     private final int selectorTimeout = 10;
@@ -103,20 +105,17 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
 
     private final TLSParams tlsParams;
 
-    private final StatsMeasure dataIn;
+    private final TLSBuffers tlsBuffers;
 
-    private final StatsMeasure dataOut;
+    // the TLS connections that can resume their handshakes, after the delegated tasks were executed
+    private final Queue<RapidoidConnection> handshaked = new ConcurrentLinkedQueue<>();
 
-    static {
-        int timeoutResolution = Conf.HTTP.entry("timeoutResolution").or(5000);
-        connTimeout = Conf.HTTP.entry("timeout").or(30000);
+    // the connections that were closed from other threads, they are closed by the I/O thread
+    private final Queue<SelectionKey> closing = new ConcurrentLinkedQueue<>();
 
-        if (timeoutResolution > 0 && connTimeout > 0) {
-            idleConnectionsCrawler = Expire.crawler("idleConnections", timeoutResolution);
-        } else {
-            idleConnectionsCrawler = null;
-        }
-    }
+    private final StatsMeasure dataIn;
+
+    private final StatsMeasure dataOut;
 
     public ExtendedWorker(String name, RapidoidHelper helper, NetworkingParams net, TLSParams tlsParams) {
 
@@ -124,13 +123,14 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
 
         this.bufSize = net.bufSizeKB() * 1024;
         this.noDelay = net.noDelay();
-        this.bufs = new BufGroup(bufSize, net.syncBufs());
+        this.bufs = new BufGroup(bufSize, net.syncBufs(), net.ioBatch());
         this.bufSizeLimit = 1024L * Conf.NET.entry("bufSizeLimit").or(1024); // in KB
 
         this.serverProtocol = net.protocol();
         this.helper = helper;
         this.sslContext = tlsParams.buildTLSContext();
         this.tlsParams = tlsParams;
+        this.tlsBuffers = sslContext != null ? new TLSBuffers(name, sslContext) : null;
 
         this.maxPipeline = net.maxPipeline();
 
@@ -147,9 +147,13 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
 
         connections = Pools.create("connections", () -> newConnection(false), 100000);
 
-        if (idleConnectionsCrawler != null) {
-            idleConnectionsCrawler.register(allConnections);
-        }
+        int timeoutResolution = ConnTimeouts.resolution();
+        this.connTimeout = ConnTimeouts.idle();
+        this.readTimeout = ConnTimeouts.read();
+        this.writeTimeout = ConnTimeouts.write();
+
+        // the deadlines are checked by the worker thread, at the configured resolution
+        this.timeouts = timeoutResolution > 0 ? new TimingWheel(timeoutResolution, TIMING_WHEEL_SIZE, U.time()) : null;
     }
 
     @Override
@@ -207,8 +211,18 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
             connected.add(new RapidoidChannel(socketChannel, true, target.protocol, target.holder,
                     target.reconnecting, target.state));
 
-        } catch (ConnectException e) {
-            retryConnecting(target);
+        } catch (IOException e) {
+            if (target.giveUpOnFailure) {
+                Log.warn("Couldn't connect", "address", target.addr, "error", e.getMessage());
+                clearKey(key);
+                target.holder.closed();
+
+            } else if (e instanceof ConnectException) {
+                retryConnecting(target);
+
+            } else {
+                throw e;
+            }
         }
     }
 
@@ -242,12 +256,7 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
         try {
 
             if (conn.hasTLS) {
-                if (conn.tls.netIn.hasRemaining()) {
-                    read = socketChannel.read(conn.tls.netIn);
-
-                } else {
-                    read = 0;
-                }
+                read = conn.tls.readFrom(socketChannel);
             } else {
                 if (conn.input.size() < bufSizeLimit) {
                     read = conn.input.append(socketChannel);
@@ -270,6 +279,7 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
             }
 
         } else {
+            conn.bytesRead += read;
 
             if (conn.hasTLS) {
                 if (read > 0) {
@@ -334,6 +344,10 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
             conn.requestId = helper.requestIdGen;
             helper.requestIdGen += MAX_IO_WORKERS;
             helper.requestCounter++;
+
+            // the protocol can customize the timeouts for the current message
+            conn.readTimeout(readTimeout);
+            conn.writeTimeout(writeTimeout);
         }
 
         // prepare for a rollback in case the message isn't complete yet
@@ -376,6 +390,8 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
 
             conn.input().deleteBefore(conn.input().checkpoint());
 
+            conn.readCompleted();
+
             // Log.debug("Completed message processing");
             return true;
 
@@ -386,7 +402,7 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
 
             // input not complete, so rollback
             conn.input().position(conn.input().checkpoint());
-            conn.input().limit(limit);
+            conn.input().limit(Math.min(limit, conn.input().size())); // the protocol might have consumed some input
             BufUtil.startWriting(conn.input());
 
             state.n = stateN;
@@ -395,6 +411,8 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
             boolean decreased = conn.readSeq.compareAndSet(seq, seq - 1);
             U.must(decreased, "Error in the request order control! Handle: %s", seq);
 
+            if (conn.readPending(approxTime)) scheduleTimeout(conn);
+
         } catch (ProtocolException e) {
 
             conn.log("<< PROTOCOL ERROR >>");
@@ -441,7 +459,17 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
 
     @Override
     public void close(RapidoidConnection conn) {
-        close(conn.key);
+        if (onSameThread()) {
+            close(conn.key);
+
+        } else {
+            SelectionKey key = conn.key;
+
+            if (key != null) {
+                closing.add(key);
+                selector.wakeup();
+            }
+        }
     }
 
     private void close(SelectionKey key) {
@@ -459,6 +487,11 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
                         if (!conn.closed) {
                             Log.trace("Closing connection", "connection", conn);
                             assert conn.key == key;
+
+                            // the holder mustn't refer to the released connection
+                            ChannelHolderImpl holder = conn.getHolder();
+                            if (holder != null) holder.closed();
+
                             conn.reset();
                             connections.release(conn);
                         }
@@ -494,9 +527,7 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
                 synchronized (conn.outgoing) {
 
                     if (conn.hasTLS) {
-                        synchronized (conn.output) {
-                            conn.tls.wrapToOutgoing();
-                        }
+                        conn.wrapToOutgoing();
                     }
 
                     writeOp(key, conn, socketChannel);
@@ -513,17 +544,9 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
 
     private void writeOp(SelectionKey key, RapidoidConnection conn, SocketChannel socketChannel) throws IOException {
 
-        synchronized (conn.outgoing) {
-            if (conn.outgoing.hasRemaining()) {
-                conn.log("WRITING");
-//					conn.log(conn.outgoing.asText());
-                BufUtil.startWriting(conn.outgoing);
-                int wrote = conn.outgoing.writeTo(socketChannel);
-                conn.outgoing.deleteBefore(wrote);
-                BufUtil.doneWriting(conn.outgoing);
-                conn.log("DONE WRITING");
-            }
-        }
+        conn.log("WRITING");
+        conn.writeOutgoing(socketChannel);
+        conn.log("DONE WRITING");
 
         boolean finishedWriting, closeAfterWrite;
         synchronized (conn) {
@@ -531,6 +554,12 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
             closeAfterWrite = conn.closeAfterWrite();
         }
 
+        if (finishedWriting) {
+            conn.writeCompleted();
+        } else if (conn.writePending(approxTime)) {
+            scheduleTimeout(conn);
+        }
+
         if (finishedWriting && closeAfterWrite) {
             close(conn);
 
@@ -572,6 +601,11 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
     public void doProcessing() {
 
         long now = U.time();
+
+        if (timeouts != null) {
+            timeouts.advance(now);
+        }
+
         int connectingN = connecting.size();
 
         for (int i = 0; i < connectingN; i++) {
@@ -624,6 +658,16 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
             }
         }
 
+        RapidoidConnection hsConn;
+        while ((hsConn = handshaked.poll()) != null) {
+            resumeHandshake(hsConn);
+        }
+
+        SelectionKey closingKey;
+        while ((closingKey = closing.poll()) != null) {
+            close(closingKey);
+        }
+
         RapidoidConnection restartedConn;
         while ((restartedConn = restarting.poll()) != null) {
             Log.debug("restarting", "connection", restartedConn);
@@ -675,13 +719,28 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
 
         key.attach(conn);
 
+        conn.readTimeout(readTimeout);
+        conn.writeTimeout(writeTimeout);
+
         touch(conn);
+        scheduleTimeout(conn);
 
         return conn;
     }
 
     private void touch(RapidoidConnection conn) {
-        conn.setExpiresAt(approxTime + connTimeout);
+        if (connTimeout > 0) {
+            long expiresAt = approxTime + connTimeout;
+
+            // the volatile field is written at most once per loop iteration
+            if (conn.getExpiresAt() != expiresAt) conn.setExpiresAt(expiresAt);
+        }
+    }
+
+    private void scheduleTimeout(RapidoidConnection conn) {
+        if (timeouts != null && onSameThread()) {
+            timeouts.schedule(conn);
+        }
     }
 
     @Override
@@ -692,9 +751,7 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
 
     @Override
     public RapidoidConnection newConnection(boolean client) {
-        RapidoidConnection conn = new RapidoidConnection(ExtendedWorker.this, bufs, this.tlsParams);
-        allConnections.add(conn);
-        return conn;
+        return new RapidoidConnection(ExtendedWorker.this, bufs, this.tlsParams);
     }
 
     @Override
@@ -724,6 +781,33 @@ public class ExtendedWorker extends AbstractEventLoop<ExtendedWorker> implements
         return sslContext;
     }
 
+    @Override
+    public void handshakeTasksDone(RapidoidConnection conn) {
+        handshaked.add(conn);
+        selector.wakeup();
+    }
+
+    private void resumeHandshake(RapidoidConnection conn) {
+        if (conn.closed || conn.key == null || !conn.key.isValid()) return;
+
+        try {
+            if (conn.tls.resumeHandshake()) {
+                process(conn);
+            }
+
+            wantToWrite(conn);
+
+        } catch (Exception e) {
+            Log.debug("TLS handshake error", e);
+            close(conn);
+        }
+    }
+
+    @Override
+    public TLSBuffers tlsBuffers() {
+        return tlsBuffers;
+    }
+
     public void restart(RapidoidConnection conn) {
         restarting.add(conn);
     }
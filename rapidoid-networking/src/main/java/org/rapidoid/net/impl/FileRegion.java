@@ -0,0 +1,109 @@
+/*-
+ * #%L
+ * rapidoid-networking
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.net.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.io.IO;
+import org.rapidoid.u.U;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A region of a file, queued on the connection output and sent without copying its content into the output buffer.
+ * The file is opened when the region is queued, so it can be safely modified or deleted before it is sent.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class FileRegion extends RapidoidThing {
+
+    private final FileChannel channel;
+
+    private final long end;
+
+    private volatile long position;
+
+    // the number of output bytes that must be sent before the region (counted from the previous region)
+    volatile int before;
+
+    FileRegion(File file, long offset, long length, int before) {
+        U.must(offset >= 0 && length >= 0, "Invalid file region: offset=%s, length=%s", offset, length);
+
+        try {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw U.rte(e);
+        }
+
+        this.position = offset;
+        this.end = offset + length;
+        this.before = before;
+    }
+
+    /**
+     * Transfers the next part of the region directly to the target channel (e.g. the socket).
+     */
+    long transferTo(WritableByteChannel target) throws IOException {
+        long n = channel.transferTo(position, end - position, target);
+        position += n;
+
+        if (n == 0 && position < end && position >= channel.size()) {
+            throw new IOException("The file was truncated while being sent!");
+        }
+
+        return n;
+    }
+
+    /**
+     * Reads the next part of the region into the buffer, which is then flipped for reading.
+     */
+    ByteBuffer read(ByteBuffer buf) throws IOException {
+        buf.clear();
+        buf.limit((int) Math.min(buf.capacity(), end - position));
+
+        int n = channel.read(buf, position);
+        if (n < 0) throw new IOException("The file was truncated while being sent!");
+
+        position += n;
+        buf.flip();
+
+        return buf;
+    }
+
+    boolean hasRemaining() {
+        return position < end;
+    }
+
+    long remaining() {
+        return end - position;
+    }
+
+    void close() {
+        IO.close(channel, true);
+    }
+
+}
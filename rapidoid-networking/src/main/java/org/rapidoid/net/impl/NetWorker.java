@@ -22,6 +22,7 @@ package org.rapidoid.net.impl;
 
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
+import org.rapidoid.net.tls.TLSBuffers;
 
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
@@ -45,6 +46,10 @@ public interface NetWorker {
 
     SSLContext sslContext();
 
+    TLSBuffers tlsBuffers();
+
+    void handshakeTasksDone(RapidoidConnection conn);
+
     boolean onSameThread();
 
     RapidoidHelper helper();
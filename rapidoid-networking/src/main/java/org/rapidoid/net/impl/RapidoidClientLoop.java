@@ -89,6 +89,19 @@ public class RapidoidClientLoop extends AbstractEventLoop<TCPClient> implements
     public synchronized ChannelHolder connect(String serverHost, int serverPort, Protocol clientProtocol,
                                               boolean autoreconnecting, ConnState state) {
 
+        return connect(serverHost, serverPort, clientProtocol, autoreconnecting, state, false);
+    }
+
+    @Override
+    public synchronized ChannelHolder connectOnce(String serverHost, int serverPort, Protocol clientProtocol,
+                                                  ConnState state) {
+
+        return connect(serverHost, serverPort, clientProtocol, false, state, true);
+    }
+
+    private ChannelHolder connect(String serverHost, int serverPort, Protocol clientProtocol, boolean autoreconnecting,
+                                  ConnState state, boolean giveUpOnFailure) {
+
         InetSocketAddress addr = new InetSocketAddress(serverHost, serverPort);
         SocketChannel socketChannel = openSocket();
 
@@ -96,7 +109,8 @@ public class RapidoidClientLoop extends AbstractEventLoop<TCPClient> implements
 
         try {
             ExtendedWorker targetWorker = ioWorkers[currentWorkerInd];
-            ConnectionTarget target = new ConnectionTarget(socketChannel, addr, clientProtocol, holder, autoreconnecting, state);
+            ConnectionTarget target = new ConnectionTarget(socketChannel, addr, clientProtocol, holder, autoreconnecting,
+                    state, giveUpOnFailure);
             targetWorker.connect(target);
 
         } catch (IOException e) {
@@ -43,15 +43,17 @@ import org.rapidoid.util.Constants;
 import org.rapidoid.util.Resetable;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Authors("Nikolche Mihajlovski")
@@ -64,6 +66,11 @@ public class RapidoidConnection extends RapidoidThing implements Resetable, Chan
 
     private static final AtomicLong SERIAL_N = new AtomicLong();
 
+    private static final int FILE_CHUNK_SIZE = 16 * 1024;
+
+    // the read/write deadline is extended when at least this much data was transferred since it was set
+    private static final long MIN_PROGRESS = 16 * 1024;
+
     final boolean hasTLS;
 
     final RapidoidTLS tls;
@@ -76,6 +83,12 @@ public class RapidoidConnection extends RapidoidThing implements Resetable, Chan
 
     public final Buf outgoing;
 
+    // the file regions queued on the output, guarded by the output
+    private final Queue<FileRegion> regions = new ArrayDeque<>();
+
+    // used to read the file regions with TLS, where they can't be sent directly to the socket
+    private ByteBuffer fileChunk;
+
     private final ConnState state = new ConnState();
 
     private volatile boolean waitingToWrite = false;
@@ -112,12 +125,38 @@ public class RapidoidConnection extends RapidoidThing implements Resetable, Chan
 
     final AtomicLong writeSeq = new AtomicLong();
 
+    // the responses that were resumed before the previous ones were processed, by handle (guarded by the map)
+    private final Map<Long, Runnable> earlyResumes = new HashMap<>();
+
     volatile boolean resumeInProgress = false;
 
     volatile IRequest request;
 
     private volatile long expiresAt;
 
+    private volatile long readTimeout;
+
+    private volatile long writeTimeout;
+
+    // the timeout state, accessed only by the worker thread
+
+    long timerTick;
+
+    long bytesRead;
+
+    long bytesWritten;
+
+    // the number of write system calls since the pending output was last fully sent
+    long writeCalls;
+
+    private long readDeadline;
+
+    private long readMark;
+
+    private long writeDeadline;
+
+    private long writeMark;
+
     private volatile ChannelHolderImpl holder;
 
     public volatile int nextOp = SelectionKey.OP_READ;
@@ -130,7 +169,7 @@ public class RapidoidConnection extends RapidoidThing implements Resetable, Chan
         this.worker = worker;
 
         this.hasTLS = worker.sslContext() != null;
-        this.tls = hasTLS ? new RapidoidTLS(worker.sslContext(), this, tlsParams) : null;
+        this.tls = hasTLS ? new RapidoidTLS(worker.sslContext(), this, tlsParams, worker.tlsBuffers()) : null;
 
         this.input = bufs.newBuf("input#" + serialN);
         this.output = bufs.newBuf("output#" + serialN);
@@ -152,7 +191,12 @@ public class RapidoidConnection extends RapidoidThing implements Resetable, Chan
         closed = true;
         closing = false;
         input.clear();
-        output.clear();
+
+        synchronized (output) {
+            output.clear();
+            clearRegions();
+        }
+
         outgoing.clear();
         closeAfterWrite = false;
         waitingToWrite = false;
@@ -166,7 +210,17 @@ public class RapidoidConnection extends RapidoidThing implements Resetable, Chan
         requestId = 0;
         readSeq.set(0);
         writeSeq.set(0);
+
+        synchronized (earlyResumes) {
+            earlyResumes.clear();
+        }
+
         expiresAt = 0;
+        readTimeout = 0;
+        writeTimeout = 0;
+        readDeadline = 0;
+        writeDeadline = 0;
+        writeCalls = 0;
         state.reset();
 
         if (tls != null) tls.reset();
@@ -229,18 +283,105 @@ public class RapidoidConnection extends RapidoidThing implements Resetable, Chan
 
     @Override
     public synchronized Channel write(File file) {
-        try {
-            FileInputStream stream = new FileInputStream(file);
-            FileChannel fileChannel = stream.getChannel();
-            output.append(fileChannel);
-            stream.close();
-        } catch (IOException e) {
-            throw U.rte(e);
+        return write(file, 0, file.length());
+    }
+
+    @Override
+    public synchronized Channel write(File file, long offset, long length) {
+        if (length == 0) return this;
+
+        synchronized (output) {
+            int before = output.size();
+
+            for (FileRegion region : regions) {
+                before -= region.before;
+            }
+
+            regions.add(new FileRegion(file, offset, length, before));
         }
 
         return this;
     }
 
+    private void clearRegions() {
+        FileRegion region;
+
+        while ((region = regions.poll()) != null) {
+            region.close();
+        }
+    }
+
+    /**
+     * Wraps the output into the outgoing buffer (with TLS), up to the next queued file region. The file regions are
+     * read and wrapped in bounded chunks, while the outgoing buffer is small enough.
+     */
+    void wrapToOutgoing() throws IOException {
+        synchronized (output) {
+            FileRegion region;
+
+            while ((region = regions.peek()) != null) {
+                region.before -= tls.wrapToOutgoing(region.before);
+
+                if (region.before > 0 || outgoing.size() >= FILE_CHUNK_SIZE) return;
+
+                tls.wrapToOutgoing(region.read(fileChunk()));
+
+                if (!region.hasRemaining()) {
+                    regions.poll();
+                    region.close();
+                }
+            }
+
+            tls.wrapToOutgoing();
+        }
+    }
+
+    /**
+     * Writes the outgoing bytes to the socket, transferring the queued file regions directly from the file system
+     * (when TLS isn't used) in between. Returns when the socket can't accept more data.
+     */
+    void writeOutgoing(SocketChannel socketChannel) throws IOException {
+        synchronized (outgoing) {
+            BufUtil.startWriting(outgoing);
+
+            long calls = outgoing.ioCalls();
+
+            try {
+                while (true) {
+                    FileRegion region = hasTLS ? null : regions.peek();
+                    int len = region != null ? region.before : outgoing.size();
+
+                    if (len > 0) {
+                        int wrote = outgoing.writeTo(socketChannel, 0, len);
+                        outgoing.deleteBefore(wrote);
+                        bytesWritten += wrote;
+
+                        if (region != null) region.before -= wrote;
+                        if (wrote < len) return;
+                    }
+
+                    if (region == null) return;
+
+                    bytesWritten += region.transferTo(socketChannel);
+                    writeCalls++;
+                    if (region.hasRemaining()) return;
+
+                    regions.poll();
+                    region.close();
+                }
+
+            } finally {
+                writeCalls += outgoing.ioCalls() - calls;
+                BufUtil.doneWriting(outgoing);
+            }
+        }
+    }
+
+    private ByteBuffer fileChunk() {
+        if (fileChunk == null) fileChunk = ByteBuffer.allocate(FILE_CHUNK_SIZE);
+        return fileChunk;
+    }
+
     @Override
     public Channel writeJSON(Object value) {
         JSON.stringify(value, output.asOutputStream());
@@ -270,7 +411,10 @@ public class RapidoidConnection extends RapidoidThing implements Resetable, Chan
 
         boolean increased = writeSeq.compareAndSet(processedHandle - 1, processedHandle);
 
-        if (!increased) {
+        if (increased) {
+            resumeNext(processedHandle + 1);
+
+        } else {
             // the current response might be already marked as processed (e.g. in non-async handlers)
             long writeSeqN = writeSeq.get();
             if (writeSeqN != processedHandle) {
@@ -290,15 +434,26 @@ public class RapidoidConnection extends RapidoidThing implements Resetable, Chan
         askToSend();
     }
 
+    /**
+     * Called when the delegated TLS handshake tasks were executed, so the worker can resume the handshake.
+     */
+    public void handshakeTasksDone() {
+        worker.handshakeTasksDone(this);
+    }
+
     private synchronized void askToSend() {
         synchronized (outgoing) {
             if (hasTLS) {
-                synchronized (output) {
-                    tls.wrapToOutgoing();
+                try {
+                    wrapToOutgoing();
+                } catch (IOException e) {
+                    Log.debug("Couldn't read the file to send", "error", e.getMessage());
+                    close(false);
+                    return;
                 }
             }
 
-            if (!waitingToWrite && outgoing.size() > 0) {
+            if (!waitingToWrite && !finishedWriting()) {
                 waitingToWrite = true;
                 worker.wantToWrite(this);
             }
@@ -334,21 +489,13 @@ public class RapidoidConnection extends RapidoidThing implements Resetable, Chan
         long seq = writeSeq.get();
 
         if (seq < handle - 1) {
-            // too early
+            // too early, so it will be resumed when the previous response is processed
+            if (postpone(expectedConnId, handle, asyncLogic)) return;
 
-            Jobs.execute(new Runnable() {
-                @Override
-                public void run() {
-                    resume(expectedConnId, handle, asyncLogic);
-                }
-
-                @Override
-                public String toString() {
-                    return U.frmt("RapidoidConnection.ResumeJob(handle=%s, expectedConnId=%s, logic=%s)", handle, expectedConnId, asyncLogic);
-                }
-            });
+            seq = writeSeq.get();
+        }
 
-        } else if (seq == handle - 1) {
+        if (seq == handle - 1) {
 
             synchronized (this) {
 
@@ -375,6 +522,37 @@ public class RapidoidConnection extends RapidoidThing implements Resetable, Chan
         }
     }
 
+    private boolean postpone(final long expectedConnId, final long handle, final AsyncLogic asyncLogic) {
+        synchronized (earlyResumes) {
+            // the previous response might have been processed in the meantime
+            if (writeSeq.get() >= handle - 1) return false;
+
+            earlyResumes.put(handle, new Runnable() {
+                @Override
+                public void run() {
+                    resume(expectedConnId, handle, asyncLogic);
+                }
+
+                @Override
+                public String toString() {
+                    return U.frmt("RapidoidConnection.ResumeJob(handle=%s, expectedConnId=%s, logic=%s)", handle, expectedConnId, asyncLogic);
+                }
+            });
+
+            return true;
+        }
+    }
+
+    private void resumeNext(long handle) {
+        Runnable resumeJob;
+
+        synchronized (earlyResumes) {
+            resumeJob = earlyResumes.remove(handle);
+        }
+
+        if (resumeJob != null) Jobs.execute(resumeJob);
+    }
+
     private void doResume(long handle, AsyncLogic asyncLogic, long seq) {
         U.must(seq == writeSeq.get());
 
@@ -562,8 +740,102 @@ public class RapidoidConnection extends RapidoidThing implements Resetable, Chan
         close(false);
     }
 
+    @Override
+    public Channel readTimeout(long readTimeout) {
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    @Override
+    public Channel writeTimeout(long writeTimeout) {
+        this.writeTimeout = writeTimeout;
+        return this;
+    }
+
+    @Override
+    public Channel protocol(Protocol protocol) {
+        U.notNull(protocol, "protocol");
+        this.protocol = protocol;
+        return this;
+    }
+
+    @Override
+    public long pendingOutput() {
+        synchronized (output) {
+            return hasTLS ? output.size() + outgoing.size() : output.size();
+        }
+    }
+
+    @Override
+    public boolean hasPendingResponses() {
+        return writeSeq.get() < readSeq.get() - 1;
+    }
+
+    /**
+     * Returns the earliest of the idle, read and write deadlines (or 0 if there are none).
+     */
+    long deadline() {
+        long deadline = expiresAt;
+
+        if (readDeadline > 0 && (deadline <= 0 || readDeadline < deadline)) deadline = readDeadline;
+        if (writeDeadline > 0 && (deadline <= 0 || writeDeadline < deadline)) deadline = writeDeadline;
+
+        return deadline;
+    }
+
+    /**
+     * Starts the read deadline of an incomplete message, or extends it if enough data arrived since it was set. Thus,
+     * the slow clients are limited, without limiting the total time of large uploads.
+     */
+    boolean readPending(long now) {
+        long timeout = readTimeout;
+
+        if (timeout <= 0) {
+            readDeadline = 0;
+            return false;
+        }
+
+        if (readDeadline == 0 || bytesRead - readMark >= MIN_PROGRESS) {
+            readDeadline = now + timeout;
+            readMark = bytesRead;
+            return true;
+        }
+
+        return false;
+    }
+
+    void readCompleted() {
+        readDeadline = 0;
+    }
+
+    /**
+     * Starts the write deadline of a pending output, or extends it if enough data was sent since it was set.
+     */
+    boolean writePending(long now) {
+        long timeout = writeTimeout;
+
+        if (timeout <= 0) {
+            writeDeadline = 0;
+            return false;
+        }
+
+        if (writeDeadline == 0 || bytesWritten - writeMark >= MIN_PROGRESS) {
+            writeDeadline = now + timeout;
+            writeMark = bytesWritten;
+            return true;
+        }
+
+        return false;
+    }
+
+    void writeCompleted() {
+        writeDeadline = 0;
+    }
+
     public boolean finishedWriting() {
-        return outgoing.size() == 0;
+        synchronized (output) {
+            return outgoing.size() == 0 && regions.isEmpty();
+        }
     }
 
     public ChannelHolderImpl holder() {
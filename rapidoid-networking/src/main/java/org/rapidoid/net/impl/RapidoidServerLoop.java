@@ -23,14 +23,19 @@ package org.rapidoid.net.impl;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
 import org.rapidoid.commons.Rnd;
+import org.rapidoid.insight.Insights;
+import org.rapidoid.insight.StatsMeasure;
 import org.rapidoid.log.Log;
 import org.rapidoid.net.*;
 import org.rapidoid.thread.RapidoidThread;
 import org.rapidoid.u.U;
+import org.rapidoid.util.Msc;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.nio.channels.*;
 import java.util.Iterator;
 import java.util.Set;
@@ -47,10 +52,15 @@ public class RapidoidServerLoop extends AbstractLoop<Server> implements Server,
     private final Selector selector;
     private ServerSocketChannel serverSocketChannel;
 
+    // the listening sockets of the I/O workers, if each of them accepts its own connections
+    private ServerSocketChannel[] workerSocketChannels;
+
     private volatile RapidoidWorker[] ioWorkers;
 
     private RapidoidWorker currentWorker;
 
+    private StatsMeasure accepted;
+
     public RapidoidServerLoop(NetworkingParams net, TLSParams tlsParams) {
         super("server");
 
@@ -85,6 +95,17 @@ public class RapidoidServerLoop extends AbstractLoop<Server> implements Server,
         U.notNull(net.protocol(), "protocol");
         U.notNull(net.helperClass(), "helperClass");
 
+        if (net.reusePort()) {
+            SocketOption<Boolean> reusePort = reusePortOption();
+
+            if (reusePort != null) {
+                openWorkerSockets(reusePort);
+                return;
+            }
+
+            Log.warn("SO_REUSEPORT is not supported, falling back to a single acceptor!", "OS", Msc.OS_NAME);
+        }
+
         String blockingInfo = net.blockingAccept() ? "blocking" : "non-blocking";
         Log.debug("Initializing server", "address", net.address(), "port", net.port(), "sync", net.syncBufs(), "accept", blockingInfo);
 
@@ -111,6 +132,8 @@ public class RapidoidServerLoop extends AbstractLoop<Server> implements Server,
                 serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
             }
 
+            accepted = Insights.stats(name + ":accepted");
+
             initWorkers();
 
         } else {
@@ -118,12 +141,75 @@ public class RapidoidServerLoop extends AbstractLoop<Server> implements Server,
         }
     }
 
+    private void openWorkerSockets(SocketOption<Boolean> reusePort) throws IOException {
+        Log.info("!Starting server", "!address", net.address(), "!port", net.port(), "I/O workers", net.workers(), "sync", net.syncBufs(), "accept", "SO_REUSEPORT");
+
+        InetSocketAddress addr = new InetSocketAddress(net.address(), net.port());
+
+        workerSocketChannels = new ServerSocketChannel[net.workers()];
+
+        try {
+            for (int i = 0; i < workerSocketChannels.length; i++) {
+                ServerSocketChannel channel = ServerSocketChannel.open();
+                workerSocketChannels[i] = channel;
+
+                channel.configureBlocking(false);
+                channel.setOption(reusePort, true);
+
+                ServerSocket socket = channel.socket();
+                socket.setReceiveBufferSize(16 * 1024);
+                socket.setReuseAddress(true);
+                socket.bind(addr, MAX_PENDING_CONNECTIONS);
+            }
+
+        } catch (IOException e) {
+            closeWorkerSockets();
+            throw e;
+        }
+
+        Log.debug("Opened server sockets", "address", addr, "count", workerSocketChannels.length);
+
+        initWorkers();
+    }
+
+    private void closeWorkerSockets() {
+        for (ServerSocketChannel channel : workerSocketChannels) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    Log.warn("Cannot close socket!", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * SO_REUSEPORT is available since Java 9, and it balances the connections between the sockets only on Linux.
+     */
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> reusePortOption() {
+        if (!Msc.OS_NAME.toLowerCase().contains("linux")) return null;
+
+        try {
+            SocketOption<Boolean> option = (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+
+            try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+                return channel.supportedOptions().contains(option) ? option : null;
+            }
+
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     private void initWorkers() {
         ioWorkers = new RapidoidWorker[net.workers()];
 
         for (int i = 0; i < ioWorkers.length; i++) {
 
-            RapidoidWorkerThread workerThread = new RapidoidWorkerThread(i, net, tlsParams);
+            ServerSocketChannel listener = workerSocketChannels != null ? workerSocketChannels[i] : null;
+            RapidoidWorkerThread workerThread = new RapidoidWorkerThread(i, net, tlsParams, listener);
 
             workerThread.start();
 
@@ -175,6 +261,10 @@ public class RapidoidServerLoop extends AbstractLoop<Server> implements Server,
             }
         }
 
+        if (workerSocketChannels != null) {
+            closeWorkerSockets();
+        }
+
         super.shutdown();
         Log.info("!The server is down.");
         return this;
@@ -225,7 +315,7 @@ public class RapidoidServerLoop extends AbstractLoop<Server> implements Server,
 
     @Override
     protected void insideLoop() {
-        if (net.blockingAccept()) {
+        if (net.blockingAccept() && serverSocketChannel != null) {
             processBlocking();
         } else {
             processNonBlocking();
@@ -249,7 +339,7 @@ public class RapidoidServerLoop extends AbstractLoop<Server> implements Server,
                     SelectionKey key = (SelectionKey) iter.next();
                     iter.remove();
 
-                    acceptChannel((ServerSocketChannel) key.channel());
+                    acceptChannels((ServerSocketChannel) key.channel());
                 }
             }
         } catch (ClosedSelectorException e) {
@@ -258,18 +348,46 @@ public class RapidoidServerLoop extends AbstractLoop<Server> implements Server,
     }
 
     private void processBlocking() {
-        acceptChannel(serverSocketChannel);
-    }
-
-    private void acceptChannel(ServerSocketChannel serverChannel) {
         try {
-            SocketChannel channel = serverChannel.accept();
+            SocketChannel channel = serverSocketChannel.accept();
             currentWorker.accept(channel);
             currentWorker = currentWorker.next;
+            accepted.value(1);
 
         } catch (IOException e) {
             Log.error("Acceptor error!", e);
         }
     }
 
+    /**
+     * Drains the pending connections (up to the configured batch size) and hands them to the workers round-robin,
+     * waking up each of the workers at most once per batch.
+     */
+    private void acceptChannels(ServerSocketChannel serverChannel) {
+        RapidoidWorker first = currentWorker;
+        int count = 0;
+
+        try {
+            while (count < net.acceptBatch() || count == 0) {
+                SocketChannel channel = serverChannel.accept();
+                if (channel == null) break;
+
+                currentWorker.enqueue(channel);
+                currentWorker = currentWorker.next;
+                count++;
+            }
+
+        } catch (IOException e) {
+            Log.error("Acceptor error!", e);
+        }
+
+        RapidoidWorker worker = first;
+        for (int i = 0; i < Math.min(count, ioWorkers.length); i++) {
+            worker.wakeup();
+            worker = worker.next;
+        }
+
+        if (count > 0) accepted.value(count);
+    }
+
 }
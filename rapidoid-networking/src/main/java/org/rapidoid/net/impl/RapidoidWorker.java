@@ -25,16 +25,17 @@ import org.rapidoid.annotation.Since;
 import org.rapidoid.buffer.BufGroup;
 import org.rapidoid.buffer.BufUtil;
 import org.rapidoid.buffer.IncompleteReadException;
-import org.rapidoid.collection.Coll;
 import org.rapidoid.config.Conf;
 import org.rapidoid.config.ConfigUtil;
 import org.rapidoid.ctx.Ctxs;
-import org.rapidoid.expire.ExpirationCrawlerThread;
-import org.rapidoid.expire.Expire;
+import org.rapidoid.insight.Insights;
+import org.rapidoid.insight.StatsMeasure;
 import org.rapidoid.log.Log;
 import org.rapidoid.net.NetworkingParams;
 import org.rapidoid.net.Protocol;
+import org.rapidoid.net.StatefulProtocol;
 import org.rapidoid.net.TLSParams;
+import org.rapidoid.net.tls.TLSBuffers;
 import org.rapidoid.pool.Pool;
 import org.rapidoid.pool.Pools;
 import org.rapidoid.u.U;
@@ -46,10 +47,11 @@ import java.net.Socket;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.Queue;
-import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 @Authors("Nikolche Mihajlovski")
 @Since("2.0.0")
@@ -59,9 +61,15 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
 
     public static boolean EXTRA_SAFE = false;
 
-    private static final ExpirationCrawlerThread idleConnectionsCrawler;
+    private static final int TIMING_WHEEL_SIZE = 512;
 
-    private static final int connTimeout;
+    private final long connTimeout;
+
+    private final long readTimeout;
+
+    private final long writeTimeout;
+
+    private final TimingWheel timeouts;
 
     private final Queue<SocketChannel> connected;
 
@@ -69,8 +77,6 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
 
     private final Pool<RapidoidConnection> connections;
 
-    private final Set<RapidoidConnection> allConnections = Coll.concurrentSet();
-
     final Protocol serverProtocol;
 
     final RapidoidHelper helper;
@@ -89,31 +95,42 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
 
     private final TLSParams tlsParams;
 
-    RapidoidWorker next;
+    private final TLSBuffers tlsBuffers;
 
-    static {
-        int timeoutResolution = Conf.HTTP.entry("timeoutResolution").or(5000);
-        connTimeout = Conf.HTTP.entry("timeout").or(30000);
+    // the TLS connections that can resume their handshakes, after the delegated tasks were executed
+    private final Queue<RapidoidConnection> handshaked = new ConcurrentLinkedQueue<>();
 
-        if (timeoutResolution > 0 && connTimeout > 0) {
-            idleConnectionsCrawler = Expire.crawler("idleConnections", timeoutResolution);
-        } else {
-            idleConnectionsCrawler = null;
-        }
-    }
+    private final int acceptBatch;
+
+    private final StatsMeasure accepted;
+
+    private final StatsMeasure readCalls;
+
+    private final StatsMeasure writeCalls;
+
+    RapidoidWorker next;
 
     public RapidoidWorker(String name, final RapidoidHelper helper, NetworkingParams net, TLSParams tlsParams) {
+        this(name, helper, net, tlsParams, null);
+    }
+
+    /**
+     * If a listening socket is provided, the worker accepts the connections from it in its own event loop.
+     */
+    public RapidoidWorker(String name, final RapidoidHelper helper, NetworkingParams net, TLSParams tlsParams,
+                          ServerSocketChannel listener) {
 
         super(name);
 
         this.bufSize = net.bufSizeKB() * 1024;
         this.noDelay = net.noDelay();
-        this.bufs = new BufGroup(bufSize, net.syncBufs());
+        this.bufs = new BufGroup(bufSize, net.syncBufs(), net.ioBatch());
 
         this.serverProtocol = net.protocol();
         this.helper = helper;
         this.sslContext = tlsParams.buildTLSContext();
         this.tlsParams = tlsParams;
+        this.tlsBuffers = sslContext != null ? new TLSBuffers(name, sslContext) : null;
 
         this.maxPipeline = net.maxPipeline();
 
@@ -125,8 +142,31 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
 
         connections = Pools.create("connections", () -> newConnection(false), 100000);
 
-        if (idleConnectionsCrawler != null) {
-            idleConnectionsCrawler.register(allConnections);
+        int timeoutResolution = ConnTimeouts.resolution();
+        this.connTimeout = ConnTimeouts.idle();
+        this.readTimeout = ConnTimeouts.read();
+        this.writeTimeout = ConnTimeouts.write();
+
+        // the deadlines are checked by the worker thread, at the configured resolution
+        this.timeouts = timeoutResolution > 0 ? new TimingWheel(timeoutResolution, TIMING_WHEEL_SIZE, U.time()) : null;
+
+        this.acceptBatch = net.acceptBatch();
+
+        // the number of system calls per read event / per fully sent output (response or pipelined responses)
+        this.readCalls = Insights.stats(name + ":read-calls");
+        this.writeCalls = Insights.stats(name + ":write-calls");
+
+        if (listener != null) {
+            this.accepted = Insights.stats(name + ":accepted");
+
+            try {
+                listener.register(selector, SelectionKey.OP_ACCEPT);
+            } catch (ClosedChannelException e) {
+                throw U.rte("The listening socket is closed!", e);
+            }
+
+        } else {
+            this.accepted = null;
         }
     }
 
@@ -136,6 +176,38 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
         selector.wakeup();
     }
 
+    /**
+     * Queues an accepted connection without waking up the worker, for a batched hand-off.
+     */
+    void enqueue(SocketChannel socketChannel) {
+        connected.add(socketChannel);
+    }
+
+    void wakeup() {
+        selector.wakeup();
+    }
+
+    @Override
+    protected void acceptOP(SelectionKey key) {
+        ServerSocketChannel listener = (ServerSocketChannel) key.channel();
+        int count = 0;
+
+        try {
+            while (count < acceptBatch || count == 0) {
+                SocketChannel socketChannel = listener.accept();
+                if (socketChannel == null) break;
+
+                count++;
+                connected(socketChannel);
+            }
+
+        } catch (IOException e) {
+            Log.error("Acceptor error!", e);
+        }
+
+        if (count > 0) accepted.value(count);
+    }
+
     private void configureSocket(SocketChannel socketChannel) throws IOException {
         socketChannel.configureBlocking(false);
 
@@ -165,14 +237,11 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
         try {
 
             if (conn.hasTLS) {
-                if (conn.tls.netIn.hasRemaining()) {
-                    read = socketChannel.read(conn.tls.netIn);
-
-                } else {
-                    read = 0;
-                }
+                read = conn.tls.readFrom(socketChannel);
             } else {
+                long calls = conn.input.ioCalls();
                 read = conn.input.append(socketChannel);
+                readCalls.value(conn.input.ioCalls() - calls);
             }
 
         } catch (Exception e) {
@@ -190,6 +259,7 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
             }
 
         } else {
+            conn.bytesRead += read;
 
             if (conn.hasTLS) {
                 if (read > 0) {
@@ -238,6 +308,10 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
             conn.requestId = helper.requestIdGen;
             helper.requestIdGen += MAX_IO_WORKERS;
             helper.requestCounter++;
+
+            // the protocol can customize the timeouts for the current message
+            conn.readTimeout(readTimeout);
+            conn.writeTimeout(writeTimeout);
         }
 
         // prepare for a rollback in case the message isn't complete yet
@@ -280,6 +354,8 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
 
             conn.input().deleteBefore(conn.input().checkpoint());
 
+            conn.readCompleted();
+
             // Log.debug("Completed message processing");
             return true;
 
@@ -290,7 +366,7 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
 
             // input not complete, so rollback
             conn.input().position(conn.input().checkpoint());
-            conn.input().limit(limit);
+            conn.input().limit(Math.min(limit, conn.input().size())); // the protocol might have consumed some input
             BufUtil.startWriting(conn.input());
 
             state.n = stateN;
@@ -299,6 +375,8 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
             boolean decreased = conn.readSeq.compareAndSet(seq, seq - 1);
             U.must(decreased, "Error in the request order control! Handle: %s", seq);
 
+            if (conn.readPending(approxTime)) scheduleTimeout(conn);
+
         } catch (ProtocolException e) {
 
             conn.log("<< PROTOCOL ERROR >>");
@@ -358,6 +436,7 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
                     if (!conn.closed) {
                         Log.trace("Closing connection", "connection", conn);
                         assert conn.key == key;
+                        notifyClosed(conn);
                         conn.reset();
                         connections.release(conn);
                     }
@@ -368,6 +447,18 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
         }
     }
 
+    private void notifyClosed(RapidoidConnection conn) {
+        Protocol protocol = conn.getProtocol();
+
+        if (protocol instanceof StatefulProtocol) {
+            try {
+                ((StatefulProtocol) protocol).closed(conn);
+            } catch (Throwable e) {
+                Log.error("Error while notifying the protocol about the closed connection!", e);
+            }
+        }
+    }
+
     private void clearKey(SelectionKey key) throws IOException {
         if (key.isValid()) {
             SocketChannel socketChannel = (SocketChannel) key.channel();
@@ -391,9 +482,7 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
                 synchronized (conn.outgoing) {
 
                     if (conn.hasTLS) {
-                        synchronized (conn.output) {
-                            conn.tls.wrapToOutgoing();
-                        }
+                        conn.wrapToOutgoing();
                     }
 
                     writeOp(key, conn, socketChannel);
@@ -410,17 +499,9 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
 
     private void writeOp(SelectionKey key, RapidoidConnection conn, SocketChannel socketChannel) throws IOException {
 
-        synchronized (conn.outgoing) {
-            if (conn.outgoing.hasRemaining()) {
-                conn.log("WRITING");
-//					conn.log(conn.outgoing.asText());
-                BufUtil.startWriting(conn.outgoing);
-                int wrote = conn.outgoing.writeTo(socketChannel);
-                conn.outgoing.deleteBefore(wrote);
-                BufUtil.doneWriting(conn.outgoing);
-                conn.log("DONE WRITING");
-            }
-        }
+        conn.log("WRITING");
+        conn.writeOutgoing(socketChannel);
+        conn.log("DONE WRITING");
 
         boolean finishedWriting, closeAfterWrite;
         synchronized (conn) {
@@ -428,6 +509,14 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
             closeAfterWrite = conn.closeAfterWrite();
         }
 
+        if (finishedWriting) {
+            writeCalls.value(conn.writeCalls);
+            conn.writeCalls = 0;
+            conn.writeCompleted();
+        } else if (conn.writePending(approxTime)) {
+            scheduleTimeout(conn);
+        }
+
         if (finishedWriting && closeAfterWrite) {
             close(conn);
 
@@ -465,38 +554,20 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
     @Override
     protected void doProcessing() {
 
+        if (timeouts != null) {
+            timeouts.advance(approxTime);
+        }
+
         SocketChannel schannel;
 
         while ((schannel = connected.poll()) != null) {
+            connected(schannel);
+        }
 
-            try {
-                configureSocket(schannel);
-            } catch (IOException e) {
-                Log.error("Cannot configure channel!", e);
-                continue;
-            }
-
-            RapidoidChannel channel = new RapidoidChannel(schannel, false, serverProtocol);
-
-            SocketChannel socketChannel = channel.socketChannel;
-            Log.debug("connected", "address", socketChannel.socket().getRemoteSocketAddress());
-
-            try {
-                SelectionKey newKey = socketChannel.register(selector, SelectionKey.OP_READ);
-                U.notNull(channel.protocol, "protocol");
-                RapidoidConnection conn = attachConn(newKey, channel.protocol);
-
-                conn.setClient(channel.isClient);
-
-                try {
-                    processNext(conn, true);
-                } finally {
-                    conn.setInitial(false);
-                }
+        RapidoidConnection hsConn;
 
-            } catch (ClosedChannelException e) {
-                Log.warn("Closed channel", e);
-            }
+        while ((hsConn = handshaked.poll()) != null) {
+            resumeHandshake(hsConn);
         }
 
         synchronized (done) {
@@ -510,6 +581,37 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
         }
     }
 
+    private void connected(SocketChannel schannel) {
+        try {
+            configureSocket(schannel);
+        } catch (IOException e) {
+            Log.error("Cannot configure channel!", e);
+            return;
+        }
+
+        RapidoidChannel channel = new RapidoidChannel(schannel, false, serverProtocol);
+
+        SocketChannel socketChannel = channel.socketChannel;
+        Log.debug("connected", "address", socketChannel.socket().getRemoteSocketAddress());
+
+        try {
+            SelectionKey newKey = socketChannel.register(selector, SelectionKey.OP_READ);
+            U.notNull(channel.protocol, "protocol");
+            RapidoidConnection conn = attachConn(newKey, channel.protocol);
+
+            conn.setClient(channel.isClient);
+
+            try {
+                processNext(conn, true);
+            } finally {
+                conn.setInitial(false);
+            }
+
+        } catch (ClosedChannelException e) {
+            Log.warn("Closed channel", e);
+        }
+    }
+
     private RapidoidConnection attachConn(SelectionKey key, Protocol protocol) {
         U.notNull(key, "protocol");
         U.notNull(protocol, "protocol");
@@ -535,13 +637,28 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
 
         key.attach(conn);
 
+        conn.readTimeout(readTimeout);
+        conn.writeTimeout(writeTimeout);
+
         touch(conn);
+        scheduleTimeout(conn);
 
         return conn;
     }
 
     private void touch(RapidoidConnection conn) {
-        conn.setExpiresAt(approxTime + connTimeout);
+        if (connTimeout > 0) {
+            long expiresAt = approxTime + connTimeout;
+
+            // the volatile field is written at most once per loop iteration
+            if (conn.getExpiresAt() != expiresAt) conn.setExpiresAt(expiresAt);
+        }
+    }
+
+    private void scheduleTimeout(RapidoidConnection conn) {
+        if (timeouts != null && onSameThread()) {
+            timeouts.schedule(conn);
+        }
     }
 
     @Override
@@ -553,9 +670,7 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
     @Override
     public RapidoidConnection newConnection(boolean client) {
         U.must(!client, "Client connections are not supported by this worker!");
-        RapidoidConnection conn = new RapidoidConnection(RapidoidWorker.this, bufs, this.tlsParams);
-        allConnections.add(conn);
-        return conn;
+        return new RapidoidConnection(RapidoidWorker.this, bufs, this.tlsParams);
     }
 
     @Override
@@ -585,6 +700,33 @@ public class RapidoidWorker extends AbstractEventLoop<RapidoidWorker> implements
         return sslContext;
     }
 
+    @Override
+    public void handshakeTasksDone(RapidoidConnection conn) {
+        handshaked.add(conn);
+        selector.wakeup();
+    }
+
+    private void resumeHandshake(RapidoidConnection conn) {
+        if (conn.closed || conn.key == null || !conn.key.isValid()) return;
+
+        try {
+            if (conn.tls.resumeHandshake()) {
+                process(conn);
+            }
+
+            wantToWrite(conn);
+
+        } catch (Exception e) {
+            Log.debug("TLS handshake error", e);
+            close(conn);
+        }
+    }
+
+    @Override
+    public TLSBuffers tlsBuffers() {
+        return tlsBuffers;
+    }
+
     @Override
     public RapidoidHelper helper() {
         return helper;
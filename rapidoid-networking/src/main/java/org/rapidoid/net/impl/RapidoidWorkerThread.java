@@ -28,6 +28,8 @@ import org.rapidoid.net.TLSParams;
 import org.rapidoid.thread.RapidoidThread;
 import org.rapidoid.u.U;
 
+import java.nio.channels.ServerSocketChannel;
+
 @Authors("Nikolche Mihajlovski")
 @Since("4.1.0")
 public class RapidoidWorkerThread extends RapidoidThread {
@@ -35,15 +37,17 @@ public class RapidoidWorkerThread extends RapidoidThread {
     private final int workerIndex;
     private final NetworkingParams net;
     private final TLSParams tlsParams;
+    private final ServerSocketChannel listener;
 
     private volatile RapidoidWorker worker;
 
-    RapidoidWorkerThread(int workerIndex, NetworkingParams net, TLSParams tlsParams) {
+    RapidoidWorkerThread(int workerIndex, NetworkingParams net, TLSParams tlsParams, ServerSocketChannel listener) {
         super("server" + (workerIndex + 1));
 
         this.workerIndex = workerIndex;
         this.net = net;
         this.tlsParams = tlsParams;
+        this.listener = listener;
     }
 
     @Override
@@ -51,7 +55,7 @@ public class RapidoidWorkerThread extends RapidoidThread {
         RapidoidHelper helper = Cls.newInstance(net.helperClass(), net.exchangeClass());
         helper.requestIdGen = workerIndex; // to generate UNIQUE request ID (+= MAX_IO_WORKERS)
 
-        worker = new RapidoidWorker("server" + (workerIndex + 1), helper, net, tlsParams);
+        worker = new RapidoidWorker("server" + (workerIndex + 1), helper, net, tlsParams, listener);
 
         worker.run();
     }
@@ -0,0 +1,182 @@
+/*-
+ * #%L
+ * rapidoid-networking
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.net.impl;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.log.Log;
+import org.rapidoid.u.U;
+
+import java.util.Arrays;
+
+/**
+ * Hashed timing wheel with the idle, read and write deadlines of the connections of a single I/O worker, accessed
+ * only by the worker thread.
+ * <p>
+ * Each connection is scheduled once, at its earliest deadline. Touching a connection only moves its deadline, which is
+ * checked again when the scheduled slot is reached, so the connection is visited about once per timeout, instead of
+ * scanning all the connections at every check.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class TimingWheel extends RapidoidThing {
+
+    private static final RapidoidConnection[] EMPTY = {};
+
+    private final long tickMs;
+
+    private final int mask;
+
+    private final RapidoidConnection[][] slots;
+
+    private final int[] sizes;
+
+    // the last processed tick
+    private long tick;
+
+    private RapidoidConnection[] due = new RapidoidConnection[16];
+
+    private int dueN;
+
+    public TimingWheel(long tickMs, int size, long now) {
+        U.must(tickMs > 0, "The timing wheel tick must be positive!");
+        U.must(size > 0 && Integer.bitCount(size) == 1, "The timing wheel size must be a power of 2!");
+
+        this.tickMs = tickMs;
+        this.mask = size - 1;
+        this.slots = new RapidoidConnection[size][];
+        this.sizes = new int[size];
+        this.tick = now / tickMs;
+
+        Arrays.fill(slots, EMPTY);
+    }
+
+    /**
+     * Schedules a check of the connection's earliest deadline, unless an earlier check was already scheduled.
+     */
+    public void schedule(RapidoidConnection conn) {
+        long deadline = conn.deadline();
+        if (deadline <= 0) return;
+
+        // the deadline is reached when its tick is processed
+        long at = Math.max((deadline + tickMs - 1) / tickMs, tick + 1);
+
+        // the previous (later) entry stays in its slot, and is dropped when reached
+        if (conn.timerTick != 0 && conn.timerTick <= at) return;
+
+        conn.timerTick = at;
+
+        int slot = (int) (at & mask);
+        RapidoidConnection[] entries = slots[slot];
+
+        if (sizes[slot] == entries.length) {
+            entries = slots[slot] = Arrays.copyOf(entries, Math.max(entries.length * 2, 4));
+        }
+
+        entries[sizes[slot]++] = conn;
+    }
+
+    /**
+     * Processes the slots up to the current time, expiring the connections with passed deadlines and rescheduling
+     * the others.
+     */
+    public void advance(long now) {
+        long target = now / tickMs;
+
+        // after a long pause, each slot is processed only once
+        if (target - tick > slots.length) {
+            tick = target - slots.length;
+        }
+
+        while (tick < target) {
+            tick++;
+            process(tick, now);
+        }
+    }
+
+    private void process(long current, long now) {
+        int slot = (int) (current & mask);
+        RapidoidConnection[] entries = slots[slot];
+
+        int count = sizes[slot];
+        int kept = 0;
+        dueN = 0;
+
+        for (int i = 0; i < count; i++) {
+            RapidoidConnection conn = entries[i];
+            long at = conn.timerTick;
+            entries[i] = null;
+
+            if (at == 0 || (at & mask) != slot) continue; // stale, the connection was scheduled earlier elsewhere
+
+            if (at > current) {
+                entries[kept++] = conn; // scheduled for one of the next rounds
+
+            } else {
+                // unscheduled right away, so a duplicate entry in the same slot is stale
+                conn.timerTick = 0;
+
+                if (dueN == due.length) due = Arrays.copyOf(due, due.length * 2);
+                due[dueN++] = conn;
+            }
+        }
+
+        sizes[slot] = kept;
+
+        // the rescheduled connections might be added to the same slot
+        for (int i = 0; i < dueN; i++) {
+            RapidoidConnection conn = due[i];
+            due[i] = null;
+
+            expireOrReschedule(conn, now);
+        }
+    }
+
+    private void expireOrReschedule(RapidoidConnection conn, long now) {
+        if (conn.closed) return;
+
+        long deadline = conn.deadline();
+        if (deadline <= 0) return;
+
+        if (deadline <= now) {
+            try {
+                conn.expire();
+            } catch (Exception e) {
+                Log.error("Error on expiration!", e);
+            }
+
+        } else {
+            schedule(conn);
+        }
+    }
+
+    public int size() {
+        int total = 0;
+
+        for (int n : sizes) {
+            total += n;
+        }
+
+        return total;
+    }
+
+}
@@ -25,6 +25,8 @@ import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
 import org.rapidoid.buffer.BufUtil;
 import org.rapidoid.commons.Err;
+import org.rapidoid.insight.Insights;
+import org.rapidoid.insight.StatsMeasure;
 import org.rapidoid.log.Log;
 import org.rapidoid.net.TLSParams;
 import org.rapidoid.net.impl.RapidoidConnection;
@@ -32,7 +34,9 @@ import org.rapidoid.u.U;
 import org.rapidoid.util.Msc;
 
 import javax.net.ssl.*;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 
 @Authors("Nikolche Mihajlovski")
 @Since("5.4.0")
@@ -40,31 +44,35 @@ public class RapidoidTLS extends RapidoidThing {
 
     private static boolean debugging = false;
 
+    // the handshake duration (in microseconds)
+    private static final StatsMeasure HANDSHAKES = Insights.stats("tls:handshake-us");
+
     private final SSLContext sslContext;
     private final TLSParams tlsParams;
     private final RapidoidConnection conn;
+    private final TLSBuffers buffers;
 
     private volatile SSLEngine engine;
 
-    private final ByteBuffer appIn;
-    public final ByteBuffer netIn;
-    final ByteBuffer netOut;
+    // the buffers are borrowed while in use, the received packets are kept until they are unwrapped
+    private ByteBuffer appIn;
+    private ByteBuffer netIn;
+    private ByteBuffer netOut;
+
+    // the delegated handshake tasks are being executed, so the engine cannot proceed
+    private volatile boolean tasksPending;
+
+    private boolean handshaken;
 
-    public RapidoidTLS(SSLContext sslContext, RapidoidConnection conn, TLSParams tlsParams) {
+    private long handshakeStartedAt;
+
+    public RapidoidTLS(SSLContext sslContext, RapidoidConnection conn, TLSParams tlsParams, TLSBuffers buffers) {
 
         this.sslContext = sslContext;
         this.tlsParams = tlsParams;
         this.conn = conn;
+        this.buffers = buffers;
         this.engine = createServerEngine();
-
-        SSLSession session = engine.getSession();
-
-        int appBufferMax = session.getApplicationBufferSize();
-        int netBufferMax = session.getPacketBufferSize();
-
-        appIn = ByteBuffer.allocateDirect(appBufferMax + 64);
-        netIn = ByteBuffer.allocateDirect(netBufferMax);
-        netOut = ByteBuffer.allocateDirect(netBufferMax);
     }
 
     private SSLEngine createServerEngine() {
@@ -80,11 +88,11 @@ public class RapidoidTLS extends RapidoidThing {
 
         switch (status) {
             case FINISHED:
+                handshakeFinished();
                 break;
 
             case NEED_TASK:
-                status = executeTasks();
-                reactToHandshakeStatus(status);
+                if (!tasksPending) runTasks();
                 break;
 
             case NEED_UNWRAP:
@@ -103,6 +111,46 @@ public class RapidoidTLS extends RapidoidThing {
         }
     }
 
+    private void runTasks() {
+        if (TLSTasks.isOffloaded()) {
+            // the connection is parked until the tasks are done, then the worker resumes the handshake
+            tasksPending = true;
+            TLSTasks.execute(engine, conn::handshakeTasksDone);
+
+        } else {
+            reactToHandshakeStatus(executeTasks());
+        }
+    }
+
+    /**
+     * Continues the handshake after the delegated tasks were executed, must be called by the worker thread. Returns
+     * true if application data was unwrapped into the connection's input.
+     */
+    public synchronized boolean resumeHandshake() {
+        if (!tasksPending) return false;
+
+        // if more tasks are needed (or a stale callback arrived after the connection was reused), they are taken again
+        tasksPending = false;
+
+        int inputSize = conn.input.size();
+
+        reactToHandshakeStatus(engine.getHandshakeStatus());
+        unwrapInput();
+
+        return conn.input.size() > inputSize;
+    }
+
+    private void handshakeFinished() {
+        handshaken = true;
+
+        if (handshakeStartedAt > 0) {
+            long tookUs = (System.nanoTime() - handshakeStartedAt) / 1000;
+            HANDSHAKES.value(tookUs);
+
+            handshakeStartedAt = 0;
+        }
+    }
+
     private SSLEngineResult.HandshakeStatus executeTasks() {
         Runnable runnable;
         while ((runnable = engine.getDelegatedTask()) != null) {
@@ -144,11 +192,57 @@ public class RapidoidTLS extends RapidoidThing {
         }
     }
 
+    /**
+     * Reads the received packets into the (borrowed) network input buffer. Returns -1 if the connection was closed.
+     */
+    public synchronized int readFrom(SocketChannel socketChannel) throws IOException {
+        if (netIn == null) netIn = buffers.packet();
+
+        if (!netIn.hasRemaining()) return 0;
+
+        int read = socketChannel.read(netIn);
+
+        if (read > 0 && !handshaken && handshakeStartedAt == 0) {
+            // the first packet of the handshake
+            handshakeStartedAt = System.nanoTime();
+        }
+
+        releaseIdleInput();
+        return read;
+    }
+
+    private void releaseIdleInput() {
+        if (netIn != null && netIn.position() == 0) {
+            buffers.releasePacket(netIn);
+            netIn = null;
+        }
+    }
+
     public synchronized boolean unwrapInput() {
+        if (tasksPending || netIn == null) return false;
+
+        // the handshake can unwrap recursively, the outermost call borrows the buffer
+        boolean outermost = appIn == null;
+        if (outermost) appIn = buffers.app();
+
+        try {
+            return unwrapPackets();
+
+        } finally {
+            if (outermost) {
+                buffers.releaseApp(appIn);
+                appIn = null;
+
+                releaseIdleInput();
+            }
+        }
+    }
+
+    private boolean unwrapPackets() {
         boolean success = false;
         boolean shouldUnwrap = true;
 
-        while (!isClosed() && shouldUnwrap && netIn.position() > 0) {
+        while (!isClosed() && shouldUnwrap && netIn != null && netIn.position() > 0) {
             debug("- UNWRAP");
 
             netIn.flip(); // prepare for reading
@@ -184,25 +278,88 @@ public class RapidoidTLS extends RapidoidThing {
     }
 
     public synchronized boolean wrapToOutgoing() {
-        boolean success = false;
+        return wrapToOutgoing(conn.output.size()) > 0;
+    }
+
+    /**
+     * Wraps up to the specified number of bytes from the connection's output, returns the number of consumed bytes.
+     */
+    public synchronized int wrapToOutgoing(int maxLength) {
+        int bytesConsumed = 0;
 
-        if (conn.output.hasRemaining()) {
+        if (conn.output.hasRemaining() && maxLength > 0) {
             debug("- WRAP TO OUTGOING " + conn);
 
             BufUtil.startWriting(conn.output);
             BufUtil.startWriting(conn.outgoing);
 
-            int bytesConsumed = conn.output.sslWrap(engine, conn.outgoing);
-            success = bytesConsumed > 0;
+            bytesConsumed = conn.output.sslWrap(engine, conn.outgoing, Math.min(maxLength, conn.output.size()));
 
             BufUtil.doneWriting(conn.outgoing);
             BufUtil.doneWriting(conn.output);
         }
 
-        return success;
+        return bytesConsumed;
+    }
+
+    /**
+     * Wraps the remaining bytes of the source buffer (e.g. a chunk of a file) directly into the outgoing buffer.
+     */
+    public synchronized void wrapToOutgoing(ByteBuffer src) {
+        boolean outermost = borrowNetOut();
+
+        try {
+            wrapSource(src);
+        } finally {
+            if (outermost) releaseNetOut();
+        }
+    }
+
+    private void wrapSource(ByteBuffer src) {
+        while (src.hasRemaining() && !isClosed()) {
+            SSLEngineResult result = wrap(src, netOut);
+
+            netOut.flip();
+
+            synchronized (conn.outgoing) {
+                conn.outgoing.append(netOut);
+            }
+
+            netOut.compact();
+
+            if (result.getStatus() != SSLEngineResult.Status.OK) {
+                reactToResult(result);
+                break;
+            }
+        }
+    }
+
+    private boolean borrowNetOut() {
+        if (netOut != null) return false;
+
+        netOut = buffers.packet();
+        return true;
+    }
+
+    private void releaseNetOut() {
+        // the wrapped packets are always moved to the outgoing buffer, so it is empty
+        buffers.releasePacket(netOut);
+        netOut = null;
     }
 
     private synchronized void wrapOutput() {
+        if (tasksPending) return;
+
+        boolean outermost = borrowNetOut();
+
+        try {
+            wrapHandshake();
+        } finally {
+            if (outermost) releaseNetOut();
+        }
+    }
+
+    private void wrapHandshake() {
         if (!isClosed()) {
             debug("- WRAP");
             SSLEngineResult result;
@@ -290,10 +447,16 @@ public class RapidoidTLS extends RapidoidThing {
         }
     }
 
-    public void reset() {
-        this.appIn.clear();
-        this.netIn.clear();
-        this.netOut.clear();
+    public synchronized void reset() {
+        if (netIn != null) {
+            buffers.releasePacket(netIn);
+            netIn = null;
+        }
+
+        tasksPending = false;
+        handshaken = false;
+        handshakeStartedAt = 0;
+
         this.engine = createServerEngine();
     }
 
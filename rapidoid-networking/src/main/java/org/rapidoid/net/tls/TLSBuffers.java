@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * rapidoid-networking
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.net.tls;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.config.Conf;
+import org.rapidoid.pool.Pool;
+import org.rapidoid.pool.Pools;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import java.nio.ByteBuffer;
+
+/**
+ * The direct buffers of a worker's TLS connections. The connections borrow them only while they have data in
+ * flight, so the idle connections don't hold any.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class TLSBuffers extends RapidoidThing {
+
+    private static final int POOL_SIZE = Conf.TLS.entry("bufferPoolSize").or(1024);
+
+    private final Pool<ByteBuffer> appBuffers;
+
+    private final Pool<ByteBuffer> packetBuffers;
+
+    public TLSBuffers(String name, SSLContext sslContext) {
+        SSLSession session = sslContext.createSSLEngine().getSession();
+
+        int appBufferSize = session.getApplicationBufferSize() + 64;
+        int packetBufferSize = session.getPacketBufferSize();
+
+        this.appBuffers = Pools.create(name + ":tls-app", () -> ByteBuffer.allocateDirect(appBufferSize), POOL_SIZE);
+        this.packetBuffers = Pools.create(name + ":tls-packets", () -> ByteBuffer.allocateDirect(packetBufferSize), POOL_SIZE);
+    }
+
+    ByteBuffer app() {
+        ByteBuffer buf = appBuffers.get();
+        buf.clear();
+        return buf;
+    }
+
+    void releaseApp(ByteBuffer buf) {
+        appBuffers.release(buf);
+    }
+
+    ByteBuffer packet() {
+        ByteBuffer buf = packetBuffers.get();
+        buf.clear();
+        return buf;
+    }
+
+    void releasePacket(ByteBuffer buf) {
+        packetBuffers.release(buf);
+    }
+
+}
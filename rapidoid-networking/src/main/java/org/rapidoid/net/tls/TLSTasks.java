@@ -0,0 +1,101 @@
+/*-
+ * #%L
+ * rapidoid-networking
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.net.tls;
+
+import org.rapidoid.RapidoidThing;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.config.Conf;
+import org.rapidoid.log.Log;
+import org.rapidoid.thread.RapidoidThreadFactory;
+import org.rapidoid.u.U;
+
+import javax.net.ssl.SSLEngine;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes the delegated tasks of the TLS handshakes (e.g. the RSA/ECDHE computations) outside the I/O threads. When
+ * the bounded queue is full, the tasks are executed by the I/O thread, which slows down the new handshakes.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class TLSTasks extends RapidoidThing {
+
+    // 0 = the number of cores, -1 = no offloading
+    private static final int THREADS = Conf.TLS.entry("handshakeThreads").or(0);
+
+    private static final int QUEUE_SIZE = Conf.TLS.entry("handshakeQueue").or(1000);
+
+    private static volatile ThreadPoolExecutor executor;
+
+    static boolean isOffloaded() {
+        return THREADS >= 0;
+    }
+
+    private static ThreadPoolExecutor executor() {
+        ThreadPoolExecutor exec = executor;
+        if (exec != null) return exec;
+
+        synchronized (TLSTasks.class) {
+            if (executor == null) {
+                int threads = THREADS > 0 ? THREADS : Runtime.getRuntime().availableProcessors();
+
+                ThreadPoolExecutor tpe = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(QUEUE_SIZE), new RapidoidThreadFactory("tls", true),
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+
+                tpe.allowCoreThreadTimeOut(true);
+                executor = tpe;
+            }
+
+            return executor;
+        }
+    }
+
+    /**
+     * Takes the pending delegated tasks of the engine, executes them and then calls back.
+     */
+    static void execute(SSLEngine engine, Runnable callback) {
+        List<Runnable> tasks = U.list();
+
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            tasks.add(task);
+        }
+
+        executor().execute(() -> {
+            try {
+                for (Runnable t : tasks) {
+                    t.run();
+                }
+            } catch (Throwable e) {
+                Log.error("Error while executing a TLS handshake task!", e);
+            } finally {
+                callback.run();
+            }
+        });
+    }
+
+}
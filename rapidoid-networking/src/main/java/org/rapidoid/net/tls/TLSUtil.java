@@ -106,6 +106,27 @@ public class TLSUtil extends RapidoidThing {
         }
     }
 
+    public static void configureSessionCache(SSLContext sslContext, int cacheSize, int timeout) {
+        SSLSessionContext sessions = sslContext.getServerSessionContext();
+
+        if (sessions != null) {
+            sessions.setSessionCacheSize(cacheSize);
+            sessions.setSessionTimeout(timeout);
+        }
+    }
+
+    /**
+     * The session tickets are configured JVM-wide, before the first TLS context is used. An explicitly specified
+     * system property has precedence.
+     */
+    public static void configureSessionTickets(boolean enabled) {
+        String prop = "jdk.tls.server.enableSessionTicketExtension";
+
+        if (System.getProperty(prop) == null) {
+            System.setProperty(prop, String.valueOf(enabled));
+        }
+    }
+
     private static KeyManager[] initKeyManagers(String keystore, char[] keystorePassword, char[] keyManagerPassword) throws Exception {
         KeyStore keyStore = KeyStore.getInstance("JKS");
         keyStore.load(new FileInputStream(keystore), keystorePassword);
@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * rapidoid-networking
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.config.Conf;
+import org.rapidoid.docs.echoprotocol.EchoProtocol;
+import org.rapidoid.u.U;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class ConnectionTimeoutsTest extends NetTestCommons {
+
+    @AfterEach
+    public void resetConfig() {
+        Conf.reset();
+    }
+
+    @Test
+    public void idleConnectionsShouldExpire() {
+        Conf.HTTP.set("timeout", 1000);
+        Conf.HTTP.set("timeoutResolution", 100);
+
+        server(new EchoProtocol(), () -> {
+            try (Socket socket = new Socket("localhost", 8080)) {
+                long start = U.time();
+
+                eq(socket.getInputStream().read(), -1);
+
+                long took = U.time() - start;
+                isTrue(took >= 900 && took < 3000);
+
+            } catch (IOException e) {
+                throw U.rte(e);
+            }
+        });
+    }
+
+    @Test
+    public void slowIncompleteMessagesShouldExpire() {
+        Conf.HTTP.set("timeout", 10000);
+        Conf.HTTP.set("timeoutResolution", 100);
+        Conf.HTTP.set("readTimeout", 1000);
+
+        server(new EchoProtocol(), () -> {
+            try (Socket socket = new Socket("localhost", 8080)) {
+                OutputStream out = socket.getOutputStream();
+                InputStream in = socket.getInputStream();
+
+                out.write("hello\n".getBytes());
+                eq(in.read(), 'H');
+
+                socket.setSoTimeout(5000);
+                long start = U.time();
+
+                // trickling a line, one byte at a time, keeps the connection from being idle
+                try {
+                    for (int i = 0; i < 50; i++) {
+                        out.write('x');
+                        out.flush();
+                        U.sleep(100);
+                    }
+                } catch (IOException e) {
+                    // the connection was closed while writing
+                }
+
+                long took = U.time() - start;
+                isTrue(took < 4000);
+
+                // the rest of the echoed line, then the end of the stream
+                while (in.read() != -1) {
+                    // skip
+                }
+
+            } catch (IOException e) {
+                throw U.rte(e);
+            }
+        });
+    }
+
+}
@@ -28,6 +28,7 @@ import org.rapidoid.commons.Rnd;
 import org.rapidoid.docs.echoprotocol.EchoProtocol;
 import org.rapidoid.io.IO;
 import org.rapidoid.lambda.F3;
+import org.rapidoid.net.TCP;
 import org.rapidoid.net.util.NetUtil;
 import org.rapidoid.u.U;
 import org.rapidoid.util.Constants;
@@ -71,6 +72,16 @@ public class EchoProtocolTest extends NetTestCommons {
         server(new EchoProtocol(), this::connectAndExercise);
     }
 
+    @Test
+    public void echoWithReusePort() {
+        server(TCP.server().protocol(new EchoProtocol()).workers(4).reusePort(true), this::connectAndExercise);
+    }
+
+    @Test
+    public void echoWithSingleAccept() {
+        server(TCP.server().protocol(new EchoProtocol()).workers(4).acceptBatch(1), this::connectAndExercise);
+    }
+
     private void connectAndExercise() {
 
         NetUtil.connect("localhost", 8080, (F3<Void, InputStream, BufferedReader, DataOutputStream>) (inputStream, in, out) -> {
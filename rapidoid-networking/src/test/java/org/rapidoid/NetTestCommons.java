@@ -25,6 +25,7 @@ import org.rapidoid.annotation.Since;
 import org.rapidoid.log.Log;
 import org.rapidoid.net.Protocol;
 import org.rapidoid.net.Server;
+import org.rapidoid.net.ServerBuilder;
 import org.rapidoid.net.TCP;
 import org.rapidoid.test.TestCommons;
 import org.rapidoid.u.U;
@@ -34,7 +35,11 @@ import org.rapidoid.u.U;
 public abstract class NetTestCommons extends TestCommons {
 
     protected void server(Protocol protocol, Runnable client) {
-        Server server = TCP.server().protocol(protocol).build().start();
+        server(TCP.server().protocol(protocol), client);
+    }
+
+    protected void server(ServerBuilder builder, Runnable client) {
+        Server server = builder.build().start();
 
         U.sleep(300);
         System.out.println("----------------------------------------");
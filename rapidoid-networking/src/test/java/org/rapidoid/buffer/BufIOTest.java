@@ -0,0 +1,192 @@
+/*-
+ * #%L
+ * rapidoid-networking
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.buffer;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.Pipe;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class BufIOTest extends BufferTestCommons {
+
+    private static final int UNIT = 16;
+
+    @Test
+    public void testGatheringWrite() throws IOException {
+        String data = text(1000);
+
+        for (int shrink = 0; shrink < 40; shrink += 7) {
+            Buf buf = new BufGroup(UNIT, true, 4).newBuf();
+            buf.append(text(shrink) + data);
+            buf.deleteBefore(shrink);
+
+            LimitedChannel channel = new LimitedChannel(Integer.MAX_VALUE);
+            eq(buf.writeTo(channel, 10, 500), 500);
+
+            eq(channel.received(), data.substring(10, 510));
+
+            // the data and the positions of the units are preserved
+            eq(buf, data);
+
+            // 500 bytes span 32 or 33 units, written in batches of 4 units
+            isTrue(channel.calls <= 9);
+            eq(buf.ioCalls(), channel.calls);
+        }
+    }
+
+    @Test
+    public void testPartialGatheringWrites() throws IOException {
+        String data = text(777);
+
+        Buf buf = new BufGroup(UNIT, true, 8).newBuf();
+        buf.append(data);
+
+        LimitedChannel channel = new LimitedChannel(50);
+
+        while (buf.size() > 0) {
+            int wrote = buf.writeTo(channel);
+            isTrue(wrote > 0);
+
+            buf.deleteBefore(wrote);
+            eq(buf, data.substring(channel.total));
+
+            channel.allow(50);
+        }
+
+        eq(channel.received(), data);
+    }
+
+    @Test
+    public void testScatteringRead() throws IOException {
+        String data = text(5000);
+
+        Pipe pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+
+        pipe.sink().write(ByteBuffer.wrap(data.getBytes()));
+
+        Buf buf = new BufGroup(UNIT, true, 8).newBuf();
+        buf.append("abc");
+
+        eq(buf.append(pipe.source()), 5000);
+        eq(buf, "abc" + data);
+
+        // the first read fills the current unit, the following ones read 8 units at once
+        isTrue(buf.ioCalls() < 5000 / UNIT);
+
+        pipe.sink().close();
+        eq(buf.append(pipe.source()), -1);
+        eq(buf, "abc" + data);
+
+        pipe.source().close();
+    }
+
+    private static String text(int length) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Accepts a limited number of bytes, like a socket with a full send buffer.
+     */
+    private static class LimitedChannel implements GatheringByteChannel {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private int available;
+
+        int total;
+
+        int calls;
+
+        LimitedChannel(int available) {
+            this.available = available;
+        }
+
+        void allow(int bytes) {
+            available += bytes;
+        }
+
+        String received() {
+            return new String(out.toByteArray());
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            calls++;
+
+            long wrote = 0;
+
+            for (int i = offset; i < offset + length; i++) {
+                wrote += consume(srcs[i]);
+            }
+
+            return wrote;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            calls++;
+            return consume(src);
+        }
+
+        private int consume(ByteBuffer src) {
+            int n = Math.min(src.remaining(), available);
+
+            for (int i = 0; i < n; i++) {
+                out.write(src.get());
+            }
+
+            available -= n;
+            total += n;
+
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
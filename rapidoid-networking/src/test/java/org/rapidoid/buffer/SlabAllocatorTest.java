@@ -0,0 +1,126 @@
+/*-
+ * #%L
+ * rapidoid-networking
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.buffer;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.u.U;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class SlabAllocatorTest extends BufferTestCommons {
+
+    @Test
+    public void testSlicesShareTheSlab() {
+        SlabAllocator slabs = new SlabAllocator(4096);
+
+        ByteBuffer a = slabs.allocate(100);
+        ByteBuffer b = slabs.allocate(200);
+
+        eq(a.capacity(), 100);
+        eq(b.capacity(), 200);
+        eq(slabs.slabs(), 1);
+
+        // the slices don't overlap
+        for (int i = 0; i < 100; i++) a.put((byte) 'a');
+        for (int i = 0; i < 200; i++) b.put((byte) 'b');
+
+        a.flip();
+        while (a.hasRemaining()) eq(a.get(), (byte) 'a');
+    }
+
+    @Test
+    public void testNewSlabIsAllocatedWhenFull() {
+        SlabAllocator slabs = new SlabAllocator(4096);
+
+        for (int i = 0; i < 4; i++) {
+            eq(slabs.allocate(1000).capacity(), 1000);
+        }
+
+        eq(slabs.slabs(), 1);
+
+        slabs.allocate(1000);
+        eq(slabs.slabs(), 2);
+    }
+
+    @Test
+    public void testBigBuffersAreAllocatedSeparately() {
+        SlabAllocator slabs = new SlabAllocator(4096);
+
+        ByteBuffer big = slabs.allocate(2000);
+
+        eq(big.capacity(), 2000);
+        eq(slabs.slabs(), 0);
+        eq(slabs.separate(), 1);
+    }
+
+    @Test
+    public void testSlabsAreReleasedWithTheirSlices() {
+        SlabAllocator slabs = new SlabAllocator(4096);
+
+        List<ByteBuffer> first = U.list();
+        for (int i = 0; i < 4; i++) first.add(slabs.allocate(1000));
+
+        ByteBuffer second = slabs.allocate(1000);
+
+        eq(slabs.slabs(), 2);
+        eq(slabs.liveSlabs(), 2);
+
+        // the first slab is released with its last slice
+        for (int i = 0; i < 3; i++) slabs.release(first.get(i));
+        eq(slabs.liveSlabs(), 2);
+
+        slabs.release(first.get(3));
+        eq(slabs.released(), 1);
+        eq(slabs.liveSlabs(), 1);
+
+        // the current slab is kept for the next allocations, until it is full
+        slabs.release(second);
+        eq(slabs.liveSlabs(), 1);
+
+        eq(slabs.allocate(1000).capacity(), 1000);
+        eq(slabs.slabs(), 2);
+
+        // the repeated and the foreign releases are ignored
+        slabs.release(first.get(0));
+        slabs.release(ByteBuffer.allocate(100));
+        eq(slabs.released(), 1);
+    }
+
+    @Test
+    public void testCopy() {
+        BufGroup bufs = new BufGroup(16);
+        Buf src = bufs.from("abcdefghijklmnopqrstuvwxyz", "src");
+
+        SlabAllocator slabs = new SlabAllocator(4096);
+        ByteBuffer copy = slabs.copyOf(src, 3, 20);
+
+        byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+
+        eq(new String(bytes), "defghijklmnopqrstuvw");
+    }
+
+}
@@ -0,0 +1,158 @@
+/*-
+ * #%L
+ * rapidoid-networking
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.buffer;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.bytes.ByteBufferBytes;
+import org.rapidoid.bytes.Bytes;
+import org.rapidoid.bytes.BytesUtil;
+import org.rapidoid.bytes.Swar;
+import org.rapidoid.data.BufRange;
+import org.rapidoid.data.BufRanges;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class SwarTest extends BufferTestCommons {
+
+    private static final String TEXT = "GET /abc?x=1&y=22 HTTP/1.1\r\nHost: a\r\nCookie: aaaaaaaaaaaaaaaaaaaaaaaaaaaaa\r\n\r\n";
+
+    @Test
+    public void testIndexOfInBothByteOrders() {
+        Random rnd = new Random(123);
+
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            for (int n = 0; n < 100; n++) {
+                byte[] bytes = new byte[rnd.nextInt(40)];
+
+                // a small alphabet including 0x00, 0x01, 0x80 and 0xFF, to provoke borrows and carries
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = (byte) new int[]{0x00, 0x01, 0x7F, 0x80, 0xFF, 'a', 'b'}[rnd.nextInt(7)];
+                }
+
+                ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length).order(order);
+                buf.put(bytes);
+
+                for (int from = 0; from <= bytes.length; from++) {
+                    for (int to = from; to <= bytes.length; to++) {
+                        for (byte value : new byte[]{0x00, 0x01, (byte) 0x80, (byte) 0xFF, 'a'}) {
+                            eq(Swar.indexOf(buf, from, to, value), indexOf(bytes, from, to, value, true));
+                            eq(Swar.indexOfOther(buf, from, to, value), indexOf(bytes, from, to, value, false));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testScanAcrossUnitsAndShrinking() {
+        for (int unitSize : new int[]{8, 16, 64}) {
+            for (int shrink = 0; shrink < 20; shrink++) {
+                BufGroup bufs = new BufGroup(unitSize);
+                Buf buf = bufs.newBuf();
+
+                String prefix = "\n /?=&:aaaaaaaaaaaaaaaaaaaa".substring(0, shrink);
+                buf.append(prefix + TEXT);
+                buf.deleteBefore(shrink);
+
+                eq(buf, TEXT);
+
+                for (int from = 0; from < TEXT.length(); from++) {
+                    for (char ch : new char[]{' ', '?', '=', '&', '\r', '\n', 'a', 'z'}) {
+                        int expected = TEXT.indexOf(ch, from);
+
+                        eq(buf.indexOf((byte) ch, from, TEXT.length()), expected);
+                        eq(buf.bytes().scan(from, TEXT.length() - 1, (byte) ch), expected);
+
+                        if (expected >= 0) {
+                            BufRange range = new BufRange();
+                            buf.position(from);
+                            buf.scanUntil((byte) ch, range);
+
+                            eq(range, from, expected - from);
+                            eq(buf.position(), expected + 1);
+                        }
+                    }
+                }
+
+                BufRange cookie = new BufRange();
+                buf.position(TEXT.indexOf("aaa"));
+                buf.scanWhile((byte) 'a', cookie);
+
+                eq(cookie, TEXT.indexOf("aaa"), 29);
+                eq(buf.get(buf.position()), '\r');
+
+                BufRanges lines = new BufRanges(10);
+                buf.position(0);
+                buf.scanLnLn(lines);
+
+                eq(lines.count, 3);
+                eq(TEXT, lines.ranges[0], "GET /abc?x=1&y=22 HTTP/1.1");
+                eq(TEXT, lines.ranges[2], "Cookie: aaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+                eq(buf.position(), TEXT.length());
+
+                buf.clear();
+                bufs.clear();
+            }
+        }
+    }
+
+    @Test
+    public void testBytesImplementations() {
+        byte[] bytes = ("xyz" + TEXT).getBytes();
+
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        ByteBufferBytes bufBytes = new ByteBufferBytes();
+        bufBytes.setTarget(buf, 3, bytes.length - 3);
+
+        Bytes arrBytes = BytesUtil.from(TEXT);
+
+        for (int from = 0; from < TEXT.length(); from++) {
+            for (char ch : new char[]{' ', '\n', 'C', 'x'}) {
+                int expected = TEXT.indexOf(ch, from);
+
+                eq(bufBytes.scan(from, TEXT.length() - 1, (byte) ch), expected);
+                eq(arrBytes.scan(from, TEXT.length() - 1, (byte) ch), expected);
+                eq(BytesUtil.find(arrBytes, from, TEXT.length(), (byte) ch, true), expected);
+            }
+        }
+
+        eq(BytesUtil.find(arrBytes, 0, TEXT.length(), "Cookie".getBytes(), true), TEXT.indexOf("Cookie"));
+        eq(BytesUtil.scan(arrBytes, 5, 4, (byte) 'a'), -1);
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte value, boolean equal) {
+        for (int i = from; i < to; i++) {
+            if ((bytes[i] == value) == equal) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+}
@@ -0,0 +1,43 @@
+/*-
+ * #%L
+ * rapidoid-networking
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.net.impl;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.NetTestCommons;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.config.Conf;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class ConnTimeoutsTest extends NetTestCommons {
+
+    @Test
+    public void theFallbacksShouldMatchTheBuiltInConfig() {
+        Conf.reset();
+
+        eq(Conf.HTTP.entry("timeoutResolution").num().get().intValue(), ConnTimeouts.DEFAULT_RESOLUTION);
+        eq(Conf.HTTP.entry("timeout").num().get().longValue(), ConnTimeouts.DEFAULT_IDLE);
+        eq(Conf.HTTP.entry("readTimeout").num().get().longValue(), ConnTimeouts.DEFAULT_READ);
+        eq(Conf.HTTP.entry("writeTimeout").num().get().longValue(), ConnTimeouts.DEFAULT_WRITE);
+    }
+
+}
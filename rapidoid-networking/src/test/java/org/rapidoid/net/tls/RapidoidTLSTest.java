@@ -26,6 +26,11 @@ import org.rapidoid.NetTestCommons;
 import org.rapidoid.net.TLSParams;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 
@@ -37,7 +42,7 @@ public class RapidoidTLSTest extends NetTestCommons {
         TLSParams tlsParams = new TLSParams();
         tlsParams.needClientAuth(true);
 
-        RapidoidTLS tls = new RapidoidTLS(context, null, tlsParams);
+        RapidoidTLS tls = new RapidoidTLS(context, null, tlsParams, new TLSBuffers("test", context));
 
         isTrue(tls.engine().getNeedClientAuth());
         isFalse(tls.engine().getWantClientAuth());
@@ -50,7 +55,7 @@ public class RapidoidTLSTest extends NetTestCommons {
         TLSParams tlsParams = new TLSParams();
         tlsParams.wantClientAuth(true);
 
-        RapidoidTLS tls = new RapidoidTLS(context, null, tlsParams);
+        RapidoidTLS tls = new RapidoidTLS(context, null, tlsParams, new TLSBuffers("test", context));
 
         isTrue(tls.engine().getWantClientAuth());
         isFalse(tls.engine().getNeedClientAuth());
@@ -62,9 +67,121 @@ public class RapidoidTLSTest extends NetTestCommons {
 
         TLSParams tlsParams = new TLSParams();
 
-        RapidoidTLS tls = new RapidoidTLS(context, null, tlsParams);
+        RapidoidTLS tls = new RapidoidTLS(context, null, tlsParams, new TLSBuffers("test", context));
 
         isFalse(tls.engine().getNeedClientAuth());
         isFalse(tls.engine().getWantClientAuth());
     }
+
+    @Test
+    public void testSessionCacheConfig() throws NoSuchAlgorithmException, KeyManagementException {
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, null, null);
+
+        TLSUtil.configureSessionCache(context, 100, 60);
+
+        eq(context.getServerSessionContext().getSessionCacheSize(), 100);
+        eq(context.getServerSessionContext().getSessionTimeout(), 60);
+    }
+
+    @Test
+    public void testSessionsAreResumed() throws Exception {
+        char[] password = "secret".toCharArray();
+        File keystore = generateKeystore(password);
+
+        SSLContext server = TLSUtil.createContext(keystore.getPath(), password, password, null, null, false);
+        TLSUtil.configureSessionCache(server, 100, 60);
+
+        SSLContext client = TLSUtil.createTrustingContext();
+
+        byte[] first = handshake(client, server);
+        byte[] second = handshake(client, server);
+
+        // the resumed session keeps the id of the cached one
+        isTrue(first.length > 0);
+        eq(second, first);
+    }
+
+    private File generateKeystore(char[] password) throws Exception {
+        File dir = Files.createTempDirectory("rapidoid-tls-").toFile();
+        dir.deleteOnExit();
+
+        File keystore = new File(dir, "test.jks");
+        keystore.deleteOnExit();
+
+        File log = new File(dir, "keytool.log");
+        log.deleteOnExit();
+
+        String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "rapidoid", "-keyalg", "RSA",
+                "-keysize", "2048", "-dname", "CN=localhost", "-validity", "1", "-storetype", "JKS",
+                "-keystore", keystore.getPath(), "-storepass", new String(password), "-keypass", new String(password))
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+
+        eq(process.waitFor(), 0);
+        return keystore;
+    }
+
+    /**
+     * Performs a handshake between in-memory engines, returns the server's session id.
+     */
+    private byte[] handshake(SSLContext client, SSLContext server) throws Exception {
+        SSLEngine clientEngine = client.createSSLEngine("localhost", 8443);
+        clientEngine.setUseClientMode(true);
+
+        // the TLS 1.3 resumption doesn't reuse the session ids
+        clientEngine.setEnabledProtocols(new String[]{"TLSv1.2"});
+
+        SSLEngine serverEngine = server.createSSLEngine();
+        serverEngine.setUseClientMode(false);
+
+        ByteBuffer toServer = ByteBuffer.allocate(64 * 1024);
+        ByteBuffer toClient = ByteBuffer.allocate(64 * 1024);
+
+        clientEngine.beginHandshake();
+        serverEngine.beginHandshake();
+
+        for (int i = 0; i < 100; i++) {
+            exchange(clientEngine, toClient, toServer);
+            exchange(serverEngine, toServer, toClient);
+
+            if (!isHandshaking(clientEngine) && !isHandshaking(serverEngine)
+                    && toServer.position() == 0 && toClient.position() == 0) {
+
+                eq(clientEngine.getSession().getId(), serverEngine.getSession().getId());
+                return serverEngine.getSession().getId();
+            }
+        }
+
+        throw new AssertionError("The handshake didn't finish!");
+    }
+
+    private static void exchange(SSLEngine engine, ByteBuffer in, ByteBuffer out) throws Exception {
+        ByteBuffer app = ByteBuffer.allocate(64 * 1024);
+
+        in.flip();
+        while (in.hasRemaining() && engine.unwrap(in, app).bytesConsumed() > 0) {
+            runTasks(engine);
+        }
+        in.compact();
+
+        while (engine.wrap(ByteBuffer.allocate(0), out).bytesProduced() > 0) {
+            runTasks(engine);
+        }
+    }
+
+    private static void runTasks(SSLEngine engine) {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    private static boolean isHandshaking(SSLEngine engine) {
+        SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+        return status != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING && status != SSLEngineResult.HandshakeStatus.FINISHED;
+    }
 }
@@ -22,7 +22,7 @@ package org.rapidoid.http.handler;
 
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
-import org.rapidoid.cls.Cls;
+import org.rapidoid.cls.MethodInvoker;
 import org.rapidoid.http.FastHttp;
 import org.rapidoid.http.HttpRoutes;
 import org.rapidoid.http.Req;
@@ -39,17 +39,25 @@ public class MethodReqHandler extends NParamMethodHandler {
 
     private final Object instance;
 
+    private final MethodInvoker invoker;
+
     public MethodReqHandler(FastHttp http, HttpRoutes routes, RouteOptions options, Method method, Object instance) {
-        super(http, routes, options, method, null);
-        method.setAccessible(true);
+        this(http, routes, options, MethodInvoker.of(method), null, instance);
+    }
+
+    /**
+     * @param paramNames the parameter names of the method if they are known upfront, or {@code null}
+     */
+    public MethodReqHandler(FastHttp http, HttpRoutes routes, RouteOptions options, MethodInvoker invoker,
+                            String[] paramNames, Object instance) {
+        super(http, routes, options, invoker.method(), null, paramNames);
         this.instance = instance;
+        this.invoker = invoker;
     }
 
     @Override
     protected Object handleReq(Channel channel, boolean isKeepAlive, Req req) throws Throwable {
-        Object[] args = args(req);
-
-        Object result = Cls.invokeRethrowing(method, instance, args);
+        Object result = invoke(invoker, instance, req);
 
         if (method.getReturnType() == void.class) {
             U.must(result == null);
@@ -22,6 +22,7 @@ package org.rapidoid.http.handler.lambda;
 
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
+import org.rapidoid.cls.MethodInvoker;
 import org.rapidoid.commons.Arr;
 import org.rapidoid.http.FastHttp;
 import org.rapidoid.http.HttpRoutes;
@@ -47,16 +48,23 @@ public abstract class NParamMethodHandler extends AbstractDecoratingHttpHandler
     private final String paramsAsStr;
 
     public NParamMethodHandler(FastHttp http, HttpRoutes routes, RouteOptions options, Method method, NParamLambda lambda) {
+        this(http, routes, options, method, lambda, null);
+    }
+
+    /**
+     * @param paramNames the parameter names of the method if they are known upfront, or {@code null}
+     */
+    public NParamMethodHandler(FastHttp http, HttpRoutes routes, RouteOptions options, Method method, NParamLambda lambda,
+                               String[] paramNames) {
         super(http, options);
         this.method = method;
 
         Class<?>[] paramTypes = method.getParameterTypes();
-        String[] paramNames;
 
         if (lambda != null) {
             paramNames = Reflect.getLambdaParameterNames(lambda);
             paramTypes = Arr.sub(paramTypes, paramTypes.length - paramNames.length, paramTypes.length);
-        } else {
+        } else if (paramNames == null) {
             paramNames = Reflect.getMethodParameterNames(method);
         }
 
@@ -89,6 +97,31 @@ public abstract class NParamMethodHandler extends AbstractDecoratingHttpHandler
         return args;
     }
 
+    /**
+     * Retrieves the arguments and invokes the method, without allocating an array of arguments for up to 4 parameters.
+     */
+    protected Object invoke(MethodInvoker invoker, Object target, Req req) throws Throwable {
+        switch (paramRetrievers.length) {
+            case 0:
+                return invoker.invoke(target);
+
+            case 1:
+                return invoker.invoke(target, arg(req, 0));
+
+            case 2:
+                return invoker.invoke(target, arg(req, 0), arg(req, 1));
+
+            case 3:
+                return invoker.invoke(target, arg(req, 0), arg(req, 1), arg(req, 2));
+
+            case 4:
+                return invoker.invoke(target, arg(req, 0), arg(req, 1), arg(req, 2), arg(req, 3));
+
+            default:
+                return invoker.invoke(target, args(req));
+        }
+    }
+
     protected String paramsToString() {
         return paramsAsStr;
     }
@@ -24,8 +24,10 @@ import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
 import org.rapidoid.http.Req;
+import org.rapidoid.http.customize.BeanParameterFactory;
 import org.rapidoid.http.customize.BeanValidator;
 import org.rapidoid.http.customize.Customization;
+import org.rapidoid.http.customize.StreamingBeanParameterFactory;
 import org.rapidoid.u.U;
 import org.rapidoid.validation.RapidoidValidationError;
 
@@ -50,7 +52,14 @@ public class BeanParamRetriever extends RapidoidThing implements ParamRetriever
         Object bean;
 
         try {
-            bean = customization.beanParameterFactory().getParamValue(req, type, name, req.data());
+            BeanParameterFactory factory = customization.beanParameterFactory();
+
+            if (factory instanceof StreamingBeanParameterFactory) {
+                bean = ((StreamingBeanParameterFactory) factory).bindParamValue(req, type, name);
+            } else {
+                bean = factory.getParamValue(req, type, name, req.data());
+            }
+
         } catch (Exception e) {
             throw U.rte(e);
         }
@@ -95,6 +95,10 @@ public class ParamRetrievers extends RapidoidThing {
             if (Cls.isAppBeanType(type)) {
                 return new BeanParamRetriever(customization, type, name, isAnnotatedValid);
 
+            } else if (type.isArray() && Cls.isAppBeanType(type.getComponentType())) {
+                // bound from a top-level JSON array in the request body
+                return new BeanParamRetriever(customization, type, name, isAnnotatedValid);
+
             } else if (Cls.kindOf(type).isConcrete()) {
                 return new DataParamRetriever(type, name, required != null);
 
@@ -0,0 +1,67 @@
+/*-
+ * #%L
+ * rapidoid-rest
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.setup;
+
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.cls.MethodInvoker;
+import org.rapidoid.u.U;
+
+import java.lang.reflect.Method;
+
+/**
+ * An exposed controller method, as it was seen at compile-time: the parameter names are known upfront, and the
+ * method is invoked directly, without reflection. Only the method itself is looked up by its exact signature, for
+ * the annotations that are processed at startup.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public abstract class ControllerMethod extends MethodInvoker {
+
+    private final String[] paramNames;
+
+    /**
+     * @param paramNames the parameter names, or {@code null} if they weren't available at compile-time
+     */
+    protected ControllerMethod(Class<?> declaringClass, String name, Class<?>[] paramTypes, String[] paramNames) {
+        super(declaredMethod(declaringClass, name, paramTypes));
+        this.paramNames = paramNames;
+    }
+
+    private static Method declaredMethod(Class<?> declaringClass, String name, Class<?>[] paramTypes) {
+        try {
+            return declaringClass.getDeclaredMethod(name, paramTypes);
+        } catch (NoSuchMethodException e) {
+            throw U.rte("Cannot find the controller method: %s#%s", e, declaringClass.getName(), name);
+        }
+    }
+
+    public String[] paramNames() {
+        return paramNames;
+    }
+
+    @Override
+    public String toString() {
+        return "ControllerMethod{" + method + "}";
+    }
+
+}
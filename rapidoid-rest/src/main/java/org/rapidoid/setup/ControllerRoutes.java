@@ -0,0 +1,52 @@
+/*-
+ * #%L
+ * rapidoid-rest
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.setup;
+
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+
+import java.util.List;
+
+/**
+ * The routes of a controller, generated at compile-time by the rapidoid-apt annotation processor as a class named
+ * {@code <binary name of the controller>_Routes} (e.g. {@code Outer$Inner_Routes} for a nested class), in the package
+ * of the controller. If present, and generated for the same methods that are found with reflection, it's used instead
+ * of looking up the parameter names and invoking the controller methods through reflection.
+ */
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public interface ControllerRoutes {
+
+    String SUFFIX = "_Routes";
+
+    /**
+     * The exposed methods of the controller and its super-classes, in the same order as they are scanned.
+     */
+    List<ControllerMethod> methods();
+
+    /**
+     * The hash of the signatures of the exposed methods (see {@link org.rapidoid.cls.MethodSignatures#hash}), which
+     * must be the same as the hash of the methods found with reflection, otherwise the routes are outdated.
+     */
+    String signatureHash();
+
+}
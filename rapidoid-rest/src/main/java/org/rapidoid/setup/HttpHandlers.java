@@ -23,18 +23,22 @@ package org.rapidoid.setup;
 import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
+import org.rapidoid.cls.MethodInvoker;
 import org.rapidoid.commons.Err;
 import org.rapidoid.http.*;
 import org.rapidoid.http.handler.HttpHandler;
 import org.rapidoid.http.handler.MethodReqHandler;
 import org.rapidoid.http.handler.PredefinedResponseHandler;
 import org.rapidoid.http.handler.StaticHttpHandler;
+import org.rapidoid.http.handler.WebSocketHandler;
 import org.rapidoid.http.handler.lambda.*;
 import org.rapidoid.http.handler.optimized.CallableHttpHandler;
 import org.rapidoid.http.handler.optimized.DelegatingParamsAwareReqHandler;
 import org.rapidoid.http.handler.optimized.DelegatingParamsAwareReqRespHandler;
 import org.rapidoid.http.handler.optimized.DelegatingParamsAwareRespHandler;
 import org.rapidoid.http.impl.RouteOptions;
+import org.rapidoid.http.websocket.WebSocketGroup;
+import org.rapidoid.http.websocket.WebSocketListener;
 import org.rapidoid.lambda.*;
 import org.rapidoid.util.Reflect;
 
@@ -107,6 +111,16 @@ class HttpHandlers extends RapidoidThing {
         setup.autoActivate();
     }
 
+    static WebSocketGroup registerWebSocket(SetupImpl setup, String verb, String path, RouteOptions options,
+                                            WebSocketListener listener) {
+
+        WebSocketHandler handler = new WebSocketHandler(options, listener);
+        setup.routes().on(verb, path, handler);
+        setup.autoActivate();
+
+        return handler.group();
+    }
+
     static void registerPredefined(SetupImpl setup, String verb, String path, RouteOptions options, Object response) {
         FastHttp http = setup.http();
         HttpRoutes routes = setup.routes();
@@ -134,4 +148,12 @@ class HttpHandlers extends RapidoidThing {
         setup.autoActivate();
     }
 
+    static void register(SetupImpl setup, String verb, String path, RouteOptions options, MethodInvoker invoker,
+                         String[] paramNames, Object instance) {
+        FastHttp http = setup.http();
+        HttpRoutes routes = setup.routes();
+        routes.on(verb, path, new MethodReqHandler(http, routes, options, invoker, paramNames, instance));
+        setup.autoActivate();
+    }
+
 }
@@ -27,6 +27,8 @@ import org.rapidoid.config.Conf;
 import org.rapidoid.http.ReqHandler;
 import org.rapidoid.http.ReqRespHandler;
 import org.rapidoid.http.handler.HttpHandler;
+import org.rapidoid.http.websocket.WebSocketGroup;
+import org.rapidoid.http.websocket.WebSocketListener;
 
 @Authors("Nikolche Mihajlovski")
 @Since("4.3.0")
@@ -80,6 +82,10 @@ public class On extends RapidoidThing {
         return setup().page(path);
     }
 
+    public static synchronized WebSocketGroup ws(String path, WebSocketListener listener) {
+        return setup().ws(path, listener);
+    }
+
     public static synchronized Setup req(ReqHandler handler) {
         return setup().req(handler);
     }
@@ -23,12 +23,15 @@ package org.rapidoid.setup;
 import org.rapidoid.RapidoidThing;
 import org.rapidoid.annotation.Authors;
 import org.rapidoid.annotation.Since;
+import org.rapidoid.http.ExecutionMode;
 import org.rapidoid.http.HttpWrapper;
 import org.rapidoid.http.MediaType;
 import org.rapidoid.http.ReqHandler;
 import org.rapidoid.http.ReqRespHandler;
 import org.rapidoid.http.impl.RouteMeta;
 import org.rapidoid.http.impl.RouteOptions;
+import org.rapidoid.http.websocket.WebSocketGroup;
+import org.rapidoid.http.websocket.WebSocketListener;
 import org.rapidoid.lambda.*;
 
 import java.lang.reflect.Method;
@@ -133,6 +136,10 @@ public class OnRoute extends RapidoidThing {
         HttpHandlers.register(setup, verb, path, htmlOpts(), method, instance);
     }
 
+    void html(ControllerMethod method, Object instance) {
+        HttpHandlers.register(setup, verb, path, htmlOpts(), method, method.paramNames(), instance);
+    }
+
     public void html(ReqHandler handler) {
         HttpHandlers.register(setup, verb, path, htmlOpts(), handler);
     }
@@ -187,6 +194,10 @@ public class OnRoute extends RapidoidThing {
         HttpHandlers.register(setup, verb, path, jsonOpts(), method, instance);
     }
 
+    void json(ControllerMethod method, Object instance) {
+        HttpHandlers.register(setup, verb, path, jsonOpts(), method, method.paramNames(), instance);
+    }
+
     public void json(ReqHandler handler) {
         HttpHandlers.register(setup, verb, path, jsonOpts(), handler);
     }
@@ -331,6 +342,15 @@ public class OnRoute extends RapidoidThing {
         HttpHandlers.register(setup, verb, path, plainOpts(), handler);
     }
 
+    /* WEBSOCKET */
+
+    /**
+     * Upgrades the matching requests to WebSocket connections, and returns the group of the open connections.
+     */
+    public WebSocketGroup ws(WebSocketListener listener) {
+        return HttpHandlers.registerWebSocket(setup, verb, path, options, listener);
+    }
+
     /* CONTENT TYPE */
 
     private RouteOptions htmlOpts() {
@@ -406,6 +426,41 @@ public class OnRoute extends RapidoidThing {
         return this;
     }
 
+    public OnRoute cacheStaleTTL(long cacheStaleTTL) {
+        options.cacheStaleTTL(cacheStaleTTL);
+        return this;
+    }
+
+    public OnRoute cacheVary(String... cacheVary) {
+        options.cacheVary(cacheVary);
+        return this;
+    }
+
+    public OnRoute writeTimeout(long writeTimeout) {
+        options.writeTimeout(writeTimeout);
+        return this;
+    }
+
+    public OnRoute execution(ExecutionMode execution) {
+        options.execution(execution);
+        return this;
+    }
+
+    public OnRoute threads(int threads) {
+        options.threads(threads);
+        return this;
+    }
+
+    public OnRoute compress(boolean compress) {
+        options.compress(compress);
+        return this;
+    }
+
+    public OnRoute compressMinSize(int compressMinSize) {
+        options.compressMinSize(compressMinSize);
+        return this;
+    }
+
     public RouteOptions options() {
         return options;
     }
@@ -25,6 +25,7 @@ import org.rapidoid.annotation.*;
 import org.rapidoid.beany.Metadata;
 import org.rapidoid.cache.Cached;
 import org.rapidoid.cls.Cls;
+import org.rapidoid.cls.MethodSignatures;
 import org.rapidoid.log.Log;
 import org.rapidoid.security.Secure;
 import org.rapidoid.u.U;
@@ -91,17 +92,71 @@ public class PojoHandlersSetup extends RapidoidThing {
         Log.debug("Processing bean", "class", clazz, "instance", bean);
 
         List<String> componentPaths = getControllerUris(clazz);
+        List<Method> methods = exposedMethods(clazz);
+        List<ControllerMethod> generated = generatedMethods(clazz, methods);
 
         for (String ctxPath : componentPaths) {
-            for (Method method : Cls.getMethods(clazz)) {
-                if (shouldExpose(method)) {
-                    registerOrDeregister(register, bean, ctxPath, method);
+            if (generated != null) {
+                for (ControllerMethod method : generated) {
+                    registerOrDeregister(register, bean, ctxPath, method.method(), method);
                 }
+
+            } else {
+                for (Method method : methods) {
+                    registerOrDeregister(register, bean, ctxPath, method, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * The methods of the class and its super-classes that are exposed as routes, found with reflection.
+     */
+    public static List<Method> exposedMethods(Class<?> clazz) {
+        List<Method> methods = U.list();
+
+        for (Method method : Cls.getMethods(clazz)) {
+            if (shouldExpose(method)) {
+                methods.add(method);
             }
         }
+
+        return methods;
+    }
+
+    /**
+     * Finds the routes that were generated at compile-time for exactly this class (not for a super-class), if any,
+     * and if they were generated for the same exposed methods.
+     */
+    private static List<ControllerMethod> generatedMethods(Class<?> clazz, List<Method> methods) {
+        String routesClassName = clazz.getName() + ControllerRoutes.SUFFIX;
+
+        Class<?> routesClass;
+        try {
+            routesClass = Class.forName(routesClassName, true, clazz.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+
+        if (!ControllerRoutes.class.isAssignableFrom(routesClass)) {
+            return null;
+        }
+
+        ControllerRoutes routes = (ControllerRoutes) Cls.newInstance(routesClass);
+
+        // e.g. a super-class was changed and compiled separately, after the routes were generated
+        if (!routes.signatureHash().equals(MethodSignatures.hashOf(methods))) {
+            Log.warn("The generated controller routes are outdated, so they won't be used",
+                    "class", clazz, "routes", routesClass);
+            return null;
+        }
+
+        Log.debug("Using the generated controller routes", "class", clazz, "routes", routesClass);
+
+        return routes.methods();
     }
 
-    private boolean shouldExpose(Method method) {
+    private static boolean shouldExpose(Method method) {
         boolean isUserDefined = !method.getDeclaringClass().equals(Object.class);
 
         int modifiers = method.getModifiers();
@@ -111,6 +166,11 @@ public class PojoHandlersSetup extends RapidoidThing {
         boolean isPrivate = Modifier.isPrivate(modifiers);
         boolean isProtected = Modifier.isProtected(modifiers);
 
+        // the bridge methods (e.g. of a generic super-class) copy the annotations of the methods they call
+        if (method.isBridge()) {
+            return false;
+        }
+
         if (isUserDefined && !isAbstract && !isStatic && !isPrivate && !isProtected && method.getAnnotations().length > 0) {
             for (Annotation ann : method.getAnnotations()) {
                 String annoName = ann.annotationType().getName();
@@ -133,7 +193,11 @@ public class PojoHandlersSetup extends RapidoidThing {
         }
     }
 
-    private void registerOrDeregister(boolean register, Object bean, String ctxPath, Method method) {
+    /**
+     * @param generated the generated invoker of the method, or {@code null} if the method was found with reflection
+     */
+    private void registerOrDeregister(boolean register, Object bean, String ctxPath, Method method,
+                                      ControllerMethod generated) {
 
         for (Annotation ann : method.getAnnotations()) {
 
@@ -145,7 +209,7 @@ public class PojoHandlersSetup extends RapidoidThing {
 
                 if (register) {
                     OnRoute route = route(setup.on(verb, path), method);
-                    route.html(method, bean);
+                    html(route, method, generated, bean);
 
                 } else {
                     setup.deregister(verb, path);
@@ -155,7 +219,7 @@ public class PojoHandlersSetup extends RapidoidThing {
                 String path = pathOf(method, ctxPath, uriOf(ann));
 
                 if (register) {
-                    route(setup.get(path), method).json(method, bean);
+                    json(route(setup.get(path), method), method, generated, bean);
                 } else {
                     setup.deregister(Constants.GET, path);
                 }
@@ -164,7 +228,7 @@ public class PojoHandlersSetup extends RapidoidThing {
                 String path = pathOf(method, ctxPath, uriOf(ann));
 
                 if (register) {
-                    route(setup.post(path), method).json(method, bean);
+                    json(route(setup.post(path), method), method, generated, bean);
                 } else {
                     setup.deregister(Constants.POST, path);
                 }
@@ -173,7 +237,7 @@ public class PojoHandlersSetup extends RapidoidThing {
                 String path = pathOf(method, ctxPath, uriOf(ann));
 
                 if (register) {
-                    route(setup.put(path), method).json(method, bean);
+                    json(route(setup.put(path), method), method, generated, bean);
                 } else {
                     setup.deregister(Constants.PUT, path);
                 }
@@ -182,7 +246,7 @@ public class PojoHandlersSetup extends RapidoidThing {
                 String path = pathOf(method, ctxPath, uriOf(ann));
 
                 if (register) {
-                    route(setup.delete(path), method).json(method, bean);
+                    json(route(setup.delete(path), method), method, generated, bean);
                 } else {
                     setup.deregister(Constants.DELETE, path);
                 }
@@ -191,7 +255,7 @@ public class PojoHandlersSetup extends RapidoidThing {
                 String path = pathOf(method, ctxPath, uriOf(ann));
 
                 if (register) {
-                    route(setup.patch(path), method).json(method, bean);
+                    json(route(setup.patch(path), method), method, generated, bean);
                 } else {
                     setup.deregister(Constants.PATCH, path);
                 }
@@ -200,7 +264,7 @@ public class PojoHandlersSetup extends RapidoidThing {
                 String path = pathOf(method, ctxPath, uriOf(ann));
 
                 if (register) {
-                    route(setup.options(path), method).json(method, bean);
+                    json(route(setup.options(path), method), method, generated, bean);
                 } else {
                     setup.deregister(Constants.OPTIONS, path);
                 }
@@ -209,7 +273,7 @@ public class PojoHandlersSetup extends RapidoidThing {
                 String path = pathOf(method, ctxPath, uriOf(ann));
 
                 if (register) {
-                    route(setup.head(path), method).json(method, bean);
+                    json(route(setup.head(path), method), method, generated, bean);
                 } else {
                     setup.deregister(Constants.HEAD, path);
                 }
@@ -218,7 +282,7 @@ public class PojoHandlersSetup extends RapidoidThing {
                 String path = pathOf(method, ctxPath, uriOf(ann));
 
                 if (register) {
-                    route(setup.trace(path), method).json(method, bean);
+                    json(route(setup.trace(path), method), method, generated, bean);
                 } else {
                     setup.deregister(Constants.TRACE, path);
                 }
@@ -226,6 +290,22 @@ public class PojoHandlersSetup extends RapidoidThing {
         }
     }
 
+    private void html(OnRoute route, Method method, ControllerMethod generated, Object bean) {
+        if (generated != null) {
+            route.html(generated, bean);
+        } else {
+            route.html(method, bean);
+        }
+    }
+
+    private void json(OnRoute route, Method method, ControllerMethod generated, Object bean) {
+        if (generated != null) {
+            route.json(generated, bean);
+        } else {
+            route.json(method, bean);
+        }
+    }
+
     private OnRoute route(OnRoute route, Method method) {
 
         // ROLES
@@ -241,6 +321,8 @@ public class PojoHandlersSetup extends RapidoidThing {
 
         if (cached != null) {
             route.cacheTTL(cached.ttl());
+            route.cacheStaleTTL(cached.staleTTL());
+            route.cacheVary(cached.vary());
         }
 
         return route;
@@ -29,6 +29,8 @@ import org.rapidoid.http.customize.Customization;
 import org.rapidoid.http.handler.HttpHandler;
 import org.rapidoid.http.impl.RouteOptions;
 import org.rapidoid.http.processor.HttpProcessor;
+import org.rapidoid.http.websocket.WebSocketGroup;
+import org.rapidoid.http.websocket.WebSocketListener;
 import org.rapidoid.net.Server;
 
 import java.util.Map;
@@ -63,6 +65,8 @@ public interface Setup {
 
     OnRoute page(String path);
 
+    WebSocketGroup ws(String path, WebSocketListener listener);
+
     Setup req(ReqHandler handler);
 
     Setup req(ReqRespHandler handler);
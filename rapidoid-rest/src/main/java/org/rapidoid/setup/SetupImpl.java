@@ -37,6 +37,8 @@ import org.rapidoid.http.handler.optimized.DelegatingParamsAwareReqRespHandler;
 import org.rapidoid.http.impl.HttpRoutesImpl;
 import org.rapidoid.http.impl.RouteOptions;
 import org.rapidoid.http.processor.HttpProcessor;
+import org.rapidoid.http.websocket.WebSocketGroup;
+import org.rapidoid.http.websocket.WebSocketListener;
 import org.rapidoid.lambda.NParamLambda;
 import org.rapidoid.log.Log;
 import org.rapidoid.net.Server;
@@ -202,6 +204,11 @@ public class SetupImpl extends RapidoidInitializer implements Setup {
         return on(GET_OR_POST, path);
     }
 
+    @Override
+    public WebSocketGroup ws(String path, WebSocketListener listener) {
+        return on(GET, path).ws(listener);
+    }
+
     @Override
     public Setup req(ReqHandler handler) {
         routes.addGenericHandler(new DelegatingParamsAwareReqHandler(http(), routes, opts(), handler));
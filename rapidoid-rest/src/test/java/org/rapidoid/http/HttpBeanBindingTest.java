@@ -0,0 +1,70 @@
+/*-
+ * #%L
+ * rapidoid-rest
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.http;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.setup.On;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HttpBeanBindingTest extends IsolatedIntegrationTest {
+
+    @Test
+    public void testBindJsonBodyWithParams() {
+        On.post("/orders/{id}").plain((OrderData order) -> order.id + ":" + order.item + ":" + order.qty + ":" + order.note);
+
+        Self.post("/orders/7?note=fast&other=x").body("{\"item\":\"book\",\"qty\":2}".getBytes()).expect("7:book:2:fast");
+
+        // the properties from the body take precedence over the request parameters
+        Self.post("/orders/8?qty=5").body("{\"item\":\"pen\",\"qty\":3}".getBytes()).expect("8:pen:3:null");
+
+        Self.post("/orders/9").body(" {\"item\":\"cup\"}".getBytes()).expect("9:cup:0:null");
+    }
+
+    @Test
+    public void testBindFormData() {
+        On.post("/form").plain((OrderData order) -> order.item + ":" + order.qty);
+
+        Self.post("/form").contentType("application/x-www-form-urlencoded").body("item=pen&qty=4".getBytes()).expect("pen:4");
+    }
+
+    @Test
+    public void testBindTopLevelJsonArray() {
+        On.post("/items").plain((ItemData[] items) -> items.length + ":" + items[0].name + ":" + items[1].name);
+
+        Self.post("/items").body("[{\"name\":\"a\"},{\"name\":\"b\"}]".getBytes()).expect("2:a:b");
+    }
+
+}
+
+class OrderData {
+    public int id;
+    public String item;
+    public int qty;
+    public String note;
+}
+
+class ItemData {
+    public String name;
+}
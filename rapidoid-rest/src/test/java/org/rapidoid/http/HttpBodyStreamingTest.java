@@ -0,0 +1,70 @@
+/*-
+ * #%L
+ * rapidoid-rest
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.setup.My;
+import org.rapidoid.setup.On;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HttpBodyStreamingTest extends IsolatedIntegrationTest {
+
+    // the bodies larger than 1 KB are streamed, see HttpBodyStreamingTest/config.yml
+
+    @Test
+    public void testLargeBodyStreamedToFile() {
+        On.post("/upload").plain((Req req) -> (req.bodyFile() != null) + ":" + req.body().length);
+
+        Self.post("/upload").body(bytes(100000)).expect("true:100000");
+        Self.post("/upload").body(bytes(100)).expect("false:100");
+        Self.post("/upload").body(bytes(5000)).expect("true:5000");
+    }
+
+    @Test
+    public void testLargeBodyStreamedToCustomSink() {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        My.requestBodySink((verb, uri, contentLength) -> uri.equals("/upload") ? sink : null);
+
+        On.post("/upload").plain((Req req) -> req.bodyFile() == null && req.body() == null);
+
+        byte[] body = bytes(30000);
+        Self.post("/upload").body(body).expect("true");
+
+        isTrue(Arrays.equals(sink.toByteArray(), body));
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) ('a' + i % 26);
+        }
+
+        return bytes;
+    }
+
+}
@@ -0,0 +1,152 @@
+/*-
+ * #%L
+ * rapidoid-rest
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.concurrent.Future;
+import org.rapidoid.http.client.HttpClient;
+import org.rapidoid.setup.On;
+import org.rapidoid.u.U;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HttpCacheRevalidationTest extends IsolatedIntegrationTest {
+
+    private final HttpClient client = new HttpClient();
+
+    @AfterEach
+    public void shutdownClient() {
+        client.shutdown();
+    }
+
+    @Test
+    public void testCachedVariantsBySelectedHeaders() {
+        AtomicInteger counter = new AtomicInteger();
+
+        On.get("/greet").cacheTTL(10000).cacheVary("Accept-Language").plain((ReqHandler) req ->
+                req.header("Accept-Language", "en") + ":" + counter.incrementAndGet());
+
+        HttpResp en = fetchWithHeader("/greet", "Accept-Language", "en");
+        eq(en.body(), "en:1");
+        eq(en.headers().get("Vary"), "Accept-Language");
+
+        eq(fetchWithHeader("/greet", "Accept-Language", "en").body(), "en:1");
+        eq(fetchWithHeader("/greet", "Accept-Language", "de").body(), "de:2");
+        eq(fetchWithHeader("/greet", "Accept-Language", "de").body(), "de:2");
+
+        HttpResp cached = fetchWithHeader("/greet", "Accept-Language", "en");
+        eq(cached.body(), "en:1");
+        eq(cached.headers().get("Vary"), "Accept-Language");
+
+        eq(counter.get(), 2);
+    }
+
+    @Test
+    public void testConditionalRequestsForCachedResponses() {
+        AtomicInteger counter = new AtomicInteger();
+
+        On.get("/data").cacheTTL(10000).plain(() -> "data" + counter.incrementAndGet());
+
+        eq(fetchWithHeader("/data", null, null).body(), "data1");
+
+        HttpResp cached = fetchWithHeader("/data", null, null);
+        eq(cached.body(), "data1");
+
+        String etag = cached.headers().get("ETag");
+        notNull(etag);
+
+        HttpResp notModified = fetchWithHeader("/data", "If-None-Match", etag);
+        eq(notModified.code(), 304);
+        isTrue(notModified.bodyBytes() == null || notModified.bodyBytes().length == 0);
+        eq(notModified.headers().get("ETag"), etag);
+
+        HttpResp modified = fetchWithHeader("/data", "If-None-Match", "\"other\"");
+        eq(modified.code(), 200);
+        eq(modified.body(), "data1");
+
+        eq(counter.get(), 1);
+    }
+
+    @Test
+    public void testSingleFlightForConcurrentMisses() {
+        AtomicInteger counter = new AtomicInteger();
+
+        On.get("/slow").cacheTTL(10000).plain(() -> {
+            U.sleep(500);
+            return "slow" + counter.incrementAndGet();
+        });
+
+        List<Future<HttpResp>> responses = U.list();
+
+        for (int i = 0; i < 10; i++) {
+            responses.add(client.execute(HTTP.get(localhost("/slow"))));
+        }
+
+        for (Future<HttpResp> resp : responses) {
+            eq(resp.get().body(), "slow1");
+        }
+
+        // the response was computed only once
+        eq(counter.get(), 1);
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() {
+        AtomicInteger counter = new AtomicInteger();
+
+        On.get("/stale").cacheTTL(500).cacheStaleTTL(10000).plain(() -> {
+            int n = counter.incrementAndGet();
+            if (n > 1) U.sleep(500);
+            return "v" + n;
+        });
+
+        eq(fetchWithHeader("/stale", null, null).body(), "v1");
+
+        U.sleep(700);
+
+        // the first request after the expiration refreshes the response
+        Future<HttpResp> refreshing = client.execute(HTTP.get(localhost("/stale")));
+        U.sleep(200);
+
+        // the stale response is served in the meantime
+        eq(fetchWithHeader("/stale", null, null).body(), "v1");
+
+        eq(refreshing.get().body(), "v2");
+        eq(fetchWithHeader("/stale", null, null).body(), "v2");
+
+        eq(counter.get(), 2);
+    }
+
+    private HttpResp fetchWithHeader(String uri, String header, String value) {
+        HttpReq req = HTTP.get(localhost(uri));
+
+        if (header != null) req.header(header, value);
+
+        return client.execute(req).get();
+    }
+
+}
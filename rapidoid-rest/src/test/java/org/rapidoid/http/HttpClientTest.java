@@ -26,10 +26,14 @@ import org.rapidoid.annotation.Since;
 import org.rapidoid.http.client.HttpClient;
 import org.rapidoid.http.client.HttpClientBodyCallback;
 import org.rapidoid.http.client.HttpClientCallback;
+import org.rapidoid.concurrent.Future;
 import org.rapidoid.lambda.ResultCounterCallback;
 import org.rapidoid.setup.On;
 import org.rapidoid.u.U;
 
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
 @Authors("Nikolche Mihajlovski")
 @Since("5.5.0")
 public class HttpClientTest extends IsolatedIntegrationTest {
@@ -69,6 +73,76 @@ public class HttpClientTest extends IsolatedIntegrationTest {
         }
     }
 
+    @Test
+    public void testPooledHttpClientOnLocalServer() {
+
+        On.get("/").plain(req -> SIMPLE_RESPONSE);
+        On.get("/x").plain(req -> req.param("x"));
+
+        // few connections, so most of the requests are pipelined
+        HttpClient client = new HttpClient().maxConnPerHost(2).maxPipeline(50);
+
+        isTrue(new String(client.get("localhost", 8080, GET_LOCALHOST)).endsWith(SIMPLE_RESPONSE));
+
+        int count = 1000;
+        ResultCounterCallback<HttpResp> cb = new ResultCounterCallback<>();
+
+        for (int i = 0; i < count; i++) {
+            client.send("localhost", 8080, GET_LOCALHOST.getBytes(), cb);
+        }
+
+        waiting();
+        while (cb.getResultCount() < count) {
+            timeout(50000);
+        }
+
+        for (HttpResp resp : cb.getResults()) {
+            eq(resp.code(), 200);
+            eq(resp.body(), SIMPLE_RESPONSE);
+        }
+
+        List<Future<HttpResp>> responses = U.list();
+
+        for (int i = 0; i < count; i++) {
+            responses.add(client.execute(HTTP.get("http://localhost:8080/x?x=" + i)));
+        }
+
+        for (int i = 0; i < count; i++) {
+            eq(responses.get(i).get().body(), "" + i);
+        }
+
+        client.shutdown();
+    }
+
+    @Test
+    public void testPooledHttpClientTimeout() {
+
+        On.get("/").plain(req -> SIMPLE_RESPONSE);
+
+        // the response is never sent
+        On.get("/stuck").plain(req -> {
+            req.async();
+            return req;
+        });
+
+        HttpClient client = new HttpClient().maxConnPerHost(1).timeout(500);
+
+        Future<HttpResp> stuck = client.send("localhost", 8080, "GET /stuck HTTP/1.1\nHost: localhost\n\n".getBytes(), null);
+
+        try {
+            stuck.get();
+            fail("Expected a timeout!");
+
+        } catch (RuntimeException e) {
+            isTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        // the stuck connection is closed, so a new one is used
+        isTrue(new String(client.get("localhost", 8080, GET_LOCALHOST)).endsWith(SIMPLE_RESPONSE));
+
+        client.shutdown();
+    }
+
     // @Test
     public void testHttpClientOnRealWebSites() {
         for (int k = 0; k < 3; k++) {
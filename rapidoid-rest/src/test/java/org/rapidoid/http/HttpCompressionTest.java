@@ -0,0 +1,194 @@
+/*-
+ * #%L
+ * rapidoid-rest
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.http.client.HttpClient;
+import org.rapidoid.http.impl.HttpCompression;
+import org.rapidoid.io.IO;
+import org.rapidoid.setup.Apps;
+import org.rapidoid.setup.On;
+import org.rapidoid.u.U;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HttpCompressionTest extends IsolatedIntegrationTest {
+
+    private static final String TEXT = U.str(U.list("abc", 123, true, "xyz", 3.14, "the end"));
+
+    private final HttpClient client = new HttpClient();
+
+    @AfterEach
+    public void shutdownClient() {
+        client.shutdown();
+    }
+
+    @Test
+    public void testEncodingNegotiation() {
+        eq(HttpCompression.negotiate("gzip, deflate, br"), "gzip");
+        eq(HttpCompression.negotiate("deflate, gzip;q=0.5"), "deflate");
+        eq(HttpCompression.negotiate("gzip;q=0, deflate"), "deflate");
+        eq(HttpCompression.negotiate("*"), "gzip");
+        eq(HttpCompression.negotiate("br, identity"), null);
+        eq(HttpCompression.negotiate(null), null);
+
+        isTrue(HttpCompression.acceptsGzip("deflate, gzip;q=0.1"));
+        isFalse(HttpCompression.acceptsGzip("gzip;q=0"));
+    }
+
+    @Test
+    public void testCompressedResponses() {
+        On.get("/text").compress(true).compressMinSize(10).plain(() -> repeat(TEXT, 100));
+        On.get("/small").compress(true).compressMinSize(10000).plain(() -> TEXT);
+        On.get("/plain").plain(() -> repeat(TEXT, 100));
+
+        HttpResp gzipped = fetchWithEncoding("/text", "gzip");
+        eq(gzipped.headers().get("Content-Encoding"), "gzip");
+        eq(gzipped.headers().get("Vary"), "Accept-Encoding");
+        isTrue(gzipped.bodyBytes().length < TEXT.length() * 10);
+        eq(gunzip(gzipped.bodyBytes()), repeat(TEXT, 100));
+
+        HttpResp deflated = fetchWithEncoding("/text", "deflate");
+        eq(deflated.headers().get("Content-Encoding"), "deflate");
+        eq(inflate(deflated.bodyBytes()), repeat(TEXT, 100));
+
+        // the client doesn't accept compressed responses
+        HttpResp identity = fetchWithEncoding("/text", null);
+        isFalse(identity.headers().containsKey("Content-Encoding"));
+        eq(identity.body(), repeat(TEXT, 100));
+
+        // below the size threshold
+        HttpResp small = fetchWithEncoding("/small", "gzip");
+        isFalse(small.headers().containsKey("Content-Encoding"));
+        eq(small.body(), TEXT);
+
+        // the compression isn't enabled for the route
+        HttpResp plain = fetchWithEncoding("/plain", "gzip");
+        isFalse(plain.headers().containsKey("Content-Encoding"));
+        eq(plain.body(), repeat(TEXT, 100));
+    }
+
+    @Test
+    public void testCompressedChunkedResponse() {
+        On.get("/chunked").compress(true).plain((ReqRespHandler) (req, resp) -> {
+            for (int i = 0; i < 10; i++) {
+                resp.chunk((i + ":" + TEXT).getBytes());
+            }
+
+            return resp;
+        });
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            expected.append(i).append(":").append(TEXT);
+        }
+
+        HttpResp resp = fetchWithEncoding("/chunked", "gzip");
+        eq(resp.headers().get("Content-Encoding"), "gzip");
+        eq(gunzip(resp.bodyBytes()), expected.toString());
+    }
+
+    @Test
+    public void testCachedCompressedVariants() {
+        AtomicInteger counter = new AtomicInteger();
+
+        On.get("/cached").cacheTTL(10000).compress(true).compressMinSize(10).plain(() -> {
+            counter.incrementAndGet();
+            return repeat(TEXT, 50);
+        });
+
+        for (int i = 0; i < 3; i++) {
+            HttpResp resp = fetchWithEncoding("/cached", "gzip");
+            eq(resp.headers().get("Content-Encoding"), "gzip");
+            eq(gunzip(resp.bodyBytes()), repeat(TEXT, 50));
+        }
+
+        // the compressed response was rendered once, and then served from the cache
+        eq(counter.get(), 1);
+
+        HttpResp identity = fetchWithEncoding("/cached", null);
+        isFalse(identity.headers().containsKey("Content-Encoding"));
+        eq(identity.body(), repeat(TEXT, 50));
+
+        eq(counter.get(), 2);
+    }
+
+    @Test
+    public void testPrecompressedStaticFiles() {
+        Apps.custom().staticFilesPath("static-gzip");
+
+        HttpResp gzipped = fetchWithEncoding("/app.js", "gzip, deflate");
+        eq(gzipped.code(), 200);
+        eq(gzipped.headers().get("Content-Encoding"), "gzip");
+        eq(gzipped.headers().get("Content-Type"), new String(MediaType.JAVASCRIPT_UTF8.getBytes()));
+        eq(gunzip(gzipped.bodyBytes()), IO.loadResourceAsString("static-gzip/app.js"));
+
+        HttpResp identity = fetchWithEncoding("/app.js", null);
+        eq(identity.code(), 200);
+        isFalse(identity.headers().containsKey("Content-Encoding"));
+        eq(identity.body(), IO.loadResourceAsString("static-gzip/app.js"));
+    }
+
+    private HttpResp fetchWithEncoding(String uri, String acceptEncoding) {
+        HttpReq req = HTTP.get(localhost(uri));
+
+        if (acceptEncoding != null) req.header("Accept-Encoding", acceptEncoding);
+
+        return client.execute(req).get();
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+
+        return sb.toString();
+    }
+
+    private static String gunzip(byte[] bytes) {
+        try {
+            return read(new GZIPInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw U.rte(e);
+        }
+    }
+
+    private static String inflate(byte[] bytes) {
+        return read(new InflaterInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private static String read(InputStream in) {
+        return new String(IO.loadBytes(in));
+    }
+
+}
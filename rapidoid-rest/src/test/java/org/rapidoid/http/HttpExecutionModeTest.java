@@ -0,0 +1,89 @@
+/*-
+ * #%L
+ * rapidoid-rest
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.http;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.ctx.Ctxs;
+import org.rapidoid.io.IO;
+import org.rapidoid.setup.On;
+import org.rapidoid.u.U;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HttpExecutionModeTest extends IsolatedIntegrationTest {
+
+    @Test
+    public void testExecutionModes() {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            String uri = "/" + mode.name().toLowerCase();
+
+            On.get(uri).execution(mode).threads(2).plain((Req req) -> {
+                // the request context is propagated to the handler's thread
+                isTrue(Ctxs.required().exchange() == req);
+
+                return req.path();
+            });
+        }
+
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            String uri = "/" + mode.name().toLowerCase();
+
+            for (int i = 0; i < 10; i++) {
+                eq(get(uri), uri);
+            }
+        }
+    }
+
+    @Test
+    public void testInlineHandlerRunsOnTheIOThread() {
+        On.get("/inline").execution(ExecutionMode.INLINE).plain(() -> Thread.currentThread().getName());
+        On.get("/isolated").execution(ExecutionMode.ISOLATED).plain(() -> Thread.currentThread().getName());
+
+        isFalse(get("/inline").startsWith("executor"));
+        isTrue(get("/isolated").startsWith("isolated:GET /isolated"));
+    }
+
+    @Test
+    public void testInlineHandlerWaitsForThePreviousResponses() {
+        On.get("/slow").plain(() -> {
+            U.sleep(300);
+            return "slow-response";
+        });
+
+        On.get("/fast").execution(ExecutionMode.INLINE).plain("fast-response");
+
+        connect((in, reader, out) -> {
+            // the inline handler is pipelined after a handler that is still executing
+            out.writeBytes("GET /slow HTTP/1.1\r\n\r\nGET /fast HTTP/1.1\r\n\r\n");
+
+            String resp = new String(IO.readWithTimeoutUntil(in, bytes -> new String(bytes).contains("fast-response")));
+
+            isTrue(resp.indexOf("slow-response") < resp.indexOf("fast-response"));
+            isTrue(resp.indexOf("slow-response") > 0);
+
+            return null;
+        });
+    }
+
+}
@@ -0,0 +1,155 @@
+/*-
+ * #%L
+ * rapidoid-rest
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.http.client.HttpClient;
+import org.rapidoid.io.IO;
+import org.rapidoid.setup.On;
+import org.rapidoid.u.U;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HttpLargeResponseTest extends IsolatedIntegrationTest {
+
+    // rendered as more than 1 MB of JSON, which is above the default streaming threshold
+    private static final int LARGE = 300000;
+
+    private final HttpClient client = new HttpClient();
+
+    @AfterEach
+    public void shutdownClient() {
+        client.shutdown();
+    }
+
+    @Test
+    public void testSmallResponseHasContentLength() {
+        On.get("/small").json(() -> numbers(100));
+
+        HttpResp resp = fetchWithEncoding("/small", null);
+
+        eq(resp.code(), 200);
+        eq(resp.headers().get("Content-Length"), String.valueOf(expectedJson(100).length()));
+        isFalse(resp.headers().containsKey("Transfer-Encoding"));
+        eq(resp.body(), expectedJson(100));
+    }
+
+    @Test
+    public void testLargeResponseIsChunked() {
+        On.get("/large").json(() -> numbers(LARGE));
+
+        HttpResp resp = fetchWithEncoding("/large", null);
+
+        eq(resp.code(), 200);
+        eq(resp.headers().get("Transfer-Encoding"), "chunked");
+        isFalse(resp.headers().containsKey("Content-Length"));
+        eq(resp.body(), expectedJson(LARGE));
+    }
+
+    @Test
+    public void testLargeCompressedResponseIsChunked() {
+        On.get("/large").compress(true).json(() -> numbers(LARGE));
+
+        HttpResp resp = fetchWithEncoding("/large", "gzip");
+
+        eq(resp.code(), 200);
+        eq(resp.headers().get("Transfer-Encoding"), "chunked");
+        eq(resp.headers().get("Content-Encoding"), "gzip");
+        eq(gunzip(resp.bodyBytes()), expectedJson(LARGE));
+    }
+
+    @Test
+    public void testLargePlainResponseIsChunked() {
+        On.get("/text").plain(() -> expectedJson(LARGE));
+
+        HttpResp resp = fetchWithEncoding("/text", null);
+
+        eq(resp.code(), 200);
+        eq(resp.headers().get("Transfer-Encoding"), "chunked");
+        eq(resp.body(), expectedJson(LARGE));
+    }
+
+    @Test
+    public void testTooLargeResponseFails() {
+        On.get("/large").json(() -> numbers(LARGE));
+
+        client.maxResponseSize(100 * 1024);
+
+        try {
+            fetchWithEncoding("/large", null);
+            fail("Expected an error, because the response is too large!");
+
+        } catch (RuntimeException e) {
+            eq(e.getCause().getMessage(), "The HTTP response is too large!");
+        }
+
+        // the connection with the unfinished response is closed, so the following requests still work
+        On.get("/small").json(() -> numbers(100));
+
+        eq(fetchWithEncoding("/small", null).body(), expectedJson(100));
+    }
+
+    private HttpResp fetchWithEncoding(String uri, String acceptEncoding) {
+        HttpReq req = HTTP.get(localhost(uri));
+
+        if (acceptEncoding != null) req.header("Accept-Encoding", acceptEncoding);
+
+        return client.execute(req).get();
+    }
+
+    private static List<Integer> numbers(int count) {
+        List<Integer> numbers = U.list();
+
+        for (int i = 0; i < count; i++) {
+            numbers.add(i);
+        }
+
+        return numbers;
+    }
+
+    private static String expectedJson(int count) {
+        StringBuilder sb = new StringBuilder("[");
+
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(i);
+        }
+
+        return sb.append(']').toString();
+    }
+
+    private static String gunzip(byte[] bytes) {
+        try {
+            return new String(IO.loadBytes(new GZIPInputStream(new ByteArrayInputStream(bytes))));
+        } catch (IOException e) {
+            throw U.rte(e);
+        }
+    }
+
+}
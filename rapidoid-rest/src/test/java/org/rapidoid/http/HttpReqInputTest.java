@@ -0,0 +1,91 @@
+/*-
+ * #%L
+ * rapidoid-rest
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.io.IO;
+import org.rapidoid.job.Jobs;
+import org.rapidoid.setup.On;
+import org.rapidoid.u.U;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HttpReqInputTest extends IsolatedIntegrationTest {
+
+    @Test
+    public void testAsyncHandlerReadsItsRequestAfterTheInputBufferIsReused() {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch secondHandled = new CountDownLatch(1);
+
+        On.post("/one").execution(ExecutionMode.INLINE).plain((Req req) -> {
+            req.async();
+
+            Jobs.execute(() -> {
+                // the next request on the connection was read into the same input buffer in the meantime
+                await(secondHandled);
+
+                req.response().result(req.param("x") + ":" + new String(req.body())).done();
+            });
+
+            firstStarted.countDown();
+            return req;
+        });
+
+        On.post("/two").execution(ExecutionMode.INLINE).plain((Req req) -> {
+            secondHandled.countDown();
+            return req.param("x") + ":" + new String(req.body());
+        });
+
+        connect((in, reader, out) -> {
+            // the requests have the same layout, so the second one overwrites the bytes of the first one
+            out.writeBytes("POST /one?x=111 HTTP/1.1\r\nContent-Length: 4\r\n\r\nAAAA");
+            out.flush();
+
+            await(firstStarted);
+
+            out.writeBytes("POST /two?x=222 HTTP/1.1\r\nContent-Length: 4\r\n\r\nBBBB");
+            out.flush();
+
+            String resp = new String(IO.readWithTimeoutUntil(in, bytes -> {
+                String s = new String(bytes);
+                return s.contains("111:AAAA") && s.contains("222:BBBB");
+            }));
+
+            isTrue(resp.indexOf("111:AAAA") < resp.indexOf("222:BBBB"));
+
+            return null;
+        });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            U.must(latch.await(10, TimeUnit.SECONDS), "Timeout!");
+        } catch (InterruptedException e) {
+            throw U.rte(e);
+        }
+    }
+
+}
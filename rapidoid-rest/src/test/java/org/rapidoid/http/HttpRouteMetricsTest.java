@@ -0,0 +1,105 @@
+/*-
+ * #%L
+ * rapidoid-rest
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.rapidoid.http;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.http.metrics.RouteMetrics;
+import org.rapidoid.setup.Apps;
+import org.rapidoid.setup.On;
+import org.rapidoid.u.U;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class HttpRouteMetricsTest extends IsolatedIntegrationTest {
+
+    @Test
+    public void testPrometheusMetrics() {
+        On.get("/metrics-ok").json(() -> U.map("x", 1));
+        On.get("/metrics-fail").json(() -> {
+            throw U.rte("failed");
+        });
+
+        for (int i = 0; i < 5; i++) {
+            eq(HTTP.get(localhost("/metrics-ok")).execute().code(), 200);
+        }
+
+        eq(HTTP.get(localhost("/metrics-fail")).execute().code(), 500);
+
+        // the metrics are served only to the administrators
+        eq(HTTP.get(localhost("/_rapidoid/metrics")).execute().code(), 403);
+
+        Apps.custom().loginProvider((req, username, password) -> password.equals(username + "!"));
+        Apps.custom().rolesProvider((req, username) -> username.equals("root") ? U.set("administrator") : U.set());
+
+        On.post("/metrics-login").json((Resp resp, String user, String pass) -> resp.login(user, pass));
+
+        HttpClient client = HTTP.client().keepCookies(true);
+        eq(client.post(localhost("/metrics-login?user=root&pass=root!")).parse(), true);
+
+        HttpResp resp = client.get(localhost("/_rapidoid/metrics")).execute();
+        client.close();
+
+        eq(resp.code(), 200);
+        isTrue(resp.headers().get("Content-Type").startsWith("text/plain; version=0.0.4"));
+
+        String metrics = resp.body();
+
+        isTrue(metrics.contains("# TYPE rapidoid_http_requests_total counter\n"));
+        isTrue(metrics.contains("rapidoid_http_requests_total{method=\"GET\",route=\"/metrics-ok\",code=\"200\"} 5\n"));
+        isTrue(metrics.contains("rapidoid_http_requests_total{method=\"GET\",route=\"/metrics-fail\",code=\"500\"} 1\n"));
+
+        isTrue(metrics.contains("# TYPE rapidoid_http_request_duration_seconds histogram\n"));
+        isTrue(metrics.contains("rapidoid_http_request_duration_seconds_bucket{method=\"GET\",route=\"/metrics-ok\",le=\"+Inf\"} 5\n"));
+        isTrue(metrics.contains("rapidoid_http_request_duration_seconds_count{method=\"GET\",route=\"/metrics-ok\"} 5\n"));
+        isTrue(metrics.contains("rapidoid_http_handler_seconds_count{method=\"GET\",route=\"/metrics-ok\"} 5\n"));
+        isTrue(metrics.contains("rapidoid_http_render_seconds_count{method=\"GET\",route=\"/metrics-ok\"} 5\n"));
+    }
+
+    @Test
+    public void testRouteMetricsViaJMX() throws Exception {
+        On.get("/metrics-jmx").plain("ok");
+
+        for (int i = 0; i < 3; i++) {
+            eq(HTTP.get(localhost("/metrics-jmx")).execute().body(), "ok");
+        }
+
+        RouteMetrics metrics = RouteMetrics.all().stream()
+                .filter(m -> m.getPath().equals("/metrics-jmx"))
+                .findFirst().orElseThrow(() -> U.rte("No metrics!"));
+
+        eq(metrics.getRequests(), 3L);
+        isTrue(metrics.getBytesIn() > 0);
+        isTrue(metrics.getBytesOut() > 0);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.rapidoid:type=Route,name=" + ObjectName.quote("GET /metrics-jmx"));
+
+        eq(server.getAttribute(name, "Requests"), 3L);
+        eq(server.getAttribute(name, "Path"), "/metrics-jmx");
+    }
+
+}
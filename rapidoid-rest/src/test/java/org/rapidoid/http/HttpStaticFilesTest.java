@@ -63,6 +63,46 @@ public class HttpStaticFilesTest extends IsolatedIntegrationTest {
         notFound("/page2");
     }
 
+    @Test
+    public void serveStaticFileRangesAndValidators() {
+        Apps.custom().staticFilesPath("static2");
+
+        HttpResp full = HTTP.get(localhost("/index.html")).execute();
+        eq(full.code(), 200);
+
+        String content = full.body();
+        String etag = full.headers().get("ETag");
+        String lastModified = full.headers().get("Last-Modified");
+
+        notNull(etag);
+        notNull(lastModified);
+        eq(full.headers().get("Accept-Ranges"), "bytes");
+
+        eq(HTTP.get(localhost("/index.html")).header("If-None-Match", etag).execute().code(), 304);
+        eq(HTTP.get(localhost("/index.html")).header("If-Modified-Since", lastModified).execute().code(), 304);
+        eq(HTTP.get(localhost("/index.html")).header("If-None-Match", "\"other\"").execute().code(), 200);
+
+        HttpResp part = HTTP.get(localhost("/index.html")).header("Range", "bytes=1-3").execute();
+        eq(part.code(), 206);
+        eq(part.body(), content.substring(1, 4));
+        eq(part.headers().get("Content-Range"), "bytes 1-3/" + content.length());
+
+        HttpResp suffix = HTTP.get(localhost("/index.html")).header("Range", "bytes=-2").execute();
+        eq(suffix.code(), 206);
+        eq(suffix.body(), content.substring(content.length() - 2));
+
+        // the range is ignored if the file has changed
+        HttpResp changed = HTTP.get(localhost("/index.html"))
+                .header("Range", "bytes=1-3")
+                .header("If-Range", "\"other\"")
+                .execute();
+
+        eq(changed.code(), 200);
+        eq(changed.body(), content);
+
+        eq(HTTP.get(localhost("/index.html")).header("Range", "bytes=1000-").execute().code(), 416);
+    }
+
     @Test
     public void serveStaticFilesFromDefaultLocations() {
         onlyGet("/page1");
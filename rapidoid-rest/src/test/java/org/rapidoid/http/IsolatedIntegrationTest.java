@@ -318,6 +318,8 @@ public abstract class IsolatedIntegrationTest extends TestCommons {
 
     protected String maskHttpResponse(String resp) {
         resp = resp.replaceAll("(?<=\n)Date: .*? GMT(?=\r?\n)", "Date: XXXXX GMT");
+        resp = resp.replaceAll("(?<=\n)Last-Modified: .*? GMT(?=\r?\n)", "Last-Modified: XXXXX GMT");
+        resp = resp.replaceAll("(?<=\n)ETag: \"[^\"]*\"(?=\r?\n)", "ETag: \"XXXXX\"");
         resp = resp.replaceAll("(?<=\nSet-Cookie: JSESSIONID=)[^;]+?;", "<THE-SESSION-ID>;");
         resp = resp.replaceAll("(?<=\nSet-Cookie: _token=)[^;]+?;", "<THE-TOKEN>;");
         resp = resp.replaceAll("(?<=\"token\":\")[^\"]+?\"", "<THE-TOKEN>\"");
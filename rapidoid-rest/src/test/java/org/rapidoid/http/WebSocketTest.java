@@ -0,0 +1,321 @@
+/*-
+ * #%L
+ * rapidoid-rest
+ * %%
+ * Copyright (C) 2014 - 2020 Nikolche Mihajlovski and contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package org.rapidoid.http;
+
+import org.junit.jupiter.api.Test;
+import org.rapidoid.annotation.Authors;
+import org.rapidoid.annotation.Since;
+import org.rapidoid.http.websocket.AbstractWebSocketListener;
+import org.rapidoid.http.websocket.WebSocket;
+import org.rapidoid.http.websocket.WebSocketGroup;
+import org.rapidoid.http.websocket.WebSockets;
+import org.rapidoid.setup.On;
+import org.rapidoid.u.U;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+@Authors("Nikolche Mihajlovski")
+@Since("6.0.0")
+public class WebSocketTest extends IsolatedIntegrationTest {
+
+    private static final String KEY = "dGhlIHNhbXBsZSBub25jZQ==";
+
+    @Test
+    public void testAcceptKey() {
+        // the example from RFC 6455
+        eq(WebSockets.acceptKey(KEY), "s3pPLMBiTxaQ9kYGzzhZRbK+xOo=");
+    }
+
+    @Test
+    public void testMessagesAndClosingHandshake() throws IOException {
+        AtomicInteger closeCode = new AtomicInteger();
+
+        WebSocketGroup group = On.ws("/echo", new AbstractWebSocketListener() {
+
+            @Override
+            public void onText(WebSocket ws, String text) {
+                ws.send(text.toUpperCase());
+            }
+
+            @Override
+            public void onBinary(WebSocket ws, byte[] data) {
+                ws.send(data);
+            }
+
+            @Override
+            public void onClose(WebSocket ws, int code, String reason) {
+                closeCode.set(code);
+            }
+        });
+
+        try (Socket socket = connect("/echo")) {
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            writeFrame(out, true, 0x1, "hello".getBytes());
+            expectFrame(in, 0x1, "HELLO");
+
+            writeFrame(out, true, 0x2, new byte[]{1, 2, 3});
+            expectFrame(in, 0x2, new byte[]{1, 2, 3});
+
+            // a fragmented message, with a ping in between
+            writeFrame(out, false, 0x1, "frag".getBytes());
+            writeFrame(out, true, 0x9, "p".getBytes());
+            writeFrame(out, true, 0x0, "mented".getBytes());
+
+            expectFrame(in, 0xA, "p");
+            expectFrame(in, 0x1, "FRAGMENTED");
+
+            // a message large enough for the 16-bit length
+            String large = new String(new char[1000]).replace('\0', 'x');
+            writeFrame(out, true, 0x1, large.getBytes());
+            expectFrame(in, 0x1, large.toUpperCase());
+
+            eq(group.size(), 1);
+            eq(group.broadcast("news"), 1);
+            expectFrame(in, 0x1, "news");
+
+            writeFrame(out, true, 0x8, new byte[]{0x03, (byte) 0xE8});
+            expectFrame(in, 0x8, new byte[]{0x03, (byte) 0xE8});
+
+            eq(in.read(), -1);
+        }
+
+        waitFor(() -> closeCode.get() == 1000);
+        eq(group.size(), 0);
+    }
+
+    @Test
+    public void testUnmaskedFrameIsRejected() throws IOException {
+        On.ws("/ws", new AbstractWebSocketListener() {
+        });
+
+        try (Socket socket = connect("/ws")) {
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            out.write(new byte[]{(byte) 0x81, 0x02, 'h', 'i'});
+            out.flush();
+
+            Frame close = readFrame(in);
+            eq(close.opcode, 0x8);
+            eq(closeCode(close), 1002);
+
+            eq(in.read(), -1);
+        }
+    }
+
+    @Test
+    public void testHugeFrameLengthIsRejected() throws IOException {
+        On.ws("/ws", new AbstractWebSocketListener() {
+        });
+
+        // the most significant bit of the 64-bit length must be 0
+        expectRejected("/ws", new byte[]{(byte) 0x82, (byte) (0x80 | 127),
+                (byte) 0x80, 0, 0, 0, 0, 0, 0, 1}, 1002);
+
+        // the length doesn't fit in an int
+        expectRejected("/ws", new byte[]{(byte) 0x82, (byte) (0x80 | 127),
+                0, 0, 0, 0, (byte) 0x80, 0, 0, 0}, 1009);
+
+        expectRejected("/ws", new byte[]{(byte) 0x82, (byte) (0x80 | 127),
+                0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF}, 1009);
+    }
+
+    @Test
+    public void testInvalidUtf8IsRejected() throws IOException {
+        AtomicInteger texts = new AtomicInteger();
+
+        On.ws("/ws", new AbstractWebSocketListener() {
+            @Override
+            public void onText(WebSocket ws, String text) {
+                texts.incrementAndGet();
+            }
+        });
+
+        try (Socket socket = connect("/ws")) {
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            writeFrame(out, true, 0x1, new byte[]{'h', 'i', (byte) 0xC3, (byte) 0x28});
+
+            Frame close = readFrame(in);
+            eq(close.opcode, 0x8);
+            eq(closeCode(close), 1007);
+
+            eq(in.read(), -1);
+        }
+
+        eq(texts.get(), 0);
+    }
+
+    @Test
+    public void testPlainRequestIsRejected() throws IOException {
+        On.ws("/ws", new AbstractWebSocketListener() {
+        });
+
+        try (Socket socket = new Socket("localhost", 8080)) {
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /ws HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            out.flush();
+
+            isTrue(readHead(socket.getInputStream()).startsWith("HTTP/1.1 400 "));
+        }
+    }
+
+    private void expectRejected(String path, byte[] frameHead, int code) throws IOException {
+        try (Socket socket = connect(path)) {
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            // only the header (without the mask and the payload), which is enough to reject the frame
+            out.write(frameHead);
+            out.flush();
+
+            Frame close = readFrame(in);
+            eq(close.opcode, 0x8);
+            eq(closeCode(close), code);
+
+            eq(in.read(), -1);
+        }
+    }
+
+    private static int closeCode(Frame close) {
+        return ((close.payload[0] & 0xFF) << 8) | (close.payload[1] & 0xFF);
+    }
+
+    private Socket connect(String path) throws IOException {
+        Socket socket = new Socket("localhost", 8080);
+        socket.setSoTimeout(10000);
+
+        OutputStream out = socket.getOutputStream();
+
+        out.write(("GET " + path + " HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Upgrade: websocket\r\n" +
+                "Connection: Upgrade\r\n" +
+                "Sec-WebSocket-Key: " + KEY + "\r\n" +
+                "Sec-WebSocket-Version: 13\r\n\r\n").getBytes());
+
+        out.flush();
+
+        String head = readHead(socket.getInputStream());
+
+        isTrue(head.startsWith("HTTP/1.1 101 "));
+        isTrue(head.contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo=\r\n"));
+
+        return socket;
+    }
+
+    private static String readHead(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+
+        while (!sb.toString().endsWith("\r\n\r\n")) {
+            int b = in.read();
+            U.must(b >= 0, "Unexpected end of the response!");
+            sb.append((char) b);
+        }
+
+        return sb.toString();
+    }
+
+    private static void writeFrame(OutputStream out, boolean fin, int opcode, byte[] payload) throws IOException {
+        byte[] mask = {0x37, (byte) 0xFA, 0x21, 0x3D};
+
+        out.write((fin ? 0x80 : 0) | opcode);
+
+        if (payload.length < 126) {
+            out.write(0x80 | payload.length);
+        } else {
+            out.write(0x80 | 126);
+            out.write(payload.length >>> 8);
+            out.write(payload.length & 0xFF);
+        }
+
+        out.write(mask);
+
+        for (int i = 0; i < payload.length; i++) {
+            out.write(payload[i] ^ mask[i % 4]);
+        }
+
+        out.flush();
+    }
+
+    private Frame readFrame(DataInputStream in) throws IOException {
+        int b0 = in.readUnsignedByte();
+        int b1 = in.readUnsignedByte();
+
+        isTrue((b0 & 0x80) != 0);
+        isFalse((b1 & 0x80) != 0); // the server frames aren't masked
+
+        int len = b1 & 0x7F;
+
+        if (len == 126) {
+            len = in.readUnsignedShort();
+        } else if (len == 127) {
+            len = (int) in.readLong();
+        }
+
+        byte[] payload = new byte[len];
+        in.readFully(payload);
+
+        return new Frame(b0 & 0x0F, payload);
+    }
+
+    private void expectFrame(DataInputStream in, int opcode, String payload) throws IOException {
+        expectFrame(in, opcode, payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void expectFrame(DataInputStream in, int opcode, byte[] payload) throws IOException {
+        Frame frame = readFrame(in);
+        eq(frame.opcode, opcode);
+        eq(frame.payload, payload);
+    }
+
+    private void waitFor(BooleanSupplier condition) {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            U.sleep(50);
+        }
+
+        isTrue(condition.getAsBoolean());
+    }
+
+    private static class Frame {
+
+        final int opcode;
+
+        final byte[] payload;
+
+        Frame(int opcode, byte[] payload) {
+            this.opcode = opcode;
+            this.payload = payload;
+        }
+    }
+
+}